@@ -13,6 +13,8 @@
 
 package com.serialpundit.core.util;
 
+import java.nio.ByteBuffer;
+
 /**
  * <p>Utility class to calculate and generate CRC values for a given message. This can be used 
  * in X/Y/Z modem etc protocol implementations and in developing custom protocols for transmitting 
@@ -215,6 +217,26 @@ public final class SerialComCRCUtil {
         return (byte) (checksum % 256);
     }
 
+    /** 
+     * <p>Calculates 8 bit checksum value for the data bytes given in a buffer, for example a slice of 
+     * memory mapped file. The data bytes at start and end index are included in calculation. Position 
+     * and limit of buffer are not changed.</p>
+     * 
+     * @param data buffer for whom checksum is to be calculated.
+     * @param start index in supplied buffer from where checksum calculation should start.
+     * @param end index in buffer till which checksum should be calculated.
+     * @return checksum value for the given data bytes packet.
+     */
+    public byte getChecksumValue(ByteBuffer data, int start, int end) {
+        int x = start;
+        int checksum = 0x00;
+        while (x <= end) {
+            checksum = checksum + data.get(x);
+            x++;
+        }
+        return (byte) (checksum % 256);
+    }
+
     /**
      * <p>Calculates longitudinal redundancy checksum value for the given byte array.</p>
      * 
@@ -307,6 +329,26 @@ public final class SerialComCRCUtil {
         return crcVal;
     }
 
+    /** 
+     * <p>Calculates CRC-16-CCITT value for the data bytes given in a buffer, for example a slice of 
+     * memory mapped file. The data bytes at start and end index are included in calculation. Position 
+     * and limit of buffer are not changed.</p>
+     * 
+     * @param data buffer for whom CRC is to be calculated.
+     * @param start index in supplied buffer from where CRC calculation should start.
+     * @param end index in buffer till which CRC should be calculated.
+     * @return CRC value of specified data bytes.
+     */
+    public int getCRC16CCITTValue(ByteBuffer data, int start, int end) {
+        int x = start;
+        int crcVal = 0x0000;
+        while (x <= end) {
+            crcVal = (crc16ccittTable[((crcVal >> 8) ^ (data.get(x))) & 0xFF] ^ (crcVal << 8)) & 0xFFFF;
+            x++;
+        }
+        return crcVal;
+    }
+
     /** 
      * <p>Calculates CRC-16-DNP value for the data bytes given. The data bytes at start and end index 
      * are included in calculation. It uses pre-defined table for speedily calculating CRC-16-DNP 
@@ -0,0 +1,41 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import java.util.List;
+
+/**
+ * <p>The interface ISerialComBatchDataListener should be implemented by class who wish to receive 
+ * data from serial port in batches rather than one native read at a time.</p>
+ * 
+ * <p>When a batch is ready, looper hands over everything queued till that instant in one call. 
+ * When to flush a batch is decided by the SerialComBatchPolicy given at the time of registration.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComBatchDataListener extends ISerialComDataListener {
+
+    /**
+     * <p>This method is called whenever a batch of data chunks is ready for delivery and batch 
+     * policy is not configured to coalesce chunks. If the batch policy coalesces chunks, 
+     * onNewSerialDataAvailable(byte[]) is called instead with all the chunks in one array.</p>
+     * 
+     * <p>The list is reused by looper for the next batch, so application must not keep reference 
+     * to the list after this method returns. The byte arrays in the list can be retained.</p>
+     * 
+     * @param dataChunks data chunks read from serial port in the order they were read.
+     * @param numOfBytes total number of data bytes in all the chunks.
+     */
+    public abstract void onNewSerialDataBatchAvailable(List<byte[]> dataChunks, int numOfBytes);
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>The interface ISerialComDirectDataListener should be implemented by class who wish to
+ * receive data from serial port as a view of a direct byte buffer ring into which native layer
+ * places data, without any Java byte array being created.</p>
+ *
+ * @author Rishi Gupta
+ */
+public interface ISerialComDirectDataListener {
+
+    /**
+     * <p>This method is called whenever data is received on serial port. Data bytes are between
+     * position and limit of the given read only buffer.</p>
+     *
+     * <p>The buffer is a view of the ring itself. The region is handed back to the reader as soon as
+     * this method returns, so application must copy out whatever it needs to keep. The same buffer
+     * object is passed in every call.</p>
+     *
+     * @param data read only view of the received bytes.
+     */
+    public abstract void onNewSerialDataAvailable(ByteBuffer data);
+
+    /**
+     * <p>This method is called whenever an error occurred while reading data from serial port. It
+     * is called from the reader thread, not from the thread delivering data.</p>
+     *
+     * @param errorNum negative value returned by native layer.
+     */
+    public abstract void onDataListenerError(int errorNum);
+}
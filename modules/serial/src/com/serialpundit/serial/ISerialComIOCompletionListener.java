@@ -0,0 +1,33 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+/**
+ * <p>The interface ISerialComIOCompletionListener should be implemented by class who wish to be
+ * notified when an asynchronous read or write operation completes.</p>
+ *
+ * @author Rishi Gupta
+ */
+public interface ISerialComIOCompletionListener {
+
+    /**
+     * <p>This method is called once when the operation completes successfully, fails or is cancelled.
+     * It is called from the I/O reactor thread (or from the thread registering this listener if the
+     * operation had already completed), so it should return quickly and must not wait for another
+     * operation on the same reactor.</p>
+     *
+     * @param future future of the completed operation, its result can be obtained without blocking.
+     */
+    public abstract void onIOCompleted(SerialComIOFuture future);
+}
@@ -0,0 +1,45 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+/**
+ * <p>The interface ISerialComPooledDataListener should be implemented by class who wish to
+ * receive data from serial port in buffers borrowed from SerialComBufferPool instead of a newly
+ * allocated byte array for every read.</p>
+ *
+ * <p>Every buffer delivered must be released by calling its release() method once application
+ * has finished processing it. Buffer may be handed over to another thread and released there.</p>
+ *
+ * @author Rishi Gupta
+ */
+public interface ISerialComPooledDataListener {
+
+    /**
+     * <p>This method is called whenever data is received on serial port. Valid data bytes are from
+     * index 0 to buffer.length() - 1 in buffer.array().</p>
+     *
+     * <p>This method gets called from the reader thread associated with the corresponding listener.
+     * Data is not read from serial port while this method executes.</p>
+     *
+     * @param buffer pooled buffer containing bytes read from serial port.
+     */
+    public abstract void onNewSerialDataAvailable(SerialComPooledBuffer buffer);
+
+    /**
+     * <p>This method is called whenever an error occurred while reading data from serial port.</p>
+     *
+     * @param errorNum operating system specific error number or negative value returned by native layer.
+     */
+    public abstract void onDataListenerError(int errorNum);
+}
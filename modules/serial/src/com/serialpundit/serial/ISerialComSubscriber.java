@@ -0,0 +1,55 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Receiver of data from SerialComDataPublisher. Mirrors java.util.concurrent.Flow.Subscriber 
+ * and org.reactivestreams.Subscriber so that it can be adapted to them one to one.</p>
+ *
+ * <p>Methods are never called concurrently. onNext is called at most as many times as demanded 
+ * through ISerialComSubscription.request().</p>
+ *
+ * @author Rishi Gupta
+ */
+public interface ISerialComSubscriber {
+
+    /**
+     * <p>Called once before any other method.</p>
+     *
+     * @param subscription subscription to request data with or to cancel.
+     */
+    public abstract void onSubscribe(ISerialComSubscription subscription);
+
+    /**
+     * <p>Called with data read from serial port. Subscriber owns the given buffer.</p>
+     *
+     * @param data buffer wrapping bytes read from serial port.
+     */
+    public abstract void onNext(ByteBuffer data);
+
+    /**
+     * <p>Called once if data can not be delivered anymore because of an error. No other method is 
+     * called afterwards.</p>
+     *
+     * @param error reason of failure.
+     */
+    public abstract void onError(Throwable error);
+
+    /**
+     * <p>Called once when publisher is closed by application. No other method is called afterwards.</p>
+     */
+    public abstract void onComplete();
+}
@@ -0,0 +1,38 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+/**
+ * <p>Link between a SerialComDataPublisher and its ISerialComSubscriber. Mirrors 
+ * java.util.concurrent.Flow.Subscription and org.reactivestreams.Subscription so that it can be 
+ * adapted to them one to one.</p>
+ *
+ * @author Rishi Gupta
+ */
+public interface ISerialComSubscription {
+
+    /**
+     * <p>Adds n to the number of data buffers subscriber is ready to receive. Demand accumulates 
+     * and is capped at Long.MAX_VALUE.</p>
+     *
+     * @param n number of additional buffers, must be positive.
+     */
+    public abstract void request(long n);
+
+    /**
+     * <p>Stops delivery of data and releases serial port data listener. May be called from any 
+     * thread including from within onNext.</p>
+     */
+    public abstract void cancel();
+}
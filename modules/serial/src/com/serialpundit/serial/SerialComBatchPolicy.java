@@ -0,0 +1,83 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+/**
+ * <p>Defines when data looper should flush a batch of data chunks to an ISerialComBatchDataListener.</p>
+ * 
+ * <p>A batch is flushed as soon as it contains at least maxBytes bytes, or when maxLatency milliseconds 
+ * have passed since first chunk of this batch was read from serial port, whichever happens first. If 
+ * maxLatency is 0, everything queued at the instant looper wakes up is delivered without waiting 
+ * for more data.</p>
+ * 
+ * <p>Throughput bound applications may use large maxBytes and few milliseconds of latency to amortize 
+ * per chunk overhead. Latency sensitive application should keep maxLatency 0.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComBatchPolicy {
+
+    private final int mMaxBytes;
+    private final int mMaxLatency;
+    private final boolean mCoalesce;
+
+    /**
+     * <p>Allocates a new SerialComBatchPolicy object.</p>
+     * 
+     * @param maxBytes number of bytes after which batch will be flushed.
+     * @param maxLatency maximum time in milliseconds a chunk may be held in batch before delivery.
+     * @param coalesce if true all chunks in a batch are copied into one byte array and delivered 
+     *         through onNewSerialDataAvailable(byte[]), if false chunks are delivered as list through 
+     *         onNewSerialDataBatchAvailable(List, int).
+     * @throws IllegalArgumentException if maxBytes is zero or negative or maxLatency is negative.
+     */
+    public SerialComBatchPolicy(int maxBytes, int maxLatency, boolean coalesce) {
+        if(maxBytes <= 0) {
+            throw new IllegalArgumentException("Argument maxBytes can not be negative or zero !");
+        }
+        if(maxLatency < 0) {
+            throw new IllegalArgumentException("Argument maxLatency can not be negative !");
+        }
+        mMaxBytes = maxBytes;
+        mMaxLatency = maxLatency;
+        mCoalesce = coalesce;
+    }
+
+    /**
+     * <p>Gives number of bytes after which batch will be flushed.</p>
+     * 
+     * @return maximum number of bytes in a batch.
+     */
+    public int getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    /**
+     * <p>Gives maximum time in milliseconds a chunk may be held in batch before delivery.</p>
+     * 
+     * @return maximum latency in milliseconds.
+     */
+    public int getMaxLatency() {
+        return mMaxLatency;
+    }
+
+    /**
+     * <p>Tells whether chunks will be coalesced into one byte array or not.</p>
+     * 
+     * @return true if chunks in a batch will be coalesced.
+     */
+    public boolean isCoalesce() {
+        return mCoalesce;
+    }
+}
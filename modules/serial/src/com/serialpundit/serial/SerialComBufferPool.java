@@ -0,0 +1,223 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Pool of reusable byte arrays used to deliver data to ISerialComPooledDataListener without
+ * allocating a new array for every read. Every SerialComManager instance has one pool.</p>
+ *
+ * <p>Arrays are grouped in size classes which are powers of 2 from 64 bytes to 64 KB. A request is
+ * served from the smallest class that can hold it. Requests larger than 64 KB are served with a
+ * newly allocated array which is simply discarded when released. Once the pool has warmed up, an
+ * application that releases every buffer causes no allocation on the receive path.</p>
+ *
+ * <p>When leak detection is enabled, pool remembers where every buffer was acquired. If a buffer
+ * is garbage collected without being released, its array is reclaimed and the acquisition stack
+ * trace is recorded. Leak detection allocates per acquire and is meant for debugging only.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComBufferPool {
+
+    private static final int MIN_SIZE_SHIFT = 6;     // 64 bytes
+    private static final int MAX_SIZE_SHIFT = 16;    // 64 KB
+    private static final int MAX_FREE_PER_CLASS = 256;
+    private static final int MAX_LEAK_TRACES = 64;
+
+    private final ArrayBlockingQueue<SerialComPooledBuffer>[] mFreeBuffers;
+    private final AtomicLong mNumOfAllocatedBuffers = new AtomicLong(0);
+    private final AtomicLong mNumOfLeakedBuffers = new AtomicLong(0);
+
+    private volatile boolean mLeakDetection = false;
+    private final ReferenceQueue<SerialComPooledBuffer> mLeakQueue = new ReferenceQueue<SerialComPooledBuffer>();
+    private final Set<LeakTracker> mTrackers = Collections.newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+    private final List<Throwable> mLeakTraces = new ArrayList<Throwable>();
+
+    /* Keeps array of a leased buffer reachable, so that it can be reclaimed if buffer leaks. */
+    private static final class LeakTracker extends PhantomReference<SerialComPooledBuffer> {
+        final byte[] array;
+        final int sizeClass;
+        final Throwable trace;
+        LeakTracker(SerialComPooledBuffer buffer, ReferenceQueue<SerialComPooledBuffer> queue) {
+            super(buffer, queue);
+            array = buffer.array();
+            sizeClass = buffer.getSizeClass();
+            trace = new Throwable("Pooled buffer of " + array.length + " bytes acquired here was never released");
+        }
+    }
+
+    /**
+     * <p>Allocates a new SerialComBufferPool object. Arrays are allocated lazily on demand.</p>
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SerialComBufferPool() {
+        mFreeBuffers = new ArrayBlockingQueue[MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+        for(int x=0; x < mFreeBuffers.length; x++) {
+            mFreeBuffers[x] = new ArrayBlockingQueue<SerialComPooledBuffer>(MAX_FREE_PER_CLASS);
+        }
+    }
+
+    /**
+     * <p>Gives a buffer whose capacity is at least size bytes and whose length is 0.</p>
+     *
+     * @param size minimum number of bytes buffer should be able to hold.
+     * @return buffer which must be released after use.
+     * @throws IllegalArgumentException if size is zero or negative.
+     */
+    public SerialComPooledBuffer acquire(int size) {
+        if(size <= 0) {
+            throw new IllegalArgumentException("Argument size can not be negative or zero !");
+        }
+
+        int sizeClass = sizeClassOf(size);
+        SerialComPooledBuffer buffer = null;
+
+        if(mLeakDetection) {
+            reclaimLeakedBuffers();
+        }
+
+        if(sizeClass < 0) {
+            mNumOfAllocatedBuffers.incrementAndGet();
+            buffer = new SerialComPooledBuffer(new byte[size], this, -1);
+        }else {
+            buffer = mFreeBuffers[sizeClass].poll();
+            if(buffer == null) {
+                mNumOfAllocatedBuffers.incrementAndGet();
+                buffer = new SerialComPooledBuffer(new byte[1 << (sizeClass + MIN_SIZE_SHIFT)], this, sizeClass);
+            }
+        }
+
+        buffer.lease();
+        if(mLeakDetection) {
+            LeakTracker tracker = new LeakTracker(buffer, mLeakQueue);
+            buffer.mTracker = tracker;
+            mTrackers.add(tracker);
+        }
+        return buffer;
+    }
+
+    /* Called by SerialComPooledBuffer.release(). */
+    void recycle(SerialComPooledBuffer buffer) {
+        LeakTracker tracker = (LeakTracker) buffer.mTracker;
+        if(tracker != null) {
+            buffer.mTracker = null;
+            mTrackers.remove(tracker);
+            tracker.clear();
+        }
+        if(buffer.getSizeClass() >= 0) {
+            // if enough buffers of this class are already free, let this one be garbage collected
+            mFreeBuffers[buffer.getSizeClass()].offer(buffer);
+        }
+    }
+
+    /* Reclaims arrays of buffers which became unreachable without being released. */
+    private void reclaimLeakedBuffers() {
+        LeakTracker tracker = null;
+        while((tracker = (LeakTracker) mLeakQueue.poll()) != null) {
+            if(mTrackers.remove(tracker) == false) {
+                continue;
+            }
+            mNumOfLeakedBuffers.incrementAndGet();
+            synchronized(mLeakTraces) {
+                if(mLeakTraces.size() == MAX_LEAK_TRACES) {
+                    mLeakTraces.remove(0);
+                }
+                mLeakTraces.add(tracker.trace);
+            }
+            if(tracker.sizeClass >= 0) {
+                mFreeBuffers[tracker.sizeClass].offer(new SerialComPooledBuffer(tracker.array, this, tracker.sizeClass));
+            }
+        }
+    }
+
+    /* Index of smallest size class that can hold size bytes or -1 if it is too large. */
+    private static int sizeClassOf(int size) {
+        if(size > (1 << MAX_SIZE_SHIFT)) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        if(shift < MIN_SIZE_SHIFT) {
+            shift = MIN_SIZE_SHIFT;
+        }
+        return shift - MIN_SIZE_SHIFT;
+    }
+
+    /**
+     * <p>Enables or disables leak detection. Should be enabled only while debugging.</p>
+     *
+     * @param enabled true to enable leak detection.
+     */
+    public void setLeakDetection(boolean enabled) {
+        mLeakDetection = enabled;
+    }
+
+    /**
+     * <p>Tells whether leak detection is enabled.</p>
+     *
+     * @return true if leak detection is enabled.
+     */
+    public boolean isLeakDetectionEnabled() {
+        return mLeakDetection;
+    }
+
+    /**
+     * <p>Gives number of buffers found to be garbage collected without being released. Leaks are
+     * detected only while leak detection is enabled and only after garbage collector has run.</p>
+     *
+     * @return number of leaked buffers detected so far.
+     */
+    public long getNumOfLeakedBuffers() {
+        if(mLeakDetection) {
+            reclaimLeakedBuffers();
+        }
+        return mNumOfLeakedBuffers.get();
+    }
+
+    /**
+     * <p>Gives stack traces of the places where recently leaked buffers were acquired. At most 64
+     * most recent traces are kept.</p>
+     *
+     * @return list of stack traces, empty if no leak has been detected.
+     */
+    public List<Throwable> getLeakTraces() {
+        if(mLeakDetection) {
+            reclaimLeakedBuffers();
+        }
+        synchronized(mLeakTraces) {
+            return new ArrayList<Throwable>(mLeakTraces);
+        }
+    }
+
+    /**
+     * <p>Gives number of arrays allocated by this pool so far. This stops increasing once the pool
+     * has warmed up, if application releases every buffer.</p>
+     *
+     * @return number of allocated arrays.
+     */
+    public long getNumOfAllocatedBuffers() {
+        return mNumOfAllocatedBuffers.get();
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.SerialComManager.SMODE;
+
+/**
+ * <p>Exposes an opened serial port as a java.nio.channels.ByteChannel so that it can be used with NIO
+ * based code, for example to transfer data between a serial port and a SocketChannel using same buffers.</p>
+ *
+ * <p>In non-blocking mode read returns 0 if there is no data at serial port and write may write fewer
+ * bytes than remaining in buffer if flow control has stopped transmission, just like a non-blocking
+ * SocketChannel. Direct buffers are read/written by native layer without any copy. In blocking mode read
+ * waits until at least one byte is received and write waits until all bytes are written.</p>
+ *
+ * <p>A serial port does not have a file descriptor which can be registered with a java.nio.channels.Selector,
+ * so this channel is not a SelectableChannel. To wait for data on many ports using one thread, use
+ * SerialComPoller, or readAsync method of SerialComManager along with non-blocking channels.</p>
+ *
+ * <p>Closing this channel does not close serial port; closeComPort() method should be used for it. One
+ * thread can read while another thread writes.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComByteChannel implements ByteChannel {
+
+    private static final int STAGING_SIZE = 8192;
+
+    private final SerialComManager scm;
+    private final long handle;
+    private final boolean isBlocking;
+    private final long context;
+    private final Object readLock = new Object();
+    private final Object writeLock = new Object();
+    private byte[] readStaging;
+    private volatile boolean isOpened;
+
+    /**
+     * <p>Allocates a new SerialComByteChannel object.</p>
+     *
+     * @param scm instance of SerialComManager class with which this channel will associate itself.
+     * @param handle handle of the opened serial port.
+     * @param channelMode indicates blocking or non-blocking behavior of channel.
+     * @throws SerialComException if blocking context can not be created.
+     */
+    public SerialComByteChannel(SerialComManager scm, long handle, SMODE channelMode) throws SerialComException {
+        this.scm = scm;
+        this.handle = handle;
+        if(channelMode.getValue() == 1) {
+            context = scm.createBlockingIOContext();
+            isBlocking = true;
+        }else {
+            context = 0;
+            isBlocking = false;
+        }
+        isOpened = true;
+    }
+
+    /**
+     * <p>Reads bytes from serial port into given buffer starting at its position. Position is advanced by
+     * number of bytes read.</p>
+     *
+     * @param dst buffer into which bytes are to be transferred.
+     * @return number of bytes read, possibly zero in non-blocking mode. Serial port has no end of stream
+     *          so -1 is never returned.
+     * @throws ClosedChannelException if this channel is closed.
+     * @throws AsynchronousCloseException if channel is closed while a blocking read was waiting.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if(isOpened != true) {
+            throw new ClosedChannelException();
+        }
+        int length = dst.remaining();
+        if(length == 0) {
+            return 0;
+        }
+
+        int ret = 0;
+        synchronized(readLock) {
+            if(isBlocking == true) {
+                ret = readBlocking(dst, length);
+            }else if(dst.isDirect()) {
+                ret = scm.readBytesDirect(handle, dst, dst.position(), length);
+                dst.position(dst.position() + ret);
+            }else if(dst.hasArray()) {
+                ret = scm.readBytes(handle, dst.array(), dst.arrayOffset() + dst.position(), length, -1, null);
+                dst.position(dst.position() + ret);
+            }else {
+                ret = scm.readBytes(handle, new ByteBuffer[] { dst });
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * <p>Writes bytes between position and limit of given buffer to serial port. Position is advanced by
+     * number of bytes written.</p>
+     *
+     * @param src buffer from which bytes are to be retrieved.
+     * @return number of bytes written, possibly zero in non-blocking mode.
+     * @throws ClosedChannelException if this channel is closed.
+     * @throws AsynchronousCloseException if channel is closed while a blocking write was waiting.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if(isOpened != true) {
+            throw new ClosedChannelException();
+        }
+        int length = src.remaining();
+        if(length == 0) {
+            return 0;
+        }
+
+        int ret = 0;
+        synchronized(writeLock) {
+            if(isBlocking == true) {
+                ret = writeBlocking(src, length);
+            }else if(src.isDirect()) {
+                ret = scm.writeBytesDirect(handle, src, src.position(), length);
+                src.position(src.position() + ret);
+            }else if(src.hasArray()) {
+                ret = scm.writeBytes(handle, src.array(), src.arrayOffset() + src.position(), length);
+                src.position(src.position() + ret);
+            }else {
+                ret = scm.writeBytes(handle, new ByteBuffer[] { src });
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * <p>Tells whether or not this channel is open.</p>
+     *
+     * @return true if this channel is open.
+     */
+    @Override
+    public boolean isOpen() {
+        return isOpened;
+    }
+
+    /**
+     * <p>Closes this channel. A thread blocked in read or write is unblocked and gets AsynchronousCloseException.
+     * Serial port remains opened. Closing an already closed channel has no effect.</p>
+     *
+     * @throws IOException if blocking context can not be released.
+     */
+    @Override
+    public void close() throws IOException {
+        if(isOpened != true) {
+            return;
+        }
+        isOpened = false;
+        if(isBlocking == true) {
+            scm.unblockBlockingIOOperation(context);
+            // once both locks are acquired no operation is using context, so it is safe to destroy it.
+            synchronized(readLock) {
+                synchronized(writeLock) {
+                    scm.destroyBlockingIOContext(context);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Tells whether operations on this channel block.</p>
+     *
+     * @return true if this channel is in blocking mode.
+     */
+    public boolean isBlocking() {
+        return isBlocking;
+    }
+
+    /**
+     * <p>Gives handle of the serial port this channel reads and writes.</p>
+     *
+     * @return handle of the opened serial port.
+     */
+    public long getHandle() {
+        return handle;
+    }
+
+    private int readBlocking(ByteBuffer dst, int length) throws IOException {
+        if(isOpened != true) {
+            // closed while waiting for lock, context may have been destroyed
+            throw new AsynchronousCloseException();
+        }
+        int ret = 0;
+        try {
+            if(dst.hasArray()) {
+                ret = scm.readBytes(handle, dst.array(), dst.arrayOffset() + dst.position(), length, context, null);
+                dst.position(dst.position() + ret);
+            }else {
+                // blocking native read takes byte array only
+                if(readStaging == null) {
+                    readStaging = new byte[STAGING_SIZE];
+                }
+                ret = scm.readBytes(handle, readStaging, 0, Math.min(length, readStaging.length), context, null);
+                dst.put(readStaging, 0, ret);
+            }
+        } catch (SerialComException e) {
+            if(SerialComManager.EXP_UNBLOCKIO.equals(e.getExceptionMsg())) {
+                throw new AsynchronousCloseException();
+            }
+            throw e;
+        }
+        return ret;
+    }
+
+    private int writeBlocking(ByteBuffer src, int length) throws IOException {
+        if(isOpened != true) {
+            // closed while waiting for lock, context may have been destroyed
+            throw new AsynchronousCloseException();
+        }
+        byte[] data = null;
+        if(src.hasArray() && (src.arrayOffset() == 0) && (src.position() == 0) && (length == src.array().length)) {
+            data = src.array();
+        }else {
+            // blocking native write takes whole array only
+            data = new byte[length];
+            src.duplicate().get(data);
+        }
+
+        int ret = 0;
+        try {
+            ret = scm.writeBytesBlocking(handle, data, context);
+        } catch (SerialComException e) {
+            if(SerialComManager.EXP_UNBLOCKIO.equals(e.getExceptionMsg())) {
+                throw new AsynchronousCloseException();
+            }
+            throw e;
+        }
+        src.position(src.position() + ret);
+        return ret;
+    }
+}
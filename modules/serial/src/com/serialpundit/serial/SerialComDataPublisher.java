@@ -0,0 +1,270 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.serialpundit.core.SerialComException;
+
+/**
+ * <p>Publishes data read from a serial port to a single ISerialComSubscriber honouring its demand. 
+ * The publisher and subscription follow the Reactive Streams contract, so they can be adapted to 
+ * java.util.concurrent.Flow or org.reactivestreams types one to one and plugged into Reactor, Akka 
+ * streams etc.</p>
+ * 
+ * <p>Internally a data listener is registered for the handle with a small queue and block overflow 
+ * policy. When subscriber has no outstanding demand, data looper waits, the queue fills up and the 
+ * native reader stops reading serial port. Data then accumulates in operating system buffer and flow 
+ * control (if enabled) throttles the sender. No data is dropped and no unbounded queue grows during 
+ * downstream stalls.</p>
+ * 
+ * <p>Data listener is registered when subscriber subscribes and is unregistered when subscription is 
+ * cancelled, an error occurs or publisher is closed. A publisher supports one subscriber during its life.</p>
+ * 
+ * <p>Waiting for demand blocks the thread delivering data for the handle. In DISPATCHMODE.SHARED that 
+ * thread is shared with all the other handles, so a stalled subscriber would stop delivery to every 
+ * other port. Publisher therefore can be used only with SerialComManager created in DISPATCHMODE.DEDICATED.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComDataPublisher {
+
+    private final SerialComManager mSerialComManager;
+    private final long mHandle;
+    private final int mQueueCapacity;
+    private Subscription mSubscription = null;
+
+    /* Subscription which is also the data listener registered for the handle. */
+    private final class Subscription implements ISerialComSubscription, ISerialComDataListener {
+
+        private final ISerialComSubscriber mSubscriber;
+        private final Object mDemandLock = new Object();
+        private final Object mSignalLock = new Object();
+        private final AtomicBoolean mDone = new AtomicBoolean(false);
+        private final AtomicBoolean mRegistered = new AtomicBoolean(false);
+        private long mDemand = 0;
+
+        Subscription(ISerialComSubscriber subscriber) {
+            mSubscriber = subscriber;
+        }
+
+        void start() {
+            synchronized(mSignalLock) {
+                mSubscriber.onSubscribe(this);
+            }
+            if(mDone.get() == true) {
+                return;
+            }
+            try {
+                mSerialComManager.registerDataListener(mHandle, this, mQueueCapacity, SerialComManager.OVERFLOWPOLICY.BLOCK);
+                mRegistered.set(true);
+            } catch (SerialComException e) {
+                signalError(e);
+                return;
+            }
+            if(mDone.get() == true) {
+                // cancelled while registering
+                try {
+                    release();
+                } catch (SerialComException e) {
+                    // subscriber is gone, there is no one to report this to
+                }
+            }
+        }
+
+        @Override
+        public void onNewSerialDataAvailable(byte[] data) {
+            synchronized(mDemandLock) {
+                while((mDemand == 0) && (mDone.get() == false)) {
+                    try {
+                        mDemandLock.wait();
+                    } catch (InterruptedException e) {
+                        // looper is being stopped
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if(mDone.get() == true) {
+                    return;
+                }
+                if(mDemand != Long.MAX_VALUE) {
+                    mDemand--;
+                }
+            }
+            synchronized(mSignalLock) {
+                if(mDone.get() == false) {
+                    mSubscriber.onNext(ByteBuffer.wrap(data));
+                }
+            }
+        }
+
+        @Override
+        public void onDataListenerError(int errorNum) {
+            signalError(new SerialComException("Error " + errorNum + " occurred while reading data from serial port !"));
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                signalError(new IllegalArgumentException("Argument n must be positive !"));
+                return;
+            }
+            synchronized(mDemandLock) {
+                mDemand = mDemand + n;
+                if(mDemand < 0) {
+                    mDemand = Long.MAX_VALUE;
+                }
+                mDemandLock.notifyAll();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if(terminate()) {
+                try {
+                    release();
+                } catch (SerialComException e) {
+                    // subscriber is gone, there is no one to report this to
+                }
+            }
+        }
+
+        void complete() throws SerialComException {
+            if(terminate()) {
+                synchronized(mSignalLock) {
+                    mSubscriber.onComplete();
+                }
+                release();
+            }
+        }
+
+        private void signalError(Throwable error) {
+            if(terminate()) {
+                synchronized(mSignalLock) {
+                    mSubscriber.onError(error);
+                }
+                try {
+                    release();
+                } catch (SerialComException e) {
+                    // subscriber has already been told about the original failure
+                }
+            }
+        }
+
+        /* Moves to terminal state exactly once and wakes up looper if it is waiting for demand. */
+        private boolean terminate() {
+            if(mDone.compareAndSet(false, true) == false) {
+                return false;
+            }
+            synchronized(mDemandLock) {
+                mDemandLock.notifyAll();
+            }
+            return true;
+        }
+
+        private void release() throws SerialComException {
+            if(mRegistered.compareAndSet(true, false)) {
+                mSerialComManager.unregisterDataListener(mHandle, this);
+            }
+        }
+    }
+
+    /**
+     * <p>Allocates a new SerialComDataPublisher object which queues at most 16 data chunks before 
+     * throttling native reader.</p>
+     * 
+     * @param scm instance of SerialComManager through which port has been opened.
+     * @param handle handle of the opened port whose data will be published.
+     * @throws IllegalArgumentException if scm is null or scm dispatches in DISPATCHMODE.SHARED.
+     */
+    public SerialComDataPublisher(SerialComManager scm, long handle) {
+        this(scm, handle, 16);
+    }
+
+    /**
+     * <p>Allocates a new SerialComDataPublisher object.</p>
+     * 
+     * @param scm instance of SerialComManager through which port has been opened.
+     * @param handle handle of the opened port whose data will be published.
+     * @param queueCapacity number of data chunks queued before native reader is throttled.
+     * @throws IllegalArgumentException if scm is null, scm dispatches in DISPATCHMODE.SHARED or 
+     *         queueCapacity is zero or negative.
+     */
+    public SerialComDataPublisher(SerialComManager scm, long handle, int queueCapacity) {
+        if(scm == null) {
+            throw new IllegalArgumentException("Argument scm can not be null !");
+        }
+        if(scm.getDispatchMode() == SerialComManager.DISPATCHMODE.SHARED) {
+            throw new IllegalArgumentException("Argument scm must use DISPATCHMODE.DEDICATED, publisher can not block shared delivery threads !");
+        }
+        if(queueCapacity <= 0) {
+            throw new IllegalArgumentException("Argument queueCapacity can not be negative or zero !");
+        }
+        mSerialComManager = scm;
+        mHandle = handle;
+        mQueueCapacity = queueCapacity;
+    }
+
+    /**
+     * <p>Subscribes given subscriber and starts reading data as it requests. If a subscriber has already 
+     * subscribed, given subscriber is rejected through onError.</p>
+     * 
+     * @param subscriber receiver of data.
+     * @throws IllegalArgumentException if subscriber is null.
+     */
+    public void subscribe(ISerialComSubscriber subscriber) {
+        if(subscriber == null) {
+            throw new IllegalArgumentException("Argument subscriber can not be null !");
+        }
+
+        Subscription subscription = null;
+        synchronized(this) {
+            if(mSubscription == null) {
+                mSubscription = new Subscription(subscriber);
+                subscription = mSubscription;
+            }
+        }
+
+        if(subscription == null) {
+            subscriber.onSubscribe(new ISerialComSubscription() {
+                @Override
+                public void request(long n) {
+                }
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Publisher supports only one subscriber !"));
+            return;
+        }
+        subscription.start();
+    }
+
+    /**
+     * <p>Signals onComplete to subscriber and unregisters data listener. Should be called before 
+     * closing serial port if subscription is still active.</p>
+     * 
+     * @throws SerialComException if data listener could not be unregistered.
+     */
+    public void close() throws SerialComException {
+        Subscription subscription = null;
+        synchronized(this) {
+            subscription = mSubscription;
+        }
+        if(subscription != null) {
+            subscription.complete();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.serialpundit.core.SerialComException;
+
+/**
+ * <p>Result of an I/O operation carried out by an I/O reactor thread. The result is the number of
+ * bytes read or written.</p>
+ *
+ * <p>Threads waiting for completion are parked using java.util.concurrent primitives and never
+ * wait on a monitor or inside native code, so a waiting virtual thread releases its carrier thread.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComIOFuture implements Future<Integer> {
+
+    private static final int PENDING = 0;
+    private static final int COMPLETED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final CountDownLatch mDone = new CountDownLatch(1);
+    private int mState = PENDING;
+    private int mResult = 0;
+    private SerialComException mError = null;
+    private ArrayList<ISerialComIOCompletionListener> mListeners = null;
+
+    /**
+     * <p>Allocates a new SerialComIOFuture object in pending state.</p>
+     */
+    public SerialComIOFuture() {
+    }
+
+    /**
+     * <p>Marks operation as successfully completed.</p>
+     *
+     * @param result number of bytes transferred.
+     * @return true if this call completed the operation, false if it was already done.
+     */
+    public boolean complete(int result) {
+        synchronized(this) {
+            if(mState != PENDING) {
+                return false;
+            }
+            mResult = result;
+            mState = COMPLETED;
+        }
+        mDone.countDown();
+        notifyListeners();
+        return true;
+    }
+
+    /**
+     * <p>Marks operation as failed.</p>
+     *
+     * @param error reason for failure.
+     * @return true if this call completed the operation, false if it was already done.
+     */
+    public boolean fail(SerialComException error) {
+        synchronized(this) {
+            if(mState != PENDING) {
+                return false;
+            }
+            mError = error;
+            mState = FAILED;
+        }
+        mDone.countDown();
+        notifyListeners();
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized(this) {
+            if(mState != PENDING) {
+                return false;
+            }
+            mState = CANCELLED;
+        }
+        mDone.countDown();
+        notifyListeners();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState != PENDING;
+    }
+
+    @Override
+    public Integer get() throws InterruptedException, ExecutionException {
+        mDone.await();
+        return report();
+    }
+
+    @Override
+    public Integer get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if(mDone.await(timeout, unit) == false) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    /**
+     * <p>Waits for completion and gives number of bytes transferred, throwing the failure reason
+     * as it is instead of wrapping it in ExecutionException.</p>
+     *
+     * @return number of bytes transferred.
+     * @throws SerialComException if operation failed or was cancelled.
+     * @throws InterruptedException if waiting thread is interrupted.
+     */
+    public int getResult() throws SerialComException, InterruptedException {
+        mDone.await();
+        synchronized(this) {
+            if(mState == FAILED) {
+                throw mError;
+            }
+            if(mState == CANCELLED) {
+                throw new SerialComException("I/O operation cancelled !");
+            }
+            return mResult;
+        }
+    }
+
+    /**
+     * <p>Registers a listener which is called when this operation completes. If the operation has 
+     * already completed, listener is called immediately from the calling thread. Exception thrown by 
+     * a listener called on completion is ignored, so that other listeners are still called.</p>
+     *
+     * @param listener listener to be notified.
+     * @throws IllegalArgumentException if listener is null.
+     */
+    public void addCompletionListener(ISerialComIOCompletionListener listener) {
+        if(listener == null) {
+            throw new IllegalArgumentException("Argument listener can not be null !");
+        }
+        synchronized(this) {
+            if(mState == PENDING) {
+                if(mListeners == null) {
+                    mListeners = new ArrayList<ISerialComIOCompletionListener>(2);
+                }
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.onIOCompleted(this);
+    }
+
+    private void notifyListeners() {
+        ArrayList<ISerialComIOCompletionListener> listeners = null;
+        synchronized(this) {
+            listeners = mListeners;
+            mListeners = null;
+        }
+        if(listeners != null) {
+            for(int x=0; x < listeners.size(); x++) {
+                try {
+                    listeners.get(x).onIOCompleted(this);
+                } catch (RuntimeException e) {
+                    // a faulty listener must not stop notification of others or completing thread
+                }
+            }
+        }
+    }
+
+    private synchronized Integer report() throws ExecutionException {
+        if(mState == FAILED) {
+            throw new ExecutionException(mError);
+        }
+        if(mState == CANCELLED) {
+            throw new CancellationException();
+        }
+        return mResult;
+    }
+}
@@ -15,6 +15,7 @@ package com.serialpundit.serial;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.serialpundit.core.SerialComException;
 import com.serialpundit.serial.SerialComManager.SMODE;
@@ -24,6 +25,11 @@ import com.serialpundit.serial.internal.SerialComPortHandleInfo;
 /**
  * <p>Represents an input stream of bytes which is received from serial port.</p>
  * 
+ * <p>Stream keeps an internal read-ahead buffer which is filled by reading all the data available at serial port 
+ * in one native call. Single byte reads and small reads (for example by DataInputStream) are then served from 
+ * this buffer. Reads larger than the buffer are done directly into caller's array. As data is read ahead, data 
+ * from the port should not be read using SerialComManager read methods while this stream is in use.</p>
+ * 
  * <p>Application design should make sure that the port is not closed if there exist a read method
  * which is blocked (waiting for data byte) on the same port.</p>
  * 
@@ -34,12 +40,17 @@ import com.serialpundit.serial.internal.SerialComPortHandleInfo;
  */
 public final class SerialComInByteStream extends InputStream implements ISerialIOStream {
 
+    private static final int READ_AHEAD_SIZE = 8192;
+
     private final SerialComManager scm;
     private final SerialComPortHandleInfo portHandleInfo;
     private final long handle;
-    private final Object lock;
+    private final ReentrantLock lock;
     private final boolean isBlocking;
     private final long context;
+    private final byte[] readAhead;
+    private int readAheadPos;
+    private int readAheadCount;
     private boolean isOpened;
 
     /**
@@ -56,7 +67,10 @@ public final class SerialComInByteStream extends InputStream implements ISerialI
         this.scm = scm;
         this.portHandleInfo = portHandleInfo;
         this.handle = handle;
-        lock = new Object();
+        lock = new ReentrantLock();
+        readAhead = new byte[READ_AHEAD_SIZE];
+        readAheadPos = 0;
+        readAheadCount = 0;
 
         /* For blocking read, create a operating system specific event object that will be used to 
          * wait for data to be available for reading. If a thread is blocked (waiting for data and 
@@ -76,6 +90,9 @@ public final class SerialComInByteStream extends InputStream implements ISerialI
      * <p>Returns an estimate of the minimum number of bytes that can be read from this input stream
      * without blocking by the next invocation of a method for this input stream.</p>
      * 
+     * <p>If read-ahead buffer is empty, data available at serial port is read into it without blocking. 
+     * If another thread is currently reading from this stream, 0 is returned.</p>
+     * 
      * @return an estimate of the minimum number of bytes available for reading.
      * @throws IOException if an I/O error occurs or if stream has been closed already.
      */
@@ -84,14 +101,17 @@ public final class SerialComInByteStream extends InputStream implements ISerialI
         if(isOpened != true) {
             throw new IOException("The byte stream has been closed !");
         }
-
-        int[] numBytesAvailable = new int[2];
+        if(lock.tryLock() == false) {
+            return 0;
+        }
         try {
-            numBytesAvailable = scm.getByteCountInPortIOBuffer(handle);
-        } catch (SerialComException e) {
-            throw new IOException(e.getExceptionMsg());
+            if(readAheadPos >= readAheadCount) {
+                fill(false);
+            }
+            return readAheadCount - readAheadPos;
+        } finally {
+            lock.unlock();
         }
-        return numBytesAvailable[0];
     }
 
     /**
@@ -110,12 +130,17 @@ public final class SerialComInByteStream extends InputStream implements ISerialI
             // if there was a blocked read operation, it will hold this lock. when it gets unblocked
             // it will release this lock and therefore this close method will acquire this lock.
             // once the lock is acquired it is safe to destroy context.
-            synchronized(lock) {
+            lock.lock();
+            try {
                 scm.destroyBlockingIOContext(context);
+            } finally {
+                lock.unlock();
             }
         }
         isOpened = false;
-        portHandleInfo.setSerialComInByteStream(null);
+        synchronized(portHandleInfo) {
+            portHandleInfo.setSerialComInByteStream(null);
+        }
     }
 
     /**
@@ -155,39 +180,16 @@ public final class SerialComInByteStream extends InputStream implements ISerialI
             throw new IOException("The byte stream has been closed !");
         }
 
-        byte[] data;
+        lock.lock();
         try {
-            if(isBlocking == true) {
-                // blocking I/O
-                synchronized(lock) {
-                    try {
-                        data = scm.readBytesBlocking(handle, 1, context);
-                    }catch (SerialComException e) {
-                        if(SerialComManager.EXP_UNBLOCKIO.equals(e.getExceptionMsg())) {
-                            // this exception message occurs when application has closed stream.
-                            // release lock so that blocking context can be destroyed.
-                            return -1;
-                        }
-                        // this is error other than expected, pass it to application.
-                        throw new IOException(e.getExceptionMsg());
-                    }
-                    if(data != null) {
-                        return (int)data[0];
-                    }else {
-                        throw new IOException("Unknown error occured while reading data in blocking mode !");
-                    }
-                }
-            }else {
-                // non-blocking I/O
-                data = scm.readBytes(handle, 1);
-                if(data != null) {
-                    return (int)data[0];
-                }else {
+            if(readAheadPos >= readAheadCount) {
+                if(fill(isBlocking) <= 0) {
                     return -1;
                 }
             }
-        }catch (SerialComException e) {
-            throw new IOException(e.getExceptionMsg());
+            return readAhead[readAheadPos++] & 0xFF;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -234,6 +236,9 @@ public final class SerialComInByteStream extends InputStream implements ISerialI
      * non-blocking mode it attempts to read data, returns data byte if read. It will return -1 if there is 
      * no data at serial port.</p>
      * 
+     * <p>Bytes already in read-ahead buffer are returned without reading serial port. Otherwise if len is at least 
+     * the size of read-ahead buffer, data is read directly into b, else read-ahead buffer is filled first.</p>
+     * 
      * @param b the buffer into which the data is read.
      * @param off the start offset in array b at which the data is written.
      * @param len the maximum number of bytes to read.
@@ -241,7 +246,6 @@ public final class SerialComInByteStream extends InputStream implements ISerialI
      *          data (non-blocking).
      * @throws IOException if an I/O error occurs or if input stream has been closed.
      * @throws NullPointerException if <code>b</code> is <code>null</code>.
-     * @throws IllegalArgumentException if data is not a byte type array.
      * @throws IndexOutOfBoundsException if off is negative, len is negative, or len is greater 
      *          than b.length - off.
      */
@@ -260,48 +264,24 @@ public final class SerialComInByteStream extends InputStream implements ISerialI
             return 0;
         }
 
-        int i = off;
-        byte[] data;
+        lock.lock();
         try {
-            if(isBlocking == true) {
-                // blocking I/O
-                synchronized(lock) {
-                    try {
-                        data = scm.readBytesBlocking(handle, len, context);
-                    }catch (SerialComException e) {
-                        if(SerialComManager.EXP_UNBLOCKIO.equals(e.getExceptionMsg())) {
-                            // this exception message occurs when application has closed stream.
-                            // release lock so that blocking context can be destroyed.
-                            return -1;
-                        }
-                        // this is error other than expected, pass it to application.
-                        throw new IOException(e.getExceptionMsg());
-                    }
-                    if(data != null) {
-                        for(int x=0; x < data.length; x++) {
-                            b[i] = data[x];
-                            i++;
-                        }
-                        return data.length;
-                    }else {
-                        throw new IOException("Unknown error occured in native layer !");
-                    }
+            if(readAheadPos >= readAheadCount) {
+                if(len >= readAhead.length) {
+                    // large read, skip copying through read-ahead buffer
+                    int ret = readNative(b, off, len, isBlocking);
+                    return (ret > 0) ? ret : -1;
                 }
-            }else {
-                // non-blocking I/O
-                data = scm.readBytes(handle, len);
-                if(data != null) {
-                    for(int x=0; x < data.length; x++) {
-                        b[i] = data[x];
-                        i++;
-                    }
-                    return data.length;
-                }else {
+                if(fill(isBlocking) <= 0) {
                     return -1;
                 }
             }
-        }catch (SerialComException e) {
-            throw new IOException(e.getExceptionMsg());
+            int num = Math.min(len, readAheadCount - readAheadPos);
+            System.arraycopy(readAhead, readAheadPos, b, off, num);
+            readAheadPos = readAheadPos + num;
+            return num;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -313,14 +293,66 @@ public final class SerialComInByteStream extends InputStream implements ISerialI
     }
 
     /**
-     * <p>SCM does not support skip. If required, it can be developed at application level.</p>
+     * <p>Skips over and discards given number of bytes of data from this input stream. Bytes in read-ahead 
+     * buffer are discarded first, then data available at serial port is read and discarded. This method never 
+     * blocks, so it may skip fewer bytes if not enough data has been received yet.</p>
      * 
      * @param number of bytes to skip.
-     * @return always returns 0.
+     * @return actual number of bytes skipped.
+     * @throws IOException if an I/O error occurs or if input stream has been closed.
      */
     @Override
-    public long skip(long number) {
-        return 0;
+    public long skip(long number) throws IOException {
+        if(isOpened != true) {
+            throw new IOException("The byte stream has been closed !");
+        }
+        if(number <= 0) {
+            return 0;
+        }
+
+        long skipped = 0;
+        int num = 0;
+        lock.lock();
+        try {
+            while(skipped < number) {
+                if(readAheadPos >= readAheadCount) {
+                    if(fill(false) <= 0) {
+                        break;
+                    }
+                }
+                num = (int) Math.min(number - skipped, readAheadCount - readAheadPos);
+                readAheadPos = readAheadPos + num;
+                skipped = skipped + num;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return skipped;
     }
-}
 
+    /* Refills empty read-ahead buffer with whatever is available at serial port, must be called with lock held. */
+    private int fill(boolean block) throws IOException {
+        readAheadPos = 0;
+        readAheadCount = 0;
+        int ret = readNative(readAhead, 0, readAhead.length, block);
+        if(ret > 0) {
+            readAheadCount = ret;
+        }
+        return ret;
+    }
+
+    /* Returns number of bytes read, 0 if there is no data or -1 if blocked read was unblocked by close. */
+    private int readNative(byte[] b, int off, int len, boolean block) throws IOException {
+        try {
+            return scm.readBytes(handle, b, off, len, block ? context : -1, null);
+        } catch (SerialComException e) {
+            if(block && SerialComManager.EXP_UNBLOCKIO.equals(e.getExceptionMsg())) {
+                // this exception message occurs when application has closed stream.
+                // release lock so that blocking context can be destroyed.
+                return -1;
+            }
+            // this is error other than expected, pass it to application.
+            throw new IOException(e.getExceptionMsg());
+        }
+    }
+}
@@ -18,9 +18,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import com.serialpundit.core.SerialComPlatform;
 import com.serialpundit.core.SerialComSystemProperty;
@@ -28,6 +32,7 @@ import com.serialpundit.core.SerialComException;
 import com.serialpundit.serial.comdb.SerialComDBRelease;
 import com.serialpundit.serial.ftp.ISerialComXmodemProgress;
 import com.serialpundit.serial.ftp.ISerialComYmodemProgress;
+import com.serialpundit.serial.ftp.ISerialComZmodemProgress;
 import com.serialpundit.serial.ftp.SerialComFTPCMDAbort;
 import com.serialpundit.serial.ftp.SerialComXModem;
 import com.serialpundit.serial.ftp.SerialComXModem1K;
@@ -35,6 +40,7 @@ import com.serialpundit.serial.ftp.SerialComXModemCRC;
 import com.serialpundit.serial.ftp.SerialComYModem1K;
 import com.serialpundit.serial.ftp.SerialComYModemCRC;
 import com.serialpundit.serial.ftp.SerialComYModemG;
+import com.serialpundit.serial.ftp.SerialComZModem;
 import com.serialpundit.serial.mapper.SerialComPortMapper;
 import com.serialpundit.serial.nullmodem.SerialComNullModem;
 import com.serialpundit.serial.vendor.SerialComVendorLib;
@@ -42,7 +48,14 @@ import com.serialpundit.serial.internal.ISerialIOStream;
 import com.serialpundit.serial.internal.SerialComCompletionDispatcher;
 import com.serialpundit.serial.internal.SerialComDBReleaseJNIBridge;
 import com.serialpundit.serial.internal.SerialComLooper;
+import com.serialpundit.serial.internal.SerialComDirectDataReader;
+import com.serialpundit.serial.internal.SerialComIOReactor;
+import com.serialpundit.serial.internal.SerialComPooledDataReader;
+import com.serialpundit.serial.internal.SerialComBulkReader;
 import com.serialpundit.serial.internal.SerialComPortHandleInfo;
+import com.serialpundit.serial.internal.SerialComScratchBuffer;
+import com.serialpundit.serial.internal.SerialComStringEncoder;
+import com.serialpundit.serial.internal.SerialComWriteCoalescer;
 import com.serialpundit.serial.internal.SerialComPortJNIBridge;
 import com.serialpundit.serial.internal.SerialComPortMapperJNIBridge;
 import com.serialpundit.serial.internal.SerialComPortsList;
@@ -220,7 +233,7 @@ public final class SerialComManager {
         XMODEM(1),
         /** <p>YMODEM protocol with two variants CRC and 1k.</p>*/
         YMODEM(2),
-        /** <p>coming soon</p>*/
+        /** <p>ZMODEM protocol streaming with 32 bit CRC and crash recovery, variant is not applicable.</p>*/
         ZMODEM(3);
         private int value;
         private FTPPROTO(int value) {
@@ -266,6 +279,69 @@ public final class SerialComManager {
         }
     }
 
+    /** <p>Pre-defined enum constants for defining how data and line events are dispatched to listeners. </p>*/
+    public enum DISPATCHMODE {
+        /** <p>Every handle gets its own Java threads for delivering data, data errors and line events to 
+         * registered listeners. </p>*/
+        DEDICATED(1),
+        /** <p>All handles are served by one small fixed pool of Java threads sized to the number of processor 
+         * cores. Data and events for a given handle are still delivered in order. Suitable when hundreds of 
+         * ports are being listened to simultaneously. </p>*/
+        SHARED(2);
+        private int value;
+        private DISPATCHMODE(int value) {
+            this.value = value;	
+        }
+        public int getValue() {
+            return this.value;
+        }
+    }
+
+    /**
+     * <p>Strategies that a dedicated data looper thread can use while waiting for new data from 
+     * serial port.</p>
+     */
+    public enum WAITSTRATEGY {
+        /** <p>Busy spin on the data ring. Lowest delivery latency but keeps one processor core fully 
+         * busy for every listened port. </p>*/
+        SPIN(1),
+        /** <p>Spin on the data ring but yield processor on every iteration. </p>*/
+        YIELD(2),
+        /** <p>Park the looper thread until native thread inserts new data. Default strategy. </p>*/
+        PARK(3);
+        private int value;
+        private WAITSTRATEGY(int value) {
+            this.value = value;	
+        }
+        public int getValue() {
+            return this.value;
+        }
+    }
+
+    /**
+     * <p>Action to be taken when data listener does not consume data as fast as it arrives and its 
+     * data queue becomes full.</p>
+     */
+    public enum OVERFLOWPOLICY {
+        /** <p>Oldest queued data chunk is dropped to make room for new one. Default policy. </p>*/
+        DROP_OLDEST(1),
+        /** <p>Newly read data chunk is dropped. </p>*/
+        DROP_NEWEST(2),
+        /** <p>Native reader thread waits until listener consumes data. Meanwhile operating system buffer 
+         * fills up and flow control (if enabled) throttles the sender, so no data is lost. </p>*/
+        BLOCK(3),
+        /** <p>Data chunks are stored in a bounded off-heap buffer of 8 MB until listener catches up. If 
+         * this buffer also fills up, newly read data chunk is dropped. </p>*/
+        SPILL(4);
+        private int value;
+        private OVERFLOWPOLICY(int value) {
+            this.value = value;	
+        }
+        public int getValue() {
+            return this.value;
+        }
+    }
+
     /** <p>Default number of bytes (1024) to read from serial port. </p>*/
     public static final int DEFAULT_READBYTECOUNT = 1024;
 
@@ -301,10 +377,10 @@ public final class SerialComManager {
      * and made to return to caller explicitly (irrespective there was data to read or not). </p>*/
     public static final String EXP_UNBLOCKIO  = "I/O operation unblocked !";
 
-    // This provides guaranteed log(n) time cost for the containsKey, get, put and remove operations.
-    // It maps opened handle of serial device to its information object. This map may be accessed in 
-    // locked state for maintaining integrity and consistency whenever required.
-    private final TreeMap<Long, SerialComPortHandleInfo> mPortHandleInfo = new TreeMap<Long, SerialComPortHandleInfo>();
+    // It maps opened handle of serial device to its information object. Lookups do not take any lock, so 
+    // threads working on different ports never contend with each other. State of a particular handle 
+    // (listeners, readers, streams, closing) is changed only while holding lock on its information object.
+    private final ConcurrentHashMap<Long, SerialComPortHandleInfo> mPortHandleInfo = new ConcurrentHashMap<Long, SerialComPortHandleInfo>();
 
     private int osType = SerialComPlatform.OS_UNKNOWN;
     private int cpuArch = SerialComPlatform.ARCH_UNKNOWN;
@@ -314,8 +390,17 @@ public final class SerialComManager {
     private final SerialComSystemProperty mSerialComSystemProperty;
     private final SerialComPortJNIBridge mComPortJNIBridge;
     private final SerialComCompletionDispatcher mEventCompletionDispatcher;
+    private final DISPATCHMODE mDispatchMode;
     private final SerialComPortsList mSerialComPortsList;
-    private final Object lockB = new Object();
+    private final SerialComBufferPool mBufferPool = new SerialComBufferPool();
+    private final SerialComBulkReader mBulkReader;
+    private final SerialComScratchBuffer mScratchBuffer = new SerialComScratchBuffer(4096, 1024 * 1024);
+    private final SerialComStringEncoder mStringEncoder = new SerialComStringEncoder(mScratchBuffer);
+    private volatile SerialComIOReactor mIOReactor = null;
+    private ScheduledThreadPoolExecutor mWriteFlusher = null;
+    // serializes opening of a given port so that exclusive ownership check and registration are atomic, 
+    // ports with different names are opened concurrently.
+    private final ConcurrentHashMap<String, Object> mPortOpenLocks = new ConcurrentHashMap<String, Object>();
 
     private static final Object lockA = new Object();
     private static boolean nativeLibLoadAndInitAlready = false;
@@ -351,6 +436,32 @@ public final class SerialComManager {
      *         or empty.
      */
     public SerialComManager() throws IOException {
+        this(DISPATCHMODE.DEDICATED);
+    }
+
+    /**
+     * <p>Allocates a new SerialComManager object which dispatches data and line events to listeners as 
+     * specified by dispatchMode. Rest of the behavior is same as the default constructor.</p>
+     * 
+     * <p>If the dispatchMode is DISPATCHMODE.SHARED, registering a data or event listener does not create 
+     * Java threads for that handle. All the listeners are called from a fixed pool of threads whose size is 
+     * equal to number of processor cores. This reduces context switching considerably when hundreds of ports 
+     * are being listened to. Listeners should therefore not block for long time as it will delay delivery 
+     * for other handles served by the same thread.</p>
+     * 
+     * @param dispatchMode DISPATCHMODE.DEDICATED or DISPATCHMODE.SHARED.
+     * @throws IOException if file operations on "/proc/cpuinfo" fails for Linux on ARM platform, if java system 
+     *         properties can not be accessed, if file "/proc/cpuinfo" can not be found for Linux on ARM platform, 
+     *         if native libraries are not found or can not be loaded/linked and initialized. If appropriate 
+     *         files/directories can not be read or written.
+     * @throws IllegalArgumentException if dispatchMode is null.
+     */
+    public SerialComManager(DISPATCHMODE dispatchMode) throws IOException {
+
+        if(dispatchMode == null) {
+            throw new IllegalArgumentException("Argument dispatchMode can not be null !");
+        }
+        mDispatchMode = dispatchMode;
 
         mSerialComSystemProperty = new SerialComSystemProperty();
         mSerialComPlatform = new SerialComPlatform(mSerialComSystemProperty);
@@ -385,7 +496,9 @@ public final class SerialComManager {
             }
         }
 
-        mEventCompletionDispatcher = new SerialComCompletionDispatcher(mComPortJNIBridge, mPortHandleInfo);
+        mBulkReader = new SerialComBulkReader(mComPortJNIBridge, mScratchBuffer);
+        mEventCompletionDispatcher = new SerialComCompletionDispatcher(mComPortJNIBridge, 
+                (dispatchMode == DISPATCHMODE.SHARED));
         mSerialComPortsList = new SerialComPortsList(mComPortJNIBridge, osType);
     }
 
@@ -431,7 +544,34 @@ public final class SerialComManager {
      */
     public SerialComManager(String loadedLibName, String directoryPath, final boolean createDirectory, 
             boolean hotDeploy) throws IOException {
+        this(loadedLibName, directoryPath, createDirectory, hotDeploy, DISPATCHMODE.DEDICATED);
+    }
 
+    /**
+     * <p>Allocates a new SerialComManager object which extracts native library as specified by loadedLibName, 
+     * directoryPath, createDirectory and hotDeploy and dispatches data and line events to listeners as specified 
+     * by dispatchMode. Refer SerialComManager(String, String, boolean, boolean) and SerialComManager(DISPATCHMODE) 
+     * for details.</p>
+     * 
+     * @param loadedLibName library name without extension (do not append .so, .dll or .dylib etc.).
+     * @param directoryPath absolute path of directory to be used for purpose of extraction.
+     * @param createDirectory true if directory is to be created otherwise false if given directory already exist.
+     * @param hotDeploy true if hot deployment is to be supported otherwise false.
+     * @param dispatchMode DISPATCHMODE.DEDICATED or DISPATCHMODE.SHARED.
+     * @throws IOException if file operations on "/proc/cpuinfo" fails for Linux on ARM platform, if java system 
+     *         properties can not be accessed, if file "/proc/cpuinfo" can not be found for Linux on ARM platform, 
+     *         if native libraries are not found or can not be loaded/linked and initialized. If appropriate 
+     *         files/directories can not be read or written.
+     * @throws IllegalArgumentException if directoryPath is null, directoryPath is empty, loadedLibName is null 
+     *         or empty, or if dispatchMode is null.
+     */
+    public SerialComManager(String loadedLibName, String directoryPath, final boolean createDirectory, 
+            boolean hotDeploy, DISPATCHMODE dispatchMode) throws IOException {
+
+        if(dispatchMode == null) {
+            throw new IllegalArgumentException("Argument dispatchMode can not be null !");
+        }
+        mDispatchMode = dispatchMode;
         if(directoryPath == null) {
             throw new IllegalArgumentException("Argument directoryPath can not be null !");
         }
@@ -483,10 +623,21 @@ public final class SerialComManager {
             }
         }
 
-        mEventCompletionDispatcher = new SerialComCompletionDispatcher(mComPortJNIBridge, mPortHandleInfo);
+        mBulkReader = new SerialComBulkReader(mComPortJNIBridge, mScratchBuffer);
+        mEventCompletionDispatcher = new SerialComCompletionDispatcher(mComPortJNIBridge, 
+                (dispatchMode == DISPATCHMODE.SHARED));
         mSerialComPortsList = new SerialComPortsList(mComPortJNIBridge, osType);
     }
 
+    /**
+     * <p>Gives the mode in which data and line events are dispatched to listeners by this instance.</p>
+     * 
+     * @return dispatch mode given when this instance was created.
+     */
+    public DISPATCHMODE getDispatchMode() {
+        return mDispatchMode;
+    }
+
     /**
      * <p>Gives library versions of java and native library implementations for serial port communication.</p>
      * 
@@ -602,12 +753,12 @@ public final class SerialComManager {
             }
         }
 
-        synchronized(lockB) {
+        synchronized(getPortOpenLock(portNameVal)) {
             /* Try to reduce transitions from java to JNI layer as it is possible here by performing check in java layer itself. */
             if(exclusiveOwnerShip == true) {
                 for (Map.Entry<Long, SerialComPortHandleInfo> entry : mPortHandleInfo.entrySet()) {
                     handleInfo = entry.getValue();
-                    if(handleInfo != null) {
+                    if((handleInfo != null) && (handleInfo.isClosed() == false)) {
                         if(handleInfo.containsPort(portNameVal)) {
                             throw new IllegalStateException("The port " + portNameVal + " is already opened. Exclusive ownership can not be claimed !");
                         }
@@ -648,9 +799,9 @@ public final class SerialComManager {
 
         SerialComPortHandleInfo handleInfo = null;
 
-        synchronized(lockB) {
-            handleInfo = mPortHandleInfo.get(handle);
-            if(handleInfo == null) {
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
                 throw new SerialComException("Given handle is alien to me !");
             }
 
@@ -661,20 +812,34 @@ public final class SerialComManager {
             if(handleInfo.getEventListener() != null) {
                 throw new IllegalStateException("Closing port without unregistering event listener is not allowed to prevent inconsistency !");
             }
+            if(handleInfo.getPooledDataReader() != null) {
+                throw new IllegalStateException("Closing port without unregistering pooled data listener is not allowed to prevent inconsistency !");
+            }
+            if(handleInfo.getDirectDataReader() != null) {
+                throw new IllegalStateException("Closing port without unregistering direct data listener is not allowed to prevent inconsistency !");
+            }
             if(handleInfo.getSerialComInByteStream() != null) {
                 throw new IllegalStateException("Input byte stream must be closed before closing the serial port !");
             }
             if(handleInfo.getSerialComOutByteStream() != null) {
                 throw new IllegalStateException("Output byte stream must be closed before closing the serial port !");
             }
+            SerialComWriteCoalescer coalescer = handleInfo.getWriteCoalescer();
+            if(coalescer != null) {
+                // writers which already got this coalescer must not touch handle once it is closed
+                handleInfo.setWriteCoalescer(null);
+                coalescer.close();
+            }
 
             int ret = mComPortJNIBridge.closeComPort(handle);
             if(ret < 0) {
                 throw new SerialComException("Could not close the given serial port. Please retry !");
             }
 
-            /* delete info about this port/handle from global information object. */
-            mPortHandleInfo.remove(handle);
+            /* delete info about this port/handle from global information object. OS may reuse this handle for a port 
+             * opened by other thread as soon as it is closed, so remove only the entry belonging to this handle info. */
+            handleInfo.setClosed();
+            mPortHandleInfo.remove(handle, handleInfo);
         }
 
         return true;
@@ -719,6 +884,14 @@ public final class SerialComManager {
             throw new IllegalArgumentException("Argument delay can not be negative !");
         }
 
+        SerialComWriteCoalescer coalescer = getWriteCoalescer(handle);
+        if(coalescer != null) {
+            if(delay == 0) {
+                return coalescer.write(buffer, 0, buffer.length);
+            }
+            coalescer.flush();
+        }
+
         int ret = mComPortJNIBridge.writeBytes(handle, buffer, delay);
         if(ret < 0) {
             throw new SerialComException("Could not write data to serial port. Please retry !");
@@ -742,6 +915,49 @@ public final class SerialComManager {
         return writeBytes(handle, buffer, 0);
     }
 
+    /**
+     * <p>Writes length bytes from given array starting at offset to the specified port without creating a 
+     * copy of the array slice. Bytes are staged in a direct buffer reused by calling thread (or go straight into 
+     * write coalescing buffer if enabled) and written using a single native call.</p>
+     * 
+     * <p>Fewer than length bytes may be written if flow control has stopped transmission; caller should write 
+     * remaining bytes again.</p>
+     * 
+     * @param handle handle of the opened port on which to write bytes.
+     * @param buffer byte type array containing bytes to be written to port.
+     * @param offset index of first byte to write.
+     * @param length number of bytes to write.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws NullPointerException if buffer is null.
+     * @throws IndexOutOfBoundsException if offset is negative, length is negative, or length is greater 
+     *          than buffer.length - offset.
+     */
+    public int writeBytes(long handle, byte[] buffer, int offset, int length) throws SerialComException {
+        if(buffer == null) {
+            throw new NullPointerException("Null data buffer passed to write operation !");
+        }
+        if((offset < 0) || (length < 0) || (length > (buffer.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected in given byte array !");
+        }
+        if(length == 0) {
+            return 0;
+        }
+
+        SerialComWriteCoalescer coalescer = getWriteCoalescer(handle);
+        if(coalescer != null) {
+            return coalescer.write(buffer, offset, length);
+        }
+
+        ByteBuffer data = mScratchBuffer.get(length);
+        data.put(buffer, offset, length);
+        int ret = mComPortJNIBridge.writeBytesDirect(handle, data, 0, length);
+        if(ret < 0) {
+            throw new SerialComException("Could not write data to serial port. Please retry !");
+        }
+        return ret;
+    }
+
     /**
      * <p>This method writes a single byte to the specified port. The data has been transmitted 
      * out of serial port when this method returns.</p>
@@ -752,6 +968,10 @@ public final class SerialComManager {
      * @throws SerialComException if an I/O error occurs.
      */
     public int writeSingleByte(long handle, byte dataByte) throws SerialComException {
+        SerialComWriteCoalescer coalescer = getWriteCoalescer(handle);
+        if(coalescer != null) {
+            return coalescer.write(dataByte);
+        }
         int ret = mComPortJNIBridge.writeSingleByte(handle, dataByte);
         if(ret < 0) {
             /* extra check */
@@ -776,6 +996,10 @@ public final class SerialComManager {
         if((data == null) || (data.length() == 0)) {
             throw new IllegalArgumentException("Argument data can not be null or an empty string !");
         }
+        if(delay == 0) {
+            ByteBuffer encoded = mStringEncoder.encode(data, Charset.defaultCharset());
+            return writeEncoded(handle, encoded) == encoded.position();
+        }
         byte[] dataToBeSent = data.getBytes();
         ret = writeBytes(handle, dataToBeSent, delay);
         if(ret != dataToBeSent.length) {
@@ -802,6 +1026,10 @@ public final class SerialComManager {
         if((data == null) || (data.length() == 0)) {
             throw new IllegalArgumentException("Argument data can not be null or an empty string !");
         }
+        if(delay == 0) {
+            ByteBuffer encoded = mStringEncoder.encode(data, charset);
+            return writeEncoded(handle, encoded) == encoded.position();
+        }
         byte[] dataToBeSent = data.getBytes(charset);
         ret = writeBytes(handle, dataToBeSent, delay);
         if(ret != dataToBeSent.length) {
@@ -810,6 +1038,36 @@ public final class SerialComManager {
         return true;
     }
 
+    /**
+     * <p>Encodes given characters using given charset and writes them to the specified port. The data has been 
+     * transmitted out of serial port when this method returns.</p>
+     * 
+     * <p>No byte array is created. Characters are encoded into a direct buffer owned by calling thread which is 
+     * written using writeBytesDirect. Pure ASCII strings (for US-ASCII and UTF-8) and Latin-1 strings (for 
+     * ISO-8859-1) are copied byte by byte, all other strings are encoded by a CharsetEncoder cached per thread 
+     * and charset. As with String.getBytes, characters which can not be encoded are replaced by replacement bytes 
+     * of the charset. Suitable for sending large number of short commands like AT commands.</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param data characters to be sent.
+     * @param charset the character set into which given characters will be encoded.
+     * @return number of bytes written, 0 if data is empty.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if data or charset is null.
+     */
+    public int writeString(long handle, final CharSequence data, Charset charset) throws SerialComException {
+        if(data == null) {
+            throw new IllegalArgumentException("Argument data can not be null !");
+        }
+        if(charset == null) {
+            throw new IllegalArgumentException("Argument charset can not be null !");
+        }
+        if(data.length() == 0) {
+            return 0;
+        }
+        return writeEncoded(handle, mStringEncoder.encode(data, charset));
+    }
+
     /** 
      * <p>Different CPU and OS will have different endianness. It is therefore we handle the endianness 
      * conversion as per the requirement. If the given integer is in range −32,768 to 32,767, only two 
@@ -845,6 +1103,18 @@ public final class SerialComManager {
             throw new IllegalArgumentException("Argument numOfBytes can not be null !");
         }
 
+        if(delay == 0) {
+            // encode in direct buffer of this thread, nothing is allocated.
+            ByteBuffer encoded = mScratchBuffer.get(4);
+            encoded.order(byteOrderOf(endianness));
+            if(numOfBytes.getValue() == 2) {
+                encoded.putShort((short) data);
+            }else {
+                encoded.putInt(data);
+            }
+            return writeEncoded(handle, encoded);
+        }
+
         if(numOfBytes.getValue() == 2) {             // conversion to two bytes data
             buffer = new byte[2];
             if(endianness.getValue() == 1) {         // Little endian
@@ -876,6 +1146,9 @@ public final class SerialComManager {
      * <p>This method send an array of integers on the specified port. The data has been transmitted 
      * out of serial port when this method returns.</p>
      * 
+     * <p>If delay is 0, integers are encoded in a direct buffer owned by calling thread and written using 
+     * writeBytesDirect, so no array is allocated on every call.</p>
+     * 
      * @param handle handle of the opened port on which to write byte.
      * @param buffer an array of integers to be sent to port.
      * @param delay interval between two successive bytes .
@@ -884,7 +1157,7 @@ public final class SerialComManager {
      * @param numOfBytes number of bytes this integer can be represented in.
      * @return number of bytes written.
      * @throws SerialComException if an I/O error occurs.
-     * @throws IllegalArgumentException if endianness or numOfBytes is null.
+     * @throws IllegalArgumentException if buffer, endianness or numOfBytes is null or buffer is empty.
      */
     public int writeIntArray(long handle, final int[] buffer, int delay, ENDIAN endianness, NUMOFBYTES numOfBytes) throws SerialComException {
         byte[] localBuf = null;
@@ -896,6 +1169,22 @@ public final class SerialComManager {
             throw new IllegalArgumentException("Argument numOfBytes can not be null !");
         }
 
+        if((buffer == null) || (buffer.length == 0)) {
+            throw new IllegalArgumentException("Argument buffer can not be null or empty !");
+        }
+
+        if(delay == 0) {
+            if(numOfBytes.getValue() == 2) {
+                ByteBuffer encoded = mScratchBuffer.get(2 * buffer.length);
+                encoded.order(byteOrderOf(endianness));
+                for(int x=0; x<buffer.length; x++) {
+                    encoded.putShort((short) buffer[x]);
+                }
+                return writeEncoded(handle, encoded);
+            }
+            return writeIntArray(handle, buffer, 0, buffer.length, endianness, null);
+        }
+
         if(numOfBytes.getValue() == 2) {
             localBuf = new byte[2 * buffer.length];
             if(endianness.getValue() == 1) {                 // little endian
@@ -933,13 +1222,13 @@ public final class SerialComManager {
             }else {                                          // big/default endian
                 int g = 0;
                 for(int h=0; h<buffer.length; h++) {
-                    localBuf[g] = (byte)  buffer[h];
-                    g++;
-                    localBuf[g] = (byte) (buffer[h] >>> 8);
+                    localBuf[g] = (byte) (buffer[h] >>> 24);
                     g++;
                     localBuf[g] = (byte) (buffer[h] >>> 16);
                     g++;
-                    localBuf[g] = (byte) (buffer[h] >>> 24);
+                    localBuf[g] = (byte) (buffer[h] >>> 8);
+                    g++;
+                    localBuf[g] = (byte)  buffer[h];
                     g++;
                 }
             }
@@ -947,6 +1236,271 @@ public final class SerialComManager {
         }
     }
 
+    /** 
+     * <p>Sends length elements of given array starting at offset as 16 bit integers, 2 bytes each in given byte order. 
+     * Data has been transmitted out of serial port when this method returns.</p>
+     * 
+     * <p>Elements are encoded using java.nio.ByteBuffer into given direct buffer, or into a direct buffer owned by 
+     * calling thread if encodeBuffer is null, and written using writeBytesDirect. No array is allocated per call.</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param data array of values to be sent.
+     * @param offset index of first element to send.
+     * @param length number of elements to send.
+     * @param endianness byte order of every value, E_DEFAULT means big endian.
+     * @param encodeBuffer direct byte buffer in which data will be encoded or null.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if data or endianness is null, or encodeBuffer is not direct or is too small.
+     * @throws IndexOutOfBoundsException if offset or length is invalid.
+     */
+    public int writeShortArray(long handle, final short[] data, int offset, int length, ENDIAN endianness, 
+            ByteBuffer encodeBuffer) throws SerialComException {
+        if(data == null) {
+            throw new IllegalArgumentException("Argument data can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (length > (data.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected in given array !");
+        }
+        if(length == 0) {
+            return 0;
+        }
+
+        ByteBuffer encoded = prepareEncodeBuffer(encodeBuffer, (long) length * 2, endianness);
+        encoded.asShortBuffer().put(data, offset, length);
+        encoded.position(length * 2);
+        return writeEncoded(handle, encoded);
+    }
+
+    /** 
+     * <p>Sends all elements of given array as 16 bit integers, 2 bytes each in given byte order, without allocating 
+     * any array. Same as writeShortArray(handle, data, 0, data.length, endianness, null).</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param data array of values to be sent.
+     * @param endianness byte order of every value, E_DEFAULT means big endian.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if data or endianness is null.
+     */
+    public int writeShortArray(long handle, final short[] data, ENDIAN endianness) throws SerialComException {
+        if(data == null) {
+            throw new IllegalArgumentException("Argument data can not be null !");
+        }
+        return writeShortArray(handle, data, 0, data.length, endianness, null);
+    }
+
+    /** 
+     * <p>Sends length elements of given array starting at offset as 32 bit integers, 4 bytes each in given byte order. 
+     * Data has been transmitted out of serial port when this method returns.</p>
+     * 
+     * <p>Elements are encoded using java.nio.ByteBuffer into given direct buffer, or into a direct buffer owned by 
+     * calling thread if encodeBuffer is null, and written using writeBytesDirect. No array is allocated per call.</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param data array of values to be sent.
+     * @param offset index of first element to send.
+     * @param length number of elements to send.
+     * @param endianness byte order of every value, E_DEFAULT means big endian.
+     * @param encodeBuffer direct byte buffer in which data will be encoded or null.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if data or endianness is null, or encodeBuffer is not direct or is too small.
+     * @throws IndexOutOfBoundsException if offset or length is invalid.
+     */
+    public int writeIntArray(long handle, final int[] data, int offset, int length, ENDIAN endianness, 
+            ByteBuffer encodeBuffer) throws SerialComException {
+        if(data == null) {
+            throw new IllegalArgumentException("Argument data can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (length > (data.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected in given array !");
+        }
+        if(length == 0) {
+            return 0;
+        }
+
+        ByteBuffer encoded = prepareEncodeBuffer(encodeBuffer, (long) length * 4, endianness);
+        encoded.asIntBuffer().put(data, offset, length);
+        encoded.position(length * 4);
+        return writeEncoded(handle, encoded);
+    }
+
+    /** 
+     * <p>Sends all elements of given array as 32 bit integers, 4 bytes each in given byte order, without allocating 
+     * any array. Same as writeIntArray(handle, data, 0, data.length, endianness, null).</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param data array of values to be sent.
+     * @param endianness byte order of every value, E_DEFAULT means big endian.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if data or endianness is null.
+     */
+    public int writeIntArray(long handle, final int[] data, ENDIAN endianness) throws SerialComException {
+        if(data == null) {
+            throw new IllegalArgumentException("Argument data can not be null !");
+        }
+        return writeIntArray(handle, data, 0, data.length, endianness, null);
+    }
+
+    /** 
+     * <p>Sends length elements of given array starting at offset as 64 bit integers, 8 bytes each in given byte order. 
+     * Data has been transmitted out of serial port when this method returns.</p>
+     * 
+     * <p>Elements are encoded using java.nio.ByteBuffer into given direct buffer, or into a direct buffer owned by 
+     * calling thread if encodeBuffer is null, and written using writeBytesDirect. No array is allocated per call.</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param data array of values to be sent.
+     * @param offset index of first element to send.
+     * @param length number of elements to send.
+     * @param endianness byte order of every value, E_DEFAULT means big endian.
+     * @param encodeBuffer direct byte buffer in which data will be encoded or null.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if data or endianness is null, or encodeBuffer is not direct or is too small.
+     * @throws IndexOutOfBoundsException if offset or length is invalid.
+     */
+    public int writeLongArray(long handle, final long[] data, int offset, int length, ENDIAN endianness, 
+            ByteBuffer encodeBuffer) throws SerialComException {
+        if(data == null) {
+            throw new IllegalArgumentException("Argument data can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (length > (data.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected in given array !");
+        }
+        if(length == 0) {
+            return 0;
+        }
+
+        ByteBuffer encoded = prepareEncodeBuffer(encodeBuffer, (long) length * 8, endianness);
+        encoded.asLongBuffer().put(data, offset, length);
+        encoded.position(length * 8);
+        return writeEncoded(handle, encoded);
+    }
+
+    /** 
+     * <p>Sends all elements of given array as 64 bit integers, 8 bytes each in given byte order, without allocating 
+     * any array. Same as writeLongArray(handle, data, 0, data.length, endianness, null).</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param data array of values to be sent.
+     * @param endianness byte order of every value, E_DEFAULT means big endian.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if data or endianness is null.
+     */
+    public int writeLongArray(long handle, final long[] data, ENDIAN endianness) throws SerialComException {
+        if(data == null) {
+            throw new IllegalArgumentException("Argument data can not be null !");
+        }
+        return writeLongArray(handle, data, 0, data.length, endianness, null);
+    }
+
+    /** 
+     * <p>Sends length elements of given array starting at offset as IEEE 754 single precision floating point numbers, 4 bytes each in given byte order. 
+     * Data has been transmitted out of serial port when this method returns.</p>
+     * 
+     * <p>Elements are encoded using java.nio.ByteBuffer into given direct buffer, or into a direct buffer owned by 
+     * calling thread if encodeBuffer is null, and written using writeBytesDirect. No array is allocated per call.</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param data array of values to be sent.
+     * @param offset index of first element to send.
+     * @param length number of elements to send.
+     * @param endianness byte order of every value, E_DEFAULT means big endian.
+     * @param encodeBuffer direct byte buffer in which data will be encoded or null.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if data or endianness is null, or encodeBuffer is not direct or is too small.
+     * @throws IndexOutOfBoundsException if offset or length is invalid.
+     */
+    public int writeFloatArray(long handle, final float[] data, int offset, int length, ENDIAN endianness, 
+            ByteBuffer encodeBuffer) throws SerialComException {
+        if(data == null) {
+            throw new IllegalArgumentException("Argument data can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (length > (data.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected in given array !");
+        }
+        if(length == 0) {
+            return 0;
+        }
+
+        ByteBuffer encoded = prepareEncodeBuffer(encodeBuffer, (long) length * 4, endianness);
+        encoded.asFloatBuffer().put(data, offset, length);
+        encoded.position(length * 4);
+        return writeEncoded(handle, encoded);
+    }
+
+    /** 
+     * <p>Sends all elements of given array as IEEE 754 single precision floating point numbers, 4 bytes each in given byte order, without allocating 
+     * any array. Same as writeFloatArray(handle, data, 0, data.length, endianness, null).</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param data array of values to be sent.
+     * @param endianness byte order of every value, E_DEFAULT means big endian.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if data or endianness is null.
+     */
+    public int writeFloatArray(long handle, final float[] data, ENDIAN endianness) throws SerialComException {
+        if(data == null) {
+            throw new IllegalArgumentException("Argument data can not be null !");
+        }
+        return writeFloatArray(handle, data, 0, data.length, endianness, null);
+    }
+
+    /* Gives direct buffer in which numOfBytes bytes can be encoded in byte order given by endianness. */
+    private ByteBuffer prepareEncodeBuffer(ByteBuffer encodeBuffer, long numOfBytes, ENDIAN endianness) {
+        if(endianness == null) {
+            throw new IllegalArgumentException("Argument endianness can not be null !");
+        }
+        if(numOfBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Number of bytes to be sent is too large !");
+        }
+        ByteBuffer encoded = null;
+        if(encodeBuffer == null) {
+            encoded = mScratchBuffer.get((int) numOfBytes);
+        }else {
+            if(!encodeBuffer.isDirect()) {
+                throw new IllegalArgumentException("Argument encodeBuffer is not direct byte buffer !");
+            }
+            if(encodeBuffer.capacity() < numOfBytes) {
+                throw new IllegalArgumentException("Argument encodeBuffer is too small !");
+            }
+            encoded = encodeBuffer;
+            encoded.clear();
+        }
+        encoded.order(byteOrderOf(endianness));
+        return encoded;
+    }
+
+    /* E_DEFAULT has always meant big endian (java byte order) in this library. */
+    private static ByteOrder byteOrderOf(ENDIAN endianness) {
+        if(endianness == ENDIAN.E_LITTLE) {
+            return ByteOrder.LITTLE_ENDIAN;
+        }
+        return ByteOrder.BIG_ENDIAN;
+    }
+
+    /* Writes bytes from 0 till position of given direct buffer. */
+    private int writeEncoded(long handle, ByteBuffer encoded) throws SerialComException {
+        SerialComWriteCoalescer coalescer = getWriteCoalescer(handle);
+        if(coalescer != null) {
+            encoded.flip();
+            int num = coalescer.write(encoded);
+            encoded.position(encoded.limit());
+            return num;
+        }
+        int ret = mComPortJNIBridge.writeBytesDirect(handle, encoded, 0, encoded.position());
+        if(ret < 0) {
+            throw new SerialComException("Could not write given data to serial port. Please retry !");
+        }
+        return ret;
+    }
+
     /**
      * <p>Writes the bytes from the given direct byte buffer using facilities of the underlying JVM 
      * and operating system. When this method returns data would have sent out of serial port physically.</p>
@@ -984,6 +1538,14 @@ public final class SerialComManager {
             return 0;
         }
 
+        SerialComWriteCoalescer coalescer = getWriteCoalescer(handle);
+        if(coalescer != null) {
+            ByteBuffer data = buffer.duplicate();
+            data.limit(offset + length);
+            data.position(offset);
+            return coalescer.write(data);
+        }
+
         int ret = mComPortJNIBridge.writeBytesDirect(handle, buffer, offset, length);
         if(ret < 0) {
             throw new SerialComException("Could not write given data to serial port. Please retry !");
@@ -991,6 +1553,79 @@ public final class SerialComManager {
         return ret;
     }
 
+    /**
+     * <p>Writes bytes remaining in given buffers, in the given order, out of serial port in one native write 
+     * (gathering write). Framed protocols can keep header, payload and checksum in separate buffers and send 
+     * them together without concatenating them into a new array.</p>
+     * 
+     * <p>Buffers may be heap or direct byte buffers. If only one direct buffer is given, it is written as it is. 
+     * Otherwise data is staged in a direct buffer owned by calling thread which is reused across calls, so no 
+     * allocation takes place once it has grown to the size of largest frame.</p>
+     * 
+     * <p>Position of every buffer is advanced by the number of bytes written from it, in the same way as 
+     * java.nio.channels.GatheringByteChannel does.</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param srcs buffers containing data to be written.
+     * @return number of bytes sent to serial port.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if srcs is null or contains null element, or if total number of bytes 
+     *          is more than Integer.MAX_VALUE.
+     */
+    public int writeBytes(long handle, ByteBuffer[] srcs) throws SerialComException {
+        if(srcs == null) {
+            throw new IllegalArgumentException("Argument srcs can not be null !");
+        }
+        long total = 0;
+        for(int x=0; x < srcs.length; x++) {
+            if(srcs[x] == null) {
+                throw new IllegalArgumentException("Argument srcs can not contain null element !");
+            }
+            total = total + srcs[x].remaining();
+        }
+        if(total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Total number of bytes in srcs is too large !");
+        }
+        if(total == 0) {
+            return 0;
+        }
+
+        SerialComWriteCoalescer coalescer = getWriteCoalescer(handle);
+        if(coalescer != null) {
+            for(int x=0; x < srcs.length; x++) {
+                coalescer.write(srcs[x]);
+                srcs[x].position(srcs[x].limit());
+            }
+            return (int) total;
+        }
+
+        ByteBuffer data = null;
+        int offset = 0;
+        if((srcs.length == 1) && srcs[0].isDirect()) {
+            data = srcs[0];
+            offset = data.position();
+        }else {
+            data = mScratchBuffer.get((int) total);
+            for(int x=0; x < srcs.length; x++) {
+                data.put(srcs[x].duplicate());
+            }
+        }
+
+        int ret = mComPortJNIBridge.writeBytesDirect(handle, data, offset, (int) total);
+        if(ret < 0) {
+            throw new SerialComException("Could not write given data to serial port. Please retry !");
+        }
+
+        int left = ret;
+        int num = 0;
+        for(int x=0; (x < srcs.length) && (left > 0); x++) {
+            num = Math.min(left, srcs[x].remaining());
+            srcs[x].position(srcs[x].position() + num);
+            left = left - num;
+        }
+        return ret;
+    }
+
     /**
      * <p>Write bytes from given buffer to the given handle in blocking mode.</p>
      * 
@@ -1015,6 +1650,11 @@ public final class SerialComManager {
             return 0;
         }
 
+        SerialComWriteCoalescer coalescer = getWriteCoalescer(handle);
+        if(coalescer != null) {
+            coalescer.flush();
+        }
+
         int ret = mComPortJNIBridge.writeBytesBlocking(handle, buffer, context);
         if(ret < 0) {
             throw new SerialComException("Could not write data to serial port. Please retry !");
@@ -1062,6 +1702,312 @@ public final class SerialComManager {
         return ret;
     }
 
+    /**
+     * <p>Reads data bytes available at serial port into given buffers in one native read (scattering read). 
+     * Buffers are filled in order, each up to its limit, so a fixed size header and payload of a frame can be 
+     * received into separate buffers. This method does not block.</p>
+     * 
+     * <p>Buffers may be heap or direct byte buffers. If only one direct buffer is given, native layer places data 
+     * into it directly. Otherwise data is read into a direct buffer owned by calling thread which is reused across 
+     * calls and then distributed.</p>
+     * 
+     * <p>Position of every buffer is advanced by the number of bytes placed in it, in the same way as 
+     * java.nio.channels.ScatteringByteChannel does.</p>
+     * 
+     * @param handle handle of the serial port from which to read data bytes.
+     * @param dsts buffers into which data bytes will be placed.
+     * @return number of bytes read from serial port, 0 if there was no data.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if dsts is null or contains null or read only element, or if total space 
+     *          in dsts is more than Integer.MAX_VALUE.
+     */
+    public int readBytes(long handle, ByteBuffer[] dsts) throws SerialComException {
+        if(dsts == null) {
+            throw new IllegalArgumentException("Argument dsts can not be null !");
+        }
+        long total = 0;
+        for(int x=0; x < dsts.length; x++) {
+            if(dsts[x] == null) {
+                throw new IllegalArgumentException("Argument dsts can not contain null element !");
+            }
+            if(dsts[x].isReadOnly()) {
+                throw new IllegalArgumentException("Argument dsts can not contain read only buffer !");
+            }
+            total = total + dsts[x].remaining();
+        }
+        if(total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Total space in dsts is too large !");
+        }
+        if(total == 0) {
+            return 0;
+        }
+
+        int ret = 0;
+        if((dsts.length == 1) && dsts[0].isDirect()) {
+            ret = mComPortJNIBridge.readBytesDirect(handle, dsts[0], dsts[0].position(), (int) total);
+            if(ret < 0) {
+                throw new SerialComException("Could not read data from serial port and place into direct byte buffer. Please retry !");
+            }
+            dsts[0].position(dsts[0].position() + ret);
+            return ret;
+        }
+
+        ByteBuffer data = mScratchBuffer.get((int) total);
+        ret = mComPortJNIBridge.readBytesDirect(handle, data, 0, (int) total);
+        if(ret < 0) {
+            throw new SerialComException("Could not read data from serial port and place into direct byte buffer. Please retry !");
+        }
+
+        data.limit(ret);
+        ByteBuffer part = data.duplicate();
+        for(int x=0; (x < dsts.length) && data.hasRemaining(); x++) {
+            part.limit(data.position() + Math.min(data.remaining(), dsts[x].remaining()));
+            part.position(data.position());
+            dsts[x].put(part);
+            data.position(part.position());
+        }
+        return ret;
+    }
+
+    /**
+     * <p>Starts reading data from given port into given buffer and returns immediately. The returned future completes 
+     * as soon as at least one byte has been placed in buffer (starting at its position), or with result 0 when timeout 
+     * elapses. Position of buffer is advanced by number of bytes read.</p>
+     * 
+     * <p>All asynchronous operations of this SerialComManager instance are carried out by a single I/O reactor thread 
+     * which multiplexes all ports using non-blocking reads, so request/response protocols can be pipelined across many 
+     * ports without a thread (or blocking context) per outstanding operation. Operations on a handle complete in the 
+     * order they were submitted. Reactor thread is created when this method or writeAsync is called first time.</p>
+     * 
+     * <p>Buffer must not be accessed by application until the operation completes.</p>
+     * 
+     * @param handle handle of the opened port from which to read.
+     * @param buffer heap or direct byte buffer in which data will be placed.
+     * @param timeout time in milliseconds after which operation completes with 0 bytes, or negative to wait indefinitely.
+     * @return future representing number of bytes read.
+     * @throws IllegalArgumentException if buffer is null or read only.
+     */
+    public SerialComIOFuture readAsync(long handle, ByteBuffer buffer, long timeout) {
+        if(buffer == null) {
+            throw new IllegalArgumentException("Argument buffer can not be null !");
+        }
+        if(buffer.isReadOnly()) {
+            throw new IllegalArgumentException("Argument buffer can not be read only !");
+        }
+        return getIOReactor().submitRead(handle, buffer, timeout);
+    }
+
+    /**
+     * <p>Starts writing bytes between position and limit of given buffer to given port and returns immediately. The 
+     * returned future completes when all the bytes have been sent out of serial port. Position of buffer is advanced by 
+     * number of bytes written.</p>
+     * 
+     * <p>Writes are carried out by the same I/O reactor thread that serves readAsync. Buffer must not be modified by 
+     * application until the operation completes.</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param buffer heap or direct byte buffer containing data to be written.
+     * @return future representing number of bytes written.
+     * @throws IllegalArgumentException if buffer is null.
+     */
+    public SerialComIOFuture writeAsync(long handle, ByteBuffer buffer) {
+        if(buffer == null) {
+            throw new IllegalArgumentException("Argument buffer can not be null !");
+        }
+        return getIOReactor().submitWrite(handle, buffer);
+    }
+
+    /**
+     * <p>Starts writing bytes between position and limit of given buffer to given port and returns immediately. The 
+     * returned future completes only after all the bytes have been written and output buffer of the port maintained by 
+     * operating system (tty buffer / driver transmit queue) has then become empty, i.e. the data has been handed to the 
+     * UART. An empty buffer can be given to get notified when all data written earlier on this handle using writeAsync 
+     * has been transmitted.</p>
+     * 
+     * <p>This is meant for RS-485 half duplex communication where application has to switch direction of transceiver 
+     * (for example using setRTS) after the last frame has been sent. Register a completion listener on the returned 
+     * future and switch direction in it, instead of spinning on getByteCountInPortIOBuffer. Frames can be queued one 
+     * after the other; each future completes in submission order.</p>
+     * 
+     * <p>Output buffer is checked by the I/O reactor thread once in every round of polling (a round parks for about 1 
+     * millisecond when nothing progresses), so no extra thread is used. Native layer does not report state of the UART 
+     * shift register (TIOCSERGETLSR), so depending upon hardware the last character may still be shifting out when 
+     * future completes. USB-UART converters may also hold data in their own FIFO which is not visible to operating 
+     * system. Applications needing exact timing should add one character time at the current baud rate.</p>
+     * 
+     * @param handle handle of the opened port on which to write.
+     * @param buffer heap or direct byte buffer containing data to be written.
+     * @return future representing number of bytes written.
+     * @throws IllegalArgumentException if buffer is null.
+     */
+    public SerialComIOFuture writeAsyncAndDrain(long handle, ByteBuffer buffer) {
+        if(buffer == null) {
+            throw new IllegalArgumentException("Argument buffer can not be null !");
+        }
+        return getIOReactor().submitWriteAndDrain(handle, buffer);
+    }
+
+    /* Creates single I/O reactor thread lazily so that applications not using async I/O do not pay for it. */
+    private SerialComIOReactor getIOReactor() {
+        SerialComIOReactor reactor = mIOReactor;
+        if(reactor != null) {
+            return reactor;
+        }
+        synchronized(this) {
+            if(mIOReactor == null) {
+                mIOReactor = new SerialComIOReactor(this, 1, "SerialPundit IOReactor");
+            }
+            return mIOReactor;
+        }
+    }
+
+    /**
+     * <p>Enables write coalescing on given handle. Data written using writeBytes (without delay), writeSingleByte, 
+     * writeString, writeBytesDirect and array writing methods is collected in a buffer and sent out of serial port 
+     * in one write when buffer becomes full, when flushDelay microseconds have elapsed since first byte was 
+     * buffered, or when flush method is called. This reduces number of system calls and USB transfers when an 
+     * application writes many small pieces of data.</p>
+     * 
+     * <p>While coalescing is enabled write methods return as soon as data has been buffered, so data may not have 
+     * been transmitted when they return. Write methods with delay and writeBytesBlocking flush buffered data before 
+     * writing. An error occurring during timed flush is reported by next write or flush call. Buffered data is 
+     * flushed when coalescing is disabled or port is closed.</p>
+     * 
+     * <p>This method is thread safe.</p>
+     * 
+     * @param handle handle of the opened port.
+     * @param bufferSize number of bytes after which buffer is flushed.
+     * @param flushDelay time in microseconds after which buffered data is flushed.
+     * @return true on success.
+     * @throws SerialComException if invalid handle is passed or coalescing is already enabled for this handle.
+     * @throws IllegalArgumentException if bufferSize or flushDelay is zero or negative.
+     */
+    public boolean enableWriteCoalescing(long handle, int bufferSize, long flushDelay) throws SerialComException {
+        if(bufferSize <= 0) {
+            throw new IllegalArgumentException("Argument bufferSize can not be negative or zero !");
+        }
+        if(flushDelay <= 0) {
+            throw new IllegalArgumentException("Argument flushDelay can not be negative or zero !");
+        }
+
+        SerialComPortHandleInfo handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
+                throw new SerialComException("Given handle is alien to me !");
+            }
+            if(handleInfo.getWriteCoalescer() != null) {
+                throw new SerialComException("Write coalescing is already enabled for this handle !");
+            }
+            handleInfo.setWriteCoalescer(new SerialComWriteCoalescer(mComPortJNIBridge, getWriteFlusher(), handle, 
+                    bufferSize, TimeUnit.MICROSECONDS.toNanos(flushDelay)));
+        }
+        return true;
+    }
+
+    /**
+     * <p>Flushes buffered data and disables write coalescing on given handle. Coalescing is disabled even if 
+     * buffered data can not be written, such data is discarded and error is reported by throwing exception.</p>
+     * 
+     * <p>This method is thread safe.</p>
+     * 
+     * @param handle handle of the opened port.
+     * @return true on success.
+     * @throws SerialComException if invalid handle is passed, coalescing is not enabled for this handle or 
+     *          buffered data can not be written.
+     */
+    public boolean disableWriteCoalescing(long handle) throws SerialComException {
+        SerialComPortHandleInfo handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            SerialComWriteCoalescer coalescer = handleInfo.getWriteCoalescer();
+            if(coalescer == null) {
+                throw new SerialComException("Write coalescing is not enabled for this handle !");
+            }
+            handleInfo.setWriteCoalescer(null);
+            coalescer.close();
+        }
+        return true;
+    }
+
+    /**
+     * <p>Sends out data buffered by write coalescing on given handle. Does nothing if write coalescing is not 
+     * enabled, as all other writes send data out immediately.</p>
+     * 
+     * @param handle handle of the opened port.
+     * @return true on success.
+     * @throws SerialComException if invalid handle is passed or buffered data can not be written.
+     */
+    public boolean flush(long handle) throws SerialComException {
+        SerialComWriteCoalescer coalescer = getHandleInfo(handle).getWriteCoalescer();
+        if(coalescer != null) {
+            coalescer.flush();
+        }
+        return true;
+    }
+
+    /**
+     * <p>Gives counters of write coalescing on given handle, including average number of application writes 
+     * sent out of serial port in one system call.</p>
+     * 
+     * @param handle handle of the opened port.
+     * @return snapshot of counters or null if write coalescing is not enabled for this handle.
+     * @throws SerialComException if invalid handle is passed.
+     */
+    public SerialComWriteCoalescingStats getWriteCoalescingStats(long handle) throws SerialComException {
+        SerialComWriteCoalescer coalescer = getHandleInfo(handle).getWriteCoalescer();
+        if(coalescer == null) {
+            return null;
+        }
+        return coalescer.getStats();
+    }
+
+    /* Gives write coalescer of handle or null, unknown handles are left to native layer to report. */
+    private SerialComWriteCoalescer getWriteCoalescer(long handle) {
+        SerialComPortHandleInfo handleInfo = mPortHandleInfo.get(handle);
+        if(handleInfo == null) {
+            return null;
+        }
+        return handleInfo.getWriteCoalescer();
+    }
+
+    /* Creates single daemon thread running timed flushes of all coalescing handles lazily. */
+    private synchronized ScheduledThreadPoolExecutor getWriteFlusher() {
+        if(mWriteFlusher == null) {
+            mWriteFlusher = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "SerialPundit WriteFlusher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return mWriteFlusher;
+    }
+
+    /* Gives the lock serializing open of the given port. One lock per port name is kept for the life of 
+     * this instance, number of distinct port names in a system is small. */
+    private Object getPortOpenLock(String portName) {
+        Object lock = mPortOpenLocks.get(portName);
+        if(lock == null) {
+            Object newLock = new Object();
+            lock = mPortOpenLocks.putIfAbsent(portName, newLock);
+            if(lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    /* Gives information object of given handle. Callers changing state of handle lock this object and then check 
+     * that the handle has not been closed meanwhile. */
+    private SerialComPortHandleInfo getHandleInfo(long handle) throws SerialComException {
+        SerialComPortHandleInfo handleInfo = mPortHandleInfo.get(handle);
+        if(handleInfo == null) {
+            throw new SerialComException("Given handle is alien to me !");
+        }
+        return handleInfo;
+    }
+
     /** 
      * <p>Prepares a context that should be passed to readBytesBlocking, writeBytesBlocking,  
      * readBytes, unblockBlockingIOOperation and destroyBlockingIOContext methods.</p>
@@ -1121,10 +2067,10 @@ public final class SerialComManager {
      * not possible however for blocking read call.</p>
      * 
      * <ul>
-     * <li>The number of bytes to read must be greater than or equal to 1 and less than or equal to 
-     * 2048 (1 <= byteCount <= 2048). This method may return less than the requested number of bytes 
-     * due to reasons like, there is less data in operating system buffer (serial port) or operating 
-     * system returned less data which is also legal.</li>
+     * <li>The number of bytes to read must be greater than or equal to 1. This method may return less than 
+     * the requested number of bytes due to reasons like, there is less data in operating system buffer (serial 
+     * port) or operating system returned less data which is also legal. Once some data has arrived, whatever is 
+     * in operating system buffer (up to byteCount bytes) is returned in one call.</li>
      * 
      * <li><p>When no data at serial port has arrived and application wishes to unblock and return the control 
      * to the caller for example because application now wants to close the serial port, it should 
@@ -1139,14 +2085,11 @@ public final class SerialComManager {
      * @param byteCount number of bytes to read from serial port.
      * @param context context obtained by a call to createBlockingIOContext method.
      * @return array of bytes read from port if read succeeds or null if read fails.
-     * @throws SerialComException if an I/O error occurs or if byteCount is greater than 2048.
+     * @throws SerialComException if an I/O error occurs.
      */
     public byte[] readBytesBlocking(long handle, int byteCount, long context) throws SerialComException {
-        if(byteCount > 2048) {
-            throw new SerialComException("Number of bytes to read can not be greater than 2048 !");
-        }
         byte[] buffer = null;
-        buffer = mComPortJNIBridge.readBytesBlocking(handle, byteCount, context);
+        buffer = mBulkReader.read(handle, byteCount, context);
 
         if(buffer != null) {
             // data read from serial port, pass to application
@@ -1165,22 +2108,22 @@ public final class SerialComManager {
      * 
      * <li><p>If there was no data at serial port to read, null is returned.</p></li>
      * 
-     * <li>The number of bytes to read must be greater than or equal to 1 and less than or equal to 
-     * 2048 (1 <= byteCount <= 2048). This method may return less than the requested number of bytes 
-     * due to reasons like, there is less data in operating system buffer (serial port) or operating 
-     * system returned less data which is also legal.</li>
+     * <li>The number of bytes to read must be greater than or equal to 1. This method may return less than 
+     * the requested number of bytes due to reasons like, there is less data in operating system buffer (serial 
+     * port) or operating system returned less data which is also legal.</li>
+     * 
+     * <li><p>There is no upper limit on byteCount. Large requests drain operating system buffer in one call 
+     * using internal chunks whose size adapts to rate at which data is arriving, so at high baud rates 
+     * application can read everything received so far without calling this method repeatedly.</p></li>
      * </ul>
      * 
      * @param handle of the serial port from which to read bytes.
      * @param byteCount number of bytes to read from serial port.
      * @return array of bytes read from port or null.
-     * @throws SerialComException if an I/O error occurs or if byteCount is greater than 2048.
+     * @throws SerialComException if an I/O error occurs.
      */
     public byte[] readBytes(long handle, int byteCount) throws SerialComException {
-        if(byteCount > 2048) {
-            throw new SerialComException("Number of bytes to read can not be greater than 2048 !");
-        }
-        byte[] buffer = mComPortJNIBridge.readBytes(handle, byteCount);
+        byte[] buffer = mBulkReader.read(handle, byteCount, -1);
         if(buffer != null) {
             return buffer; // data read from serial port, pass it the to application
         }else {
@@ -1212,7 +2155,7 @@ public final class SerialComManager {
      * @param handle of port from which to read bytes.
      * @param byteCount number of bytes to read from this port.
      * @return string constructed from data read from serial port or null.
-     * @throws SerialComException if an I/O error occurs or if byteCount is greater than 2048.
+     * @throws SerialComException if an I/O error occurs.
      */
     public String readString(long handle, int byteCount) throws SerialComException {
         byte[] buffer = readBytes(handle, byteCount);
@@ -1277,7 +2220,8 @@ public final class SerialComManager {
      * @param handle of the port from which to read data bytes.
      * @param buffer data byte buffer in which bytes from serial port will be saved.
      * @param offset index in given byte array at which first data byte will be placed.
-     * @param length number of bytes to read into given buffer (0 <= length <= 2048).
+     * @param length number of bytes to read into given buffer (0 <= length). There is no upper limit, 
+     *         whatever is available in operating system buffer is read in one call.
      * @param context context obtained by call to createBlockingIOContext method for blocking behavior 
      *         or -1 for non-blocking behavior.
      * @param lineErr instance of class SerialComLineErrors that will carry line error information or null 
@@ -1296,18 +2240,11 @@ public final class SerialComManager {
         if((offset < 0) || (length < 0) || (length > (buffer.length - offset))) {
             throw new IndexOutOfBoundsException("Index violation detected in given byte array !");
         }
-        if(length > 2048) {
-            throw new IllegalArgumentException("Argument length can not be greater than 2048 !");
-        }
         if(length == 0) {
             return 0;
         }
 
-        int numberOfBytesRead = mComPortJNIBridge.readBytesP(handle, buffer, offset, length, context, lineErr);
-        if(numberOfBytesRead < 0) {
-            throw new SerialComException("Could not read data from serial port. Please retry !");
-        }
-        return numberOfBytesRead;
+        return mBulkReader.read(handle, buffer, offset, length, context, lineErr);
     }
 
     /**
@@ -1540,6 +2477,24 @@ public final class SerialComManager {
         return true;
     }
 
+    /**
+     * <p>Sets how dedicated data looper threads wait for new data when nothing is pending for delivery. 
+     * Applies to data listeners registered after this method returns. SPIN and YIELD reduce delivery 
+     * latency at the cost of keeping a processor core busy for every listened port. Has no effect in 
+     * shared dispatch mode as worker threads of the shared pool are woken up by native thread itself.</p>
+     * 
+     * <p>By default PARK strategy is used.</p>
+     * 
+     * @param waitStrategy one of the constants defined in WAITSTRATEGY enum.
+     * @throws IllegalArgumentException if waitStrategy is null.
+     */
+    public void setDataLooperWaitStrategy(WAITSTRATEGY waitStrategy) {
+        if(waitStrategy == null) {
+            throw new IllegalArgumentException("Argument waitStrategy can not be null !");
+        }
+        mEventCompletionDispatcher.setWaitStrategy(waitStrategy.getValue());
+    }
+
     /**
      * <p>This method associate a data looper with the given listener. This looper will keep delivering new data whenever
      * it is made available from native data collection and dispatching subsystem.
@@ -1565,9 +2520,9 @@ public final class SerialComManager {
             throw new IllegalArgumentException("Argument dataListener can not be null !");
         }
 
-        synchronized(lockB) {
-            handleInfo = mPortHandleInfo.get(handle);
-            if(handleInfo == null) {
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
                 throw new SerialComException("Given handle is alien to me !");
             }
             if(handleInfo.getDataListener() != null) {
@@ -1578,6 +2533,119 @@ public final class SerialComManager {
         }
     }
 
+    /**
+     * <p>This method associate a data looper with the given batch data listener. Instead of calling listener once for every 
+     * chunk of data read by native layer, looper accumulates chunks and hands them over to listener in one call as per the 
+     * given batch policy. This amortizes per chunk queue hand off and method call overhead when data arrives at high rate.</p>
+     * 
+     * <p>If batch policy coalesces chunks, listener's onNewSerialDataAvailable(byte[]) method is called with all the bytes 
+     * in batch, otherwise onNewSerialDataBatchAvailable(List, int) method is called. To unregister this listener use 
+     * unregisterDataListener method.</p>
+     * 
+     * <p>This method is thread safe.</p>
+     * 
+     * @param handle of the serial port for which given listener will listen for availability of data bytes.
+     * @param dataListener instance of class which implements ISerialComBatchDataListener interface.
+     * @param batchPolicy defines when a batch will be flushed to listener.
+     * @return true on success false otherwise.
+     * @throws SerialComException if invalid handle passed, handle is null or data listener already exist for this handle.
+     * @throws IllegalArgumentException if dataListener or batchPolicy is null.
+     */
+    public boolean registerDataListener(long handle, final ISerialComBatchDataListener dataListener, 
+            SerialComBatchPolicy batchPolicy) throws SerialComException {
+
+        SerialComPortHandleInfo handleInfo = null;
+
+        if(dataListener == null) {
+            throw new IllegalArgumentException("Argument dataListener can not be null !");
+        }
+        if(batchPolicy == null) {
+            throw new IllegalArgumentException("Argument batchPolicy can not be null !");
+        }
+
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
+                throw new SerialComException("Given handle is alien to me !");
+            }
+            if(handleInfo.getDataListener() != null) {
+                throw new SerialComException("Data listener already exist for this handle. A handle can have only one data listener !");
+            }
+
+            return mEventCompletionDispatcher.setUpDataLooper(handle, handleInfo, dataListener, batchPolicy);
+        }
+    }
+
+    /**
+     * <p>This method associate a data looper with the given listener whose data queue holds at most queueCapacity data 
+     * chunks. If listener does not consume data as fast as it arrives, overflowPolicy decides whether data is dropped, 
+     * native reader is throttled or data is spilled off-heap. Number of dropped bytes can be obtained using 
+     * getDroppedDataBytes method.</p>
+     * 
+     * <p>Application should not register data listener more than once for the same port otherwise it will lead to 
+     * inconsistent state.</p>
+     * <p>This method is thread safe.</p>
+     * 
+     * @param handle of the serial port for which given listener will listen for availability of data bytes.
+     * @param dataListener instance of class which implements ISerialComDataListener interface.
+     * @param queueCapacity maximum number of data chunks that can be queued for this listener.
+     * @param overflowPolicy one of the constants defined in OVERFLOWPOLICY enum.
+     * @return true on success false otherwise.
+     * @throws SerialComException if invalid handle passed, handle is null or data listener already exist for this handle.
+     * @throws IllegalArgumentException if dataListener or overflowPolicy is null or queueCapacity is zero or negative.
+     */
+    public boolean registerDataListener(long handle, final ISerialComDataListener dataListener, int queueCapacity, 
+            OVERFLOWPOLICY overflowPolicy) throws SerialComException {
+
+        SerialComPortHandleInfo handleInfo = null;
+
+        if(dataListener == null) {
+            throw new IllegalArgumentException("Argument dataListener can not be null !");
+        }
+        if(queueCapacity <= 0) {
+            throw new IllegalArgumentException("Argument queueCapacity can not be negative or zero !");
+        }
+        if(overflowPolicy == null) {
+            throw new IllegalArgumentException("Argument overflowPolicy can not be null !");
+        }
+
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
+                throw new SerialComException("Given handle is alien to me !");
+            }
+            if(handleInfo.getDataListener() != null) {
+                throw new SerialComException("Data listener already exist for this handle. A handle can have only one data listener !");
+            }
+
+            return mEventCompletionDispatcher.setUpDataLooper(handle, handleInfo, dataListener, null, queueCapacity, 
+                    overflowPolicy.getValue());
+        }
+    }
+
+    /**
+     * <p>Gives number of data bytes dropped so far because data listener registered for this handle was not consuming 
+     * data as fast as it was arriving and its data queue was full. Count starts from zero whenever data listener is 
+     * registered.</p>
+     * 
+     * @param handle of the serial port for which data listener has been registered.
+     * @return number of dropped bytes or 0 if no data listener is registered.
+     * @throws SerialComException if invalid handle is passed.
+     */
+    public long getDroppedDataBytes(long handle) throws SerialComException {
+        SerialComPortHandleInfo handleInfo = null;
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
+                throw new SerialComException("Given handle is alien to me !");
+            }
+            if((handleInfo.getDataListener() == null) || (handleInfo.getLooper() == null)) {
+                return 0;
+            }
+            return handleInfo.getLooper().getDroppedBytes();
+        }
+    }
+
     /**
      * <p>This method destroys complete java and native looper subsystem associated with this particular data listener. This has no
      * effect on event looper subsystem. This method returns only after native thread has been terminated successfully.</p>
@@ -1598,9 +2666,9 @@ public final class SerialComManager {
             throw new IllegalArgumentException("Argument dataListener can not be null !");
         }
 
-        synchronized(lockB) {
-            handleInfo = mPortHandleInfo.get(handle);
-            if(handleInfo == null) {
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
                 throw new SerialComException("Given handle is alien to me !");
             }
             if(mEventCompletionDispatcher.destroyDataLooper(handle, handleInfo, dataListener)) {
@@ -1611,6 +2679,198 @@ public final class SerialComManager {
         return false;
     }
 
+    /**
+     * <p>This method starts a reader thread which reads data from serial port directly into buffers borrowed from the 
+     * buffer pool of this SerialComManager instance and delivers them to given listener. No byte array is allocated for 
+     * every read once the pool has warmed up, which avoids short lived garbage on busy ports.</p>
+     * 
+     * <p>Listener must release every buffer delivered to it. Listener is invoked from the reader thread, while it is busy 
+     * data accumulates in operating system buffer. Only one data listener (pooled or not) can be registered for a handle.</p>
+     * 
+     * <p>This method is thread safe.</p>
+     * 
+     * @param handle of the serial port for which given listener will listen for availability of data bytes.
+     * @param dataListener instance of class which implements ISerialComPooledDataListener interface.
+     * @param readSize maximum number of bytes to read from serial port in one go (must be greater than 0). Buffers 
+     *         larger than 64 KB are not recycled by the pool.
+     * @return true on success.
+     * @throws SerialComException if invalid handle passed or data listener already exist for this handle.
+     * @throws IllegalArgumentException if dataListener is null or readSize is out of range.
+     */
+    public boolean registerPooledDataListener(long handle, final ISerialComPooledDataListener dataListener, int readSize) 
+            throws SerialComException {
+
+        SerialComPortHandleInfo handleInfo = null;
+        SerialComPooledDataReader reader = null;
+
+        if(dataListener == null) {
+            throw new IllegalArgumentException("Argument dataListener can not be null !");
+        }
+        if(readSize <= 0) {
+            throw new IllegalArgumentException("Argument readSize can not be negative or zero !");
+        }
+
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
+                throw new SerialComException("Given handle is alien to me !");
+            }
+            if((handleInfo.getDataListener() != null) || (handleInfo.getPooledDataReader() != null) 
+                    || (handleInfo.getDirectDataReader() != null)) {
+                throw new SerialComException("Data listener already exist for this handle. A handle can have only one data listener !");
+            }
+
+            reader = new SerialComPooledDataReader(mComPortJNIBridge, mBulkReader, mBufferPool, dataListener, handle, readSize);
+            reader.start(handleInfo.getOpenedPortName());
+            handleInfo.setPooledDataReader(reader);
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>Stops the reader thread started by registerPooledDataListener method. This method returns after reader thread 
+     * has exited. Buffers already delivered to listener remain valid until released.</p>
+     * 
+     * <p>This method is thread safe.</p>
+     * 
+     * @param handle handle of the serial port for which this data listener was registered.
+     * @param dataListener instance of class which implemented ISerialComPooledDataListener interface.
+     * @return true on success.
+     * @throws SerialComException if invalid handle passed, given listener is not registered for this handle 
+     *          or reader thread could not be stopped.
+     * @throws IllegalArgumentException if dataListener is null.
+     */
+    public boolean unregisterPooledDataListener(long handle, final ISerialComPooledDataListener dataListener) 
+            throws SerialComException {
+
+        SerialComPortHandleInfo handleInfo = null;
+        SerialComPooledDataReader reader = null;
+
+        if(dataListener == null) {
+            throw new IllegalArgumentException("Argument dataListener can not be null !");
+        }
+
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
+                throw new SerialComException("Given handle is alien to me !");
+            }
+            reader = handleInfo.getPooledDataReader();
+            if((reader == null) || (reader.getDataListener() != dataListener)) {
+                throw new SerialComException("This listener is not registered for given handle !");
+            }
+            reader.stop();
+            handleInfo.setPooledDataReader(null);
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>This method registers a listener which receives data as a read only view of a per handle direct byte buffer ring. 
+     * Native layer places data read from serial port straight into this ring (readBytesDirect) and Java side tracks 
+     * published head and tail indices, so neither a Java byte array is created nor data is copied on receive path.</p>
+     * 
+     * <p>A reader thread fills the ring and a dispatcher thread delivers it to listener. The view passed to listener is 
+     * valid only till it returns. If the ring becomes full, reading stops until listener catches up, so operating system 
+     * buffer and flow control (if enabled) throttle the sender. Only one data listener (of any kind) can be registered 
+     * for a handle.</p>
+     * 
+     * <p>When there is no data, reader waits in operating system using a blocking read with an unblock context, so an 
+     * idle port costs no CPU time. Port should be left in default non-blocking read mode; configuring blocking reads 
+     * using fineTuneReadBehaviour is not needed and may prevent unregistering listener from returning.</p>
+     * 
+     * <p>This method is thread safe.</p>
+     * 
+     * @param handle of the serial port for which given listener will listen for availability of data bytes.
+     * @param dataListener instance of class which implements ISerialComDirectDataListener interface.
+     * @param ringCapacity size in bytes of the direct byte buffer ring.
+     * @return true on success.
+     * @throws SerialComException if invalid handle passed, data listener already exist for this handle or blocking 
+     *          context can not be created.
+     * @throws IllegalArgumentException if dataListener is null or ringCapacity is zero or negative.
+     */
+    public boolean registerDirectDataListener(long handle, final ISerialComDirectDataListener dataListener, int ringCapacity) 
+            throws SerialComException {
+
+        SerialComPortHandleInfo handleInfo = null;
+        SerialComDirectDataReader reader = null;
+
+        if(dataListener == null) {
+            throw new IllegalArgumentException("Argument dataListener can not be null !");
+        }
+        if(ringCapacity <= 0) {
+            throw new IllegalArgumentException("Argument ringCapacity can not be negative or zero !");
+        }
+
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
+                throw new SerialComException("Given handle is alien to me !");
+            }
+            if((handleInfo.getDataListener() != null) || (handleInfo.getPooledDataReader() != null) 
+                    || (handleInfo.getDirectDataReader() != null)) {
+                throw new SerialComException("Data listener already exist for this handle. A handle can have only one data listener !");
+            }
+
+            reader = new SerialComDirectDataReader(mComPortJNIBridge, dataListener, handle, ringCapacity);
+            reader.start(handleInfo.getOpenedPortName());
+            handleInfo.setDirectDataReader(reader);
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>Stops the reader and dispatcher threads started by registerDirectDataListener method. This method returns after 
+     * both threads have exited. Data in ring not yet delivered is discarded.</p>
+     * 
+     * <p>This method is thread safe.</p>
+     * 
+     * @param handle handle of the serial port for which this data listener was registered.
+     * @param dataListener instance of class which implemented ISerialComDirectDataListener interface.
+     * @return true on success.
+     * @throws SerialComException if invalid handle passed, given listener is not registered for this handle 
+     *          or reader thread could not be stopped.
+     * @throws IllegalArgumentException if dataListener is null.
+     */
+    public boolean unregisterDirectDataListener(long handle, final ISerialComDirectDataListener dataListener) 
+            throws SerialComException {
+
+        SerialComPortHandleInfo handleInfo = null;
+        SerialComDirectDataReader reader = null;
+
+        if(dataListener == null) {
+            throw new IllegalArgumentException("Argument dataListener can not be null !");
+        }
+
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
+                throw new SerialComException("Given handle is alien to me !");
+            }
+            reader = handleInfo.getDirectDataReader();
+            if((reader == null) || (reader.getDataListener() != dataListener)) {
+                throw new SerialComException("This listener is not registered for given handle !");
+            }
+            reader.stop();
+            handleInfo.setDirectDataReader(null);
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>Gives the buffer pool from which buffers delivered to ISerialComPooledDataListener are borrowed. Application 
+     * may enable leak detection on it while debugging and may also use it for its own buffers.</p>
+     * 
+     * @return buffer pool of this SerialComManager instance.
+     */
+    public SerialComBufferPool getBufferPool() {
+        return mBufferPool;
+    }
+
     /**
      * <p>This method associate a event looper with the given listener. This looper will keep delivering new event whenever
      * it is made available from native event collection and dispatching subsystem.</p>
@@ -1642,9 +2902,9 @@ public final class SerialComManager {
             throw new IllegalArgumentException("Argument eventListener can not be null !");
         }
 
-        synchronized(lockB) {
-            handleInfo = mPortHandleInfo.get(handle);
-            if(mPortHandleInfo.get(handle) == null) {
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
                 throw new SerialComException("Given handle is alien to me !");
             }
 
@@ -1675,9 +2935,9 @@ public final class SerialComManager {
         if(eventListener == null) {
             throw new IllegalArgumentException("Argument eventListener can not be null !");
         }
-        synchronized(lockB) {
-            handleInfo = mPortHandleInfo.get(handle);
-            if(handleInfo == null) {
+        handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
                 throw new SerialComException("Given handle is alien to me !");
             }
             if(mEventCompletionDispatcher.destroyEventLooper(handle, handleInfo, eventListener)) {
@@ -1729,6 +2989,32 @@ public final class SerialComManager {
         return false;
     }
 
+    /**
+     * <p>This pauses delivering events to application for given handle. The events kept accumulating in queue. 
+     * This is faster than finding handle from listener and also works when same listener is registered for 
+     * more than one handle.</p>
+     * 
+     * @param handle handle for which event listener was registered.
+     * @return true on success.
+     * @throws SerialComException if invalid handle is passed, no event listener is registered for this handle 
+     *          or operation can not be completed.
+     */
+    public boolean pauseListeningEvents(long handle) throws SerialComException {
+        return mEventCompletionDispatcher.pauseListeningEvents(getHandleInfo(handle));
+    }
+
+    /**
+     * <p>Resume delivering events kept in queue to application for given handle.</p>
+     * 
+     * @param handle handle for which event listener was registered.
+     * @return true on success.
+     * @throws SerialComException if invalid handle is passed, no event listener is registered for this handle 
+     *          or operation can not be completed.
+     */
+    public boolean resumeListeningEvents(long handle) throws SerialComException {
+        return mEventCompletionDispatcher.resumeListeningEvents(getHandleInfo(handle));
+    }
+
     /**
      * <p>This method gives more fine tune control to application for tuning performance and behavior of read
      * operations to leverage OS specific facility for read operation. The read operations can be optimized for
@@ -1804,15 +3090,10 @@ public final class SerialComManager {
             throw new IllegalArgumentException("Argument eventListener can not be null !");
         }
 
-        for (Map.Entry<Long, SerialComPortHandleInfo> entry : mPortHandleInfo.entrySet()) {
-            handleInfo = entry.getValue();
-            if(handleInfo != null) {
-                if(handleInfo.containsEventListener(eventListener)) {
-                    looper = handleInfo.getLooper();
-                    mEventListener = handleInfo.getEventListener();
-                    break;
-                }
-            }
+        handleInfo = mEventCompletionDispatcher.getHandleInfoOfEventListener(eventListener);
+        if(handleInfo != null) {
+            looper = handleInfo.getLooper();
+            mEventListener = handleInfo.getEventListener();
         }
 
         if(looper != null && mEventListener != null) {
@@ -1841,15 +3122,10 @@ public final class SerialComManager {
             throw new IllegalArgumentException("Argument eventListener can not be null !");
         }
 
-        for (Map.Entry<Long, SerialComPortHandleInfo> entry : mPortHandleInfo.entrySet()) {
-            handleInfo = entry.getValue();
-            if(handleInfo != null) {
-                if(handleInfo.containsEventListener(eventListener)) {
-                    looper = handleInfo.getLooper();
-                    mEventListener = handleInfo.getEventListener();
-                    break;
-                }
-            }
+        handleInfo = mEventCompletionDispatcher.getHandleInfoOfEventListener(eventListener);
+        if(handleInfo != null) {
+            looper = handleInfo.getLooper();
+            mEventListener = handleInfo.getEventListener();
         }
 
         if(looper != null && mEventListener != null) {
@@ -1859,6 +3135,40 @@ public final class SerialComManager {
         }
     }
 
+    /**
+     * <p>Defines for which line events event listener registered for given handle will be called.</p>
+     * 
+     * @param handle handle for which event listener was registered.
+     * @param newMask bit mask of SerialComManager.XXX line event constants.
+     * @return true on success.
+     * @throws SerialComException if invalid handle is passed or no event listener is registered for this handle.
+     */
+    public boolean setEventsMask(long handle, int newMask) throws SerialComException {
+        SerialComLooper looper = getEventLooper(handle);
+        looper.setEventsMask(newMask);
+        return true;
+    }
+
+    /**
+     * <p>This method return currently applicable mask for events of event listener registered for given handle.</p>
+     * 
+     * @param handle handle for which event listener was registered.
+     * @return an integer containing bit fields representing mask.
+     * @throws SerialComException if invalid handle is passed or no event listener is registered for this handle.
+     */
+    public int getEventsMask(long handle) throws SerialComException {
+        return getEventLooper(handle).getEventsMask();
+    }
+
+    private SerialComLooper getEventLooper(long handle) throws SerialComException {
+        SerialComPortHandleInfo handleInfo = getHandleInfo(handle);
+        SerialComLooper looper = handleInfo.getLooper();
+        if((looper == null) || (handleInfo.getEventListener() == null)) {
+            throw new SerialComException("Event listener is not registered for this handle !");
+        }
+        return looper;
+    }
+
     /**
      * <p>Discards data sent to port but not transmitted, or data received but not read. Some device/OS/driver might
      * not have support for this, but most of them may have.
@@ -2124,6 +3434,11 @@ public final class SerialComManager {
      * <p>For Ymodem transfer, the fileToSend array should contain all the files to be transffered to 
      * receiver end where all the elements in fileToSend array represent regular files.</p>
      * 
+     * <p>For Zmodem transfer, the fileToSend array should contain all the files to be transffered to 
+     * receiver end where all the elements in fileToSend array represent regular files. The ftpVariant is 
+     * not used; 32 bit CRC is used if receiver supports it. If receiver already has a part of the file, 
+     * transfer resumes from where it was interrupted.</p>
+     * 
      * <p>Xmodem protocol is widely used for flashing executable images in microcontroller via UART. For 
      * example the secondary bootloader in LPC2000 can update the user application code in on chip flash 
      * via UART with 1K XMODEM protocol. Xmodem protocol is also used for taling to network routers.</p>
@@ -2213,6 +3528,18 @@ public final class SerialComManager {
             }
         }
         else if(protocol == 3) {
+            for(int x=0; x < fileToSend.length; x++) {
+                if(!fileToSend[x].isFile()) {
+                    throw new IllegalArgumentException("For Zmodem all elements of fileToSend must be existing regular files !");
+                }
+            }
+            if(progressListener != null) {
+                if(!(progressListener instanceof ISerialComZmodemProgress)) {
+                    throw new IllegalArgumentException("Implement ISerialComZmodemProgress for non-null progressListener !");
+                }
+            }
+            SerialComZModem zmodem = new SerialComZModem(this, handle, fileToSend, textMode, (ISerialComZmodemProgress)progressListener, transferState, osType);
+            return zmodem.sendFileZ();
         }
         else {
         }
@@ -2223,8 +3550,11 @@ public final class SerialComManager {
     /**
      * <p>Receives file using specified file transfer protocol.</p>
      * 
-     * <p>For Xmodem transfer the fileToReceive must represent a regular file. For Ymodem transfer fileToReceive 
-     * must represent a directory in which received files will be saved.</p>
+     * <p>For Xmodem transfer the fileToReceive must represent a regular file. For Ymodem and Zmodem transfer 
+     * fileToReceive must represent a directory in which received files will be saved.</p>
+     * 
+     * <p>For Zmodem transfer, if a file with same name and shorter length already exists in this directory and 
+     * its contents match the beginning of file being sent, only remaining part is received and appended.</p>
      * 
      * @param handle of the serial port on which file is to be sent.
      * @param fileToReceive File instance representing file/folder to be sent.
@@ -2310,7 +3640,16 @@ public final class SerialComManager {
             }
         }
         else if(protocol == 3) {
-
+            if(!fileToReceive.isDirectory() || !fileToReceive.canWrite()) {
+                throw new IllegalArgumentException("The fileToReceive must be a writable directory for Zmodem transfer !");
+            }
+            if(progressListener != null) {
+                if(!(progressListener instanceof ISerialComZmodemProgress)) {
+                    throw new IllegalArgumentException("Implement ISerialComZmodemProgress for non-null progressListener !");
+                }
+            }
+            SerialComZModem zmodem = new SerialComZModem(this, handle, fileToReceive, textMode, (ISerialComZmodemProgress)progressListener, transferState, osType);
+            return zmodem.receiveFileZ();
         }
         else {
         }
@@ -2335,16 +3674,73 @@ public final class SerialComManager {
      * @throws IllegalArgumentException if streamMode is null or invalid streamType is passed.
      */
     public ISerialIOStream getIOStreamInstance(int streamType, long handle, SMODE streamMode) throws SerialComException {
+        return getIOStreamInstance(streamType, handle, streamMode, 0);
+    }
+
+    /**
+     * <p>Factory method to create stream of type specified by streamType in blocking or non-blocking mode, with 
+     * given size of internal buffer of output stream.</p>
+     * 
+     * <p>If bufferSize is greater than 0, SerialComOutByteStream collects written bytes in an internal buffer 
+     * (like BufferedOutputStream) and writes them to serial port when buffer becomes full or when flush or close 
+     * method of stream is called. This avoids one native call for every small write made for example by 
+     * ObjectOutputStream or DataOutputStream. If bufferSize is 0, every write is sent to serial port immediately. 
+     * bufferSize is not used for input stream which always reads ahead.</p>
+     * 
+     * @param streamType one of the values; SerialComManager.OutputStream or SerialComManager.InputStream.
+     * @param handle handle of the opened serial port which this stream will wrap internally.
+     * @param streamMode enum value SMODE.BLOCKING or SMODE.NONBLOCKING.
+     * @param bufferSize size of internal buffer of output stream in bytes or 0 for unbuffered output stream.
+     * @return instance of stream (SerialComInByteStream/SerialComOutByteStream) as per given streamType.
+     * @throws SerialComException if input stream already exist for this handle or invalid handle is passed.
+     * @throws IllegalArgumentException if streamMode is null, invalid streamType is passed or bufferSize 
+     *          is negative.
+     */
+    public ISerialIOStream getIOStreamInstance(int streamType, long handle, SMODE streamMode, int bufferSize) 
+            throws SerialComException {
 
         if(streamMode == null) {
             throw new IllegalArgumentException("Argument streamMode can not be null !");
         }
+        if(bufferSize < 0) {
+            throw new IllegalArgumentException("Argument bufferSize can not be negative !");
+        }
 
-        SerialComPortHandleInfo handleInfo = null;
-        handleInfo = mPortHandleInfo.get(handle);
-        if(handleInfo == null) {
+        SerialComPortHandleInfo handleInfo = getHandleInfo(handle);
+        synchronized(handleInfo) {
+            if(handleInfo.isClosed()) {
+                throw new SerialComException("Given handle is alien to me !");
+            }
+            return createIOStream(streamType, handle, handleInfo, streamMode, bufferSize);
+        }
+    }
+
+    /**
+     * <p>Gives a java.nio.channels.ByteChannel through which given port can be read and written using NIO 
+     * byte buffers. Many channels may exist for the same handle. Closing channel does not close serial port.</p>
+     * 
+     * <p>If channelMode is SMODE.NONBLOCKING, read returns 0 when there is no data and write may write fewer 
+     * bytes than requested. If channelMode is SMODE.BLOCKING, read waits for data and write waits until all 
+     * bytes are written.</p>
+     * 
+     * @param handle handle of the opened serial port.
+     * @param channelMode enum value SMODE.BLOCKING or SMODE.NONBLOCKING.
+     * @return byte channel for given handle.
+     * @throws SerialComException if invalid handle is passed or blocking context can not be created.
+     * @throws IllegalArgumentException if channelMode is null.
+     */
+    public SerialComByteChannel getByteChannel(long handle, SMODE channelMode) throws SerialComException {
+        if(channelMode == null) {
+            throw new IllegalArgumentException("Argument channelMode can not be null !");
+        }
+        if(getHandleInfo(handle).isClosed()) {
             throw new SerialComException("Given handle is alien to me !");
         }
+        return new SerialComByteChannel(this, handle, channelMode);
+    }
+
+    private ISerialIOStream createIOStream(int streamType, long handle, SerialComPortHandleInfo handleInfo, 
+            SMODE streamMode, int bufferSize) throws SerialComException {
 
         switch(streamType) {
 
@@ -2366,7 +3762,7 @@ public final class SerialComManager {
 
             SerialComOutByteStream scos = handleInfo.getSerialComOutByteStream();
             if(scos == null) {
-                scos = new SerialComOutByteStream(this, handleInfo, handle, streamMode);
+                scos = new SerialComOutByteStream(this, handleInfo, handle, streamMode, bufferSize);
                 handleInfo.setSerialComOutByteStream(scos);
             }else {
                 // if 2nd attempt is made to create already existing output stream, throw exception
@@ -15,6 +15,7 @@ package com.serialpundit.serial;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 import com.serialpundit.core.SerialComException;
 import com.serialpundit.serial.SerialComManager.SMODE;
@@ -24,6 +25,9 @@ import com.serialpundit.serial.internal.SerialComPortHandleInfo;
 /**
  * <p>Represents an output stream of bytes that gets sent over to serial port for transmission.</p>
  * 
+ * <p>If created with a buffer size, written bytes are collected in an internal buffer and sent to serial 
+ * port when buffer becomes full or when flush or close is called. Otherwise every write is sent immediately.</p>
+ * 
  * @author Rishi Gupta
  */
 public final class SerialComOutByteStream extends OutputStream implements ISerialIOStream {
@@ -34,24 +38,41 @@ public final class SerialComOutByteStream extends OutputStream implements ISeria
     private final Object lock;
     private final boolean isBlocking;
     private final long context;
+    private final byte[] writeBuffer;
+    private int writeCount;
     private boolean isOpened;
 
     /**
-     * <p>Allocates a new SerialComOutByteStream object.</p>
+     * <p>Allocates a new unbuffered SerialComOutByteStream object.</p>
      * 
      * @param scm instance of SerialComManager class with which this stream will associate itself.
      * @param handle handle of the serial port on which to write data bytes.
      * @param streamMode indicates blocking or non-blocking behavior of stream.
      * @throws SerialComException if serial port can not be configured for specified write behavior.
-     * @throws com.serialpundit.core.SerialComException 
      */
     public SerialComOutByteStream(SerialComManager scm, SerialComPortHandleInfo portHandleInfo, long handle, 
             SMODE streamMode) throws SerialComException {
+        this(scm, portHandleInfo, handle, streamMode, 0);
+    }
+
+    /**
+     * <p>Allocates a new SerialComOutByteStream object.</p>
+     * 
+     * @param scm instance of SerialComManager class with which this stream will associate itself.
+     * @param handle handle of the serial port on which to write data bytes.
+     * @param streamMode indicates blocking or non-blocking behavior of stream.
+     * @param bufferSize size of internal buffer in bytes or 0 if every write should be sent immediately.
+     * @throws SerialComException if serial port can not be configured for specified write behavior.
+     */
+    public SerialComOutByteStream(SerialComManager scm, SerialComPortHandleInfo portHandleInfo, long handle, 
+            SMODE streamMode, int bufferSize) throws SerialComException {
 
         this.scm = scm;
         this.portHandleInfo = portHandleInfo;
         this.handle = handle;
         lock = new Object();
+        writeBuffer = (bufferSize > 0) ? new byte[bufferSize] : null;
+        writeCount = 0;
 
         if(streamMode.getValue() == 1) {
             context = scm.createBlockingIOContext();
@@ -75,6 +96,17 @@ public final class SerialComOutByteStream extends OutputStream implements ISeria
         if(isOpened != true) {
             throw new IOException("The byte stream has been closed !");
         }
+
+        if(writeBuffer != null) {
+            synchronized(lock) {
+                if(writeCount == writeBuffer.length) {
+                    flushBuffer();
+                }
+                writeBuffer[writeCount++] = (byte) data;
+            }
+            return;
+        }
+
         try {
             if(isBlocking == true) {
                 synchronized(lock) {
@@ -118,30 +150,7 @@ public final class SerialComOutByteStream extends OutputStream implements ISeria
         if((data == null) || (data.length == 0)) {
             throw new IllegalArgumentException("Argument data can not be null or an empty array !");
         }
-        try {
-            if(isBlocking == true) {
-                synchronized(lock) {
-                    try {
-                        int result = scm.writeBytesBlocking(handle, data, context);
-                        if(result == 0) {
-                            throw new IOException("Given data not sent to serial port. Please retry !");
-                        }
-                    }catch (SerialComException e) {
-                        if(SerialComManager.EXP_UNBLOCKIO.equals(e.getExceptionMsg())) {
-                            return;
-                        }
-                        throw new IOException(e.getExceptionMsg());
-                    }
-                }
-            }else {
-                int ret = scm.writeBytes(handle, data, 0);
-                if(ret == 0) {
-                    throw new IOException("Given data not sent to serial port. Please retry !");
-                }
-            }
-        } catch (SerialComException e) {
-            throw new IOException(e.getExceptionMsg());
-        }
+        write(data, 0, data.length);
     }
 
     /**
@@ -150,6 +159,9 @@ public final class SerialComOutByteStream extends OutputStream implements ISeria
      * <p>If off is negative, or len is negative, or off+len is greater than the length of the array data, 
      * then an IndexOutOfBoundsException is thrown.<p>
      * 
+     * <p>In non-blocking mode given slice of array is written without copying it into a new array. For 
+     * buffered stream, data is copied into internal buffer unless it is larger than the buffer.</p>
+     * 
      * @param data byte type array of data to be written to serial port.
      * @param off offset from where to start sending data.
      * @param len length of data to be written.
@@ -170,41 +182,37 @@ public final class SerialComOutByteStream extends OutputStream implements ISeria
         if((off < 0) || (len < 0) || ((off+len) > data.length)) {
             throw new IndexOutOfBoundsException("Index violation detected in given data array !");
         }
-
-        int i = off;
-        byte[] buf = new byte[len];
-        for(int x=0; x<len; x++) {
-            buf[x] = data[i];
-            i++;
+        if(len == 0) {
+            return;
         }
-        try {
-            if(isBlocking == true) {
-                synchronized(lock) {
-                    try {
-                        int result = scm.writeBytesBlocking(handle, buf, context);
-                        if(result == 0) {
-                            throw new IOException("Given data not sent to serial port. Please retry !");
-                        }
-                    }catch (SerialComException e) {
-                        if(SerialComManager.EXP_UNBLOCKIO.equals(e.getExceptionMsg())) {
-                            return;
-                        }
-                        throw new IOException(e.getExceptionMsg());
-                    }
+
+        if(writeBuffer != null) {
+            synchronized(lock) {
+                if(len > (writeBuffer.length - writeCount)) {
+                    flushBuffer();
                 }
-            }else {
-                int ret = scm.writeBytes(handle, buf, 0);
-                if(ret == 0) {
-                    throw new IOException("Given data not sent to serial port. Please retry !");
+                if(len >= writeBuffer.length) {
+                    writeToPort(data, off, len);
+                }else {
+                    System.arraycopy(data, off, writeBuffer, writeCount, len);
+                    writeCount = writeCount + len;
                 }
             }
-        } catch (SerialComException e) {
-            throw new IOException(e.getExceptionMsg());
+            return;
+        }
+
+        if(isBlocking == true) {
+            synchronized(lock) {
+                writeToPort(data, off, len);
+            }
+        }else {
+            writeToPort(data, off, len);
         }
     }
 
     /**
-     * <p>SCM always flushes data every time writeBytes() method is called. So do nothing just return.</p>
+     * <p>Sends out bytes in internal buffer of this stream (if buffered) and data buffered by write 
+     * coalescing if it has been enabled on this handle using enableWriteCoalescing method.</p>
      * 
      * @throws IOException if write fails or output stream has been closed.
      */
@@ -213,10 +221,21 @@ public final class SerialComOutByteStream extends OutputStream implements ISeria
         if(isOpened != true) {
             throw new IOException("The byte stream has been closed !");
         }
+        if(writeBuffer != null) {
+            synchronized(lock) {
+                flushBuffer();
+            }
+        }
+        try {
+            scm.flush(handle);
+        } catch (SerialComException e) {
+            throw new IOException(e.getExceptionMsg());
+        }
     }
 
     /**
-     * <p>This method releases the OutputStream object internally associated with the operating handle.</p>
+     * <p>This method releases the OutputStream object internally associated with the operating handle. 
+     * Bytes in internal buffer are sent out first.</p>
      * <p>To actually close the port closeComPort() method should be used.</p>
      * 
      * @throws IOException if write fails or output stream has been closed.
@@ -226,6 +245,11 @@ public final class SerialComOutByteStream extends OutputStream implements ISeria
         if(isOpened != true) {
             throw new IOException("The byte stream has been already closed !");
         }
+        if(writeBuffer != null) {
+            synchronized(lock) {
+                flushBuffer();
+            }
+        }
         if(isBlocking == true) {
             scm.unblockBlockingIOOperation(context);
             // if there was a blocked write operation, it will hold this lock. when it gets unblocked
@@ -236,6 +260,72 @@ public final class SerialComOutByteStream extends OutputStream implements ISeria
             }
         }
         isOpened = false;
-        portHandleInfo.setSerialComOutByteStream(null);
+        synchronized(portHandleInfo) {
+            portHandleInfo.setSerialComOutByteStream(null);
+        }
+    }
+
+    /* Writes internal buffer to serial port, must be called holding lock. Bytes not sent are kept at 
+     * start of buffer if write fails, so that application can retry without sending any byte twice. */
+    private void flushBuffer() throws IOException {
+        if(writeCount > 0) {
+            int sent = sendToPort(writeBuffer, 0, writeCount);
+            if(sent < writeCount) {
+                System.arraycopy(writeBuffer, sent, writeBuffer, 0, writeCount - sent);
+                writeCount = writeCount - sent;
+                throw new IOException("Given data not sent to serial port. Please retry !");
+            }
+            writeCount = 0;
+        }
+    }
+
+    /* Writes given slice to serial port, in blocking mode must be called holding lock. */
+    private void writeToPort(byte[] data, int off, int len) throws IOException {
+        if(sendToPort(data, off, len) < len) {
+            throw new IOException("Given data not sent to serial port. Please retry !");
+        }
+    }
+
+    /* Sends given slice to serial port and gives number of bytes sent, in blocking mode must be called 
+     * holding lock. If sending fails after some bytes have been sent, number of bytes sent so far is 
+     * given instead of throwing exception. */
+    private int sendToPort(byte[] data, int off, int len) throws IOException {
+        int done = 0;
+        try {
+            if(isBlocking == true) {
+                // blocking native write takes whole array only
+                byte[] buf = ((off == 0) && (len == data.length)) ? data : Arrays.copyOfRange(data, off, off + len);
+                try {
+                    int result = scm.writeBytesBlocking(handle, buf, context);
+                    if(result == 0) {
+                        throw new IOException("Given data not sent to serial port. Please retry !");
+                    }
+                    return result;
+                }catch (SerialComException e) {
+                    if(SerialComManager.EXP_UNBLOCKIO.equals(e.getExceptionMsg())) {
+                        // stream is being closed, data is given up
+                        return len;
+                    }
+                    throw new IOException(e.getExceptionMsg());
+                }
+            }
+            int ret = 0;
+            while(done < len) {
+                ret = scm.writeBytes(handle, data, off + done, len - done);
+                if(ret == 0) {
+                    if(done > 0) {
+                        return done;
+                    }
+                    throw new IOException("Given data not sent to serial port. Please retry !");
+                }
+                done = done + ret;
+            }
+            return done;
+        } catch (SerialComException e) {
+            if(done > 0) {
+                return done;
+            }
+            throw new IOException(e.getExceptionMsg());
+        }
     }
 }
@@ -0,0 +1,399 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.serialpundit.core.SerialComException;
+
+/**
+ * <p>Selector like engine which waits for data on many serial ports at once and gives back only the
+ * handles on which data has arrived, as a batch. Application thread blocks once in poll method instead
+ * of calling readBytes on every port periodically, so idle ports cost nothing.</p>
+ *
+ * <p>Readiness is driven by the native data collection subsystem used by data listeners, which waits in
+ * operating system for data on a port and reads it as soon as it arrives. Received data is kept by this
+ * poller until application reads it using read methods. For large number of ports, SerialComManager
+ * should be created with DISPATCHMODE.SHARED so that no Java thread is created for every registered port.</p>
+ *
+ * <p>At most a fixed number of bytes is kept for every handle. If application does not read a ready 
+ * handle and more data arrives, oldest data is dropped so that heap does not grow without limit. Number 
+ * of dropped bytes can be obtained using getDroppedDataBytes method.</p>
+ *
+ * <p>A handle is reported by poll once when data arrives after it was last reported. If read method
+ * leaves some data unread, handle is reported again by next poll. Data listener can not be registered by
+ * application for a handle registered with poller.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComPoller {
+
+    /** <p>Number of bytes kept for a handle by default before oldest data is dropped.</p> */
+    public static final int DEFAULT_MAX_PENDING_BYTES = 1024 * 1024;
+
+    private final SerialComManager mSerialComManager;
+    private final int mMaxPendingBytes;
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mReadyCondition = mLock.newCondition();
+    private final HashMap<Long, Registration> mRegistrations = new HashMap<Long, Registration>();
+    private final ArrayDeque<Registration> mReady = new ArrayDeque<Registration>();
+    private boolean mWakeup = false;
+
+    /* Data received on a registered handle and not yet read by application, guarded by mLock. */
+    private final class Registration implements ISerialComDataListener {
+        final long handle;
+        final ArrayDeque<byte[]> chunks = new ArrayDeque<byte[]>();
+        int chunkOffset = 0;
+        int pending = 0;
+        long dropped = 0;
+        int error = 0;
+        boolean ready = false;
+
+        Registration(long handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void onNewSerialDataAvailable(byte[] data) {
+            mLock.lock();
+            try {
+                byte[] chunk = data;
+                if(chunk.length > mMaxPendingBytes) {
+                    // keep only most recent bytes
+                    dropped = dropped + (chunk.length - mMaxPendingBytes);
+                    chunk = Arrays.copyOfRange(chunk, chunk.length - mMaxPendingBytes, chunk.length);
+                }
+                while((pending + chunk.length) > mMaxPendingBytes) {
+                    byte[] oldest = chunks.poll();
+                    dropped = dropped + (oldest.length - chunkOffset);
+                    pending = pending - (oldest.length - chunkOffset);
+                    chunkOffset = 0;
+                }
+                chunks.offer(chunk);
+                pending = pending + chunk.length;
+                markReady(this);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public void onDataListenerError(int errorNum) {
+            mLock.lock();
+            try {
+                error = errorNum;
+                markReady(this);
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * <p>Allocates a new SerialComPoller object which keeps at most DEFAULT_MAX_PENDING_BYTES bytes for 
+     * every handle.</p>
+     *
+     * @param scm instance of SerialComManager through which serial ports are opened.
+     * @throws IllegalArgumentException if scm is null.
+     */
+    public SerialComPoller(SerialComManager scm) {
+        this(scm, DEFAULT_MAX_PENDING_BYTES);
+    }
+
+    /**
+     * <p>Allocates a new SerialComPoller object.</p>
+     *
+     * @param scm instance of SerialComManager through which serial ports are opened.
+     * @param maxPendingBytes maximum number of received bytes kept for a handle until application reads them.
+     * @throws IllegalArgumentException if scm is null or maxPendingBytes is zero or negative.
+     */
+    public SerialComPoller(SerialComManager scm, int maxPendingBytes) {
+        if(scm == null) {
+            throw new IllegalArgumentException("Argument scm can not be null !");
+        }
+        if(maxPendingBytes <= 0) {
+            throw new IllegalArgumentException("Argument maxPendingBytes can not be negative or zero !");
+        }
+        mSerialComManager = scm;
+        mMaxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * <p>Starts watching given handle for arrival of data.</p>
+     *
+     * @param handle handle of the opened port.
+     * @return true on success.
+     * @throws SerialComException if handle is invalid, already registered or has a data listener.
+     */
+    public boolean register(long handle) throws SerialComException {
+        Registration registration = new Registration(handle);
+        mLock.lock();
+        try {
+            if(mRegistrations.containsKey(handle)) {
+                throw new SerialComException("Given handle is already registered with this poller !");
+            }
+            mRegistrations.put(handle, registration);
+        } finally {
+            mLock.unlock();
+        }
+
+        boolean registered = false;
+        try {
+            registered = mSerialComManager.registerDataListener(handle, registration);
+        } finally {
+            if(registered == false) {
+                removeRegistration(handle);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>Stops watching given handle. Data received but not yet read is discarded.</p>
+     *
+     * @param handle handle registered with this poller.
+     * @return true on success.
+     * @throws SerialComException if handle is not registered with this poller or data looper can not be stopped.
+     */
+    public boolean unregister(long handle) throws SerialComException {
+        Registration registration = null;
+        mLock.lock();
+        try {
+            registration = mRegistrations.get(handle);
+        } finally {
+            mLock.unlock();
+        }
+        if(registration == null) {
+            throw new SerialComException("Given handle is not registered with this poller !");
+        }
+
+        mSerialComManager.unregisterDataListener(handle, registration);
+        removeRegistration(handle);
+        return true;
+    }
+
+    /**
+     * <p>Waits until data has arrived on at least one registered handle, timeout elapses or wakeup is
+     * called, and places handles having data into given array. If more handles are ready than length of
+     * array, remaining are given by next call.</p>
+     *
+     * @param readyHandles array into which ready handles will be placed.
+     * @param timeout time in milliseconds to wait, 0 to return immediately or negative to wait indefinitely.
+     * @return number of handles placed in readyHandles, 0 if timeout elapsed or wakeup was called.
+     * @throws SerialComException if calling thread is interrupted.
+     * @throws IllegalArgumentException if readyHandles is null or an empty array.
+     */
+    public int poll(long[] readyHandles, long timeout) throws SerialComException {
+        if((readyHandles == null) || (readyHandles.length == 0)) {
+            throw new IllegalArgumentException("Argument readyHandles can not be null or an empty array !");
+        }
+
+        int num = 0;
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        Registration registration = null;
+
+        mLock.lock();
+        try {
+            while(mReady.isEmpty() && (mWakeup == false)) {
+                if(timeout < 0) {
+                    mReadyCondition.await();
+                }else {
+                    if(nanos <= 0) {
+                        break;
+                    }
+                    nanos = mReadyCondition.awaitNanos(nanos);
+                }
+            }
+            mWakeup = false;
+
+            while((num < readyHandles.length) && ((registration = mReady.poll()) != null)) {
+                registration.ready = false;
+                readyHandles[num] = registration.handle;
+                num++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SerialComException("Poll operation interrupted !");
+        } finally {
+            mLock.unlock();
+        }
+        return num;
+    }
+
+    /**
+     * <p>Causes a thread blocked in poll to return immediately. If no thread is blocked, next poll
+     * returns immediately.</p>
+     */
+    public void wakeup() {
+        mLock.lock();
+        try {
+            mWakeup = true;
+            mReadyCondition.signalAll();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * <p>Copies data received on given handle into given buffer. This method never blocks.</p>
+     *
+     * @param handle handle registered with this poller.
+     * @param buffer byte array in which data will be placed.
+     * @param offset index in buffer at which first data byte will be placed.
+     * @param length maximum number of bytes to read.
+     * @return number of bytes read, 0 if there is no data.
+     * @throws SerialComException if handle is not registered or native layer reported an error while reading.
+     * @throws IllegalArgumentException if buffer is null.
+     * @throws IndexOutOfBoundsException if offset or length is invalid.
+     */
+    public int read(long handle, byte[] buffer, int offset, int length) throws SerialComException {
+        if(buffer == null) {
+            throw new IllegalArgumentException("Argument buffer can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (length > (buffer.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected in given byte array !");
+        }
+
+        mLock.lock();
+        try {
+            return read(getRegistration(handle), buffer, offset, length);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * <p>Gives all the data received on given handle so far. This method never blocks.</p>
+     *
+     * @param handle handle registered with this poller.
+     * @return data bytes or null if there is no data.
+     * @throws SerialComException if handle is not registered or native layer reported an error while reading.
+     */
+    public byte[] read(long handle) throws SerialComException {
+        byte[] data = null;
+        mLock.lock();
+        try {
+            Registration registration = getRegistration(handle);
+            data = new byte[registration.pending];
+            read(registration, data, 0, data.length);
+        } finally {
+            mLock.unlock();
+        }
+        return (data.length > 0) ? data : null;
+    }
+
+    /**
+     * <p>Gives number of bytes dropped so far for given handle because application was not reading it and 
+     * maximum number of bytes kept for it was reached. Count starts from zero whenever handle is registered.</p>
+     *
+     * @param handle handle registered with this poller.
+     * @return number of dropped bytes.
+     * @throws SerialComException if handle is not registered.
+     */
+    public long getDroppedDataBytes(long handle) throws SerialComException {
+        mLock.lock();
+        try {
+            return getRegistration(handle).dropped;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * <p>Unregisters all handles. Poller may be used again after this.</p>
+     *
+     * @throws SerialComException if data looper of any handle can not be stopped.
+     */
+    public void close() throws SerialComException {
+        ArrayList<Long> handles = null;
+        mLock.lock();
+        try {
+            handles = new ArrayList<Long>(mRegistrations.keySet());
+        } finally {
+            mLock.unlock();
+        }
+        for(int x=0; x < handles.size(); x++) {
+            unregister(handles.get(x));
+        }
+        wakeup();
+    }
+
+    /* Must be called holding mLock. */
+    private int read(Registration registration, byte[] buffer, int offset, int length) throws SerialComException {
+        int done = 0;
+        int num = 0;
+        byte[] chunk = null;
+
+        while((done < length) && ((chunk = registration.chunks.peek()) != null)) {
+            num = Math.min(length - done, chunk.length - registration.chunkOffset);
+            System.arraycopy(chunk, registration.chunkOffset, buffer, offset + done, num);
+            done = done + num;
+            registration.chunkOffset = registration.chunkOffset + num;
+            if(registration.chunkOffset == chunk.length) {
+                registration.chunks.poll();
+                registration.chunkOffset = 0;
+            }
+        }
+        registration.pending = registration.pending - done;
+        if(registration.pending > 0) {
+            // not everything consumed, report it again in next poll
+            markReady(registration);
+        }
+        if((done == 0) && (registration.error != 0)) {
+            int error = registration.error;
+            registration.error = 0;
+            throw new SerialComException("Error " + error + " occurred while reading data from serial port !");
+        }
+        return done;
+    }
+
+    /* Must be called holding mLock. */
+    private void markReady(Registration registration) {
+        // callback may still arrive after handle has been unregistered
+        if((registration.ready == false) && (mRegistrations.get(registration.handle) == registration)) {
+            registration.ready = true;
+            mReady.offer(registration);
+            mReadyCondition.signal();
+        }
+    }
+
+    /* Must be called holding mLock. */
+    private Registration getRegistration(long handle) throws SerialComException {
+        Registration registration = mRegistrations.get(handle);
+        if(registration == null) {
+            throw new SerialComException("Given handle is not registered with this poller !");
+        }
+        return registration;
+    }
+
+    private void removeRegistration(long handle) {
+        mLock.lock();
+        try {
+            Registration registration = mRegistrations.remove(handle);
+            if((registration != null) && registration.ready) {
+                mReady.remove(registration);
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+}
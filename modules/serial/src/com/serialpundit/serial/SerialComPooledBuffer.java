@@ -0,0 +1,120 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A byte array borrowed from SerialComBufferPool along with the number of valid bytes in it.</p>
+ *
+ * <p>Application must call release() exactly once when it no longer needs this buffer. After
+ * release the array may be handed out again and must not be accessed.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComPooledBuffer {
+
+    private final byte[] mArray;
+    private final ByteBuffer mByteBuffer;
+    private final SerialComBufferPool mPool;
+    private final int mSizeClass;
+    private int mLength = 0;
+    private boolean mLeased = false;
+
+    // set by pool only when leak detection is enabled
+    Object mTracker = null;
+
+    SerialComPooledBuffer(byte[] array, SerialComBufferPool pool, int sizeClass) {
+        mArray = array;
+        mByteBuffer = ByteBuffer.wrap(array);
+        mPool = pool;
+        mSizeClass = sizeClass;
+    }
+
+    /**
+     * <p>Gives the backing array. It may be larger than requested size.</p>
+     *
+     * @return backing byte array.
+     */
+    public byte[] array() {
+        return mArray;
+    }
+
+    /**
+     * <p>Gives number of valid data bytes starting at index 0.</p>
+     *
+     * @return number of valid bytes.
+     */
+    public int length() {
+        return mLength;
+    }
+
+    /**
+     * <p>Sets number of valid data bytes starting at index 0.</p>
+     *
+     * @param length number of valid bytes.
+     * @throws IllegalArgumentException if length is negative or greater than capacity.
+     */
+    public void setLength(int length) {
+        if((length < 0) || (length > mArray.length)) {
+            throw new IllegalArgumentException("Argument length can not be negative or greater than capacity !");
+        }
+        mLength = length;
+    }
+
+    /**
+     * <p>Gives size of backing array.</p>
+     *
+     * @return capacity of this buffer.
+     */
+    public int capacity() {
+        return mArray.length;
+    }
+
+    /**
+     * <p>Gives a heap ByteBuffer view of valid data bytes, position is 0 and limit is length(). The
+     * same view object is returned every time so no allocation happens.</p>
+     *
+     * @return byte buffer wrapping backing array.
+     */
+    public ByteBuffer asByteBuffer() {
+        mByteBuffer.clear();
+        mByteBuffer.limit(mLength);
+        return mByteBuffer;
+    }
+
+    /**
+     * <p>Gives this buffer back to the pool.</p>
+     *
+     * @throws IllegalStateException if this buffer has already been released.
+     */
+    public void release() {
+        synchronized(this) {
+            if(mLeased == false) {
+                throw new IllegalStateException("Buffer has already been released !");
+            }
+            mLeased = false;
+        }
+        mPool.recycle(this);
+    }
+
+    synchronized void lease() {
+        mLeased = true;
+        mLength = 0;
+    }
+
+    int getSizeClass() {
+        return mSizeClass;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import java.nio.ByteBuffer;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.internal.SerialComIOReactor;
+
+/**
+ * <p>Blocking read/write facade suitable for applications running one virtual thread (Java 21 and
+ * above) per serial port.</p>
+ *
+ * <p>readBytesBlocking and writeBytesBlocking methods of SerialComManager wait inside native code,
+ * which pins the carrier thread of a virtual thread for the whole wait. Methods of this class hand
+ * the operation over to a small set of poller threads and park the calling thread until the
+ * operation completes. Parking uses java.util.concurrent primitives, so a virtual thread releases
+ * its carrier thread while waiting and thousands of ports can be served by few carrier threads.</p>
+ *
+ * <p>Poller threads multiplex all ports using non-blocking reads. Every handle is served by the
+ * same poller thread so operations on a handle complete in order. An idle port with a pending read
+ * is polled at intervals of about 1 millisecond.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComVirtualIO {
+
+    private final SerialComIOReactor mReactor;
+
+    /**
+     * <p>Allocates a new SerialComVirtualIO object with one poller thread for every two processor cores.</p>
+     *
+     * @param scm instance of SerialComManager through which serial ports are opened.
+     * @throws IllegalArgumentException if scm is null.
+     */
+    public SerialComVirtualIO(SerialComManager scm) {
+        this(scm, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * <p>Allocates a new SerialComVirtualIO object.</p>
+     *
+     * @param scm instance of SerialComManager through which serial ports are opened.
+     * @param numOfPollers number of poller threads serving all the ports.
+     * @throws IllegalArgumentException if scm is null or numOfPollers is zero or negative.
+     */
+    public SerialComVirtualIO(SerialComManager scm, int numOfPollers) {
+        if(scm == null) {
+            throw new IllegalArgumentException("Argument scm can not be null !");
+        }
+        if(numOfPollers <= 0) {
+            throw new IllegalArgumentException("Argument numOfPollers can not be negative or zero !");
+        }
+        mReactor = new SerialComIOReactor(scm, numOfPollers, "SerialPundit VirtualIO poller");
+    }
+
+    /**
+     * <p>Reads data bytes from given port into given buffer, parking the calling thread until at
+     * least one byte is read or timeout elapses.</p>
+     *
+     * @param handle handle of the opened port from which to read.
+     * @param buffer byte array in which data will be placed.
+     * @param offset index in buffer at which first data byte will be placed.
+     * @param length maximum number of bytes to read.
+     * @param timeout time in milliseconds to wait for data or negative to wait indefinitely.
+     * @return number of bytes read, 0 if timeout elapsed before any data arrived.
+     * @throws SerialComException if an I/O error occurs or calling thread is interrupted.
+     * @throws IllegalArgumentException if buffer is null.
+     * @throws IndexOutOfBoundsException if offset or length is invalid.
+     */
+    public int read(long handle, byte[] buffer, int offset, int length, long timeout) throws SerialComException {
+        if(buffer == null) {
+            throw new IllegalArgumentException("Argument buffer can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (length > (buffer.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected in given byte array !");
+        }
+        if(length == 0) {
+            return 0;
+        }
+        return await(mReactor.submitRead(handle, ByteBuffer.wrap(buffer, offset, length), timeout));
+    }
+
+    /**
+     * <p>Reads data bytes from given port into given buffer, parking the calling thread until at
+     * least one byte is read.</p>
+     *
+     * @param handle handle of the opened port from which to read.
+     * @param buffer byte array in which data will be placed.
+     * @return number of bytes read.
+     * @throws SerialComException if an I/O error occurs or calling thread is interrupted.
+     * @throws IllegalArgumentException if buffer is null.
+     */
+    public int read(long handle, byte[] buffer) throws SerialComException {
+        if(buffer == null) {
+            throw new IllegalArgumentException("Argument buffer can not be null !");
+        }
+        return read(handle, buffer, 0, buffer.length, -1);
+    }
+
+    /**
+     * <p>Writes given bytes to port, parking the calling thread until all of them have been sent.</p>
+     *
+     * @param handle handle of the opened port on which to write.
+     * @param buffer byte array containing data to be written.
+     * @param offset index in buffer of first byte to be written.
+     * @param length number of bytes to write.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs or calling thread is interrupted.
+     * @throws IllegalArgumentException if buffer is null.
+     * @throws IndexOutOfBoundsException if offset or length is invalid.
+     */
+    public int write(long handle, byte[] buffer, int offset, int length) throws SerialComException {
+        if(buffer == null) {
+            throw new IllegalArgumentException("Argument buffer can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (length > (buffer.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected in given byte array !");
+        }
+        if(length == 0) {
+            return 0;
+        }
+        return await(mReactor.submitWrite(handle, ByteBuffer.wrap(buffer, offset, length)));
+    }
+
+    /**
+     * <p>Writes given bytes to port, parking the calling thread until all of them have been sent.</p>
+     *
+     * @param handle handle of the opened port on which to write.
+     * @param buffer byte array containing data to be written.
+     * @return number of bytes written.
+     * @throws SerialComException if an I/O error occurs or calling thread is interrupted.
+     * @throws IllegalArgumentException if buffer is null.
+     */
+    public int write(long handle, byte[] buffer) throws SerialComException {
+        if(buffer == null) {
+            throw new IllegalArgumentException("Argument buffer can not be null !");
+        }
+        return write(handle, buffer, 0, buffer.length);
+    }
+
+    /**
+     * <p>Stops poller threads. Operations still pending fail with SerialComException. This does not
+     * close any serial port.</p>
+     */
+    public void close() {
+        mReactor.shutdown();
+    }
+
+    private int await(SerialComIOFuture future) throws SerialComException {
+        try {
+            return future.getResult();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new SerialComException("I/O operation interrupted !");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+/**
+ * <p>Snapshot of counters of write coalescing enabled on a handle. Counting starts when coalescing
+ * is enabled.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComWriteCoalescingStats {
+
+    private final long mNumOfWrites;
+    private final long mNumOfBytes;
+    private final long mNumOfNativeWrites;
+
+    /**
+     * <p>Allocates a new SerialComWriteCoalescingStats object.</p>
+     *
+     * @param numOfWrites number of write calls made by application.
+     * @param numOfBytes number of bytes written by application.
+     * @param numOfNativeWrites number of writes actually made to serial port.
+     */
+    public SerialComWriteCoalescingStats(long numOfWrites, long numOfBytes, long numOfNativeWrites) {
+        mNumOfWrites = numOfWrites;
+        mNumOfBytes = numOfBytes;
+        mNumOfNativeWrites = numOfNativeWrites;
+    }
+
+    /**
+     * <p>Gives number of write calls made by application.</p>
+     *
+     * @return number of application writes.
+     */
+    public long getNumOfWrites() {
+        return mNumOfWrites;
+    }
+
+    /**
+     * <p>Gives number of bytes written by application.</p>
+     *
+     * @return number of bytes.
+     */
+    public long getNumOfBytes() {
+        return mNumOfBytes;
+    }
+
+    /**
+     * <p>Gives number of writes actually made to serial port (system calls).</p>
+     *
+     * @return number of native writes.
+     */
+    public long getNumOfNativeWrites() {
+        return mNumOfNativeWrites;
+    }
+
+    /**
+     * <p>Gives average number of application writes sent out in one native write.</p>
+     *
+     * @return coalescing ratio or 0 if nothing has been sent out yet.
+     */
+    public double getCoalescingRatio() {
+        if(mNumOfNativeWrites == 0) {
+            return 0;
+        }
+        return (double) mNumOfWrites / mNumOfNativeWrites;
+    }
+
+    @Override
+    public String toString() {
+        return "writes : " + mNumOfWrites + ", bytes : " + mNumOfBytes + ", native writes : " + mNumOfNativeWrites
+                + ", coalescing ratio : " + getCoalescingRatio();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import com.serialpundit.serial.internal.ISerialComFTPProgress;
+
+/**
+ * <p>The interface ISerialComZmodemProgress should be implemented by class who wish to
+ * know how many bytes have been sent or received using Zmodem protocol.</p>
+ *
+ * <p>Zmodem streams data without per block acknowledgement, so progress is reported in
+ * terms of file offset rather than number of blocks.</p>
+ *
+ * @author Rishi Gupta
+ */
+public interface ISerialComZmodemProgress extends ISerialComFTPProgress {
+
+    /**
+     * <p>The class implementing this interface is expected to override onZmodemSentProgressUpdate()
+     * method. This method gets called whenever a data subpacket is sent using Zmodem protocol.</p>
+     *
+     * <p>This method should return as early as possible. Application might schedule GUI update
+     * for future.</p>
+     *
+     * @param fileName name of file that is currently getting sent.
+     * @param offset number of bytes of file sent so far. If receiver asks to resend from an earlier
+     *         offset, this value goes back.
+     * @param percentOfBytesSent update in terms of percentage.
+     */
+    public abstract void onZmodemSentProgressUpdate(String fileName, long offset, int percentOfBytesSent);
+
+    /**
+     * <p>The class implementing this interface is expected to override onZmodemReceiveProgressUpdate()
+     * method. This method gets called whenever a data subpacket is received using Zmodem protocol.</p>
+     *
+     * <p>This method should return as early as possible. Application might schedule GUI update
+     * for future.</p>
+     *
+     * @param fileName name of file currently being received from sender.
+     * @param offset number of bytes of file received so far, including bytes already present in
+     *         file when transfer was resumed.
+     * @param percentOfBytesReceived update in terms of percentage.
+     */
+    public abstract void onZmodemReceiveProgressUpdate(String fileName, long offset, int percentOfBytesReceived);
+}
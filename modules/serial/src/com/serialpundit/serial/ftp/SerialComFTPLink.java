@@ -0,0 +1,321 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.SerialComManager;
+
+/**
+ * <p>Byte level link used by file transfer protocol engines. Received bytes are read in bulk into an
+ * internal buffer and handed out one at a time, waiting at most given time for the next byte.</p>
+ *
+ * <p>While waiting, calling thread first yields a few times and then parks for short intervals, so a
+ * response from the other end is noticed within a fraction of a millisecond without keeping a processor
+ * busy and without sleeping tens of milliseconds between attempts.</p>
+ *
+ * @author Rishi Gupta
+ */
+final class SerialComFTPLink {
+
+    /** <p>Value returned by read when no byte arrived within timeout.</p> */
+    static final int TIMEOUT = -2;
+
+    private static final byte SOH = 0x01;
+    private static final byte STX = 0x02;
+
+    private static final int IDLE_SPINS = 64;
+    private static final long IDLE_PARK_NANOS = 100000;
+    private static final long WRITE_TIMEOUT_MILLIS = 60000;
+
+    private final SerialComManager scm;
+    private final long handle;
+    private final byte[] rxBuffer = new byte[8192];
+    private int rxPos = 0;
+    private int rxCount = 0;
+
+    /**
+     * <p>Allocates a new SerialComFTPLink object.</p>
+     *
+     * @param scm SerialComManager instance associated with this handle.
+     * @param handle of the port on which file is to be communicated.
+     */
+    SerialComFTPLink(SerialComManager scm, long handle) {
+        this.scm = scm;
+        this.handle = handle;
+    }
+
+    /**
+     * <p>Gives next received byte, waiting at most timeout milliseconds for it.</p>
+     *
+     * @param timeout maximum time in milliseconds to wait, 0 to not wait at all.
+     * @return byte value in range 0 to 255 or TIMEOUT.
+     * @throws SerialComException if an I/O error occurs.
+     */
+    int read(long timeout) throws SerialComException {
+        if(rxPos < rxCount) {
+            return rxBuffer[rxPos++] & 0xFF;
+        }
+        if(fill(System.nanoTime() + (timeout * 1000000L)) == false) {
+            return TIMEOUT;
+        }
+        return rxBuffer[rxPos++] & 0xFF;
+    }
+
+    /**
+     * <p>Waits until given number of bytes have been received or timeout elapses, whichever happens
+     * first.</p>
+     *
+     * @param length number of bytes to read.
+     * @param timeout maximum time in milliseconds to wait.
+     * @return bytes received or null if nothing arrived within timeout.
+     * @throws SerialComException if an I/O error occurs.
+     */
+    byte[] readBytes(int length, long timeout) throws SerialComException {
+        return readBytes(length, length, timeout, false);
+    }
+
+    /**
+     * <p>Waits until a complete block has been received or timeout elapses, whichever happens first. Length
+     * of block is decided by its first byte. If first byte received is neither SOH nor STX, a control character
+     * (EOT, CAN, ACK, NAK etc.) has been received instead of a block, so it is given back immediately along
+     * with whatever has been received after it.</p>
+     *
+     * @param sohLength length of block starting with SOH including header and CRC/checksum.
+     * @param stxLength length of block starting with STX including header and CRC.
+     * @param timeout maximum time in milliseconds to wait.
+     * @return bytes received or null if nothing arrived within timeout.
+     * @throws SerialComException if an I/O error occurs.
+     */
+    byte[] readBlock(int sohLength, int stxLength, long timeout) throws SerialComException {
+        return readBytes(sohLength, stxLength, timeout, true);
+    }
+
+    /**
+     * <p>Same as readBlock but assembles block in caller supplied array, so that a streaming receiver can
+     * reuse its buffers. If only part of block arrives within timeout, method can be called again with
+     * number of bytes received till now to continue assembling same block.</p>
+     *
+     * @param block array in which block is assembled, it must be large enough to hold largest block.
+     * @param count number of bytes of this block already present in array.
+     * @param sohLength length of block starting with SOH including header and CRC/checksum.
+     * @param stxLength length of block starting with STX including header and CRC.
+     * @param timeout maximum time in milliseconds to wait.
+     * @return number of bytes of block present in array now.
+     * @throws SerialComException if an I/O error occurs.
+     */
+    int readBlock(byte[] block, int count, int sohLength, int stxLength, long timeout) throws SerialComException {
+        return receive(block, count, sohLength, stxLength, timeout, true);
+    }
+
+    /**
+     * <p>Tells whether a byte can be read without waiting.</p>
+     *
+     * @return true if at least one byte has been received and not read yet.
+     * @throws SerialComException if an I/O error occurs.
+     */
+    boolean hasData() throws SerialComException {
+        if(rxPos < rxCount) {
+            return true;
+        }
+        return fill(System.nanoTime());
+    }
+
+    /**
+     * <p>Discards all bytes received till now.</p>
+     *
+     * @throws SerialComException if an I/O error occurs.
+     */
+    void purge() throws SerialComException {
+        rxPos = 0;
+        rxCount = 0;
+        while(scm.readBytes(handle, rxBuffer, 0, rxBuffer.length, -1, null) > 0) {
+        }
+    }
+
+    /**
+     * <p>Writes all the given bytes, retrying if flow control has stopped transmission.</p>
+     *
+     * @param data array containing bytes to send.
+     * @param offset index of first byte to send.
+     * @param length number of bytes to send.
+     * @throws SerialComException if an I/O error occurs or bytes could not be sent for a long time.
+     */
+    void write(byte[] data, int offset, int length) throws SerialComException {
+        int done = 0;
+        int ret = 0;
+        long deadline = 0;
+        while(done < length) {
+            ret = scm.writeBytes(handle, data, offset + done, length - done);
+            if(ret > 0) {
+                done = done + ret;
+                deadline = 0;
+                continue;
+            }
+            if(deadline == 0) {
+                deadline = System.currentTimeMillis() + WRITE_TIMEOUT_MILLIS;
+            }else if(System.currentTimeMillis() >= deadline) {
+                throw new SerialComException("Could not write data to serial port. Please retry !");
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * <p>Writes all the given bytes.</p>
+     *
+     * @param data bytes to send.
+     * @throws SerialComException if an I/O error occurs.
+     */
+    void write(byte[] data) throws SerialComException {
+        write(data, 0, data.length);
+    }
+
+    /**
+     * <p>Writes all the bytes remaining in given buffers as one gathered write, retrying if flow control
+     * has stopped transmission. Position of every buffer is advanced to its limit.</p>
+     *
+     * @param srcs buffers containing bytes to send, for example header, slice of memory mapped file and CRC.
+     * @throws SerialComException if an I/O error occurs or bytes could not be sent for a long time.
+     */
+    void write(ByteBuffer[] srcs) throws SerialComException {
+        long left = 0;
+        int ret = 0;
+        long deadline = 0;
+        for(int x=0; x < srcs.length; x++) {
+            left = left + srcs[x].remaining();
+        }
+        while(left > 0) {
+            ret = scm.writeBytes(handle, srcs);
+            if(ret > 0) {
+                left = left - ret;
+                deadline = 0;
+                continue;
+            }
+            if(deadline == 0) {
+                deadline = System.currentTimeMillis() + WRITE_TIMEOUT_MILLIS;
+            }else if(System.currentTimeMillis() >= deadline) {
+                throw new SerialComException("Could not write data to serial port. Please retry !");
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * <p>Maps given file into memory for reading so that blocks can be sent directly from page cache without
+     * copying file contents into a block array first. Mapping remains valid after file is closed.</p>
+     *
+     * @param file file to be sent.
+     * @return read only buffer positioned at start of file or null if file is empty or too large to be mapped
+     *          in one go, in which case caller should read file as stream.
+     * @throws IOException if file can not be opened or mapped.
+     */
+    static MappedByteBuffer mapFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if((size == 0) || (size > Integer.MAX_VALUE)) {
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /* For block reads, length of data to read is decided by first byte. */
+    private byte[] readBytes(int sohLength, int stxLength, long timeout, boolean isBlock) throws SerialComException {
+        byte[] data = new byte[Math.max(sohLength, stxLength)];
+        int count = receive(data, 0, sohLength, stxLength, timeout, isBlock);
+        if(count == 0) {
+            return null;
+        }
+        if(count < data.length) {
+            return Arrays.copyOf(data, count);
+        }
+        return data;
+    }
+
+    /* Copies received bytes into data starting at index count, gives total number of bytes in data. */
+    private int receive(byte[] data, int count, int sohLength, int stxLength, long timeout, boolean isBlock) throws SerialComException {
+        int num = 0;
+        int length = Math.max(sohLength, stxLength);
+        long deadline = System.nanoTime() + (timeout * 1000000L);
+
+        if((count > 0) && (isBlock == true)) {
+            if(data[0] == SOH) {
+                length = sohLength;
+            }else if(data[0] == STX) {
+                length = stxLength;
+            }else {
+                return count;
+            }
+        }
+
+        while(count < length) {
+            if((rxPos >= rxCount) && (fill(deadline) == false)) {
+                break;
+            }
+            if((count == 0) && (isBlock == true)) {
+                if(rxBuffer[rxPos] == SOH) {
+                    length = sohLength;
+                }else if(rxBuffer[rxPos] == STX) {
+                    length = stxLength;
+                }else {
+                    // not a block, give back control character(s) as they are
+                    length = Math.min(length, rxCount - rxPos);
+                }
+            }
+            num = Math.min(length - count, rxCount - rxPos);
+            System.arraycopy(rxBuffer, rxPos, data, count, num);
+            rxPos = rxPos + num;
+            count = count + num;
+        }
+        return count;
+    }
+
+    /* Reads whatever is available into empty buffer, waiting till deadline (System.nanoTime) for at least one byte. */
+    private boolean fill(long deadline) throws SerialComException {
+        int idle = 0;
+        int ret = 0;
+
+        rxPos = 0;
+        rxCount = 0;
+        while(true) {
+            ret = scm.readBytes(handle, rxBuffer, 0, rxBuffer.length, -1, null);
+            if(ret > 0) {
+                rxCount = ret;
+                return true;
+            }
+            if((deadline - System.nanoTime()) <= 0) {
+                return false;
+            }
+            if(idle < IDLE_SPINS) {
+                idle++;
+                Thread.yield();
+            }else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+}
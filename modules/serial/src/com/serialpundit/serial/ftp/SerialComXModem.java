@@ -19,6 +19,7 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import com.serialpundit.core.util.SerialComCRCUtil;
 import com.serialpundit.core.SerialComPlatform;
@@ -80,6 +81,10 @@ public final class SerialComXModem {
     private boolean lastCharacterReceivedWasCAN = false;
     private final byte ABORT_CMD[] = new byte[] { CAN, CAN, CAN, CAN, CAN, BS, BS, BS, BS, BS };
     private final SerialComCRCUtil checksumCalculator = new SerialComCRCUtil();
+    private SerialComFTPLink link;
+    private ByteBuffer mappedFile;  // binary mode file mapped into memory, null if read as stream
+    private ByteBuffer packetData;  // data bytes of current block when taken straight from mappedFile
+    private final ByteBuffer[] packet = new ByteBuffer[] { ByteBuffer.wrap(block, 0, 3), null, ByteBuffer.wrap(block, 131, 1) };
 
     /**
      * <p>Allocates a new SerialComXModem object with given details and associate it with the given 
@@ -138,7 +143,9 @@ public final class SerialComXModem {
         int percentOfBlocksSent = 0;
 
         long lengthOfFileToSend = fileToProcess.length();
+        mappedFile = (textMode == true) ? null : SerialComFTPLink.mapFile(fileToProcess);
         inStream = new BufferedInputStream(new FileInputStream(fileToProcess));
+        link = new SerialComFTPLink(scm, handle);
 
         state = CONNECT;
         while(true) {
@@ -148,15 +155,16 @@ public final class SerialComXModem {
                 responseWaitTimeOut = System.currentTimeMillis() + 60000;
                 while(nakReceived != true) {
                     try {
-                        data = scm.readBytes(handle, 1024);
+                        data = link.readBytes(1, 100);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
                     }
                     if((data != null) && (data.length > 0)) {
-                        /* Instead of purging receive buffer and then waiting for NAK, receive all data because
-                         * this approach might be faster. The other side might have opened first time and may 
-                         * have flushed garbage data. So receive buffer may contain garbage + NAK character. */
+                        /* The other side might have opened first time and may have flushed garbage data. It also
+                         * keeps sending NAK until first block arrives. So receive buffer may contain garbage + one or
+                         * more NAK characters. Once NAK is found, rest of the received data is purged so that extra NAK
+                         * characters are not taken as reply to first block. */
                         for(int x=0; x < data.length; x++) {
                             if(NAK == data[x]) {
                                 nakReceived = true;
@@ -164,11 +172,15 @@ public final class SerialComXModem {
                                 break;
                             }
                         }
-                    }else {
-                        try {
-                            Thread.sleep(100);  // delay before next attempt to check NAK character reception
-                        } catch (InterruptedException e) {
+                        if(nakReceived == true) {
+                            try {
+                                link.purge();
+                            } catch (SerialComException exp) {
+                                inStream.close();
+                                throw exp;
+                            }
                         }
+                    }else {
                         // abort if timed-out while waiting for NAK character
                         if((nakReceived != true) && (System.currentTimeMillis() >= responseWaitTimeOut)) {
                             errMsg = "Timedout while waiting for file receiver to initiate connection setup !";
@@ -197,7 +209,7 @@ public final class SerialComXModem {
                 }
 
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -212,7 +224,7 @@ public final class SerialComXModem {
                     break;
                 }
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -231,19 +243,9 @@ public final class SerialComXModem {
                         return false;
                     }
 
-                    // delay before next attempt to read from serial port
-                    try {
-                        if(noMoreData != true) {
-                            Thread.sleep(120);
-                        }else {
-                            Thread.sleep(1500);
-                        }
-                    } catch (InterruptedException e) {
-                    }
-
-                    // try to read data from serial port
+                    // wait for reply from serial port, returns as soon as it arrives.
                     try {
-                        data = scm.readBytes(handle, 1);
+                        data = link.readBytes(1, (noMoreData != true) ? 120 : 1500);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
@@ -285,17 +287,6 @@ public final class SerialComXModem {
                             retryCount++;
                             state = RESEND;
                         }else if(data[0] == CAN) {
-                            if(data.length >= 2) {
-                                if(data[1] == CAN) {
-                                    errMsg = "Received abort command from file receiving end !";
-                                    state = ABORT;
-                                    break;
-                                }else {
-                                    // probably it is noise, so re-send block.
-                                    retryCount++;
-                                    state = RESEND;
-                                }
-                            }
                             if(lastCharacterReceivedWasCAN == true) {
                                 errMsg = "Received abort command from file receiving end !";
                                 state = ABORT;
@@ -355,7 +346,7 @@ public final class SerialComXModem {
 
                 // reaching here means there is data to be sent to receiver.
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -442,6 +433,7 @@ public final class SerialComXModem {
         block[0] = SOH;
         block[1] = (byte) blockNumber;
         block[2] = (byte) ~blockNumber;
+        packetData = null;
 
         if(textMode == true) {
             /* file is to be send as a text file. */
@@ -733,8 +725,23 @@ public final class SerialComXModem {
         }else {
             /* file is to be send as a binary file. */
 
-            // read data from the file to be sent.
-            numBytesRead = inStream.read(block, 3, 128);
+            if(mappedFile != null) {
+                if(mappedFile.remaining() >= 128) {
+                    // full block, data bytes are sent directly from mapped file without copying.
+                    packetData = mappedFile.slice();
+                    packetData.limit(128);
+                    mappedFile.position(mappedFile.position() + 128);
+                    numBytesRead = 128;
+                }else if(mappedFile.hasRemaining()) {
+                    numBytesRead = mappedFile.remaining();
+                    mappedFile.get(block, 3, numBytesRead);
+                }else {
+                    numBytesRead = -1;
+                }
+            }else {
+                // read data from the file to be sent.
+                numBytesRead = inStream.read(block, 3, 128);
+            }
             if(numBytesRead == 128) {
             }else if(numBytesRead > 0) {
                 // assembling last block with padding.
@@ -749,7 +756,29 @@ public final class SerialComXModem {
         }
 
         // append checksum of this block.
-        block[131] = checksumCalculator.getChecksumValue(block, 3, 130);
+        if(packetData != null) {
+            block[131] = checksumCalculator.getChecksumValue(packetData, 0, 127);
+        }else {
+            block[131] = checksumCalculator.getChecksumValue(block, 3, 130);
+        }
+    }
+
+    /* 
+     * Sends current data block. If its data bytes are in mapped file, header, data and checksum are 
+     * given to serial port as one gathered write, otherwise block array is sent as is.
+     * 
+     * @throws SerialComException if any I/O error occurs.
+     */
+    private void sendBlock() throws SerialComException {
+        if(packetData == null) {
+            scm.writeBytes(handle, block, 0);
+            return;
+        }
+        packet[0].position(0);
+        packetData.rewind();
+        packet[1] = packetData;
+        packet[2].position(131);
+        link.write(packet);
     }
 
     /**
@@ -789,6 +818,7 @@ public final class SerialComXModem {
         /* The data bytes get flushed automatically to file system physically whenever BufferedOutputStream's
 		   internal buffer gets full and request to write more bytes have arrived. */
         outStream = new BufferedOutputStream(new FileOutputStream(fileToProcess));
+        link = new SerialComFTPLink(scm, handle);
         isFileOpen = true;
 
         // Clear receive buffer before start.
@@ -834,14 +864,14 @@ public final class SerialComXModem {
                         return false;
                     }
 
-                    // let the data arrive from other end, also minimize JNI transitions.
-                    try {
-                        Thread.sleep(delayVal);
-                    } catch (InterruptedException e) {
-                    }
-
+                    // wait for complete block (or its remaining part), returns as soon as it arrives or a control
+                    // character is received instead of a block.
                     try {
-                        data = scm.readBytes(handle, 132);
+                        if(partialReadInProgress == true) {
+                            data = link.readBytes(132 - bufferIndex, delayVal);
+                        }else {
+                            data = link.readBlock(132, 132, delayVal);
+                        }
                     } catch (SerialComException exp) {
                         outStream.close();
                         throw exp;
@@ -850,7 +880,7 @@ public final class SerialComXModem {
                     if((data != null) && (data.length > 0)) {
                         firstBlock = false;
 
-                        if(data[0] == CAN) {
+                        if((partialReadInProgress == false) && (data[0] == CAN)) {
                             if(lastCharacterReceivedWasCAN == true) {
                                 // received 2nd consecutive CAN means sender wish to abort file transfer.
                                 // sender may or may not wait for ACK in response to abort command.
@@ -884,7 +914,7 @@ public final class SerialComXModem {
                                 // this is 1st CAN character, wait to check next character; whether it is CAN or not.
                                 lastCharacterReceivedWasCAN = true;
                             }
-                        }else if(data[0] == EOT) {
+                        }else if((partialReadInProgress == false) && (data[0] == EOT)) {
                             if(lastCharacterReceivedWasCAN == true) {
                                 // EOT after CAN was not expected, probably line has noise; abort transfer.
                                 errMsg = "Unexpected data sequence (<CAN> <EOT>) received from file sender !";
@@ -19,6 +19,7 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import com.serialpundit.core.util.SerialComCRCUtil;
 import com.serialpundit.core.SerialComPlatform;
@@ -84,6 +85,10 @@ public final class SerialComXModem1K {
     private boolean lastCharacterReceivedWasCAN = false;
     private final byte ABORT_CMD[] = new byte[] { CAN, CAN, CAN, CAN, CAN, BS, BS, BS, BS, BS };
     private final SerialComCRCUtil crcCalculator = new SerialComCRCUtil();
+    private SerialComFTPLink link;
+    private ByteBuffer mappedFile;  // binary mode file mapped into memory, null if read as stream
+    private ByteBuffer packetData;  // data bytes of current block when taken straight from mappedFile
+    private final ByteBuffer[] packet = new ByteBuffer[] { ByteBuffer.wrap(block, 0, 3), null, ByteBuffer.wrap(block, 1027, 2) };
 
     /**
      * <p>Allocates a new SerialComXModem1K object with given details and associate it with the given 
@@ -143,7 +148,9 @@ public final class SerialComXModem1K {
         int percentOfBlocksSent = 0;
 
         long lengthOfFileToSend = fileToProcess.length();
+        mappedFile = (textMode == true) ? null : SerialComFTPLink.mapFile(fileToProcess);
         inStream = new BufferedInputStream(new FileInputStream(fileToProcess));
+        link = new SerialComFTPLink(scm, handle);
 
         state = CONNECT;
         while(true) {
@@ -152,15 +159,16 @@ public final class SerialComXModem1K {
                 responseWaitTimeOut = System.currentTimeMillis() + 60000;
                 while(cReceived != true) {
                     try {
-                        data = scm.readBytes(handle, 1024);
+                        data = link.readBytes(1, 100);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
                     }
                     if((data != null) && (data.length > 0)) {
-                        /* Instead of purging receive buffer and then waiting for C, receive all data because
-                         * this approach might be faster. The other side might have opened first time and may 
-                         * have flushed garbage data. So receive buffer may contain garbage + C character. */
+                        /* The other side might have opened first time and may have flushed garbage data. It also
+                         * keeps sending C until first block arrives. So receive buffer may contain garbage + one or
+                         * more C characters. Once C is found, rest of the received data is purged so that extra C
+                         * characters are not taken as reply to first block. */
                         for(int x=0; x < data.length; x++) {
                             if(data[x] == C) {
                                 cReceived = true;
@@ -168,11 +176,15 @@ public final class SerialComXModem1K {
                                 break;
                             }
                         }
-                    }else {
-                        try {
-                            Thread.sleep(100); // delay before next attempt to check C character reception.
-                        } catch (InterruptedException e) {
+                        if(cReceived == true) {
+                            try {
+                                link.purge();
+                            } catch (SerialComException exp) {
+                                inStream.close();
+                                throw exp;
+                            }
                         }
+                    }else {
                         // abort if timed-out while waiting for C character.
                         if((cReceived != true) && (System.currentTimeMillis() >= responseWaitTimeOut)) {
                             errMsg = "Timedout while waiting for file receiver to initiate connection setup !";
@@ -200,7 +212,7 @@ public final class SerialComXModem1K {
                 }
 
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -214,7 +226,7 @@ public final class SerialComXModem1K {
                     break;
                 }
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -232,19 +244,9 @@ public final class SerialComXModem1K {
                         return false;
                     }
 
-                    // delay before next attempt to read from serial port.
-                    try {
-                        if(noMoreData != true) {
-                            Thread.sleep(120);
-                        }else {
-                            Thread.sleep(1500);
-                        }
-                    } catch (InterruptedException e) {
-                    }
-
-                    // try to read data from serial port.
+                    // wait for reply from serial port, returns as soon as it arrives.
                     try {
-                        data = scm.readBytes(handle, 1);
+                        data = link.readBytes(1, (noMoreData != true) ? 120 : 1500);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
@@ -286,17 +288,6 @@ public final class SerialComXModem1K {
                             retryCount++;
                             state = RESEND;
                         }else if(data[0] == CAN) {
-                            if(data.length >= 2) {
-                                if(data[1] == CAN) {
-                                    errMsg = "Received abort command from file receiving end !";
-                                    state = ABORT;
-                                    break;
-                                }else {
-                                    // probably it is noise, so re-send block.
-                                    retryCount++;
-                                    state = RESEND;
-                                }
-                            }
                             if(lastCharacterReceivedWasCAN == true) {
                                 errMsg = "Received abort command from file receiving end !";
                                 state = ABORT;
@@ -352,7 +343,7 @@ public final class SerialComXModem1K {
 
                 // reaching here means there is data to be sent to receiver.
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -435,6 +426,7 @@ public final class SerialComXModem1K {
         block[0] = STX;
         block[1] = (byte) blockNumber;
         block[2] = (byte) ~blockNumber;
+        packetData = null;
 
         if(textMode == true) {
             /* file is to be send as a text file. */
@@ -726,8 +718,23 @@ public final class SerialComXModem1K {
         }else {
             /* file is to be send as a binary file. */
 
-            // read data from the file to be sent.
-            numBytesRead = inStream.read(block, 3, 1024);
+            if(mappedFile != null) {
+                if(mappedFile.remaining() >= 1024) {
+                    // full block, data bytes are sent directly from mapped file without copying.
+                    packetData = mappedFile.slice();
+                    packetData.limit(1024);
+                    mappedFile.position(mappedFile.position() + 1024);
+                    numBytesRead = 1024;
+                }else if(mappedFile.hasRemaining()) {
+                    numBytesRead = mappedFile.remaining();
+                    mappedFile.get(block, 3, numBytesRead);
+                }else {
+                    numBytesRead = -1;
+                }
+            }else {
+                // read data from the file to be sent.
+                numBytesRead = inStream.read(block, 3, 1024);
+            }
             if(numBytesRead == 1024) {
             }else if(numBytesRead > 0) {
                 // assembling last block with padding.
@@ -742,11 +749,33 @@ public final class SerialComXModem1K {
         }
 
         // append 2 byte CRC value.
-        blockCRCval = crcCalculator.getCRC16CCITTValue(block, 3, 1026);
+        if(packetData != null) {
+            blockCRCval = crcCalculator.getCRC16CCITTValue(packetData, 0, 1023);
+        }else {
+            blockCRCval = crcCalculator.getCRC16CCITTValue(block, 3, 1026);
+        }
         block[1027] = (byte) (blockCRCval >>> 8); // CRC high byte
         block[1028] = (byte) blockCRCval;         // CRC low byte
     }
 
+    /* 
+     * Sends current data block. If its data bytes are in mapped file, header, data and CRC are 
+     * given to serial port as one gathered write, otherwise block array is sent as is.
+     * 
+     * @throws SerialComException if any I/O error occurs.
+     */
+    private void sendBlock() throws SerialComException {
+        if(packetData == null) {
+            scm.writeBytes(handle, block, 0);
+            return;
+        }
+        packet[0].position(0);
+        packetData.rewind();
+        packet[1] = packetData;
+        packet[2].position(1027);
+        link.write(packet);
+    }
+
     /**
      * <p>Represents actions to execute in state machine to implement xmodem-1k 
      * protocol for receiving files.</p>
@@ -788,6 +817,7 @@ public final class SerialComXModem1K {
         /* The data bytes get flushed automatically to file system physically whenever BufferedOutputStream's internal
 		   buffer gets full and request to write more bytes have arrived. */
         outStream = new BufferedOutputStream(new FileOutputStream(fileToProcess));
+        link = new SerialComFTPLink(scm, handle);
         isFileOpen = true;
 
         // Clear receive buffer before start.
@@ -833,14 +863,14 @@ public final class SerialComXModem1K {
                         return false;
                     }
 
-                    // let the data arrive from other end, also minimize JNI transitions.
-                    try {
-                        Thread.sleep(delayVal);
-                    } catch (InterruptedException e) {
-                    }
-
+                    // wait for complete block (or its remaining part), returns as soon as it arrives or a control
+                    // character is received instead of a block.
                     try {
-                        data = scm.readBytes(handle, 1029);
+                        if(partialReadInProgress == true) {
+                            data = link.readBytes(k - bufferIndex, delayVal);
+                        }else {
+                            data = link.readBlock(133, 1029, delayVal);
+                        }
                     } catch (SerialComException exp) {
                         outStream.close();
                         throw exp;
@@ -849,7 +879,7 @@ public final class SerialComXModem1K {
                     if((data != null) && (data.length > 0)) {
                         firstBlock = false;
 
-                        if(data[0] == CAN) {
+                        if((partialReadInProgress == false) && (data[0] == CAN)) {
                             if(lastCharacterReceivedWasCAN == true) {
                                 // (case 2) received 2nd consecutive CAN means sender wish to abort file transfer.
                                 try {
@@ -881,7 +911,7 @@ public final class SerialComXModem1K {
                                 // this is 1st CAN character, wait to check next character; whether it is CAN or not.
                                 lastCharacterReceivedWasCAN = true;
                             }
-                        }else if(data[0] == EOT) {
+                        }else if((partialReadInProgress == false) && (data[0] == EOT)) {
                             if(lastCharacterReceivedWasCAN == true) {
                                 // EOT after CAN was not expected, probably line has noise; abort transfer.
                                 errMsg = "Invalid data sequence (<CAN> <EOT>) received from file sender !";
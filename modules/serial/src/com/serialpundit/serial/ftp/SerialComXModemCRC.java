@@ -19,6 +19,7 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import com.serialpundit.core.util.SerialComCRCUtil;
 import com.serialpundit.core.SerialComPlatform;
@@ -83,6 +84,10 @@ public final class SerialComXModemCRC {
     private boolean lastCharacterReceivedWasCAN = false;
     private final byte ABORT_CMD[] = new byte[] { CAN, CAN, CAN, CAN, CAN, BS, BS, BS, BS, BS };
     private final SerialComCRCUtil crcCalculator = new SerialComCRCUtil();
+    private SerialComFTPLink link;
+    private ByteBuffer mappedFile;  // binary mode file mapped into memory, null if read as stream
+    private ByteBuffer packetData;  // data bytes of current block when taken straight from mappedFile
+    private final ByteBuffer[] packet = new ByteBuffer[] { ByteBuffer.wrap(block, 0, 3), null, ByteBuffer.wrap(block, 131, 2) };
 
     /**
      * <p>Allocates a new SerialComXModemCRC object with given details and associate it with the given 
@@ -142,7 +147,9 @@ public final class SerialComXModemCRC {
         int percentOfBlocksSent = 0;
 
         long lengthOfFileToSend = fileToProcess.length();
+        mappedFile = (textMode == true) ? null : SerialComFTPLink.mapFile(fileToProcess);
         inStream = new BufferedInputStream(new FileInputStream(fileToProcess));
+        link = new SerialComFTPLink(scm, handle);
 
         state = CONNECT;
         while(true) {
@@ -152,15 +159,16 @@ public final class SerialComXModemCRC {
                 responseWaitTimeOut = System.currentTimeMillis() + 60000;
                 while(cReceived != true) {
                     try {
-                        data = scm.readBytes(handle, 1024);
+                        data = link.readBytes(1, 100);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
                     }
                     if((data != null) && (data.length > 0)) {
-                        /* Instead of purging receive buffer and then waiting for C, receive all data because
-                         * this approach might be faster. The other side might have opened first time and may 
-                         * have flushed garbage data. So receive buffer may contain garbage + C character. */
+                        /* The other side might have opened first time and may have flushed garbage data. It also
+                         * keeps sending C until first block arrives. So receive buffer may contain garbage + one or
+                         * more C characters. Once C is found, rest of the received data is purged so that extra C
+                         * characters are not taken as reply to first block. */
                         for(int x=0; x < data.length; x++) {
                             if(data[x] == C) {
                                 cReceived = true;
@@ -168,11 +176,15 @@ public final class SerialComXModemCRC {
                                 break;
                             }
                         }
-                    }else {
-                        try {
-                            Thread.sleep(100); // delay before next attempt to check C character reception.
-                        } catch (InterruptedException e) {
+                        if(cReceived == true) {
+                            try {
+                                link.purge();
+                            } catch (SerialComException exp) {
+                                inStream.close();
+                                throw exp;
+                            }
                         }
+                    }else {
                         // abort if timed-out while waiting for C character.
                         if((cReceived != true) && (System.currentTimeMillis() >= responseWaitTimeOut)) {
                             errMsg = "Timedout while waiting for file receiver to initiate connection setup !";
@@ -201,7 +213,7 @@ public final class SerialComXModemCRC {
                 }
 
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -216,7 +228,7 @@ public final class SerialComXModemCRC {
                     break;
                 }
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -235,19 +247,9 @@ public final class SerialComXModemCRC {
                         return false;
                     }
 
-                    // delay before next attempt to read from serial port.
-                    try {
-                        if(noMoreData != true) {
-                            Thread.sleep(120);
-                        }else {
-                            Thread.sleep(1500);
-                        }
-                    } catch (InterruptedException e) {
-                    }
-
-                    // try to read data from serial port.
+                    // wait for reply from serial port, returns as soon as it arrives.
                     try {
-                        data = scm.readBytes(handle, 1);
+                        data = link.readBytes(1, (noMoreData != true) ? 120 : 1500);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
@@ -289,17 +291,6 @@ public final class SerialComXModemCRC {
                             retryCount++;
                             state = RESEND;
                         }else if(data[0] == CAN) {
-                            if(data.length >= 2) {
-                                if(data[1] == CAN) {
-                                    errMsg = "Received abort command from file receiving end !";
-                                    state = ABORT;
-                                    break;
-                                }else {
-                                    // probably it is noise, so re-send block.
-                                    retryCount++;
-                                    state = RESEND;
-                                }
-                            }
                             if(lastCharacterReceivedWasCAN == true) {
                                 errMsg = "Received abort command from file receiving end !";
                                 state = ABORT;
@@ -356,7 +347,7 @@ public final class SerialComXModemCRC {
 
                 // reaching here means there is data to be sent to receiver.
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -442,6 +433,7 @@ public final class SerialComXModemCRC {
         block[0] = SOH;
         block[1] = (byte) blockNumber;
         block[2] = (byte) ~blockNumber;
+        packetData = null;
 
         if(textMode == true) {
             /* file is to be send as a text file. */
@@ -733,8 +725,23 @@ public final class SerialComXModemCRC {
         }else {
             /* file is to be send as a binary file. */
 
-            // read data from the file to be sent.
-            numBytesRead = inStream.read(block, 3, 128);
+            if(mappedFile != null) {
+                if(mappedFile.remaining() >= 128) {
+                    // full block, data bytes are sent directly from mapped file without copying.
+                    packetData = mappedFile.slice();
+                    packetData.limit(128);
+                    mappedFile.position(mappedFile.position() + 128);
+                    numBytesRead = 128;
+                }else if(mappedFile.hasRemaining()) {
+                    numBytesRead = mappedFile.remaining();
+                    mappedFile.get(block, 3, numBytesRead);
+                }else {
+                    numBytesRead = -1;
+                }
+            }else {
+                // read data from the file to be sent.
+                numBytesRead = inStream.read(block, 3, 128);
+            }
             if(numBytesRead == 128) {
             }else if(numBytesRead > 0) {
                 // assembling last block with padding.
@@ -749,11 +756,33 @@ public final class SerialComXModemCRC {
         }
 
         // append 2 byte CRC value.
-        blockCRCval = crcCalculator.getCRC16CCITTValue(block, 3, 130);
+        if(packetData != null) {
+            blockCRCval = crcCalculator.getCRC16CCITTValue(packetData, 0, 127);
+        }else {
+            blockCRCval = crcCalculator.getCRC16CCITTValue(block, 3, 130);
+        }
         block[131] = (byte) (blockCRCval >>> 8); // CRC high byte
         block[132] = (byte) blockCRCval;         // CRC low byte
     }
 
+    /* 
+     * Sends current data block. If its data bytes are in mapped file, header, data and CRC are 
+     * given to serial port as one gathered write, otherwise block array is sent as is.
+     * 
+     * @throws SerialComException if any I/O error occurs.
+     */
+    private void sendBlock() throws SerialComException {
+        if(packetData == null) {
+            scm.writeBytes(handle, block, 0);
+            return;
+        }
+        packet[0].position(0);
+        packetData.rewind();
+        packet[1] = packetData;
+        packet[2].position(131);
+        link.write(packet);
+    }
+
     /**
      * <p>Represents actions to execute in state machine to implement 
      * xmodem-crc protocol for receiving files.</p>
@@ -793,6 +822,7 @@ public final class SerialComXModemCRC {
         /* The data bytes get flushed automatically to file system physically whenever BufferedOutputStream's
 		   internal buffer gets full and request to write more bytes have arrived. */
         outStream = new BufferedOutputStream(new FileOutputStream(fileToProcess));
+        link = new SerialComFTPLink(scm, handle);
         isFileOpen = true;
 
         // Clear receive buffer before start.
@@ -839,14 +869,14 @@ public final class SerialComXModemCRC {
                         return false;
                     }
 
-                    // let the data arrive from other end, also minimize JNI transitions.
-                    try {
-                        Thread.sleep(delayVal);
-                    } catch (InterruptedException e) {
-                    }
-
+                    // wait for complete block (or its remaining part), returns as soon as it arrives or a control
+                    // character is received instead of a block.
                     try {
-                        data = scm.readBytes(handle, 133);
+                        if(partialReadInProgress == true) {
+                            data = link.readBytes(133 - bufferIndex, delayVal);
+                        }else {
+                            data = link.readBlock(133, 133, delayVal);
+                        }
                     } catch (SerialComException exp) {
                         outStream.close();
                         throw exp;
@@ -855,7 +885,7 @@ public final class SerialComXModemCRC {
                     if((data != null) && (data.length > 0)) {
                         firstBlock = false;
 
-                        if(data[0] == CAN) {
+                        if((partialReadInProgress == false) && (data[0] == CAN)) {
                             if(lastCharacterReceivedWasCAN == true) {
                                 // received 2nd consecutive CAN means sender wish to abort file transfer.
                                 try {
@@ -887,7 +917,7 @@ public final class SerialComXModemCRC {
                                 // this is 1st CAN character, wait to check next character; whether it is CAN or not.
                                 lastCharacterReceivedWasCAN = true;
                             }
-                        }else if(data[0] == EOT) {
+                        }else if((partialReadInProgress == false) && (data[0] == EOT)) {
                             if(lastCharacterReceivedWasCAN == true) {
                                 // EOT after CAN was not expected, probably line has noise; abort transfer.
                                 errMsg = "Invalid data sequence (<CAN> <EOT>) received from file sender !";
@@ -20,6 +20,7 @@ import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import com.serialpundit.core.util.SerialComCRCUtil;
 import com.serialpundit.core.SerialComPlatform;
@@ -89,6 +90,10 @@ public final class SerialComYModem1K {
     private int currentlyProcessingFilenumber = 0;
     private final byte ABORT_CMD[] = new byte[] { CAN, CAN, CAN, CAN, CAN, BS, BS, BS, BS, BS };
     private final SerialComCRCUtil crcCalculator = new SerialComCRCUtil();
+    private SerialComFTPLink link;
+    private ByteBuffer mappedFile;  // binary mode file mapped into memory, null if read as stream
+    private ByteBuffer packetData;  // data bytes of current block when taken straight from mappedFile
+    private final ByteBuffer[] packet = new ByteBuffer[] { ByteBuffer.wrap(block, 0, 3), null, ByteBuffer.wrap(block, 1027, 2) };
 
     /**
      * <p>Allocates a new SerialComYModem1K object with given details and associate it with the given 
@@ -184,7 +189,9 @@ public final class SerialComYModem1K {
 
         currentlySendingFileName = filesToSend[currentlyProcessingFilenumber].getName();
         lengthOfFileToSend = filesToSend[currentlyProcessingFilenumber].length();
+        mappedFile = (textMode == true) ? null : SerialComFTPLink.mapFile(filesToSend[currentlyProcessingFilenumber]);
         inStream = new BufferedInputStream(new FileInputStream(filesToSend[currentlyProcessingFilenumber]));
+        link = new SerialComFTPLink(scm, handle);
 
         state = CONNECT;
         while(true) {
@@ -195,15 +202,16 @@ public final class SerialComYModem1K {
                 responseWaitTimeOut = System.currentTimeMillis() + 60000;
                 while(cReceived != true) {
                     try {
-                        data = scm.readBytes(handle, 1024);
+                        data = link.readBytes(1, 100);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
                     }
                     if((data != null) && (data.length > 0)) {
-                        /* Instead of purging receive buffer and then waiting for C, receive all data because
-                         * this approach might be faster. The other side might have opened first time and may 
-                         * have flushed garbage data. So receive buffer may contain garbage + C character. */
+                        /* The other side might have opened first time and may have flushed garbage data. It also
+                         * keeps sending C until first block arrives. So receive buffer may contain garbage + one or
+                         * more C characters. Once C is found, rest of the received data is purged so that extra C
+                         * characters are not taken as reply to first block. */
                         for(int x=0; x < data.length; x++) {
                             if(data[x] == C) {
                                 cReceived = true;
@@ -215,11 +223,15 @@ public final class SerialComYModem1K {
                                 break;
                             }
                         }
-                    }else {
-                        try {
-                            Thread.sleep(100); // delay before next attempt to check C character reception.
-                        } catch (InterruptedException e) {
+                        if(cReceived == true) {
+                            try {
+                                link.purge();
+                            } catch (SerialComException exp) {
+                                inStream.close();
+                                throw exp;
+                            }
                         }
+                    }else {
                         // abort if timed-out while waiting for C character.
                         if((cReceived != true) && (System.currentTimeMillis() >= responseWaitTimeOut)) {
                             errMsg = "Timedout while waiting for file receiver to initiate connection setup !";
@@ -268,7 +280,7 @@ public final class SerialComYModem1K {
                 }
 
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -284,7 +296,7 @@ public final class SerialComYModem1K {
                     break;
                 }
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -304,21 +316,10 @@ public final class SerialComYModem1K {
                         return false;
                     }
 
-                    // delay before next attempt to read from serial port
+                    // wait for reply from serial port, returns as soon as it arrives. After EOT, remote end may take
+                    // some time to close file resources before acknowledging.
                     try {
-                        if(noMoreData != true) {
-                            Thread.sleep(120);
-                        }else {
-                            // give sufficient time to remote end to close file resources and be able to 
-                            // acknowledge us happily.
-                            Thread.sleep(250);
-                        }
-                    } catch (InterruptedException e) {
-                    }
-
-                    // try to read data from serial port
-                    try {
-                        data = scm.readBytes(handle, 1);
+                        data = link.readBytes(1, (noMoreData != true) ? 120 : 250);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
@@ -377,22 +378,6 @@ public final class SerialComYModem1K {
                                 state = BLOCK0SEND;
                             }
                         }else if(data[0] == CAN) {
-                            if(data.length >= 2) {
-                                if(data[1] == CAN) {
-                                    errMsg = "Received abort command from file receiving end !";
-                                    state = ABORT;
-                                    break;
-                                }else {
-                                    // probably it is noise, so re-send block.
-                                    if(waitForBlock0ACK != true) {
-                                        retryCount++;
-                                        state = RESEND;
-                                    }else {
-                                        retryCount++;
-                                        state = BLOCK0SEND;
-                                    }
-                                }
-                            }
                             if(lastCharacterReceivedWasCAN == true) {
                                 errMsg = "Received abort command from file receiving end !";
                                 state = ABORT;
@@ -438,6 +423,7 @@ public final class SerialComYModem1K {
 
                                 // send next file, reset all stuff
                                 lengthOfFileToSend = filesToSend[currentlyProcessingFilenumber].length();
+                                mappedFile = (textMode == true) ? null : SerialComFTPLink.mapFile(filesToSend[currentlyProcessingFilenumber]);
                                 inStream = new BufferedInputStream(new FileInputStream(filesToSend[currentlyProcessingFilenumber]));
                                 cReceived = false;
                                 eotAckReceptionTimerInitialized = false;
@@ -507,7 +493,7 @@ public final class SerialComYModem1K {
 
                 // reaching here means there is data to be sent to receiver.
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -721,6 +707,7 @@ public final class SerialComYModem1K {
         block[0] = STX;
         block[1] = (byte) blockNumber;
         block[2] = (byte) ~blockNumber;
+        packetData = null;
 
         if(textMode == true) {
             /* file is to be send as a text file. */
@@ -1012,8 +999,23 @@ public final class SerialComYModem1K {
         }else {
             /* file is to be send as a binary file. */
 
-            // read data from the file to be sent.
-            numBytesRead = inStream.read(block, 3, 1024);
+            if(mappedFile != null) {
+                if(mappedFile.remaining() >= 1024) {
+                    // full block, data bytes are sent directly from mapped file without copying.
+                    packetData = mappedFile.slice();
+                    packetData.limit(1024);
+                    mappedFile.position(mappedFile.position() + 1024);
+                    numBytesRead = 1024;
+                }else if(mappedFile.hasRemaining()) {
+                    numBytesRead = mappedFile.remaining();
+                    mappedFile.get(block, 3, numBytesRead);
+                }else {
+                    numBytesRead = -1;
+                }
+            }else {
+                // read data from the file to be sent.
+                numBytesRead = inStream.read(block, 3, 1024);
+            }
             if(numBytesRead == 1024) {
             }else if(numBytesRead > 0) {
                 // assembling last block with padding.
@@ -1028,11 +1030,33 @@ public final class SerialComYModem1K {
         }
 
         // append 2 byte CRC value.
-        blockCRCval = crcCalculator.getCRC16CCITTValue(block, 3, 1026);
+        if(packetData != null) {
+            blockCRCval = crcCalculator.getCRC16CCITTValue(packetData, 0, 1023);
+        }else {
+            blockCRCval = crcCalculator.getCRC16CCITTValue(block, 3, 1026);
+        }
         block[1027] = (byte) (blockCRCval >>> 8); // CRC high byte
         block[1028] = (byte) blockCRCval;         // CRC low byte
     }
 
+    /* 
+     * Sends current data block. If its data bytes are in mapped file, header, data and CRC are 
+     * given to serial port as one gathered write, otherwise block array is sent as is.
+     * 
+     * @throws SerialComException if any I/O error occurs.
+     */
+    private void sendBlock() throws SerialComException {
+        if(packetData == null) {
+            scm.writeBytes(handle, block, 0);
+            return;
+        }
+        packet[0].position(0);
+        packetData.rewind();
+        packet[1] = packetData;
+        packet[2].position(1027);
+        link.write(packet);
+    }
+
     /**
      * <p>Represents actions to execute in state machine to implement ymodem-1k protocol for 
      * receiving files.</p>
@@ -1085,6 +1109,7 @@ public final class SerialComYModem1K {
             outStream.close();
             throw exp;
         }
+        link = new SerialComFTPLink(scm, handle);
 
         state = CONNECT; // entry point to state machine.
         while(true) {
@@ -1107,11 +1132,7 @@ public final class SerialComYModem1K {
                         throw e;
                     }
                     try {
-                        Thread.sleep(300);
-                    } catch (InterruptedException e) {
-                    }
-                    try {
-                        data = scm.readBytes(handle, 133);
+                        data = link.readBlock(133, 1029, 300);
                     } catch (IOException e) {
                         throw e;
                     }
@@ -1162,11 +1183,7 @@ public final class SerialComYModem1K {
                                 throw e;
                             }
                             try {
-                                Thread.sleep(300);
-                            } catch (InterruptedException e) {
-                            }
-                            try {
-                                data = scm.readBytes(handle, 133);
+                                data = link.readBlock(133, 1029, 300);
                             } catch (IOException e) {
                                 throw e;
                             }
@@ -1191,13 +1208,8 @@ public final class SerialComYModem1K {
                             scm.writeBytes(handle, ABORT_CMD, 0);
                             return false;
                         }
-                        // let the data arrive from other end, also minimize JNI transitions.
-                        try {
-                            Thread.sleep(100);
-                        } catch (InterruptedException e) {
-                        }
                         try {
-                            data = scm.readBytes(handle, spaceLeftInBlock0);
+                            data = link.readBytes(spaceLeftInBlock0, 100);
                         } catch (IOException e) {
                             throw e;
                         }
@@ -1326,11 +1338,7 @@ public final class SerialComYModem1K {
                 i = 0;
                 while(true) {
                     try {
-                        Thread.sleep(200);
-                    } catch (InterruptedException e) {
-                    }
-                    try {
-                        data = scm.readBytes(handle, 1);
+                        data = link.readBytes(1, 200);
                     } catch (IOException e) {
                         throw e;
                     }
@@ -1382,20 +1390,15 @@ public final class SerialComYModem1K {
                 }
 
                 data = null; // reset
-                for(i = 0; i < 10; i++) {
+                for(i = 0; (state == VERIFY) && (i < 10); i++) {
                     // check if application (file receiver) wish to cancel receiving file.
                     if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
                         outStream.close();
                         scm.writeBytes(handle, ABORT_CMD, 0);
                         return false;
                     }
-                    // let the data arrive from other end, also minimize JNI transitions.
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                    }
                     try {
-                        data = scm.readBytes(handle, spaceLeftInDataBlock);
+                        data = link.readBytes(spaceLeftInDataBlock, 100);
                     } catch (IOException e) {
                         throw e;
                     }
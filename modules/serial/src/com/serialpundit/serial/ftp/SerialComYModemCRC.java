@@ -20,6 +20,7 @@ import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import com.serialpundit.core.util.SerialComCRCUtil;
 import com.serialpundit.core.SerialComPlatform;
@@ -89,6 +90,10 @@ public final class SerialComYModemCRC {
     private int currentlyProcessingFilenumber = 0;
     private final byte ABORT_CMD[] = new byte[] { CAN, CAN, CAN, CAN, CAN, BS, BS, BS, BS, BS };
     private final SerialComCRCUtil crcCalculator = new SerialComCRCUtil();
+    private SerialComFTPLink link;
+    private ByteBuffer mappedFile;  // binary mode file mapped into memory, null if read as stream
+    private ByteBuffer packetData;  // data bytes of current block when taken straight from mappedFile
+    private final ByteBuffer[] packet = new ByteBuffer[] { ByteBuffer.wrap(block, 0, 3), null, ByteBuffer.wrap(block, 131, 2) };
 
     /**
      * <p>Allocates a new SerialComYModemCRC object with given details and associate it with the given 
@@ -184,7 +189,9 @@ public final class SerialComYModemCRC {
 
         currentlySendingFileName = filesToSend[currentlyProcessingFilenumber].getName();
         lengthOfFileToSend = filesToSend[currentlyProcessingFilenumber].length();
+        mappedFile = (textMode == true) ? null : SerialComFTPLink.mapFile(filesToSend[currentlyProcessingFilenumber]);
         inStream = new BufferedInputStream(new FileInputStream(filesToSend[currentlyProcessingFilenumber]));
+        link = new SerialComFTPLink(scm, handle);
 
         state = CONNECT;
         while(true) {
@@ -195,15 +202,16 @@ public final class SerialComYModemCRC {
                 responseWaitTimeOut = System.currentTimeMillis() + 60000;
                 while(cReceived != true) {
                     try {
-                        data = scm.readBytes(handle, 1024);
+                        data = link.readBytes(1, 100);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
                     }
                     if((data != null) && (data.length > 0)) {
-                        /* Instead of purging receive buffer and then waiting for C, receive all data because
-                         * this approach might be faster. The other side might have opened first time and may 
-                         * have flushed garbage data. So receive buffer may contain garbage + C character. */
+                        /* The other side might have opened first time and may have flushed garbage data. It also
+                         * keeps sending C until first block arrives. So receive buffer may contain garbage + one or
+                         * more C characters. Once C is found, rest of the received data is purged so that extra C
+                         * characters are not taken as reply to first block. */
                         for(int x=0; x < data.length; x++) {
                             if(data[x] == C) {
                                 cReceived = true;
@@ -215,11 +223,15 @@ public final class SerialComYModemCRC {
                                 break;
                             }
                         }
-                    }else {
-                        try {
-                            Thread.sleep(100); // delay before next attempt to check C character reception.
-                        } catch (InterruptedException e) {
+                        if(cReceived == true) {
+                            try {
+                                link.purge();
+                            } catch (SerialComException exp) {
+                                inStream.close();
+                                throw exp;
+                            }
                         }
+                    }else {
                         // abort if timed-out while waiting for C character.
                         if((cReceived != true) && (System.currentTimeMillis() >= responseWaitTimeOut)) {
                             errMsg = "Timedout while waiting for file receiver to initiate connection setup !";
@@ -266,7 +278,7 @@ public final class SerialComYModemCRC {
                 }
 
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -282,7 +294,7 @@ public final class SerialComYModemCRC {
                     break;
                 }
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -302,21 +314,10 @@ public final class SerialComYModemCRC {
                         return false;
                     }
 
-                    // delay before next attempt to read from serial port
+                    // wait for reply from serial port, returns as soon as it arrives. After EOT, remote end may take
+                    // some time to close file resources before acknowledging.
                     try {
-                        if(noMoreData != true) {
-                            Thread.sleep(120);
-                        }else {
-                            // give sufficient time to remote end to close file resources and be able to 
-                            // acknowledge us happily.
-                            Thread.sleep(250);
-                        }
-                    } catch (InterruptedException e) {
-                    }
-
-                    // try to read data from serial port
-                    try {
-                        data = scm.readBytes(handle, 1);
+                        data = link.readBytes(1, (noMoreData != true) ? 120 : 250);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
@@ -375,22 +376,6 @@ public final class SerialComYModemCRC {
                                 state = BLOCK0SEND;
                             }
                         }else if(data[0] == CAN) {
-                            if(data.length >= 2) {
-                                if(data[1] == CAN) {
-                                    errMsg = "Received abort command from file receiving end !";
-                                    state = ABORT;
-                                    break;
-                                }else {
-                                    // probably it is noise, so re-send block.
-                                    if(waitForBlock0ACK != true) {
-                                        retryCount++;
-                                        state = RESEND;
-                                    }else {
-                                        retryCount++;
-                                        state = BLOCK0SEND;
-                                    }
-                                }
-                            }
                             if(lastCharacterReceivedWasCAN == true) {
                                 errMsg = "Received abort command from file receiving end !";
                                 state = ABORT;
@@ -436,6 +421,7 @@ public final class SerialComYModemCRC {
 
                                 // send next file, reset all stuff
                                 lengthOfFileToSend = filesToSend[currentlyProcessingFilenumber].length();
+                                mappedFile = (textMode == true) ? null : SerialComFTPLink.mapFile(filesToSend[currentlyProcessingFilenumber]);
                                 inStream = new BufferedInputStream(new FileInputStream(filesToSend[currentlyProcessingFilenumber]));
                                 cReceived = false;
                                 eotAckReceptionTimerInitialized = false;
@@ -506,7 +492,7 @@ public final class SerialComYModemCRC {
 
                 // reaching here means there is data to be sent to receiver.
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -720,6 +706,7 @@ public final class SerialComYModemCRC {
         block[0] = SOH;
         block[1] = (byte) blockNumber;
         block[2] = (byte) ~blockNumber;
+        packetData = null;
 
         if(textMode == true) {
             /* file is to be send as a text file. */
@@ -1011,8 +998,23 @@ public final class SerialComYModemCRC {
         }else {
             /* file is to be send as a binary file. */
 
-            // read data from the file to be sent.
-            numBytesRead = inStream.read(block, 3, 128);
+            if(mappedFile != null) {
+                if(mappedFile.remaining() >= 128) {
+                    // full block, data bytes are sent directly from mapped file without copying.
+                    packetData = mappedFile.slice();
+                    packetData.limit(128);
+                    mappedFile.position(mappedFile.position() + 128);
+                    numBytesRead = 128;
+                }else if(mappedFile.hasRemaining()) {
+                    numBytesRead = mappedFile.remaining();
+                    mappedFile.get(block, 3, numBytesRead);
+                }else {
+                    numBytesRead = -1;
+                }
+            }else {
+                // read data from the file to be sent.
+                numBytesRead = inStream.read(block, 3, 128);
+            }
             if(numBytesRead == 128) {
             }else if(numBytesRead > 0) {
                 // assembling last block with padding.
@@ -1027,11 +1029,33 @@ public final class SerialComYModemCRC {
         }
 
         // append 2 byte CRC value.
-        blockCRCval = crcCalculator.getCRC16CCITTValue(block, 3, 130);
+        if(packetData != null) {
+            blockCRCval = crcCalculator.getCRC16CCITTValue(packetData, 0, 127);
+        }else {
+            blockCRCval = crcCalculator.getCRC16CCITTValue(block, 3, 130);
+        }
         block[131] = (byte) (blockCRCval >>> 8); // CRC high byte
         block[132] = (byte) blockCRCval;         // CRC low byte
     }
 
+    /* 
+     * Sends current data block. If its data bytes are in mapped file, header, data and CRC are 
+     * given to serial port as one gathered write, otherwise block array is sent as is.
+     * 
+     * @throws SerialComException if any I/O error occurs.
+     */
+    private void sendBlock() throws SerialComException {
+        if(packetData == null) {
+            scm.writeBytes(handle, block, 0);
+            return;
+        }
+        packet[0].position(0);
+        packetData.rewind();
+        packet[1] = packetData;
+        packet[2].position(131);
+        link.write(packet);
+    }
+
     /**
      * <p>Represents actions to execute in state machine to implement 
      * ymodem-crc protocol for receiving files.</p>
@@ -1084,6 +1108,7 @@ public final class SerialComYModemCRC {
             outStream.close();
             throw exp;
         }
+        link = new SerialComFTPLink(scm, handle);
 
         state = CONNECT; // entry point to state machine.
         while(true) {
@@ -1106,11 +1131,7 @@ public final class SerialComYModemCRC {
                         throw e;
                     }
                     try {
-                        Thread.sleep(300);
-                    } catch (InterruptedException e) {
-                    }
-                    try {
-                        data = scm.readBytes(handle, 133);
+                        data = link.readBlock(133, 1029, 300);
                     } catch (IOException e) {
                         throw e;
                     }
@@ -1161,11 +1182,7 @@ public final class SerialComYModemCRC {
                                 throw e;
                             }
                             try {
-                                Thread.sleep(300);
-                            } catch (InterruptedException e) {
-                            }
-                            try {
-                                data = scm.readBytes(handle, 133);
+                                data = link.readBlock(133, 1029, 300);
                             } catch (IOException e) {
                                 throw e;
                             }
@@ -1190,13 +1207,8 @@ public final class SerialComYModemCRC {
                             scm.writeBytes(handle, ABORT_CMD, 0);
                             return false;
                         }
-                        // let the data arrive from other end, also minimize JNI transitions.
-                        try {
-                            Thread.sleep(100);
-                        } catch (InterruptedException e) {
-                        }
                         try {
-                            data = scm.readBytes(handle, spaceLeftInBlock0);
+                            data = link.readBytes(spaceLeftInBlock0, 100);
                         } catch (IOException e) {
                             throw e;
                         }
@@ -1329,13 +1341,13 @@ public final class SerialComYModemCRC {
                         scm.writeBytes(handle, ABORT_CMD, 0);
                         return false;
                     }
-                    // let the data arrive from other end, also minimize JNI transitions.
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                    }
+                    // wait for block, returns as soon as it is received completely or EOT/CAN is received instead.
                     try {
-                        data = scm.readBytes(handle, spaceLeftInDataBlock);
+                        if(dataBlockIndex == 0) {
+                            data = link.readBlock(133, 133, 100);
+                        }else {
+                            data = link.readBytes(spaceLeftInDataBlock, 100);
+                        }
                     } catch (IOException e) {
                         throw e;
                     }
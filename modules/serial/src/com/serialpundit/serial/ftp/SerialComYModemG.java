@@ -17,16 +17,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
-import com.serialpundit.core.util.RingArrayBlockingQueue;
 import com.serialpundit.core.util.SerialComCRCUtil;
 import com.serialpundit.core.SerialComPlatform;
 import com.serialpundit.core.SerialComTimeOutException;
@@ -102,599 +101,16 @@ public final class SerialComYModemG {
     private int currentlyProcessingFilenumber = 0;
     private final byte ABORT_CMD[] = new byte[] { CAN, CAN, CAN, CAN, CAN, BS, BS, BS, BS, BS };
     private final SerialComCRCUtil crcCalculator = new SerialComCRCUtil();
-
-    /* This thread inner class read data from serial port and insert in queue. This should read as soon 
-     * as data comes to make sure that serial port buffers does not get full. The data collector and data 
-     * processor threads can make each other terminate. */
-    private class DataCollector implements Callable<Object> {
-
-        private DataProcessor dataProcessor;
-        private final RingArrayBlockingQueue<byte[]> dataQueue;
-        private volatile boolean exitThread = false;
-
-        public DataCollector(RingArrayBlockingQueue<byte[]> dataQueue) {
-            this.dataQueue = dataQueue;
-        }
-
-        @Override
-        public Object call() throws Exception {
-
-            byte[] data = null;
-
-            while(exitThread == false) {
-                try {
-                    data = scm.readBytes(handle, 1029);
-                } catch (Exception e) {
-                    dataProcessor.triggerExit();
-                    throw e;
-                }
-                if((data != null) && (data.length > 0)) {
-                    try {
-                        dataQueue.offer(data);
-                    } catch (Exception e) {
-                        dataProcessor.triggerExit();
-                        if(exitThread == true) {
-                            return null;
-                        }
-                        throw e;
-                    }
-                }
-                try {
-                    if(osType == SerialComPlatform.OS_LINUX || osType == SerialComPlatform.OS_MAC_OS_X) {
-                        Thread.sleep(50);
-                    }
-                } catch (InterruptedException e) {
-                    if(exitThread == true) {
-                        dataProcessor.triggerExit();
-                        return null;
-                    }
-                }              
-            }
-            return null;
-        }
-
-        public void triggerExit() {
-            exitThread = true;
-            Thread.currentThread().interrupt();
-        }
-
-        public void setDataProcessorRef(DataProcessor dataProcessor) {
-            this.dataProcessor = dataProcessor;
-        }
-    }
-
-    /* This thread inner class consumes data from queue, process it and writes data to file. */
-    private class DataProcessor implements Callable<Object> {
-
-        private DataCollector dataCollector;
-        private final RingArrayBlockingQueue<byte[]> dataQueue;
-        private final String receiverDirAbsolutePath = filesToReceive.getAbsolutePath();
-        private volatile boolean exitThread = false;
-
-        public DataProcessor(RingArrayBlockingQueue<byte[]> dataQueue) {
-            this.dataQueue = dataQueue;
-        }
-
-        @Override
-        public Object call() throws Exception {
-
-            // Finite state machine's states.
-            final int CONNECT       = 0x01;
-            final int BLOCK0RCV     = 0x02;
-            final int BEGINRCV      = 0x03;
-            final int DATABLOCKRCV  = 0x04;
-            final int VERIFY        = 0x05;
-            final int DUMPDATA      = 0x06;
-            final int ABORT         = 0x07;
-
-            int i = 0;
-            int x = 0;
-            int crcl = 0;
-            int state = 0;
-            int block0index = 0;
-            int dataBlockIndex = 0;
-            int blockCRCval = 0;
-            boolean receivingBlock0 = true;
-            boolean receivingDataBlock = false;
-            int spaceLeftInBlock0 = 0;
-            int spaceLeftInDataBlock = 0;
-            byte[] localData = null;
-            byte[] datablock = null;
-            byte[] block133 = new byte[133];
-            String nameOfFileBeingReceived = null;
-            boolean isFileOpen = false;
-            int percentOfBlocksReceived = 0;
-            long currentlyProcessingFileLength = 0;
-            long currentlyProcessingFileModifyInfo = 0;
-            long currentlyProcessingFileMode = 0;
-            long totalNumberOfDataBytesReadTillNow = 0;
-            Exception expt = null;
-            int totalBytesRcvWhileRcvBlock0 = 0;
-            int extraDataIdx = 0;
-            byte[] extraData = null;
-
-            state = CONNECT;
-            while(exitThread == false) {
-                switch(state) {
-
-                case CONNECT:
-
-                    try {
-                        scm.writeSingleByte(handle, G);
-                    } catch (Exception e) {
-                        expt = e;
-                        state = ABORT;
-                        break;
-                    }   
-                    while(true) {
-                        try {
-                            localData = dataQueue.poll(1, TimeUnit.MINUTES);
-                            if(localData == null) {
-                                expt = new SerialComTimeOutException("Timedout while trying to connect to file sender !");
-                                state = ABORT;
-                                break;
-                            }else {
-                                state = BLOCK0RCV;
-                                break;
-                            }
-                        } catch (InterruptedException e) {
-                            if(exitThread == true) {
-                                return null;
-                            }
-                        } catch (Exception e) {
-                            expt = e;
-                            state = ABORT;
-                            break;
-                        }   
-                    }
-                    break;
-
-                case BLOCK0RCV:
-
-                    totalBytesRcvWhileRcvBlock0 = totalBytesRcvWhileRcvBlock0 + localData.length;
-                    if(localData[0] == SOH) {
-                        block0 = block133;
-                        spaceLeftInBlock0 = 133;
-                        crcl = 131;
-                    }else if(localData[0] == STX) {
-                        block0 = block;
-                        spaceLeftInBlock0 = 1029;
-                        crcl = 1027;
-                    }else {
-                        expt = new SerialComException("Invalid character received !");
-                        state = ABORT;
-                        break;
-                    }
-                    while(true) {
-                        if(localData.length < spaceLeftInBlock0) {
-                            for(x=0; x < localData.length; x++) {
-                                block0[block0index] = localData[x];
-                                block0index++;
-                                spaceLeftInBlock0--;
-                            }
-                        }else if(localData.length == spaceLeftInBlock0) {
-                            for(x=0; x < localData.length; x++) {
-                                block0[block0index] = localData[x];
-                                block0index++;
-                                spaceLeftInBlock0--;
-                            }
-                        }else {
-                            i = spaceLeftInBlock0;
-                            for(x=0; x < i; x++) {
-                                block0[block0index] = localData[x];
-                                block0index++;
-                                spaceLeftInBlock0--;
-                            }
-                        }
-                        if(spaceLeftInBlock0 <= 0) {
-                            break;
-                        }
-                        try {
-                            localData = dataQueue.poll(2, TimeUnit.SECONDS);
-                            if(localData == null) {
-                                expt = new SerialComTimeOutException("Timedout while trying to receive block 0 from file sender !");
-                                state = ABORT;
-                                break;   
-                            }
-                        } catch (InterruptedException e) {
-                            if(exitThread == true) {
-                                state = ABORT;
-                                break;
-                            }
-                        } catch (Exception e) {
-                            expt = e;
-                            state = ABORT;
-                            break;
-                        }
-                        totalBytesRcvWhileRcvBlock0 = totalBytesRcvWhileRcvBlock0 + localData.length;
-                    }
-
-                    receivingBlock0 = true;
-                    receivingDataBlock = false;
-                    block0index = 0;                       // reset
-                    totalNumberOfDataBytesReadTillNow = 0; // reset
-                    state = VERIFY;
-                    break;
-
-                case BEGINRCV:
-
-                    try {
-                        scm.writeSingleByte(handle, G);
-                        receivingBlock0 = false;
-                        receivingDataBlock = true;                          
-                        datablock = null;
-                        dataBlockIndex = 0;
-                        state = DATABLOCKRCV;
-                    } catch (Exception e) {
-                        expt = e;
-                        state = ABORT;
-                    }
-                    break;
-
-                case DATABLOCKRCV:
-
-                    if(extraData != null) {
-                        // This is entered only when there was extra data from previous data block assembly.
-                        if(extraData[extraDataIdx] == SOH) {
-                            datablock = block133;
-                            spaceLeftInDataBlock = 133;
-                            crcl = 131;
-                        }else if(extraData[extraDataIdx] == STX) {
-                            datablock = block;
-                            spaceLeftInDataBlock = 1029;
-                            crcl = 1027;
-                        }else {
-                            expt = new SerialComException("Invalid character received !");
-                            state = ABORT;
-                            break;
-                        }
-                        if(spaceLeftInDataBlock > (extraData.length - extraDataIdx)) {
-                            dataBlockIndex = 0;
-                            for(x=0; x < (extraData.length - extraDataIdx); x++) {
-                                datablock[dataBlockIndex] = extraData[extraDataIdx];
-                                dataBlockIndex++;
-                                extraDataIdx++;
-                                spaceLeftInDataBlock--;
-                            }
-                            extraData = null;
-                            extraDataIdx = 0;
-                        }else if(spaceLeftInDataBlock < (extraData.length - extraDataIdx)) {
-                            for(x=0; x < spaceLeftInDataBlock; x++) {
-                                datablock[x] = extraData[extraDataIdx];
-                                extraDataIdx++;
-                            }
-                            receivingDataBlock = true;
-                            state = VERIFY;
-                        }else {
-                            for(x=0; x < (extraData.length - extraDataIdx); x++) {
-                                datablock[x] = extraData[extraDataIdx];
-                                extraDataIdx++;
-                                spaceLeftInDataBlock--;
-                            }
-                            extraData = null;
-                            extraDataIdx = 0;
-                            receivingDataBlock = true;
-                            state = VERIFY;
-                        }
-                    }
-                    else {
-                        // This is entered if there was no extra data or less extra data than the size of current data block.
-                        // This means that reading data at-least once is required.
-                        try {
-                            // blocks if there is no data in queue
-                            localData = dataQueue.take();
-                        } catch (InterruptedException e) {
-                            if(exitThread == true) {
-                                state = ABORT;
-                                break;
-                            }
-                        } catch (Exception e) {
-                            expt = e;
-                            state = ABORT;
-                            break;
-                        }
-                        if(datablock == null) {
-                            if(localData[0] == SOH) {
-                                datablock = block133;
-                                spaceLeftInDataBlock = 133;
-                                crcl = 131;
-                            }else if(localData[0] == STX) {
-                                datablock = block;
-                                spaceLeftInDataBlock = 1029;
-                                crcl = 1027;
-                            }else if(localData[0] == EOT) {
-                                try {
-                                    scm.writeSingleByte(handle, ACK);
-                                    receivingBlock0 = true;
-                                    receivingDataBlock = false;                          
-                                    datablock = null;
-                                    dataBlockIndex = 0;
-                                    numberOfBlocksReceived = 0;            // reset
-                                    totalNumberOfDataBytesReadTillNow = 0; // reset
-                                    state = CONNECT;
-                                    break;
-                                } catch (Exception e) {
-                                    expt = e;
-                                    state = ABORT;
-                                    break;
-                                }
-                            }else {
-                                expt = new SerialComException("Invalid character received !");
-                                state = ABORT;
-                                break;
-                            }
-                            dataBlockIndex = 0;
-                        }
-
-                        if(state == DATABLOCKRCV) {
-                            while(true) {
-                                if(spaceLeftInDataBlock > localData.length) {
-                                    for(x=0; x < localData.length; x++) {
-                                        datablock[dataBlockIndex] = localData[x];
-                                        dataBlockIndex++;
-                                        spaceLeftInDataBlock--;
-                                    }
-                                }else if(spaceLeftInDataBlock < localData.length) {
-                                    // extra data is there which will be consumed when assembling next block
-                                    for(x=0; x < spaceLeftInDataBlock; x++) {
-                                        datablock[dataBlockIndex] = localData[x];
-                                        dataBlockIndex++;
-                                    }
-                                    extraData = localData;
-                                    extraDataIdx = x;
-                                    state = VERIFY;
-                                    break;
-                                }else {
-                                    for(x=0; x < localData.length; x++) {
-                                        datablock[dataBlockIndex] = localData[x];
-                                        dataBlockIndex++;
-                                    }
-                                    state = VERIFY;
-                                    break;
-                                }
-                                try {
-                                    localData = dataQueue.take();
-                                } catch (InterruptedException e) {
-                                    if(exitThread == true) {
-                                        state = ABORT;
-                                        break;
-                                    }
-                                } catch (Exception e) {
-                                    expt = e;
-                                    state = ABORT;
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                    break;
-
-                case VERIFY:
-
-                    if(receivingDataBlock) {
-                        // check duplicate block.
-                        if(datablock[1] == 0) {
-                            expt = new SerialComException("Invalid block number received (block[1]=0) !");
-                            state = ABORT;
-                            break;
-                        }else if(datablock[1] == (byte)(((blockNumber - 1) & 0xFF))) {
-                            // ignore duplicate block
-                            state = DATABLOCKRCV;
-                            break;
-                        }else {
-                        }
-                        // verify block number sequence and block number itself
-                        if((datablock[1] != (byte) blockNumber) || (datablock[2] != (byte) ~blockNumber)) {
-                            expt = new SerialComException("Invalid block number sequence received !");
-                            state = ABORT;
-                            break;
-                        }
-                        // verify CRC value
-                        blockCRCval = crcCalculator.getCRC16CCITTValue(datablock, 3, (crcl - 1));
-                        if((datablock[crcl] != (byte)(blockCRCval >>> 8)) || (datablock[crcl + 1] != (byte)blockCRCval)) {
-                            expt = new SerialComException("Invalid CRC (corrupted data block received) !");
-                            state = ABORT;
-                            break;
-                        }
-                        state = DUMPDATA;
-                    }
-                    else if(receivingBlock0) {
-                        if((block0[1] != (byte)0x00) || (block0[2] != (byte)0xFF)) {
-                            expt = new SerialComException("Invalid block number received !");
-                            state = ABORT;
-                            break;
-                        }
-
-                        blockCRCval = crcCalculator.getCRC16CCITTValue(block0, 3, (crcl - 1));
-                        if((block0[crcl] != (byte)(blockCRCval >>> 8)) || (block0[crcl + 1] != (byte)blockCRCval)) {
-                            expt = new SerialComException("Invalid CRC (corrupted block 0 or final block received) !");
-                            state = ABORT;
-                            break;
-                        }
-
-                        // While we were expecting block 0 file information block, sender might indicate end of session 
-                        // as there are no more files to be sent, so check it. This thread will instruct data collector 
-                        // thread to terminate as well.
-                        if((block0[crcl] == (byte)0x00) && (block0[crcl + 1] == (byte)0x00)) {
-                            for(i=3; i < block0.length; i++) {
-                                if(block0[i] != (byte)0x00) {
-                                    break;
-                                }
-                            }
-                            if(i >= block0.length) {
-                                dataCollector.triggerExit();
-                                return null;
-                            }
-                        }
-
-                        blockNumber = 1;  // init data block number 
-                        state = DUMPDATA;
-                    }
-                    else {
-                    }
-                    break;
-
-                case DUMPDATA:
-
-                    if(receivingDataBlock == true) {
-                        totalNumberOfDataBytesReadTillNow = totalNumberOfDataBytesReadTillNow + (crcl - 3);
-                        try {
-                            if(textMode == true) {
-                                // for ASCII mode, parse and then flush.
-                                processAndWrite(datablock, (crcl - 3));
-                            }else {
-                                // for binary mode, just flush data as is to file physically.
-                                if(currentlyProcessingFileLength != 0) {
-                                    if(totalNumberOfDataBytesReadTillNow <= currentlyProcessingFileLength) {
-                                        outStream.write(datablock, 3, (crcl - 3));
-                                    }else {
-                                        outStream.write(datablock, 3, (int)((crcl - 3) - (totalNumberOfDataBytesReadTillNow - currentlyProcessingFileLength)));
-                                    }
-                                }else {
-                                    outStream.write(datablock, 3, (crcl - 3));
-                                }
-                            }
-                        }catch (Exception e) {
-                            expt = e;
-                            state = ABORT;
-                            break;
-                        }
-
-                        // update GUI that a block has been received if application has provided 
-                        // a listener for this purpose.
-                        if(progressListener != null) {
-                            numberOfBlocksReceived++;
-                            if(currentlyProcessingFileLength > 0) {
-                                percentOfBlocksReceived = (int) (((crcl - 3) * numberOfBlocksReceived * 100) / currentlyProcessingFileLength);
-                            }else {
-                                percentOfBlocksReceived = 100;
-                            }
-                            if(percentOfBlocksReceived >= 100) {
-                                percentOfBlocksReceived = 100;
-                            }
-                            progressListener.onYmodemReceiveProgressUpdate(nameOfFileBeingReceived, numberOfBlocksReceived, percentOfBlocksReceived);
-                        }
-
-                        // update block number to get next data block
-                        blockNumber++;
-                        if(blockNumber > 0xFF) {
-                            blockNumber = 0x00;
-                        }
-                        datablock = null;     // reset
-                        state = DATABLOCKRCV;
-                    }
-                    else if(receivingBlock0) {
-                        // file name:
-                        // The data bytes get flushed automatically to file system physically whenever 
-                        // BufferedOutputStream's internal buffer gets full and request to write more 
-                        // bytes have arrived.
-                        for(x=3; x < block0.length; x++) {
-                            if(block0[x] == '\0') {
-                                break;
-                            }
-                        }
-                        nameOfFileBeingReceived = new String(block0, 3, x-3);
-                        if((nameOfFileBeingReceived == null) || (nameOfFileBeingReceived.length() == 0)) {
-                            expt = new SerialComException("Sender did not sent file name !");
-                            state = ABORT;
-                            break;
-                        }
-                        File namefile = new File(receiverDirAbsolutePath, nameOfFileBeingReceived);
-                        if(!namefile.exists()) {
-                            try {
-                                namefile.createNewFile();
-                            } catch (Exception e) {
-                                expt = e;
-                                state = ABORT;
-                                break;
-                            }
-                        }
-                        try {
-                            outStream = new BufferedOutputStream(new FileOutputStream(namefile));
-                        } catch (FileNotFoundException e) {
-                            expt = e;
-                            state = ABORT;
-                            break;
-                        }
-                        isFileOpen = true;
-
-                        // file length (number of data bytes):
-                        x++;
-                        for(i=x; i < block0.length; i++) {
-                            if(block0[i] == SPACE) {
-                                break;
-                            }
-                        }
-                        currentlyProcessingFileLength = Long.valueOf(new String(block0, x, i - x)).longValue();
-
-                        // file modification info:
-                        i++;
-                        for(x=i; x < block0.length; x++) {
-                            if(block0[x] == SPACE) {
-                                break;
-                            }
-                        }
-                        currentlyProcessingFileModifyInfo = Long.valueOf(new String(block0, i, x - i), 8);
-                        if(currentlyProcessingFileModifyInfo != 0) {
-                            namefile.setLastModified(currentlyProcessingFileModifyInfo);
-                        }
-
-                        // file mode:
-                        x++;
-                        for(i=x; i < block0.length; i++) {
-                            if(block0[i] == SPACE) {
-                                break;
-                            }
-                        }
-                        currentlyProcessingFileMode = Long.valueOf(new String(block0, x, i - x), 8);
-                        if(currentlyProcessingFileMode != 0) {
-                            // our translation decision is based on text or binary mode.
-                        }
-
-                        try {
-                            scm.writeSingleByte(handle, G);
-                            receivingBlock0 = false;
-                            receivingDataBlock = true;                          
-                            datablock = null;
-                            dataBlockIndex = 0;
-                            state = DATABLOCKRCV;
-                        } catch (Exception e) {
-                            expt = e;
-                            state = ABORT;
-                        }
-                    }
-                    else {
-                    }
-                    break;
-
-                case ABORT:
-
-                    dataCollector.triggerExit();
-                    if(isFileOpen == true) {
-                        outStream.flush();
-                        outStream.close();
-                        isFileOpen = false;
-                    }
-                    if(expt != null) {
-                        throw expt;
-                    }else {
-                        return null;
-                    }
-                }
-            }
-
-            return null;
-        }
-
-        public void triggerExit() {
-            exitThread = true;
-            Thread.currentThread().interrupt();
-        }
-
-        public void setDataCollectorRef(DataCollector dataCollector) {
-            this.dataCollector = dataCollector;
-        }
-    }
+    private SerialComFTPLink link;
+    private ByteBuffer mappedFile;  // binary mode file mapped into memory, null if read as stream
+    private ByteBuffer packetData;  // data bytes of current block when taken straight from mappedFile
+    private final ByteBuffer[] packet = new ByteBuffer[] { ByteBuffer.wrap(block, 0, 3), null, ByteBuffer.wrap(block, 1027, 2) };
+    private final int RING_SLOTS = 8;              // data blocks which may be waiting to be written to file
+    private byte[][] ring;                         // reusable buffers in which data blocks are received
+    private ByteBuffer[] ringData;                 // data bytes of each ring buffer handed over to fileChannel
+    private Future<Integer>[] ringWrites;          // pending file write of each ring buffer
+    private long[] ringFileOffset;                 // file position corresponding to index 0 of each ring buffer
+    private AsynchronousFileChannel fileChannel;   // received binary file from remote to local system
 
     /**
      * <p>Allocates a new SerialComYModemG object with given details and associate it with the given 
@@ -754,40 +170,413 @@ public final class SerialComYModemG {
      * <p>Represents actions to execute in state machine to implement ymodem-g protocol for 
      * receiving files.</p>
      * 
+     * <p>Receiving is pipelined in calling thread itself. Blocks are assembled in a ring of reusable 
+     * buffers, CRC of a block is verified once it is complete and its data bytes are then handed over to 
+     * an asynchronous file channel. While data of a block is being written to file, next blocks are 
+     * received in other buffers of ring. A buffer is reused only after its data has reached file.</p>
+     * 
      * @return true on success, false if application instructed to abort.
      * @throws IOException if any I/O error occurs.
      * @throws SerialComException if any I/0 error occurs or operation is aborted.
      */
     public boolean receiveFileY() throws IOException {
 
-        final RingArrayBlockingQueue<byte[]> dataQueue = new RingArrayBlockingQueue<byte[]>(1024);
-        final ExecutorService threadpool = Executors.newFixedThreadPool(2);
+        // Finite state machine's states.
+        final int CONNECT       = 0x01;
+        final int BLOCK0RCV     = 0x02;
+        final int PBLOCK0       = 0x03;
+        final int DATABLOCKRCV  = 0x04;
+        final int VERIFY        = 0x05;
+        final int DUMPDATA      = 0x06;
+        final int ABORT         = 0x07;
+
+        int i = 0;
+        int x = 0;
+        int crcl = 0;
+        int state = -1;
+        int slot = 0;
+        int count = 0;
+        int blockCRCval = 0;
+        byte[] datablock = null;
+        String errMsg = null;
+        long responseWaitTimeOut = 0;
+        long currentlyProcessingFileLength = 0;
+        long currentlyProcessingFileModifyInfo = 0;
+        long currentlyProcessingFileMode = 0;
+        long totalNumberOfDataBytesReadTillNow = 0;
+        int percentOfBlocksReceived = 0;
+        String nameOfFileBeingReceived = null;
+        final String receiverDirAbsolutePath = filesToReceive.getAbsolutePath();
+
+        block0 = block;
+        ring = new byte[RING_SLOTS][1029];
+        ringData = new ByteBuffer[RING_SLOTS];
+        ringWrites = newFutureArray(RING_SLOTS);
+        ringFileOffset = new long[RING_SLOTS];
+        for(x=0; x < RING_SLOTS; x++) {
+            ringData[x] = ByteBuffer.wrap(ring[x]);
+        }
 
-        final DataCollector taskDataCollection = new DataCollector(dataQueue);
-        final DataProcessor taskDataProcessing = new DataProcessor(dataQueue);
+        // Clear receive buffer before start. Ymodem is fully receiver driven by design.
+        scm.clearPortIOBuffers(handle, true, false);
+        link = new SerialComFTPLink(scm, handle);
 
-        taskDataCollection.setDataProcessorRef(taskDataProcessing);
-        taskDataProcessing.setDataCollectorRef(taskDataCollection);
+        state = CONNECT; // entry point to state machine.
+        while(true) {
+            switch(state) {
 
-        Future<?> DataProcessorFutureResult = threadpool.submit(taskDataProcessing);
-        Future<?> DataCollectionFutureResult = threadpool.submit(taskDataCollection);
+            case CONNECT:
 
-        // wait till both the tasks are complete
-        while(true) {
+                // reset some globals
+                blockNumber = 1;
+                numberOfBlocksReceived = 0;
+                totalNumberOfDataBytesReadTillNow = 0;
+                lastCharacterReceivedWasLF = false;
+                lastCharacterReceivedWasCR = false;
+                unprocessedByteInReceivedDataExist = false;
+
+                scm.writeSingleByte(handle, G);
+                count = 0;
+                responseWaitTimeOut = System.currentTimeMillis() + 60000; // 1 minute
+                state = BLOCK0RCV;
+                break;
+
+            case BLOCK0RCV:
+
+                // check if application (file receiver) wish to cancel receiving file.
+                if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                    scm.writeBytes(handle, ABORT_CMD, 0);
+                    return false;
+                }
+
+                count = link.readBlock(block0, count, 133, 1029, 100);
+                if(count > 0) {
+                    if(block0[0] == SOH) {
+                        crcl = 131;
+                    }else if(block0[0] == STX) {
+                        crcl = 1027;
+                    }else if(block0[0] == CAN) {
+                        errMsg = "Abort command received from file sending application !";
+                        state = ABORT;
+                        break;
+                    }else {
+                        errMsg = "Invalid character received while waiting for block 0 !";
+                        state = ABORT;
+                        break;
+                    }
+                    if(count >= (crcl + 2)) {
+                        state = PBLOCK0;
+                        break;
+                    }
+                }
+                if(System.currentTimeMillis() >= responseWaitTimeOut) {
+                    if(count == 0) {
+                        errMsg = "Timedout while trying to connect to file sender !";
+                    }else {
+                        errMsg = "Timedout while trying to receive block 0 from file sender !";
+                    }
+                    state = ABORT;
+                }
+                break;
+
+            case PBLOCK0:
+
+                if((block0[1] != (byte)0x00) || (block0[2] != (byte)0xFF)) {
+                    errMsg = "Invalid information block 0 received !";
+                    state = ABORT;
+                    break;
+                }
+
+                blockCRCval = crcCalculator.getCRC16CCITTValue(block0, 3, (crcl - 1));
+                if((block0[crcl] != (byte)(blockCRCval >>> 8)) || (block0[crcl + 1] != (byte)blockCRCval)) {
+                    errMsg = "Invalid CRC (corrupted block 0 or final block received) !";
+                    state = ABORT;
+                    break;
+                }
+
+                // While we were expecting block 0 file information block, sender might indicate end of session 
+                // as there are no more files to be sent, so check it.
+                if((block0[crcl] == (byte)0x00) && (block0[crcl + 1] == (byte)0x00)) {
+                    for(i=3; i < crcl; i++) {
+                        if(block0[i] != (byte)0x00) {
+                            break;
+                        }
+                    }
+                    if(i >= crcl) {
+                        // All files have been received, let's go back home happily.
+                        return true;
+                    }
+                }
+
+                // file name:
+                for(x=3; x < crcl; x++) {
+                    if(block0[x] == '\0') {
+                        break;
+                    }
+                }
+                nameOfFileBeingReceived = new String(block0, 3, x-3);
+                if((nameOfFileBeingReceived == null) || (nameOfFileBeingReceived.length() == 0)) {
+                    errMsg = "Sender did not sent file name !";
+                    state = ABORT;
+                    break;
+                }
+                File namefile = new File(receiverDirAbsolutePath, nameOfFileBeingReceived);
+                if(textMode == true) {
+                    // text is converted as per operating system, so it is written through stream.
+                    outStream = new BufferedOutputStream(new FileOutputStream(namefile));
+                }else {
+                    fileChannel = AsynchronousFileChannel.open(namefile.toPath(), StandardOpenOption.WRITE,
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                }
+
+                // file length (number of data bytes):
+                x++;
+                for(i=x; i < crcl; i++) {
+                    if(block0[i] == SPACE) {
+                        break;
+                    }
+                }
+                currentlyProcessingFileLength = Long.valueOf(new String(block0, x, i - x)).longValue();
+
+                // file modification info:
+                i++;
+                for(x=i; x < crcl; x++) {
+                    if(block0[x] == SPACE) {
+                        break;
+                    }
+                }
+                currentlyProcessingFileModifyInfo = Long.valueOf(new String(block0, i, x - i), 8);
+                if(currentlyProcessingFileModifyInfo != 0) {
+                    namefile.setLastModified(currentlyProcessingFileModifyInfo);
+                }
+
+                // file mode:
+                x++;
+                for(i=x; i < crcl; i++) {
+                    if(block0[i] == SPACE) {
+                        break;
+                    }
+                }
+                currentlyProcessingFileMode = Long.valueOf(new String(block0, x, i - x), 8);
+                if(currentlyProcessingFileMode != 0) {
+                    // our translation decision is based on text or binary mode.
+                }
+
+                // ask sender to start streaming data blocks.
+                scm.writeSingleByte(handle, G);
+                count = 0;
+                responseWaitTimeOut = System.currentTimeMillis() + 10000;
+                state = DATABLOCKRCV;
+                break;
+
+            case DATABLOCKRCV:
+
+                // check if application (file receiver) wish to cancel receiving file.
+                if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                    closeReceivedFile();
+                    scm.writeBytes(handle, ABORT_CMD, 0);
+                    return false;
+                }
+
+                if(count == 0) {
+                    // ring buffer can be reused only after data in it has been written to file.
+                    waitForFileWrite(slot);
+                    datablock = ring[slot];
+                }
+
+                count = link.readBlock(datablock, count, 133, 1029, 100);
+                if(count > 0) {
+                    if(datablock[0] == STX) {
+                        crcl = 1027;
+                    }else if(datablock[0] == SOH) {
+                        crcl = 131;
+                    }else if(datablock[0] == EOT) {
+                        // sender indicated end of this file, acknowledge it and wait for next file.
+                        scm.writeSingleByte(handle, ACK);
+                        closeReceivedFile();
+                        state = CONNECT;
+                        break;
+                    }else if(datablock[0] == CAN) {
+                        errMsg = "Abort command received from file sending application !";
+                        state = ABORT;
+                        break;
+                    }else {
+                        errMsg = "Invalid character received !";
+                        state = ABORT;
+                        break;
+                    }
+                    if(count >= (crcl + 2)) {
+                        state = VERIFY;
+                        break;
+                    }
+                }
+                if(System.currentTimeMillis() >= responseWaitTimeOut) {
+                    errMsg = "Timedout while receiving data block from file sender !";
+                    state = ABORT;
+                }
+                break;
+
+            case VERIFY:
+
+                // ignore duplicate block.
+                if(datablock[1] == (byte)(blockNumber - 1)) {
+                    count = 0;
+                    state = DATABLOCKRCV;
+                    break;
+                }
+                // verify block number sequence and block number itself, there is no retry in ymodem-g.
+                if((datablock[1] != (byte) blockNumber) || (datablock[2] != (byte) ~blockNumber)) {
+                    errMsg = "Invalid block number sequence received !";
+                    state = ABORT;
+                    break;
+                }
+                // verify CRC value.
+                blockCRCval = crcCalculator.getCRC16CCITTValue(datablock, 3, (crcl - 1));
+                if((datablock[crcl] != (byte)(blockCRCval >>> 8)) || (datablock[crcl + 1] != (byte)blockCRCval)) {
+                    errMsg = "Invalid CRC (corrupted data block received) !";
+                    state = ABORT;
+                    break;
+                }
+                state = DUMPDATA;
+                break;
+
+            case DUMPDATA:
+
+                x = crcl - 3;
+                if(textMode == true) {
+                    // for ASCII mode, parse and then flush.
+                    processAndWrite(datablock, x);
+                }else {
+                    // for binary mode, padding beyond file length is not written.
+                    i = x;
+                    if((currentlyProcessingFileLength != 0) && ((totalNumberOfDataBytesReadTillNow + x) > currentlyProcessingFileLength)) {
+                        i = (int) (currentlyProcessingFileLength - totalNumberOfDataBytesReadTillNow);
+                    }
+                    if(i > 0) {
+                        ringData[slot].limit(3 + i);
+                        ringData[slot].position(3);
+                        ringFileOffset[slot] = totalNumberOfDataBytesReadTillNow - 3;
+                        ringWrites[slot] = fileChannel.write(ringData[slot], totalNumberOfDataBytesReadTillNow);
+                        slot = (slot + 1) % RING_SLOTS;
+                    }
+                }
+                totalNumberOfDataBytesReadTillNow = totalNumberOfDataBytesReadTillNow + x;
+
+                // update GUI that a block has been received if application has provided 
+                // a listener for this purpose.
+                if(progressListener != null) {
+                    numberOfBlocksReceived++;
+                    if(currentlyProcessingFileLength > 0) {
+                        percentOfBlocksReceived = (int) ((x * numberOfBlocksReceived * 100) / currentlyProcessingFileLength);
+                    }else {
+                        percentOfBlocksReceived = 100;
+                    }
+                    if(percentOfBlocksReceived >= 100) {
+                        percentOfBlocksReceived = 100;
+                    }
+                    progressListener.onYmodemReceiveProgressUpdate(nameOfFileBeingReceived, numberOfBlocksReceived, percentOfBlocksReceived);
+                }
+
+                // update block number to get next data block
+                blockNumber++;
+                if(blockNumber > 0xFF) {
+                    blockNumber = 0x00;
+                }
+                count = 0;
+                responseWaitTimeOut = System.currentTimeMillis() + 10000;
+                state = DATABLOCKRCV;
+                break;
+
+            case ABORT:
+                // sender does not wait for acknowledgement, so tell it explicitly to stop streaming.
+                scm.writeBytes(handle, ABORT_CMD, 0);
+                closeReceivedFile();
+                throw new SerialComException(errMsg);
+
+            default:
+                // never reached
+            }
+        }
+    }
+
+    /* 
+     * Waits until data given to file channel from given ring buffer has been written to file. If 
+     * channel wrote only part of it, rest is written again from where it stopped. If calling thread 
+     * is interrupted, transfer is aborted and interrupt status is kept for application.
+     * 
+     * @throws InterruptedIOException if calling thread is interrupted.
+     * @throws IOException if any I/O error occurs.
+     */
+    private void waitForFileWrite(int slot) throws IOException {
+        while(ringWrites[slot] != null) {
             try {
-                DataProcessorFutureResult.get();
-                DataCollectionFutureResult.get();
+                ringWrites[slot].get();
             } catch (InterruptedException e) {
-                continue; // ignore spurious interrupt
-            } catch (Exception e) {
-                threadpool.shutdown();
-                throw (SerialComException) new SerialComException(e.getMessage()).initCause(e);
+                Thread.currentThread().interrupt();
+                abortFileWrites();
+                throw new InterruptedIOException("Interrupted while writing received data to file !");
+            } catch (ExecutionException e) {
+                ringWrites[slot] = null;
+                throw (IOException) new IOException(e.getCause().getMessage()).initCause(e.getCause());
+            }
+            if(ringData[slot].hasRemaining()) {
+                ringWrites[slot] = fileChannel.write(ringData[slot], ringFileOffset[slot] + ringData[slot].position());
+            }else {
+                ringWrites[slot] = null;
+            }
+        }
+    }
+
+    /* 
+     * Waits for all pending writes to complete and closes file being received.
+     * 
+     * @throws IOException if any I/O error occurs.
+     */
+    private void closeReceivedFile() throws IOException {
+        if(outStream != null) {
+            outStream.flush();
+            outStream.close();
+            outStream = null;
+        }
+        if(fileChannel != null) {
+            try {
+                for(int x=0; x < RING_SLOTS; x++) {
+                    waitForFileWrite(x);
+                }
+            } finally {
+                // channel is already closed if waiting was interrupted
+                if(fileChannel != null) {
+                    fileChannel.close();
+                    fileChannel = null;
+                }
             }
-            break;
         }
+    }
 
-        threadpool.shutdown();
-        return true;
+    /* 
+     * Tells sender to stop streaming and closes file channel without waiting for pending writes, 
+     * closing channel cancels them.
+     */
+    private void abortFileWrites() {
+        try {
+            scm.writeBytes(handle, ABORT_CMD, 0);
+        } catch (SerialComException e) {
+            // transfer is being aborted anyway
+        }
+        for(int x=0; x < RING_SLOTS; x++) {
+            ringWrites[x] = null;
+        }
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            // data received so far is discarded anyway
+        }
+        fileChannel = null;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Future<Integer>[] newFutureArray(int length) {
+        return new Future[length];
     }
 
     /**
@@ -821,7 +610,9 @@ public final class SerialComYModemG {
 
         currentlySendingFileName = filesToSend[currentlyProcessingFilenumber].getName();
         lengthOfFileToSend = filesToSend[currentlyProcessingFilenumber].length();
+        mappedFile = (textMode == true) ? null : SerialComFTPLink.mapFile(filesToSend[currentlyProcessingFilenumber]);
         inStream = new BufferedInputStream(new FileInputStream(filesToSend[currentlyProcessingFilenumber]));
+        link = new SerialComFTPLink(scm, handle);
 
         state = CONNECT;
         while(true) {
@@ -833,7 +624,7 @@ public final class SerialComYModemG {
                 responseWaitTimeOut = System.currentTimeMillis() + 60000;  // 1 minute
                 while(gReceived != true) {
                     try {
-                        data = scm.readBytes(handle, 1024);
+                        data = link.readBytes(1, 50);
                     } catch (SerialComException exp) {
                         inStream.close();
                         throw exp;
@@ -854,10 +645,6 @@ public final class SerialComYModemG {
                             }
                         }
                     }else {
-                        try {
-                            Thread.sleep(50); // delay before next attempt to check G character reception.
-                        } catch (InterruptedException e) {
-                        }
                         // abort if timed-out while waiting for C character.
                         if((gReceived != true) && (System.currentTimeMillis() >= responseWaitTimeOut)) {
                             errMsg = "Timedout while waiting for file receiver to initiate connection setup !";
@@ -905,7 +692,7 @@ public final class SerialComYModemG {
 
                 // check if receiver wish to abort
                 try {
-                    data = scm.readBytes(handle, 2);
+                    data = link.readBytes(2, 0);
                     if((data != null) && (data.length > 0) && (data[0] == CAN) && (data.length > 1) && (data[1] == CAN)) {
                         errMsg = "Received abort command from file receiving end !";
                         state = ABORT;
@@ -923,7 +710,7 @@ public final class SerialComYModemG {
                 }
 
                 try {
-                    scm.writeBytes(handle, block, 0);
+                    sendBlock();
                 } catch (SerialComException exp) {
                     inStream.close();
                     throw exp;
@@ -942,15 +729,6 @@ public final class SerialComYModemG {
                     progressListener.onYmodemSentProgressUpdate(currentlySendingFileName, numberOfBlocksSent, percentOfBlocksSent);
                 }
 
-                try {
-                    if(osType == SerialComPlatform.OS_WINDOWS) {
-                        Thread.sleep(250);
-                    }else {
-                        Thread.sleep(200);
-                    }
-                }catch (Exception e) {
-                }
-
                 blockNumber++;
                 break;
 
@@ -964,7 +742,7 @@ public final class SerialComYModemG {
                         return false;
                     }
                     try {
-                        data = scm.readBytes(handle, 1);
+                        data = link.readBytes(1, 100);
                         if((data != null) && (data.length > 0) && (data[0] == CAN)) {
                             errMsg = "Received abort command from file receiving end !";
                             state = ABORT;
@@ -986,6 +764,7 @@ public final class SerialComYModemG {
 
                             // send next file, reset all stuff
                             lengthOfFileToSend = filesToSend[currentlyProcessingFilenumber].length();
+                            mappedFile = (textMode == true) ? null : SerialComFTPLink.mapFile(filesToSend[currentlyProcessingFilenumber]);
                             inStream = new BufferedInputStream(new FileInputStream(filesToSend[currentlyProcessingFilenumber]));
                             gReceived = false;
                             responseWaitTimeOut = 0;
@@ -1005,10 +784,6 @@ public final class SerialComYModemG {
                             unprocessedByteInReceivedDataExist = false;
                             data0 = 0;
                             data1 = 0;
-                            try {
-                                Thread.sleep(200); // give some time to receiver to breath
-                            }catch (Exception e) {
-                            }
                             state = CONNECT;
                             break;
                         }else if(data[0] == CAN) {
@@ -1241,6 +1016,7 @@ public final class SerialComYModemG {
         block[0] = STX;
         block[1] = (byte) blockNumber;
         block[2] = (byte) ~blockNumber;
+        packetData = null;
 
         if(textMode == true) {
             /* file is to be send as a text file. */
@@ -1532,8 +1308,23 @@ public final class SerialComYModemG {
         }else {
             /* file is to be send as a binary file. */
 
-            // read data from the file to be sent.
-            numBytesRead = inStream.read(block, 3, 1024);
+            if(mappedFile != null) {
+                if(mappedFile.remaining() >= 1024) {
+                    // full block, data bytes are sent directly from mapped file without copying.
+                    packetData = mappedFile.slice();
+                    packetData.limit(1024);
+                    mappedFile.position(mappedFile.position() + 1024);
+                    numBytesRead = 1024;
+                }else if(mappedFile.hasRemaining()) {
+                    numBytesRead = mappedFile.remaining();
+                    mappedFile.get(block, 3, numBytesRead);
+                }else {
+                    numBytesRead = -1;
+                }
+            }else {
+                // read data from the file to be sent.
+                numBytesRead = inStream.read(block, 3, 1024);
+            }
             if(numBytesRead == 1024) {
             }else if(numBytesRead > 0) {
                 // assembling last block with padding.
@@ -1548,11 +1339,33 @@ public final class SerialComYModemG {
         }
 
         // append 2 byte CRC value.
-        blockCRCval = crcCalculator.getCRC16CCITTValue(block, 3, 1026);
+        if(packetData != null) {
+            blockCRCval = crcCalculator.getCRC16CCITTValue(packetData, 0, 1023);
+        }else {
+            blockCRCval = crcCalculator.getCRC16CCITTValue(block, 3, 1026);
+        }
         block[1027] = (byte) (blockCRCval >>> 8); // CRC high byte
         block[1028] = (byte) blockCRCval;         // CRC low byte
     }
 
+    /* 
+     * Sends current data block. If its data bytes are in mapped file, header, data and CRC are 
+     * given to serial port as one gathered write, otherwise block array is sent as is.
+     * 
+     * @throws SerialComException if any I/O error occurs.
+     */
+    private void sendBlock() throws SerialComException {
+        if(packetData == null) {
+            scm.writeBytes(handle, block, 0);
+            return;
+        }
+        packet[0].position(0);
+        packetData.rewind();
+        packet[1] = packetData;
+        packet[2].position(1027);
+        link.write(packet);
+    }
+
     /* 
      * This algorithm strip all ^Z characters from received data. Further it will add or remove
      * CR and LF characters as needed based on operating system this application is running on.
@@ -0,0 +1,1210 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.core.SerialComPlatform;
+import com.serialpundit.core.SerialComTimeOutException;
+import com.serialpundit.core.util.SerialComCRCUtil;
+import com.serialpundit.serial.SerialComManager;
+
+/**
+ * <p>Implements ZMODEM file transfer protocol state machine in Java.</p>
+ *
+ * <p>Data is streamed without waiting for acknowledgement of every block. Receiver asks for 32 bit CRC
+ * (CANFC32) and full streaming (receive buffer size 0), and reports errors by sending ZRPOS with the offset
+ * from where sender should resend. If a file with same name already exists in receiving directory and is
+ * shorter than the file being sent, receiver asks sender for CRC of that many bytes (ZCRC) and continues
+ * from end of existing file if they match (crash recovery).</p>
+ *
+ * <p>All the control characters which ZMODEM requires to be escaped (ZDLE, XON, XOFF, DLE and CR after @)
+ * are escaped with ZDLE. If the other end asks for it (ESCCTL), all control characters are escaped.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComZModem {
+
+    // Frame indicators and escape characters
+    private static final int ZPAD   = 0x2A;  // '*' pad character, begins frames
+    private static final int ZDLE   = 0x18;  // ZMODEM escape, same as CAN
+    private static final int ZBIN   = 0x41;  // 'A' binary frame indicator (CRC-16)
+    private static final int ZHEX   = 0x42;  // 'B' hex frame indicator
+    private static final int ZBIN32 = 0x43;  // 'C' binary frame indicator (CRC-32)
+
+    // Frame types
+    private static final int ZRQINIT    = 0;   // request receive init
+    private static final int ZRINIT     = 1;   // receive init
+    private static final int ZSINIT     = 2;   // send init sequence (optional)
+    private static final int ZACK       = 3;   // ACK to above
+    private static final int ZFILE      = 4;   // file name from sender
+    private static final int ZSKIP      = 5;   // to sender: skip this file
+    private static final int ZNAK       = 6;   // last packet was garbled
+    private static final int ZABORT     = 7;   // abort batch transfers
+    private static final int ZFIN       = 8;   // finish session
+    private static final int ZRPOS      = 9;   // resume data transmission at this position
+    private static final int ZDATA      = 10;  // data packet(s) follow
+    private static final int ZEOF       = 11;  // end of file
+    private static final int ZFERR      = 12;  // fatal read or write error detected
+    private static final int ZCRC       = 13;  // request for file CRC and response
+    private static final int ZCHALLENGE = 14;  // receiver's challenge
+    private static final int ZCOMPL     = 15;  // request is complete
+    private static final int ZCAN       = 16;  // other end canned session with CAN*5
+    private static final int ZCOMMAND   = 18;  // command from sending program
+
+    // Data subpacket terminators
+    private static final int ZCRCE = 0x68;  // 'h' CRC next, frame ends, header packet follows
+    private static final int ZCRCG = 0x69;  // 'i' CRC next, frame continues nonstop
+    private static final int ZCRCQ = 0x6A;  // 'j' CRC next, frame continues, ZACK expected
+    private static final int ZCRCW = 0x6B;  // 'k' CRC next, ZACK expected, end of frame
+    private static final int ZRUB0 = 0x6C;  // 'l' translate to rubout 0x7F
+    private static final int ZRUB1 = 0x6D;  // 'm' translate to rubout 0xFF
+
+    // ZRINIT flags (ZF0)
+    private static final int CANFDX  = 0x01;  // receiver can send and receive true full duplex
+    private static final int CANOVIO = 0x02;  // receiver can receive data during disk I/O
+    private static final int CANFC32 = 0x20;  // receiver can use 32 bit frame check
+    private static final int ESCCTL  = 0x40;  // receiver expects control characters to be escaped
+
+    // ZFILE conversion options (ZF0)
+    private static final int ZCBIN = 1;  // binary transfer, inhibit conversion
+    private static final int ZCNL  = 2;  // convert NL to local end of line convention
+
+    // Byte positions within header array
+    private static final int ZF0 = 3;
+    private static final int ZP0 = 0;
+    private static final int ZP1 = 1;
+
+    private static final int XON  = 0x11;
+    private static final int XOFF = 0x13;
+    private static final byte CR  = 0x0D;
+    private static final byte LF  = 0x0A;
+    private static final byte CAN = 0x18;
+    private static final byte BS  = 0x08;
+
+    // Values returned by zdlRead in addition to byte values
+    private static final int GOTOR  = 0x100;  // frame end, OR'ed with terminator
+    private static final int ERROR  = -1;
+    private static final int TIMEOUT = SerialComFTPLink.TIMEOUT;
+    private static final int GOTCAN = -3;
+
+    // Values returned by readHeader in addition to frame types
+    private static final int HDR_ERROR     = -1;
+    private static final int HDR_TIMEOUT   = -2;
+    private static final int HDR_CANCELLED = -3;
+    private static final int HDR_ABORTED   = -4;
+    private static final int HDR_NONE      = -5;
+
+    private static final int SUBPACKET_SIZE = 1024;
+    private static final int MAX_SUBPACKET_SIZE = 8192;
+    private static final int MAX_RETRIES = 10;
+    private static final long HEADER_TIMEOUT = 10000;
+    private static final long BYTE_TIMEOUT = 5000;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] RZ_CMD = new byte[] { 'r', 'z', CR };
+    private static final byte[] ABORT_CMD = new byte[] { CAN, CAN, CAN, CAN, CAN, CAN, CAN, CAN,
+        BS, BS, BS, BS, BS, BS, BS, BS, BS, BS };
+
+    private final SerialComManager scm;
+    private final long handle;
+    private File[] filesToSend;
+    private File filesToReceive;
+    private final boolean textMode;
+    private final ISerialComZmodemProgress progressListener;
+    private final SerialComFTPCMDAbort transferState;
+    private final int osType;
+    private final SerialComCRCUtil crcCalculator = new SerialComCRCUtil();
+    private final CRC32 crc32 = new CRC32();
+
+    private SerialComFTPLink link;
+    private final byte[] rxHdr = new byte[5];    // frame type followed by 4 header bytes
+    private final byte[] txHdr = new byte[5];
+    private final byte[] rxData = new byte[MAX_SUBPACKET_SIZE + 1];
+    private final byte[] txData = new byte[SUBPACKET_SIZE + 1];
+    private final byte[] txFrame = new byte[(2 * (MAX_SUBPACKET_SIZE + 8)) + 32];
+    private int txFrameLen = 0;
+    private int lastSent = 0;
+    private int rxDataLen = 0;
+    private boolean rxFrameCrc32 = false;
+    private boolean txCrc32 = false;
+    private boolean escapeAllCtl = false;
+    private int rxBufSize = 0;
+
+    /**
+     * <p>Allocates a new SerialComZModem object with given details and associate it with the given
+     * instance of SerialComManager class. This is used for sending files.</p>
+     *
+     * @param scm SerialComManager instance associated with this handle.
+     * @param handle of the port on which file is to be communicated.
+     * @param filesToSend all the files to be sent to the receiver end.
+     * @param textMode if true receiver will be asked to convert end of line to its local convention, if
+     *         false file will be sent as binary file.
+     * @param progressListener object of class which implements ISerialComZmodemProgress interface and is
+     *         interested in knowing how many bytes have been sent/received till now.
+     * @param transferState if application wish to abort sending/receiving file at instant of time due to
+     *         any reason, it can call abortTransfer method on this object. It can be null if application
+     *         does not wish to abort sending/receiving file explicitly.
+     * @param osType operating system on which this application is running.
+     */
+    public SerialComZModem(SerialComManager scm, long handle, File[] filesToSend, boolean textMode,
+            ISerialComZmodemProgress progressListener, SerialComFTPCMDAbort transferState, int osType) {
+        this.scm = scm;
+        this.handle = handle;
+        this.filesToSend = filesToSend;
+        this.textMode = textMode;
+        this.progressListener = progressListener;
+        this.transferState = transferState;
+        this.osType = osType;
+    }
+
+    /**
+     * <p>Allocates a new SerialComZModem object with given details and associate it with the given
+     * instance of SerialComManager class. This is used for receiving files.</p>
+     *
+     * @param scm SerialComManager instance associated with this handle.
+     * @param handle of the port on which file is to be communicated.
+     * @param filesToReceive folder in which all files received will be placed.
+     * @param textMode if true end of line in received file will be converted to local convention, if
+     *         false file will be received as binary file unless sender asks for conversion.
+     * @param progressListener object of class which implements ISerialComZmodemProgress interface and is
+     *         interested in knowing how many bytes have been sent/received till now.
+     * @param transferState if application wish to abort sending/receiving file at instant of time due to
+     *         any reason, it can call abortTransfer method on this object. It can be null if application
+     *         does not wish to abort sending/receiving file explicitly.
+     * @param osType operating system on which this application is running.
+     */
+    public SerialComZModem(SerialComManager scm, long handle, File filesToReceive, boolean textMode,
+            ISerialComZmodemProgress progressListener, SerialComFTPCMDAbort transferState, int osType) {
+        this.scm = scm;
+        this.handle = handle;
+        this.filesToReceive = filesToReceive;
+        this.textMode = textMode;
+        this.progressListener = progressListener;
+        this.transferState = transferState;
+        this.osType = osType;
+    }
+
+    /**
+     * <p>Represents actions to execute in state machine to implement zmodem protocol for sending files.</p>
+     *
+     * @return true on success, false if application instructed to abort.
+     * @throws SecurityException if unable to read from file to be sent.
+     * @throws IOException if any I/O error occurs.
+     * @throws SerialComException if any I/0 error on serial port communication occurs or receiver aborts.
+     * @throws SerialComTimeOutException if receiver does not respond.
+     */
+    public boolean sendFileZ() throws IOException {
+
+        int type = 0;
+        int retryCount = 0;
+        long bytesLeft = 0;
+
+        link = new SerialComFTPLink(scm, handle);
+        for(int x=0; x < filesToSend.length; x++) {
+            bytesLeft = bytesLeft + filesToSend[x].length();
+        }
+
+        // invite receiver and wait for its capabilities
+        link.write(RZ_CMD);
+        sendHexHeader(ZRQINIT, 0);
+        while(true) {
+            type = readHeader(HEADER_TIMEOUT, false);
+            if(type == ZRINIT) {
+                rxBufSize = (rxHdr[1 + ZP0] & 0xFF) | ((rxHdr[1 + ZP1] & 0xFF) << 8);
+                txCrc32 = (rxHdr[1 + ZF0] & CANFC32) != 0;
+                escapeAllCtl = (rxHdr[1 + ZF0] & ESCCTL) != 0;
+                break;
+            }
+            if(type == ZCHALLENGE) {
+                // echo challenge value back
+                sendHexHeader(ZACK, rxHdr);
+                continue;
+            }
+            if(handleFatalHeader(type) == false) {
+                return false;
+            }
+            retryCount++;
+            if(retryCount > MAX_RETRIES) {
+                sendAbort();
+                throw new SerialComTimeOutException("Timedout while waiting for file receiver to initiate connection setup !");
+            }
+            sendHexHeader(ZRQINIT, 0);
+        }
+
+        for(int x=0; x < filesToSend.length; x++) {
+            bytesLeft = bytesLeft - filesToSend[x].length();
+            if(sendOneFile(filesToSend[x], filesToSend.length - x - 1, bytesLeft) == false) {
+                return false;
+            }
+        }
+
+        // end session
+        retryCount = 0;
+        while(true) {
+            sendHexHeader(ZFIN, 0);
+            type = readHeader(HEADER_TIMEOUT, false);
+            if(type == ZFIN) {
+                link.write(new byte[] { 'O', 'O' });
+                return true;
+            }
+            if(handleFatalHeader(type) == false) {
+                return false;
+            }
+            retryCount++;
+            if(retryCount > MAX_RETRIES) {
+                // all files have been received, receiver just did not acknowledge end of session
+                return true;
+            }
+        }
+    }
+
+    /* Sends file information, data and end of file for one file. */
+    private boolean sendOneFile(File file, int filesLeft, long bytesLeft) throws IOException {
+        int type = 0;
+        int retryCount = 0;
+        long offset = 0;
+        long length = file.length();
+        String fileName = file.getName();
+        RandomAccessFile inFile = new RandomAccessFile(file, "r");
+
+        try {
+            // file information : name, length, modification time (octal), mode, serial number, files and bytes left
+            byte[] name = fileName.getBytes();
+            byte[] info = (length + " " + Long.toOctalString(file.lastModified() / 1000) + " 0 0 " + filesLeft + " "
+                    + bytesLeft).getBytes();
+            byte[] fileInfo = new byte[name.length + info.length + 2];
+            System.arraycopy(name, 0, fileInfo, 0, name.length);
+            System.arraycopy(info, 0, fileInfo, name.length + 1, info.length);
+
+            sendFileInfo(fileInfo);
+            while(true) {
+                type = readHeader(HEADER_TIMEOUT, false);
+                if(type == ZRPOS) {
+                    offset = getHeaderPosition(rxHdr);
+                    break;
+                }
+                if(type == ZSKIP) {
+                    return true;
+                }
+                if(type == ZCRC) {
+                    // receiver wants to resume, give CRC of bytes it already has
+                    sendHexHeader(ZCRC, fileCRC(inFile, getHeaderPosition(rxHdr)));
+                    continue;
+                }
+                if(handleFatalHeader(type) == false) {
+                    return false;
+                }
+                retryCount++;
+                if(retryCount > MAX_RETRIES) {
+                    sendAbort();
+                    throw new SerialComTimeOutException("Timedout while waiting for file receiver to accept file information !");
+                }
+                sendFileInfo(fileInfo);
+            }
+
+            retryCount = 0;
+            while(true) {
+                offset = streamFile(inFile, fileName, length, offset);
+                if(offset < 0) {
+                    return false;
+                }
+
+                // wait for receiver to confirm end of file
+                sendBinHeader(ZEOF, offset);
+                while(true) {
+                    type = readHeader(HEADER_TIMEOUT, false);
+                    if(type == ZACK) {
+                        continue;
+                    }
+                    if(type == HDR_ERROR) {
+                        // garbled reply, count it so that a noisy line can not keep us here forever
+                        retryCount++;
+                        if(retryCount > MAX_RETRIES) {
+                            sendAbort();
+                            throw new SerialComTimeOutException("Timedout while waiting for EOF reception acknowledgement from file receiver !");
+                        }
+                        continue;
+                    }
+                    break;
+                }
+                if(type == ZRINIT) {
+                    return true;
+                }
+                if(type == ZRPOS) {
+                    offset = getHeaderPosition(rxHdr);
+                    continue;
+                }
+                if(handleFatalHeader(type) == false) {
+                    return false;
+                }
+                retryCount++;
+                if(retryCount > MAX_RETRIES) {
+                    sendAbort();
+                    throw new SerialComTimeOutException("Timedout while waiting for EOF reception acknowledgement from file receiver !");
+                }
+            }
+        } finally {
+            inFile.close();
+        }
+    }
+
+    private void sendFileInfo(byte[] fileInfo) throws IOException {
+        int conversion = (textMode == true) ? ZCNL : ZCBIN;
+        txHdr[0] = (byte) ZFILE;
+        txHdr[1] = 0;
+        txHdr[2] = 0;
+        txHdr[3] = 0;
+        txHdr[4] = (byte) conversion;
+        sendBinHeader(txHdr);
+        System.arraycopy(fileInfo, 0, txData, 0, Math.min(fileInfo.length, SUBPACKET_SIZE));
+        sendData(Math.min(fileInfo.length, SUBPACKET_SIZE), ZCRCW);
+    }
+
+    /*
+     * Streams file from given offset till end using ZCRCG subpackets (ZCRCW if receiver has limited buffer).
+     * Restarts from offset asked by receiver whenever it sends ZRPOS. Returns offset at end of file or -1 if
+     * application asked to abort.
+     */
+    private long streamFile(RandomAccessFile inFile, String fileName, long length, long offset) throws IOException {
+        int type = 0;
+        int num = 0;
+        int frameEnd = 0;
+        int errorCount = 0;
+        long lastErrorPos = -1;
+        long pos = offset;
+        long bytesSinceAck = 0;
+        boolean restart = true;
+
+        while(true) {
+            if(restart == true) {
+                inFile.seek(pos);
+                sendBinHeader(ZDATA, pos);
+                bytesSinceAck = 0;
+                restart = false;
+            }
+
+            num = inFile.read(txData, 0, SUBPACKET_SIZE);
+            if(num < 0) {
+                num = 0;
+            }
+            if((pos + num) >= length) {
+                frameEnd = ZCRCE;
+            }else if((rxBufSize != 0) && ((bytesSinceAck + num) >= rxBufSize)) {
+                frameEnd = ZCRCW;
+            }else {
+                frameEnd = ZCRCG;
+            }
+            sendData(num, frameEnd);
+            pos = pos + num;
+            bytesSinceAck = bytesSinceAck + num;
+
+            if(progressListener != null) {
+                progressListener.onZmodemSentProgressUpdate(fileName, pos, percentOf(pos, length));
+            }
+            if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                sendAbort();
+                return -1;
+            }
+            if(frameEnd == ZCRCE) {
+                return pos;
+            }
+
+            if(frameEnd == ZCRCW) {
+                // receiver buffer full, wait for it to catch up
+                type = readHeader(HEADER_TIMEOUT, false);
+            }else {
+                // look at back channel for error reports without stopping the stream
+                type = readHeader(HEADER_TIMEOUT, true);
+            }
+            if((type == HDR_NONE) || (type == ZACK)) {
+                bytesSinceAck = 0;
+                continue;
+            }
+            if(type == ZRPOS) {
+                pos = getHeaderPosition(rxHdr);
+                if(pos > lastErrorPos) {
+                    // receiver got data past previous error position, so start counting errors afresh
+                    errorCount = 0;
+                }
+                lastErrorPos = pos;
+                errorCount++;
+                if(errorCount > MAX_RETRIES) {
+                    sendAbort();
+                    throw new SerialComException("Maximum number of retries reached while sending file data !");
+                }
+                link.purge();
+                restart = true;
+                continue;
+            }
+            if(handleFatalHeader(type) == false) {
+                return -1;
+            }
+            if(frameEnd == ZCRCW) {
+                // no acknowledgement, resend from where receiver last confirmed
+                pos = pos - bytesSinceAck;
+                restart = true;
+            }
+        }
+    }
+
+    /**
+     * <p>Represents actions to execute in state machine to implement zmodem protocol for receiving files.</p>
+     *
+     * @return true on success, false if application instructed to abort.
+     * @throws SecurityException if unable to write to file to be received.
+     * @throws IOException if any I/O error occurs.
+     * @throws SerialComException if any I/0 error on serial port communication occurs or sender aborts.
+     * @throws SerialComTimeOutException if sender does not respond.
+     */
+    public boolean receiveFileZ() throws IOException {
+
+        int type = 0;
+        int ret = 0;
+        int retryCount = 0;
+        long pos = 0;
+        long length = 0;
+        String fileName = null;
+        boolean convertText = false;
+        byte lastLineEndChar = 0;
+        BufferedOutputStream outStream = null;
+        byte[] lineEnd = (osType == SerialComPlatform.OS_WINDOWS) ? new byte[] { CR, LF } : new byte[] { LF };
+
+        link = new SerialComFTPLink(scm, handle);
+        sendZRINIT();
+
+        try {
+            while(true) {
+                type = readHeader(HEADER_TIMEOUT, false);
+                switch(type) {
+
+                case ZRQINIT:
+                    sendZRINIT();
+                    break;
+
+                case ZSINIT:
+                    // attention string is not needed as we never stop reading during disk I/O
+                    ret = readData();
+                    sendHexHeader((ret >= 0) ? ZACK : ZNAK, 0);
+                    break;
+
+                case ZFILE:
+                    ret = readData();
+                    if(ret < 0) {
+                        sendHexHeader(ZNAK, 0);
+                        break;
+                    }
+                    if(outStream != null) {
+                        outStream.close();
+                        outStream = null;
+                    }
+                    convertText = (textMode == true) || (rxHdr[1 + ZF0] == ZCNL);
+                    lastLineEndChar = 0;
+                    fileName = parseFileName();
+                    length = parseFileLength();
+
+                    File file = new File(filesToReceive, fileName);
+                    pos = (convertText == true) ? 0 : resumeOffset(file, length);
+                    if(pos < 0) {
+                        // already have complete file
+                        sendHexHeader(ZSKIP, 0);
+                        break;
+                    }
+                    outStream = new BufferedOutputStream(new FileOutputStream(file, pos > 0), 65536);
+                    retryCount = 0;
+                    sendHexHeader(ZRPOS, pos);
+                    break;
+
+                case ZDATA:
+                    if(outStream == null) {
+                        sendZRINIT();
+                        break;
+                    }
+                    if(getHeaderPosition(rxHdr) != pos) {
+                        // data from wrong offset, ask again for right one
+                        sendHexHeader(ZRPOS, pos);
+                        break;
+                    }
+                    while(true) {
+                        ret = readData();
+                        if(ret == GOTCAN) {
+                            throw new SerialComException("Received abort command from file sending end !");
+                        }
+                        if(ret < 0) {
+                            retryCount++;
+                            if(retryCount > MAX_RETRIES) {
+                                sendAbort();
+                                throw new SerialComException("Maximum number of retries reached while receiving file data !");
+                            }
+                            link.purge();
+                            sendHexHeader(ZRPOS, pos);
+                            break;
+                        }
+
+                        if(convertText == true) {
+                            lastLineEndChar = writeText(outStream, lineEnd, lastLineEndChar);
+                        }else {
+                            outStream.write(rxData, 0, rxDataLen);
+                        }
+                        pos = pos + rxDataLen;
+                        // good data received, only consecutive errors should abort transfer
+                        retryCount = 0;
+                        if(progressListener != null) {
+                            progressListener.onZmodemReceiveProgressUpdate(fileName, pos, percentOf(pos, length));
+                        }
+                        if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                            sendAbort();
+                            return false;
+                        }
+
+                        if((ret == ZCRCW) || (ret == ZCRCQ)) {
+                            sendHexHeader(ZACK, pos);
+                        }
+                        if((ret == ZCRCW) || (ret == ZCRCE)) {
+                            break;
+                        }
+                    }
+                    break;
+
+                case ZEOF:
+                    if((outStream == null) || (getHeaderPosition(rxHdr) != pos)) {
+                        // stale end of file, ignore
+                        break;
+                    }
+                    outStream.close();
+                    outStream = null;
+                    sendZRINIT();
+                    break;
+
+                case ZFIN:
+                    sendHexHeader(ZFIN, 0);
+                    // consume over and out if it comes
+                    link.read(500);
+                    link.read(500);
+                    return true;
+
+                case ZCOMMAND:
+                    // commands are not executed for security reasons
+                    sendHexHeader(ZCOMPL, 0);
+                    break;
+
+                case ZCHALLENGE:
+                    sendHexHeader(ZACK, rxHdr);
+                    break;
+
+                case HDR_TIMEOUT:
+                case HDR_ERROR:
+                    retryCount++;
+                    if(retryCount > MAX_RETRIES) {
+                        sendAbort();
+                        if(type == HDR_TIMEOUT) {
+                            throw new SerialComTimeOutException("Timedout while waiting for file sender !");
+                        }
+                        throw new SerialComException("Maximum number of retries reached while receiving frame header !");
+                    }
+                    if(outStream != null) {
+                        sendHexHeader(ZRPOS, pos);
+                    }else {
+                        sendZRINIT();
+                    }
+                    break;
+
+                default:
+                    if(handleFatalHeader(type) == false) {
+                        return false;
+                    }
+                    break;
+                }
+            }
+        } finally {
+            if(outStream != null) {
+                outStream.close();
+            }
+        }
+    }
+
+    private void sendZRINIT() throws IOException {
+        txHdr[0] = (byte) ZRINIT;
+        txHdr[1] = 0;  // buffer size 0, full streaming
+        txHdr[2] = 0;
+        txHdr[3] = 0;
+        txHdr[4] = (byte) (CANFDX | CANOVIO | CANFC32);
+        sendHexHeader(txHdr);
+    }
+
+    /*
+     * Decides offset from which file should be received. If a shorter file already exists and sender's CRC of
+     * that many bytes matches, transfer resumes at its end. Returns -1 if file is already complete.
+     */
+    private long resumeOffset(File file, long length) throws IOException {
+        if((file.isFile() == false) || (file.length() == 0) || (length <= 0) || (file.length() > length)) {
+            return 0;
+        }
+
+        long existing = file.length();
+        long localCRC = 0;
+        RandomAccessFile inFile = new RandomAccessFile(file, "r");
+        try {
+            localCRC = fileCRC(inFile, existing);
+        } finally {
+            inFile.close();
+        }
+
+        for(int x=0; x < 3; x++) {
+            sendHexHeader(ZCRC, existing);
+            int type = readHeader(HEADER_TIMEOUT, false);
+            if(type == ZCRC) {
+                if((getHeaderPosition(rxHdr) & 0xFFFFFFFFL) != localCRC) {
+                    return 0;
+                }
+                return (existing == length) ? -1 : existing;
+            }
+            if((type == HDR_CANCELLED) || (type == HDR_ABORTED) || (type == ZCAN) || (type == ZABORT)) {
+                break;
+            }
+        }
+        // sender could not tell CRC, receive whole file again
+        return 0;
+    }
+
+    /* 
+     * Writes received data converting CR LF, LF CR, CR and LF to local end of line. Gives CR or LF if 
+     * data ended with a line end character which may still pair with first byte of next subpacket, 
+     * 0 otherwise.
+     */
+    private byte writeText(BufferedOutputStream outStream, byte[] lineEnd, byte lastLineEndChar) throws IOException {
+        byte prev = lastLineEndChar;
+        byte c = 0;
+        for(int x=0; x < rxDataLen; x++) {
+            c = rxData[x];
+            if((c == CR) || (c == LF)) {
+                if((prev != 0) && (prev != c)) {
+                    // second half of CR LF or LF CR pair, line end already written
+                    prev = 0;
+                }else {
+                    outStream.write(lineEnd);
+                    prev = c;
+                }
+                continue;
+            }
+            prev = 0;
+            outStream.write(c);
+        }
+        return prev;
+    }
+
+    private String parseFileName() {
+        int end = 0;
+        while((end < rxDataLen) && (rxData[end] != 0)) {
+            end++;
+        }
+        String name = new String(rxData, 0, end);
+        // never write outside receiving directory
+        int slash = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+        return name.substring(slash + 1);
+    }
+
+    private long parseFileLength() {
+        int x = 0;
+        long length = 0;
+        while((x < rxDataLen) && (rxData[x] != 0)) {
+            x++;
+        }
+        x++;
+        while((x < rxDataLen) && (rxData[x] >= '0') && (rxData[x] <= '9')) {
+            length = (length * 10) + (rxData[x] - '0');
+            x++;
+        }
+        return length;
+    }
+
+    /* CRC-32 of first count bytes of file, whole file if count is 0. */
+    private long fileCRC(RandomAccessFile inFile, long count) throws IOException {
+        long remaining = (count <= 0) ? inFile.length() : Math.min(count, inFile.length());
+        long savedPos = inFile.getFilePointer();
+        byte[] buffer = new byte[8192];
+        int num = 0;
+        CRC32 crc = new CRC32();
+
+        inFile.seek(0);
+        while(remaining > 0) {
+            num = inFile.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if(num <= 0) {
+                break;
+            }
+            crc.update(buffer, 0, num);
+            remaining = remaining - num;
+        }
+        inFile.seek(savedPos);
+        return crc.getValue();
+    }
+
+    /*
+     * Handles frame types after which transfer can not continue. Returns false if application asked to abort,
+     * throws if other end aborted, returns true for everything else so that caller retries.
+     */
+    private boolean handleFatalHeader(int type) throws IOException {
+        if(type == HDR_ABORTED) {
+            sendAbort();
+            return false;
+        }
+        if((type == HDR_CANCELLED) || (type == ZCAN) || (type == ZABORT)) {
+            throw new SerialComException("Received abort command from other end !");
+        }
+        if(type == ZFERR) {
+            sendAbort();
+            throw new SerialComException("Other end could not read or write file !");
+        }
+        return true;
+    }
+
+    private void sendAbort() throws IOException {
+        link.write(ABORT_CMD);
+    }
+
+    private static int percentOf(long pos, long length) {
+        if(length <= 0) {
+            return 100;
+        }
+        return (int) Math.min(100, (pos * 100) / length);
+    }
+
+    private static long getHeaderPosition(byte[] hdr) {
+        return (hdr[1] & 0xFFL) | ((hdr[2] & 0xFFL) << 8) | ((hdr[3] & 0xFFL) << 16) | ((hdr[4] & 0xFFL) << 24);
+    }
+
+    private void setHeaderPosition(int type, long pos) {
+        txHdr[0] = (byte) type;
+        txHdr[1] = (byte) pos;
+        txHdr[2] = (byte) (pos >>> 8);
+        txHdr[3] = (byte) (pos >>> 16);
+        txHdr[4] = (byte) (pos >>> 24);
+    }
+
+    /* ------------------------------------------------------------------------------------------------
+     * Frame transmission.
+     */
+
+    private void sendHexHeader(int type, long pos) throws IOException {
+        setHeaderPosition(type, pos);
+        sendHexHeader(txHdr);
+    }
+
+    private void sendHexHeader(int type, byte[] hdr) throws IOException {
+        txHdr[0] = (byte) type;
+        System.arraycopy(hdr, 1, txHdr, 1, 4);
+        sendHexHeader(txHdr);
+    }
+
+    /* ZPAD ZPAD ZDLE ZHEX type and 4 bytes and CRC-16 as lower case hex, CR LF and XON. */
+    private void sendHexHeader(byte[] hdr) throws IOException {
+        int crc = crcCalculator.getCRC16CCITTValue(hdr, 0, 4);
+        txFrameLen = 0;
+        txFrame[txFrameLen++] = ZPAD;
+        txFrame[txFrameLen++] = ZPAD;
+        txFrame[txFrameLen++] = ZDLE;
+        txFrame[txFrameLen++] = ZHEX;
+        for(int x=0; x < 5; x++) {
+            putHex(hdr[x]);
+        }
+        putHex((byte) (crc >>> 8));
+        putHex((byte) crc);
+        txFrame[txFrameLen++] = CR;
+        txFrame[txFrameLen++] = (byte) (LF | 0x80);
+        if((hdr[0] != ZFIN) && (hdr[0] != ZACK)) {
+            txFrame[txFrameLen++] = XON;
+        }
+        link.write(txFrame, 0, txFrameLen);
+    }
+
+    private void sendBinHeader(int type, long pos) throws IOException {
+        setHeaderPosition(type, pos);
+        sendBinHeader(txHdr);
+    }
+
+    /* ZPAD ZDLE ZBIN32/ZBIN followed by escaped type, 4 bytes and CRC. */
+    private void sendBinHeader(byte[] hdr) throws IOException {
+        txFrameLen = 0;
+        lastSent = 0;
+        txFrame[txFrameLen++] = ZPAD;
+        txFrame[txFrameLen++] = ZDLE;
+        if(txCrc32 == true) {
+            txFrame[txFrameLen++] = ZBIN32;
+            for(int x=0; x < 5; x++) {
+                putEscaped(hdr[x]);
+            }
+            crc32.reset();
+            crc32.update(hdr, 0, 5);
+            putCRC32(crc32.getValue());
+        }else {
+            txFrame[txFrameLen++] = ZBIN;
+            for(int x=0; x < 5; x++) {
+                putEscaped(hdr[x]);
+            }
+            int crc = crcCalculator.getCRC16CCITTValue(hdr, 0, 4);
+            putEscaped((byte) (crc >>> 8));
+            putEscaped((byte) crc);
+        }
+        link.write(txFrame, 0, txFrameLen);
+    }
+
+    /* Sends length bytes of txData as escaped data subpacket ending with given terminator and CRC. */
+    private void sendData(int length, int frameEnd) throws IOException {
+        txFrameLen = 0;
+        for(int x=0; x < length; x++) {
+            putEscaped(txData[x]);
+        }
+        txFrame[txFrameLen++] = ZDLE;
+        txFrame[txFrameLen++] = (byte) frameEnd;
+        txData[length] = (byte) frameEnd;
+        if(txCrc32 == true) {
+            crc32.reset();
+            crc32.update(txData, 0, length + 1);
+            putCRC32(crc32.getValue());
+        }else {
+            int crc = crcCalculator.getCRC16CCITTValue(txData, 0, length);
+            putEscaped((byte) (crc >>> 8));
+            putEscaped((byte) crc);
+        }
+        if(frameEnd == ZCRCW) {
+            txFrame[txFrameLen++] = XON;
+        }
+        link.write(txFrame, 0, txFrameLen);
+    }
+
+    private void putCRC32(long crc) {
+        for(int x=0; x < 4; x++) {
+            putEscaped((byte) crc);
+            crc = crc >>> 8;
+        }
+    }
+
+    private void putHex(byte b) {
+        txFrame[txFrameLen++] = HEX[(b >>> 4) & 0x0F];
+        txFrame[txFrameLen++] = HEX[b & 0x0F];
+    }
+
+    /* Escapes ZDLE, DLE, XON, XOFF (with and without parity bit) and CR after @, or all control characters if asked. */
+    private void putEscaped(byte b) {
+        int c = b & 0xFF;
+        boolean escape = false;
+        switch(c) {
+        case ZDLE:
+        case 0x10:
+        case 0x90:
+        case XON:
+        case 0x91:
+        case XOFF:
+        case 0x93:
+            escape = true;
+            break;
+        case 0x0D:
+        case 0x8D:
+            escape = (lastSent & 0x7F) == '@';
+            break;
+        default:
+            escape = (escapeAllCtl == true) && ((c & 0x60) == 0);
+            break;
+        }
+        if(escape == true) {
+            txFrame[txFrameLen++] = ZDLE;
+            c = c ^ 0x40;
+        }
+        txFrame[txFrameLen++] = (byte) c;
+        lastSent = c;
+    }
+
+    /* ------------------------------------------------------------------------------------------------
+     * Frame reception.
+     */
+
+    /*
+     * Looks for next frame header and reads it into rxHdr. If pollOnly is true and no byte is waiting, returns
+     * HDR_NONE immediately. Bytes which do not start a header (line noise, rest of a bad subpacket) are skipped.
+     */
+    private int readHeader(long timeout, boolean pollOnly) throws IOException {
+        int c = 0;
+        int cans = 0;
+        long deadline = System.currentTimeMillis() + timeout;
+
+        while(true) {
+            c = link.read(pollOnly ? 0 : 100);
+            if(c == TIMEOUT) {
+                if(pollOnly == true) {
+                    return HDR_NONE;
+                }
+                if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                    return HDR_ABORTED;
+                }
+                if(System.currentTimeMillis() >= deadline) {
+                    return HDR_TIMEOUT;
+                }
+                continue;
+            }
+            if(c == ZDLE) {
+                cans++;
+                if(cans >= 5) {
+                    return HDR_CANCELLED;
+                }
+                continue;
+            }
+            cans = 0;
+            if((c & 0x7F) != ZPAD) {
+                continue;
+            }
+
+            // got ZPAD, skip further ZPADs and expect ZDLE followed by frame indicator
+            do {
+                c = link.read(BYTE_TIMEOUT);
+            } while((c != TIMEOUT) && ((c & 0x7F) == ZPAD));
+            if(c == TIMEOUT) {
+                return HDR_TIMEOUT;
+            }
+            if(c != ZDLE) {
+                continue;
+            }
+            c = link.read(BYTE_TIMEOUT);
+            if(c == TIMEOUT) {
+                return HDR_TIMEOUT;
+            }
+            switch(c) {
+            case ZBIN:
+                return readBinHeader(false);
+            case ZBIN32:
+                return readBinHeader(true);
+            case ZHEX:
+                return readHexHeader();
+            case ZDLE:
+                cans = 2;
+                continue;
+            default:
+                continue;
+            }
+        }
+    }
+
+    private int readBinHeader(boolean isCrc32) throws IOException {
+        int c = 0;
+        byte[] crcBytes = new byte[4];
+        int crcLength = (isCrc32 == true) ? 4 : 2;
+
+        for(int x=0; x < 5; x++) {
+            c = zdlRead();
+            if(c < 0 || (c & GOTOR) != 0) {
+                return headerError(c);
+            }
+            rxHdr[x] = (byte) c;
+        }
+        for(int x=0; x < crcLength; x++) {
+            c = zdlRead();
+            if(c < 0 || (c & GOTOR) != 0) {
+                return headerError(c);
+            }
+            crcBytes[x] = (byte) c;
+        }
+
+        if(isCrc32 == true) {
+            crc32.reset();
+            crc32.update(rxHdr, 0, 5);
+            if(crc32.getValue() != getCRC32(crcBytes)) {
+                return HDR_ERROR;
+            }
+        }else {
+            int crc = crcCalculator.getCRC16CCITTValue(rxHdr, 0, 4);
+            if(crc != (((crcBytes[0] & 0xFF) << 8) | (crcBytes[1] & 0xFF))) {
+                return HDR_ERROR;
+            }
+        }
+        rxFrameCrc32 = isCrc32;
+        return rxHdr[0] & 0xFF;
+    }
+
+    private int readHexHeader() throws IOException {
+        int c = 0;
+        byte[] crcBytes = new byte[2];
+        for(int x=0; x < 5; x++) {
+            c = readHexByte();
+            if(c < 0) {
+                return (c == TIMEOUT) ? HDR_TIMEOUT : HDR_ERROR;
+            }
+            rxHdr[x] = (byte) c;
+        }
+        for(int x=0; x < 2; x++) {
+            c = readHexByte();
+            if(c < 0) {
+                return (c == TIMEOUT) ? HDR_TIMEOUT : HDR_ERROR;
+            }
+            crcBytes[x] = (byte) c;
+        }
+        int crc = crcCalculator.getCRC16CCITTValue(rxHdr, 0, 4);
+        if(crc != (((crcBytes[0] & 0xFF) << 8) | (crcBytes[1] & 0xFF))) {
+            return HDR_ERROR;
+        }
+        // data subpackets following hex header (if any) use 16 bit CRC
+        rxFrameCrc32 = false;
+        return rxHdr[0] & 0xFF;
+    }
+
+    private int readHexByte() throws IOException {
+        int hi = hexValue(link.read(BYTE_TIMEOUT));
+        if(hi < 0) {
+            return hi;
+        }
+        int lo = hexValue(link.read(BYTE_TIMEOUT));
+        if(lo < 0) {
+            return lo;
+        }
+        return (hi << 4) | lo;
+    }
+
+    private static int hexValue(int c) {
+        if(c == TIMEOUT) {
+            return TIMEOUT;
+        }
+        c = c & 0x7F;
+        if((c >= '0') && (c <= '9')) {
+            return c - '0';
+        }
+        if((c >= 'a') && (c <= 'f')) {
+            return c - 'a' + 10;
+        }
+        return ERROR;
+    }
+
+    private static int headerError(int c) {
+        if(c == GOTCAN) {
+            return HDR_CANCELLED;
+        }
+        if(c == TIMEOUT) {
+            return HDR_TIMEOUT;
+        }
+        return HDR_ERROR;
+    }
+
+    private static long getCRC32(byte[] crcBytes) {
+        return (crcBytes[0] & 0xFFL) | ((crcBytes[1] & 0xFFL) << 8) | ((crcBytes[2] & 0xFFL) << 16)
+                | ((crcBytes[3] & 0xFFL) << 24);
+    }
+
+    /*
+     * Reads one data subpacket into rxData verifying its CRC. Returns terminator (ZCRCE/G/Q/W) on success,
+     * ERROR on bad CRC or garbled data, TIMEOUT or GOTCAN.
+     */
+    private int readData() throws IOException {
+        int c = 0;
+        int length = 0;
+        int crcLength = (rxFrameCrc32 == true) ? 4 : 2;
+        byte[] crcBytes = new byte[4];
+
+        while(true) {
+            c = zdlRead();
+            if(c < 0) {
+                return c;
+            }
+            if((c & GOTOR) != 0) {
+                break;
+            }
+            if(length >= MAX_SUBPACKET_SIZE) {
+                return ERROR;
+            }
+            rxData[length++] = (byte) c;
+        }
+
+        int frameEnd = c & 0xFF;
+        rxData[length] = (byte) frameEnd;
+        for(int x=0; x < crcLength; x++) {
+            c = zdlRead();
+            if(c < 0) {
+                return c;
+            }
+            if((c & GOTOR) != 0) {
+                return ERROR;
+            }
+            crcBytes[x] = (byte) c;
+        }
+
+        if(rxFrameCrc32 == true) {
+            crc32.reset();
+            crc32.update(rxData, 0, length + 1);
+            if(crc32.getValue() != getCRC32(crcBytes)) {
+                return ERROR;
+            }
+        }else {
+            int crc = crcCalculator.getCRC16CCITTValue(rxData, 0, length);
+            if(crc != (((crcBytes[0] & 0xFF) << 8) | (crcBytes[1] & 0xFF))) {
+                return ERROR;
+            }
+        }
+        rxDataLen = length;
+        return frameEnd;
+    }
+
+    /* Reads one byte removing ZDLE escaping, unescaped XON/XOFF are flow control noise and are dropped. */
+    private int zdlRead() throws IOException {
+        int c = 0;
+        int cans = 1;
+
+        while(true) {
+            c = link.read(BYTE_TIMEOUT);
+            if(c == TIMEOUT) {
+                return TIMEOUT;
+            }
+            if(c == ZDLE) {
+                break;
+            }
+            if((c & 0x7F) == XON || (c & 0x7F) == XOFF) {
+                continue;
+            }
+            return c;
+        }
+
+        while(true) {
+            c = link.read(BYTE_TIMEOUT);
+            if(c == TIMEOUT) {
+                return TIMEOUT;
+            }
+            switch(c) {
+            case ZDLE:
+                cans++;
+                if(cans >= 5) {
+                    return GOTCAN;
+                }
+                continue;
+            case ZCRCE:
+            case ZCRCG:
+            case ZCRCQ:
+            case ZCRCW:
+                return c | GOTOR;
+            case ZRUB0:
+                return 0x7F;
+            case ZRUB1:
+                return 0xFF;
+            default:
+                if((c & 0x7F) == XON || (c & 0x7F) == XOFF) {
+                    continue;
+                }
+                if((c & 0x60) == 0x40) {
+                    return c ^ 0x40;
+                }
+                return ERROR;
+            }
+        }
+    }
+}
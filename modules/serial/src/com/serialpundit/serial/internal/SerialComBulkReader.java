@@ -0,0 +1,175 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.SerialComLineErrors;
+
+/**
+ * <p>Carries out read requests larger than what native readBytes, readBytesBlocking and readBytesP
+ * functions accept in one call.</p>
+ *
+ * <p>First chunk is read using the native function matching the request, so blocking and line error
+ * semantics are preserved. If it comes back full, more data is waiting in operating system buffer and
+ * rest of the request is drained without blocking using readBytesDirect, which has no size limit,
+ * into the per thread direct scratch buffer of the manager. Scratch buffer starts small and doubles 
+ * whenever a read fills it completely, so ports receiving at high baud rates quickly reach large reads with few native
+ * calls, while slow ports keep small footprint. Draining stops at the first short read, i.e. as soon
+ * as operating system buffer is empty.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComBulkReader {
+
+    /** <p>Maximum number of bytes native readBytes, readBytesBlocking and readBytesP read in one call.</p> */
+    public static final int NATIVE_READ_CHUNK = 2048;
+
+    private static final int MIN_SCRATCH_SIZE = 4096;
+    private static final int MAX_SCRATCH_SIZE = 1024 * 1024;
+
+    private final SerialComPortJNIBridge mComPortJNIBridge;
+    private final SerialComScratchBuffer mScratchBuffer;
+
+    /**
+     * <p>Allocates a new SerialComBulkReader object.</p>
+     *
+     * @param mComPortJNIBridge interface used to invoke appropriate native function.
+     * @param scratchBuffer per thread direct buffers into which data is drained.
+     */
+    public SerialComBulkReader(SerialComPortJNIBridge mComPortJNIBridge, SerialComScratchBuffer scratchBuffer) {
+        this.mComPortJNIBridge = mComPortJNIBridge;
+        this.mScratchBuffer = scratchBuffer;
+    }
+
+    /**
+     * <p>Reads up to byteCount bytes from serial port into a new byte array.</p>
+     *
+     * @param handle handle of the opened port from which to read.
+     * @param byteCount maximum number of bytes to read (must be greater than 0).
+     * @param context blocking I/O context for blocking read of first chunk or -1 for non-blocking read.
+     * @return array of bytes read or null if there was no data.
+     * @throws SerialComException if an I/O error occurs.
+     */
+    public byte[] read(long handle, int byteCount, long context) throws SerialComException {
+        int first = Math.min(byteCount, NATIVE_READ_CHUNK);
+        byte[] data = null;
+        if(context == -1) {
+            data = mComPortJNIBridge.readBytes(handle, first);
+        }else {
+            data = mComPortJNIBridge.readBytesBlocking(handle, first, context);
+        }
+        if((data == null) || (data.length < first) || (first == byteCount)) {
+            return data;
+        }
+
+        // operating system buffer has more data, grow result geometrically while it keeps coming
+        int total = data.length;
+        int ret = 0;
+        byte[] result = Arrays.copyOf(data, (int) Math.min((long) byteCount, 4L * total));
+        while(true) {
+            ret = drain(handle, result, total, result.length - total);
+            total = total + ret;
+            if((total < result.length) || (total == byteCount)) {
+                break;
+            }
+            result = Arrays.copyOf(result, (int) Math.min((long) byteCount, 2L * result.length));
+        }
+
+        if(total == result.length) {
+            return result;
+        }
+        return Arrays.copyOf(result, total);
+    }
+
+    /**
+     * <p>Reads up to length bytes from serial port into given array.</p>
+     *
+     * @param handle handle of the opened port from which to read.
+     * @param buffer array in which data will be placed.
+     * @param offset index in buffer at which first byte will be placed.
+     * @param length maximum number of bytes to read (must be greater than 0).
+     * @param context blocking I/O context for blocking read of first chunk or -1 for non-blocking read.
+     * @param lineErr object which will carry line error information or null.
+     * @return number of bytes read.
+     * @throws SerialComException if an I/O error occurs.
+     */
+    public int read(long handle, byte[] buffer, int offset, int length, long context,
+            SerialComLineErrors lineErr) throws SerialComException {
+
+        int first = Math.min(length, NATIVE_READ_CHUNK);
+        int ret = mComPortJNIBridge.readBytesP(handle, buffer, offset, first, context, lineErr);
+        if(ret < 0) {
+            throw new SerialComException("Could not read data from serial port. Please retry !");
+        }
+        if((ret < first) || (first == length)) {
+            return ret;
+        }
+
+        int total = ret;
+        int chunk = 0;
+        if(lineErr == null) {
+            return total + drain(handle, buffer, offset + total, length - total);
+        }
+
+        // line errors are reported only by readBytesP, so keep using it for rest of the data
+        while(total < length) {
+            chunk = Math.min(length - total, NATIVE_READ_CHUNK);
+            ret = mComPortJNIBridge.readBytesP(handle, buffer, offset + total, chunk, -1, lineErr);
+            if(ret < 0) {
+                throw new SerialComException("Could not read data from serial port. Please retry !");
+            }
+            if(ret == 0) {
+                break;
+            }
+            total = total + ret;
+            if(ret < chunk) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /* Reads without blocking until length bytes are read or operating system buffer becomes empty. */
+    private int drain(long handle, byte[] buffer, int offset, int length) throws SerialComException {
+        ByteBuffer scratch = mScratchBuffer.get(Math.min(length, MIN_SCRATCH_SIZE));
+        int total = 0;
+        int chunk = 0;
+        int ret = 0;
+
+        while(total < length) {
+            chunk = Math.min(length - total, scratch.capacity());
+            ret = mComPortJNIBridge.readBytesDirect(handle, scratch, 0, chunk);
+            if(ret < 0) {
+                throw new SerialComException("Could not read data from serial port. Please retry !");
+            }
+            if(ret == 0) {
+                break;
+            }
+            scratch.clear();
+            scratch.get(buffer, offset + total, ret);
+            total = total + ret;
+            if(ret < chunk) {
+                break;
+            }
+            if((ret == scratch.capacity()) && (scratch.capacity() < MAX_SCRATCH_SIZE)) {
+                scratch = mScratchBuffer.get(Math.min(MAX_SCRATCH_SIZE, scratch.capacity() * 2));
+            }
+        }
+
+        return total;
+    }
+}
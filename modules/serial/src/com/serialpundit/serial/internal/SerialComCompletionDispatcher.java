@@ -12,12 +12,13 @@
  */
 package com.serialpundit.serial.internal;
 
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 
 import com.serialpundit.core.SerialComException;
 import com.serialpundit.serial.ISerialComDataListener;
 import com.serialpundit.serial.ISerialComEventListener;
+import com.serialpundit.serial.SerialComBatchPolicy;
 
 /**
  * <p>Represents Proactor in our IO design pattern.</p>
@@ -34,22 +35,71 @@ import com.serialpundit.serial.ISerialComEventListener;
  * 2. A looper can have none or only one data looper at any instant of time.<br/>
  * 3. A looper can have none or only one event looper at any instant of time.<br/>
  * 
+ * <p>In shared dispatch mode loopers do not create their own threads. All of them are served by a 
+ * single SerialComLooperPool whose size is equal to number of processor cores. The pool is created 
+ * when first listener is registered.</p>
+ * 
  * @author Rishi Gupta
  */
 public final class SerialComCompletionDispatcher {
 
     private SerialComPortJNIBridge mComPortJNIBridge = null;
-    private TreeMap<Long, SerialComPortHandleInfo> mPortHandleInfo = null;
+    private final boolean mSharedDispatch;
+    private SerialComLooperPool mLooperPool = null;
+    private volatile int mWaitStrategy = SerialComDataRing.WAIT_PARK;
+
+    // Reverse index from event listener (by reference) to information objects of handles for which it is 
+    // registered in order of registration, so that operations given only listener do not have to scan 
+    // every handle. Same listener may be registered for more than one handle.
+    private final IdentityHashMap<ISerialComEventListener, ArrayList<SerialComPortHandleInfo>> mEventListenerIndex = 
+            new IdentityHashMap<ISerialComEventListener, ArrayList<SerialComPortHandleInfo>>();
+
+    /**
+     * <p>Allocates a new SerialComCompletionDispatcher object which creates dedicated looper threads 
+     * for every handle.</p>
+     * 
+     * @param mComPortJNIBridge interface used to invoke appropriate native function
+     */
+    public SerialComCompletionDispatcher(SerialComPortJNIBridge mComPortJNIBridge) {
+        this(mComPortJNIBridge, false);
+    }
 
     /**
      * <p>Allocates a new SerialComCompletionDispatcher object.</p>
      * 
      * @param mComPortJNIBridge interface used to invoke appropriate native function
-     * @param portHandleInfo reference to portHandleInfo object to get/set information about handle/port
+     * @param sharedDispatch true if all loopers should be served by a shared pool of threads, false if 
+     *         every looper should create its own threads.
      */
-    public SerialComCompletionDispatcher(SerialComPortJNIBridge mComPortJNIBridge, TreeMap<Long, SerialComPortHandleInfo> portHandleInfo) {
+    public SerialComCompletionDispatcher(SerialComPortJNIBridge mComPortJNIBridge, boolean sharedDispatch) {
         this.mComPortJNIBridge = mComPortJNIBridge;
-        this.mPortHandleInfo = portHandleInfo;
+        this.mSharedDispatch = sharedDispatch;
+    }
+
+    /*
+     * Creates looper for a handle, in shared dispatch mode it is bound to the pool (created lazily 
+     * so that applications which never register listeners do not pay for idle threads).
+     */
+    private SerialComLooper createLooper() {
+        if(mSharedDispatch == false) {
+            return new SerialComLooper(mComPortJNIBridge, null, mWaitStrategy);
+        }
+        synchronized(this) {
+            if(mLooperPool == null) {
+                mLooperPool = new SerialComLooperPool();
+            }
+        }
+        return new SerialComLooper(mComPortJNIBridge, mLooperPool, mWaitStrategy);
+    }
+
+    /**
+     * <p>Sets how data looper threads created after this call wait for new data when there is 
+     * nothing to deliver.</p>
+     * 
+     * @param waitStrategy one of the SerialComDataRing.WAIT_XXX constants.
+     */
+    public void setWaitStrategy(int waitStrategy) {
+        mWaitStrategy = waitStrategy;
     }
 
     /**
@@ -62,18 +112,58 @@ public final class SerialComCompletionDispatcher {
      * @throws SerialComException if not able to complete requested operation.
      */
     public boolean setUpDataLooper(long handle, SerialComPortHandleInfo mHandleInfo, ISerialComDataListener dataListener) throws SerialComException {
+        return setUpDataLooper(handle, mHandleInfo, dataListener, null);
+    }
+
+    /**
+     * <p>This method creates data looper thread which delivers data in batches as per given batch policy 
+     * and initialize subsystem for data event passing. </p>
+     * 
+     * @param handle handle of the opened port for which data looper need to be set up.
+     * @param mHandleInfo Reference to SerialComPortHandleInfo object associated with given handle.
+     * @param dataListener listener for which looper has to be set up.
+     * @param batchPolicy policy for flushing batches or null if data should not be batched.
+     * @return true on success.
+     * @throws SerialComException if not able to complete requested operation.
+     */
+    public boolean setUpDataLooper(long handle, SerialComPortHandleInfo mHandleInfo, ISerialComDataListener dataListener, 
+            SerialComBatchPolicy batchPolicy) throws SerialComException {
+        return setUpDataLooper(handle, mHandleInfo, dataListener, batchPolicy, SerialComLooper.DEFAULT_DATA_QUEUE_CAPACITY, 
+                SerialComDataRing.OVERFLOW_DROP_OLDEST);
+    }
+
+    /**
+     * <p>This method creates data looper thread with given queue capacity and overflow policy and 
+     * initialize subsystem for data event passing. </p>
+     * 
+     * @param handle handle of the opened port for which data looper need to be set up.
+     * @param mHandleInfo Reference to SerialComPortHandleInfo object associated with given handle.
+     * @param dataListener listener for which looper has to be set up.
+     * @param batchPolicy policy for flushing batches or null if data should not be batched.
+     * @param queueCapacity maximum number of data chunks that can be queued for this listener.
+     * @param overflowPolicy one of the SerialComDataRing.OVERFLOW_XXX constants.
+     * @return true on success.
+     * @throws SerialComException if not able to complete requested operation.
+     */
+    public boolean setUpDataLooper(long handle, SerialComPortHandleInfo mHandleInfo, ISerialComDataListener dataListener, 
+            SerialComBatchPolicy batchPolicy, int queueCapacity, int overflowPolicy) throws SerialComException {
 
         int ret = 0;
         SerialComLooper looper = mHandleInfo.getLooper();
 
+        // Two readers on same port would split data stream between them.
+        if((mHandleInfo.getPooledDataReader() != null) || (mHandleInfo.getDirectDataReader() != null)) {
+            throw new SerialComException("Data listener already exist for this handle. A handle can have only one data listener !");
+        }
+
         // Create looper for this handle and listener, if it does not exist.
         if(looper == null) {
-            looper = new SerialComLooper(mComPortJNIBridge);
+            looper = createLooper();
             mHandleInfo.setLooper(looper);
         }
 
         // set up queue and start thread first, then set up native thread
-        looper.startDataLooper(handle, dataListener, mHandleInfo.getOpenedPortName());
+        looper.startDataLooper(handle, dataListener, mHandleInfo.getOpenedPortName(), batchPolicy, queueCapacity, overflowPolicy);
         mHandleInfo.setDataListener(dataListener);
 
         try {
@@ -109,6 +199,9 @@ public final class SerialComCompletionDispatcher {
      */
     public boolean destroyDataLooper(long handle, SerialComPortHandleInfo handleInfo, ISerialComDataListener dataListener) throws SerialComException {
 
+        // Native thread may be blocked on a full data queue, release it so that it can exit.
+        handleInfo.getLooper().closeDataQueue();
+
         // We got valid handle so destroy native threads for this listener.
         int ret = mComPortJNIBridge.destroyDataLooperThread(handle);
         if(ret < 0) {
@@ -145,7 +238,7 @@ public final class SerialComCompletionDispatcher {
 
         // Create looper for this handle and listener, if it does not exist.
         if(looper == null) {
-            looper = new SerialComLooper(mComPortJNIBridge);
+            looper = createLooper();
             mHandleInfo.setLooper(looper);
         }
 
@@ -171,6 +264,15 @@ public final class SerialComCompletionDispatcher {
             throw new SerialComException(e.getExceptionMsg());
         }
 
+        synchronized(mEventListenerIndex) {
+            ArrayList<SerialComPortHandleInfo> handleInfos = mEventListenerIndex.get(eventListener);
+            if(handleInfos == null) {
+                handleInfos = new ArrayList<SerialComPortHandleInfo>(1);
+                mEventListenerIndex.put(eventListener, handleInfos);
+            }
+            handleInfos.add(mHandleInfo);
+        }
+
         return true;
     }
 
@@ -194,8 +296,17 @@ public final class SerialComCompletionDispatcher {
         // Destroy event looper thread.
         handleInfo.getLooper().stopEventLooper();
 
-        // Remove event listener from information object about this handle.
+        // Remove event listener from information object about this handle and from reverse index.
         handleInfo.setEventListener(null);
+        synchronized(mEventListenerIndex) {
+            ArrayList<SerialComPortHandleInfo> handleInfos = mEventListenerIndex.get(eventListener);
+            if(handleInfos != null) {
+                handleInfos.remove(handleInfo);
+                if(handleInfos.isEmpty()) {
+                    mEventListenerIndex.remove(eventListener);
+                }
+            }
+        }
 
         // If neither data nor event listener exist, looper object should be destroyed.
         if((handleInfo.getEventListener() == null) && (handleInfo.getDataListener() == null)) {
@@ -205,6 +316,24 @@ public final class SerialComCompletionDispatcher {
         return true;
     }
 
+    /**
+     * <p>Gives information object of the handle for which given event listener is registered. If same 
+     * listener is registered for more than one handle, the handle for which it was registered first 
+     * among those for which it is still registered is given.</p>
+     * 
+     * @param listener event listener to look up.
+     * @return information object of handle or null if listener is not registered.
+     */
+    public SerialComPortHandleInfo getHandleInfoOfEventListener(ISerialComEventListener listener) {
+        synchronized(mEventListenerIndex) {
+            ArrayList<SerialComPortHandleInfo> handleInfos = mEventListenerIndex.get(listener);
+            if(handleInfos == null) {
+                return null;
+            }
+            return handleInfos.get(0);
+        }
+    }
+
     /**
      * <p>Check if we have handler corresponding to this listener and take actions accordingly.</p>
      * 
@@ -213,34 +342,36 @@ public final class SerialComCompletionDispatcher {
      * @throws SerialComException if not able to complete requested operation.
      */
     public boolean pauseListeningEvents(ISerialComEventListener listener) throws SerialComException {
-
-        long handle = -1;
-        SerialComLooper looper = null;
-        SerialComPortHandleInfo handleInfo = null;
-
-        for (Map.Entry<Long, SerialComPortHandleInfo> entry : mPortHandleInfo.entrySet()) {
-            handleInfo = entry.getValue();
-            if(handleInfo != null) {
-                if(handleInfo.getEventListener() ==  listener) {
-                    handle = handleInfo.getPortHandle();
-                    looper = handleInfo.getLooper();
-                    break;
-                }
-            }
+        SerialComPortHandleInfo handleInfo = getHandleInfoOfEventListener(listener);
+        if(handleInfo == null) {
+            throw new SerialComException("This event listener is not registered with SerialPundit !");
         }
+        return pauseListeningEvents(handleInfo);
+    }
 
-        if(handle != -1) {
-            // We got a valid handle, so pause native threads for this listener first.
-            int ret = mComPortJNIBridge.pauseListeningEvents(handle);
-            if(ret < 0) {
-                throw new SerialComException("Could not pause event thread !");
-            }
+    /**
+     * <p>Pauses delivery of events for the handle represented by given information object.</p>
+     * 
+     * @param handleInfo global information object about the handle.
+     * @return true on success.
+     * @throws SerialComException if event listener is not registered for this handle or not able to 
+     *          complete requested operation.
+     */
+    public boolean pauseListeningEvents(SerialComPortHandleInfo handleInfo) throws SerialComException {
 
-            looper.pause(); // now pause corresponding looper thread.
-        }else {
+        SerialComLooper looper = handleInfo.getLooper();
+        if((handleInfo.getEventListener() == null) || (looper == null)) {
             throw new SerialComException("This event listener is not registered with SerialPundit !");
         }
 
+        // We got a valid handle, so pause native threads for this listener first.
+        int ret = mComPortJNIBridge.pauseListeningEvents(handleInfo.getPortHandle());
+        if(ret < 0) {
+            throw new SerialComException("Could not pause event thread !");
+        }
+
+        looper.pause(); // now pause corresponding looper thread.
+
         return true;
     }
 
@@ -252,35 +383,37 @@ public final class SerialComCompletionDispatcher {
      * @throws SerialComException if not able to complete requested operation.
      */
     public boolean resumeListeningEvents(ISerialComEventListener listener) throws SerialComException {
-
-        long handle = -1;
-        SerialComLooper looper = null;
-        SerialComPortHandleInfo handleInfo = null;
-
-        for (Map.Entry<Long, SerialComPortHandleInfo> entry : mPortHandleInfo.entrySet()) {
-            handleInfo = entry.getValue();
-            if(handleInfo != null) {
-                if(handleInfo.getEventListener() ==  listener) {
-                    handle = handleInfo.getPortHandle();
-                    looper = handleInfo.getLooper();
-                    break;
-                }
-            }
+        SerialComPortHandleInfo handleInfo = getHandleInfoOfEventListener(listener);
+        if(handleInfo == null) {
+            throw new SerialComException("This event listener is not registered with SerialPundit !");
         }
+        return resumeListeningEvents(handleInfo);
+    }
 
-        if(handle != -1) {
-            // We got valid handle, so resume Java looper first.
-            looper.resume();
+    /**
+     * <p>Resumes delivery of events for the handle represented by given information object.</p>
+     * 
+     * @param handleInfo global information object about the handle.
+     * @return true on success.
+     * @throws SerialComException if event listener is not registered for this handle or not able to 
+     *          complete requested operation.
+     */
+    public boolean resumeListeningEvents(SerialComPortHandleInfo handleInfo) throws SerialComException {
 
-            // now resume native subsystem.
-            int ret = mComPortJNIBridge.resumeListeningEvents(handle);
-            if(ret < 0) {
-                throw new SerialComException("Could not resume event thread !");
-            }
-        }else {
+        SerialComLooper looper = handleInfo.getLooper();
+        if((handleInfo.getEventListener() == null) || (looper == null)) {
             throw new SerialComException("This event listener is not registered with SerialPundit !");
         }
 
+        // We got valid handle, so resume Java looper first.
+        looper.resume();
+
+        // now resume native subsystem.
+        int ret = mComPortJNIBridge.resumeListeningEvents(handleInfo.getPortHandle());
+        if(ret < 0) {
+            throw new SerialComException("Could not resume event thread !");
+        }
+
         return true;
     }
 }
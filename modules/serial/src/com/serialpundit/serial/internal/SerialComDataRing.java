@@ -0,0 +1,393 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Lock-free single producer single consumer ring of data chunks used between native data
+ * looper thread (producer) and Java data looper (consumer).</p>
+ *
+ * <p>Producer only advances tail and consumer only advances head. What happens when the ring is
+ * full is decided by the overflow policy given at construction time :</p>
+ * <ul>
+ * <li>Drop oldest : producer drops the oldest chunk by advancing head with compare and set. Consumer
+ * also claims a chunk by compare and set on head, so a chunk is either delivered or counted as
+ * dropped but never both.</li>
+ * <li>Drop newest : the chunk being inserted is dropped and counted.</li>
+ * <li>Block : producer (native reader) waits until consumer frees a slot. As native thread does not
+ * read serial port meanwhile, operating system buffer fills up and flow control (if enabled)
+ * throttles the sender.</li>
+ * <li>Spill : chunks are written to a bounded off-heap spill buffer until consumer catches up. Once
+ * something has been spilled, all new chunks go to spill buffer till it is drained, which keeps data
+ * in order. If spill buffer is also full, chunk being inserted is dropped and counted.</li>
+ * </ul>
+ *
+ * <p>When the ring is empty consumer waits as per the wait strategy given at construction time;
+ * busy spinning, yielding processor or parking the thread until producer inserts a chunk.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComDataRing {
+
+    /** <p>Consumer busy spins while waiting for data. Lowest latency, burns one core. </p>*/
+    public static final int WAIT_SPIN = 1;
+
+    /** <p>Consumer yields processor while waiting for data. </p>*/
+    public static final int WAIT_YIELD = 2;
+
+    /** <p>Consumer thread is parked while waiting for data and un-parked by producer. </p>*/
+    public static final int WAIT_PARK = 3;
+
+    /** <p>When ring is full, oldest chunk in ring is dropped. </p>*/
+    public static final int OVERFLOW_DROP_OLDEST = 1;
+
+    /** <p>When ring is full, chunk being inserted is dropped. </p>*/
+    public static final int OVERFLOW_DROP_NEWEST = 2;
+
+    /** <p>When ring is full, producer waits until consumer frees a slot. </p>*/
+    public static final int OVERFLOW_BLOCK = 3;
+
+    /** <p>When ring is full, chunks are stored in off-heap spill buffer. </p>*/
+    public static final int OVERFLOW_SPILL = 4;
+
+    // upper bound on a single park of blocked producer, so that it re-checks closed flag
+    private static final long PRODUCER_PARK_NANOS = 1000000;
+
+    private final AtomicReferenceArray<byte[]> mBuffer;
+    private final int mCapacity;
+    private final int mMask;
+    private final int mWaitStrategy;
+    private final int mOverflowPolicy;
+    private final SerialComSpillBuffer mSpill;
+
+    // head is advanced by consumer (take) and by producer (drop oldest), tail only by producer.
+    private final AtomicLong mHead = new AtomicLong(0);
+    private final AtomicLong mTail = new AtomicLong(0);
+
+    private final AtomicLong mDroppedChunks = new AtomicLong(0);
+    private final AtomicLong mDroppedBytes = new AtomicLong(0);
+
+    private volatile Thread mWaiter = null;
+    private volatile Thread mBlockedProducer = null;
+    private volatile boolean mClosed = false;
+
+    /**
+     * <p>Allocates a new SerialComDataRing object which drops oldest chunk when full. The capacity 
+     * is rounded up to next power of 2.</p>
+     *
+     * @param capacity minimum number of chunks this ring can hold.
+     * @param waitStrategy one of the WAIT_SPIN, WAIT_YIELD or WAIT_PARK constants.
+     * @throws IllegalArgumentException if capacity is zero or negative or too large, or waitStrategy
+     *         is invalid.
+     */
+    public SerialComDataRing(int capacity, int waitStrategy) {
+        this(capacity, waitStrategy, OVERFLOW_DROP_OLDEST, 0);
+    }
+
+    /**
+     * <p>Allocates a new SerialComDataRing object. The capacity is rounded up to next power of 2.</p>
+     *
+     * @param capacity minimum number of chunks this ring can hold.
+     * @param waitStrategy one of the WAIT_SPIN, WAIT_YIELD or WAIT_PARK constants.
+     * @param overflowPolicy one of the OVERFLOW_XXX constants.
+     * @param spillCapacity size in bytes of off-heap spill buffer, used only with OVERFLOW_SPILL.
+     * @throws IllegalArgumentException if capacity is zero or negative or too large, or waitStrategy
+     *         or overflowPolicy is invalid.
+     */
+    public SerialComDataRing(int capacity, int waitStrategy, int overflowPolicy, int spillCapacity) {
+        if((capacity <= 0) || (capacity > (1 << 30))) {
+            throw new IllegalArgumentException("Argument capacity must be between 1 and 2^30 !");
+        }
+        if((waitStrategy != WAIT_SPIN) && (waitStrategy != WAIT_YIELD) && (waitStrategy != WAIT_PARK)) {
+            throw new IllegalArgumentException("Argument waitStrategy is invalid !");
+        }
+        if((overflowPolicy < OVERFLOW_DROP_OLDEST) || (overflowPolicy > OVERFLOW_SPILL)) {
+            throw new IllegalArgumentException("Argument overflowPolicy is invalid !");
+        }
+        mOverflowPolicy = overflowPolicy;
+        mSpill = (overflowPolicy == OVERFLOW_SPILL) ? new SerialComSpillBuffer(spillCapacity) : null;
+        int size = 1;
+        while(size < capacity) {
+            size = size << 1;
+        }
+        mCapacity = size;
+        mMask = size - 1;
+        mWaitStrategy = waitStrategy;
+        mBuffer = new AtomicReferenceArray<byte[]>(size);
+    }
+
+    /**
+     * <p>Inserts given chunk at tail. If the ring is full, the action taken depends upon overflow 
+     * policy. Must be called only from the producer thread.</p>
+     *
+     * @param data chunk to insert.
+     * @return false if a chunk had to be dropped, true otherwise.
+     */
+    public boolean offer(byte[] data) {
+        boolean stored = true;
+
+        if(mOverflowPolicy == OVERFLOW_DROP_OLDEST) {
+            stored = publishDropOldest(data);
+        }else if(mOverflowPolicy == OVERFLOW_SPILL) {
+            if(mSpill.isEmpty() && !isFull()) {
+                publish(data);
+            }else if(!mSpill.offer(data)) {
+                countDropped(data);
+                stored = false;
+            }
+        }else {
+            if((mOverflowPolicy == OVERFLOW_BLOCK) && isFull()) {
+                waitForRoom();
+            }
+            if(isFull()) {
+                // drop newest policy, or ring was closed while producer was blocked
+                countDropped(data);
+                stored = false;
+            }else {
+                publish(data);
+            }
+        }
+
+        if(mWaitStrategy == WAIT_PARK) {
+            Thread waiter = mWaiter;
+            if(waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+        return stored;
+    }
+
+    /* Makes room by dropping oldest chunk if needed and inserts given chunk. */
+    private boolean publishDropOldest(byte[] data) {
+        boolean dropped = false;
+        long tail = mTail.get();
+        long head;
+        byte[] oldest;
+
+        while(true) {
+            head = mHead.get();
+            if((tail - head) < mCapacity) {
+                break;
+            }
+            oldest = mBuffer.get((int) (head & mMask));
+            if(mHead.compareAndSet(head, head + 1)) {
+                countDropped(oldest);
+                dropped = true;
+                break;
+            }
+            // consumer took the oldest chunk meanwhile, room is available now
+        }
+
+        publish(data);
+        return !dropped;
+    }
+
+    /* Inserts given chunk at tail, caller has ensured that there is room for it. */
+    private void publish(byte[] data) {
+        long tail = mTail.get();
+        // volatile write of tail publishes the chunk and orders it before reading mWaiter in 
+        // offer(), so a consumer that is about to park can not miss this chunk.
+        mBuffer.lazySet((int) (tail & mMask), data);
+        mTail.set(tail + 1);
+    }
+
+    private boolean isFull() {
+        return (mTail.get() - mHead.get()) >= mCapacity;
+    }
+
+    private void countDropped(byte[] data) {
+        mDroppedChunks.incrementAndGet();
+        if(data != null) {
+            mDroppedBytes.addAndGet(data.length);
+        }
+    }
+
+    /* Parks producer until consumer takes a chunk or ring is closed. */
+    private void waitForRoom() {
+        mBlockedProducer = Thread.currentThread();
+        try {
+            while(isFull() && !mClosed) {
+                LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+            }
+        } finally {
+            mBlockedProducer = null;
+        }
+    }
+
+    /**
+     * <p>Marks this ring as closed because consumer is going away. A producer blocked for room 
+     * is released and further chunks which do not fit are dropped instead of blocking.</p>
+     */
+    public void close() {
+        mClosed = true;
+        Thread producer = mBlockedProducer;
+        if(producer != null) {
+            LockSupport.unpark(producer);
+        }
+    }
+
+    /**
+     * <p>Removes and returns the chunk at head or null if the ring is empty. Must be called only
+     * from the consumer side.</p>
+     *
+     * @return oldest chunk or null.
+     */
+    public byte[] poll() {
+        long head;
+        byte[] data;
+        int index;
+
+        while(true) {
+            head = mHead.get();
+            if(head >= mTail.get()) {
+                // chunks in ring are always older than the spilled ones
+                return (mSpill != null) ? mSpill.poll() : null;
+            }
+            index = (int) (head & mMask);
+            data = mBuffer.get(index);
+            if(mHead.compareAndSet(head, head + 1)) {
+                // release reference for GC unless producer has already reused this slot
+                mBuffer.compareAndSet(index, data, null);
+                if(mOverflowPolicy == OVERFLOW_BLOCK) {
+                    Thread producer = mBlockedProducer;
+                    if(producer != null) {
+                        LockSupport.unpark(producer);
+                    }
+                }
+                return data;
+            }
+            // producer dropped this chunk, try next one
+        }
+    }
+
+    /**
+     * <p>Removes and returns the chunk at head waiting as per wait strategy if the ring is empty.</p>
+     *
+     * @return oldest chunk.
+     * @throws InterruptedException if consumer thread is interrupted while waiting.
+     */
+    public byte[] take() throws InterruptedException {
+        return poll(-1);
+    }
+
+    /**
+     * <p>Removes and returns the chunk at head waiting up to given time as per wait strategy if
+     * the ring is empty.</p>
+     *
+     * @param timeout maximum time to wait or negative to wait indefinitely.
+     * @param unit time unit of timeout argument.
+     * @return oldest chunk or null if timeout elapsed.
+     * @throws InterruptedException if consumer thread is interrupted while waiting.
+     */
+    public byte[] poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return poll(unit.toNanos(timeout));
+    }
+
+    private byte[] poll(long timeoutNanos) throws InterruptedException {
+        byte[] data = poll();
+        if(data != null) {
+            return data;
+        }
+
+        final long deadline = (timeoutNanos >= 0) ? (System.nanoTime() + timeoutNanos) : 0;
+        long remaining = timeoutNanos;
+
+        try {
+            if(mWaitStrategy == WAIT_PARK) {
+                mWaiter = Thread.currentThread();
+            }
+            while(true) {
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                data = poll();
+                if(data != null) {
+                    return data;
+                }
+                if(timeoutNanos >= 0) {
+                    remaining = deadline - System.nanoTime();
+                    if(remaining <= 0) {
+                        return null;
+                    }
+                }
+                if(mWaitStrategy == WAIT_PARK) {
+                    if(timeoutNanos >= 0) {
+                        LockSupport.parkNanos(this, remaining);
+                    }else {
+                        LockSupport.park(this);
+                    }
+                }else if(mWaitStrategy == WAIT_YIELD) {
+                    Thread.yield();
+                }
+            }
+        } finally {
+            if(mWaitStrategy == WAIT_PARK) {
+                mWaiter = null;
+            }
+        }
+    }
+
+    /**
+     * <p>Tells whether there is any chunk in this ring.</p>
+     *
+     * @return true if ring is empty.
+     */
+    public boolean isEmpty() {
+        if(mHead.get() < mTail.get()) {
+            return false;
+        }
+        return (mSpill == null) || mSpill.isEmpty();
+    }
+
+    /**
+     * <p>Gives number of chunks currently in the ring, excluding spilled chunks if any.</p>
+     *
+     * @return number of chunks.
+     */
+    public int size() {
+        long size = mTail.get() - mHead.get();
+        return (size < 0) ? 0 : (int) size;
+    }
+
+    /**
+     * <p>Gives maximum number of chunks this ring can hold.</p>
+     *
+     * @return capacity of ring.
+     */
+    public int capacity() {
+        return mCapacity;
+    }
+
+    /**
+     * <p>Gives number of chunks dropped so far because ring (and spill buffer if any) was full.</p>
+     *
+     * @return number of dropped chunks.
+     */
+    public long getDroppedChunks() {
+        return mDroppedChunks.get();
+    }
+
+    /**
+     * <p>Gives number of data bytes dropped so far because ring (and spill buffer if any) was full.</p>
+     *
+     * @return number of dropped bytes.
+     */
+    public long getDroppedBytes() {
+        return mDroppedBytes.get();
+    }
+}
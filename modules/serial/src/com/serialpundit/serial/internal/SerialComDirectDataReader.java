@@ -0,0 +1,255 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.ISerialComDirectDataListener;
+
+/**
+ * <p>Per handle ring of bytes in a direct byte buffer shared between native layer and Java. A
+ * reader thread asks native layer (readBytesDirect) to place data straight into free region of the
+ * ring and publishes new tail index. A dispatcher thread hands readable region between head and
+ * tail to ISerialComDirectDataListener as a read only view and then publishes new head index.</p>
+ *
+ * <p>No Java array is created on the receive path and, apart from first byte of a burst, no copy
+ * is made. When the ring is full reader stops reading, so operating system buffer and flow control
+ * (if enabled) throttle the sender.</p>
+ *
+ * <p>readBytesDirect does not block. When it finds no data, reader waits in operating system for next
+ * byte using a blocking read with an unblock context, places that byte in the ring and then drains rest
+ * of the burst with readBytesDirect again. An idle port therefore costs no CPU time, and stop() unblocks
+ * the waiting reader through its context. Port should be left in default non-blocking read mode (not
+ * configured for blocking reads using fineTuneReadBehaviour) as readBytesDirect itself can not be
+ * unblocked.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComDirectDataReader {
+
+    private static final long MAX_BACKOFF_NANOS = 1000000000L;
+
+    private final SerialComPortJNIBridge mComPortJNIBridge;
+    private final ISerialComDirectDataListener mDataListener;
+    private final long mHandle;
+    private final ByteBuffer mRing;
+    private final ByteBuffer mView;
+    private final int mCapacity;
+    private final byte[] mFirstByte = new byte[1];
+    private long mContext = -1;
+
+    // head is advanced only by dispatcher, tail only by reader.
+    private final AtomicLong mHead = new AtomicLong(0);
+    private final AtomicLong mTail = new AtomicLong(0);
+
+    private volatile Thread mParkedReader = null;
+    private volatile Thread mParkedDispatcher = null;
+    private volatile boolean mExit = false;
+    private Thread mReaderThread = null;
+    private Thread mDispatcherThread = null;
+
+    /**
+     * <p>Reads from serial port into the ring.</p>
+     */
+    class Reader implements Runnable {
+        @Override
+        public void run() {
+            long head = 0;
+            long tail = 0;
+            int offset = 0;
+            int length = 0;
+            int ret = 0;
+            int errors = 0;
+
+            while(mExit == false) {
+                tail = mTail.get();
+                head = mHead.get();
+                if((tail - head) == mCapacity) {
+                    waitForDispatcher(tail);
+                    continue;
+                }
+
+                // largest contiguous free region starting at tail
+                offset = (int) (tail % mCapacity);
+                length = (int) Math.min(mCapacity - (tail - head), mCapacity - offset);
+
+                try {
+                    ret = mComPortJNIBridge.readBytesDirect(mHandle, mRing, offset, length);
+                    if(ret == 0) {
+                        // nothing to drain, wait in operating system till next byte arrives or stop() unblocks us.
+                        ret = mComPortJNIBridge.readBytesP(mHandle, mFirstByte, 0, 1, mContext, null);
+                        if(ret > 0) {
+                            mRing.put(offset, mFirstByte[0]);
+                        }
+                    }
+                } catch (Exception e) {
+                    // native layer throws when blocked read is unblocked explicitly or fails
+                    ret = -1;
+                }
+
+                if(ret > 0) {
+                    errors = 0;
+                    mTail.set(tail + ret);
+                    Thread dispatcher = mParkedDispatcher;
+                    if(dispatcher != null) {
+                        LockSupport.unpark(dispatcher);
+                    }
+                }else if(ret < 0) {
+                    if(mExit == true) {
+                        break;
+                    }
+                    // a persistent failure must not turn into a busy loop flooding listener.
+                    mDataListener.onDataListenerError(ret);
+                    errors++;
+                    LockSupport.parkNanos(this, (errors > 10) ? MAX_BACKOFF_NANOS : Math.min(MAX_BACKOFF_NANOS, 1000000L << (errors - 1)));
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Delivers readable region of the ring to listener.</p>
+     */
+    class Dispatcher implements Runnable {
+        @Override
+        public void run() {
+            long head = 0;
+            long tail = 0;
+            int offset = 0;
+            int length = 0;
+
+            while(mExit == false) {
+                head = mHead.get();
+                tail = mTail.get();
+                if(head == tail) {
+                    waitForReader(head);
+                    continue;
+                }
+
+                // largest contiguous readable region starting at head
+                offset = (int) (head % mCapacity);
+                length = (int) Math.min(tail - head, mCapacity - offset);
+
+                mView.clear();
+                mView.position(offset);
+                mView.limit(offset + length);
+                mDataListener.onNewSerialDataAvailable(mView);
+
+                mHead.set(head + length);
+                Thread reader = mParkedReader;
+                if(reader != null) {
+                    LockSupport.unpark(reader);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Allocates a new SerialComDirectDataReader object.</p>
+     *
+     * @param mComPortJNIBridge interface used to invoke appropriate native function.
+     * @param dataListener listener to which data will be delivered.
+     * @param handle handle of the opened port from which data will be read.
+     * @param capacity size of ring in bytes.
+     */
+    public SerialComDirectDataReader(SerialComPortJNIBridge mComPortJNIBridge, ISerialComDirectDataListener dataListener,
+            long handle, int capacity) {
+        this.mComPortJNIBridge = mComPortJNIBridge;
+        this.mDataListener = dataListener;
+        this.mHandle = handle;
+        this.mCapacity = capacity;
+        this.mRing = ByteBuffer.allocateDirect(capacity);
+        this.mView = mRing.asReadOnlyBuffer();
+    }
+
+    /* Parks reader while ring is still full. */
+    private void waitForDispatcher(long tail) {
+        mParkedReader = Thread.currentThread();
+        try {
+            while(((tail - mHead.get()) == mCapacity) && (mExit == false)) {
+                LockSupport.park(this);
+            }
+        } finally {
+            mParkedReader = null;
+        }
+    }
+
+    /* Parks dispatcher while ring is still empty. */
+    private void waitForReader(long head) {
+        mParkedDispatcher = Thread.currentThread();
+        try {
+            while((mTail.get() == head) && (mExit == false)) {
+                LockSupport.park(this);
+            }
+        } finally {
+            mParkedDispatcher = null;
+        }
+    }
+
+    /**
+     * <p>Creates blocking context and starts reader and dispatcher threads.</p>
+     *
+     * @param portName name of port represented by handle.
+     * @throws SerialComException if blocking context can not be created.
+     */
+    public void start(String portName) throws SerialComException {
+        long context = mComPortJNIBridge.createBlockingIOContext();
+        if(context < 0) {
+            throw new SerialComException("Could not create blocking I/O context. Please retry !");
+        }
+        mContext = context;
+        mReaderThread = new Thread(new Reader(), "SerialPundit DirectDataReader for handle " + mHandle + " and port " + portName);
+        mDispatcherThread = new Thread(new Dispatcher(), "SerialPundit DirectDataDispatcher for handle " + mHandle + " and port " + portName);
+        mDispatcherThread.start();
+        mReaderThread.start();
+    }
+
+    /**
+     * <p>Asks both threads to exit, unblocks reader and waits for them. Data in ring not yet delivered is 
+     * discarded.</p>
+     *
+     * @throws SerialComException if blocked read can not be unblocked or context can not be destroyed.
+     */
+    public void stop() throws SerialComException {
+        mExit = true;
+        int ret = mComPortJNIBridge.unblockBlockingIOOperation(mContext);
+        if(ret < 0) {
+            throw new SerialComException("Could not unblock the blocked I/O operation. Please retry !");
+        }
+        LockSupport.unpark(mReaderThread);
+        LockSupport.unpark(mDispatcherThread);
+        try {
+            mReaderThread.join();
+            mDispatcherThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ret = mComPortJNIBridge.destroyBlockingIOContext(mContext);
+        if(ret < 0) {
+            throw new SerialComException("Could not destroy blocking I/O context. Please retry !");
+        }
+    }
+
+    /**
+     * <p>Gives listener to which this reader delivers data.</p>
+     *
+     * @return direct data listener.
+     */
+    public ISerialComDirectDataListener getDataListener() {
+        return mDataListener;
+    }
+}
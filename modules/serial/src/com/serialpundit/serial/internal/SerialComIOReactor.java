@@ -0,0 +1,401 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.SerialComIOFuture;
+import com.serialpundit.serial.SerialComManager;
+
+/**
+ * <p>Multiplexes read and write operations of many serial ports over a small, fixed number of
+ * reactor threads. Every handle is always served by the same reactor thread, which keeps read and
+ * write operations on a handle in submission order.</p>
+ *
+ * <p>A reactor thread polls serial ports having pending reads using non-blocking reads and
+ * completes the future of an operation as soon as some data is read or its timeout elapses. When a
+ * round makes no progress, thread parks for a short interval; when nothing is pending at all it
+ * parks until a new operation is submitted. Callers therefore never wait inside native code.</p>
+ *
+ * <p>Writes are carried out by the reactor thread using regular write methods which return after
+ * data has been sent out. Large writes should be split by application to keep latency of other
+ * ports low. A write may additionally wait until operating system output buffer of the port has
+ * become empty; it stays at the head of write queue of its handle and output buffer is checked
+ * from time to time in polling rounds, so no extra thread is needed for this.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComIOReactor {
+
+    private static final int IDLE_SPINS = 16;
+    private static final long IDLE_PARK_NANOS = 1000000;
+    private static final long MAX_DRAIN_CHECK_NANOS = 8000000;
+
+    private final SerialComManager mSerialComManager;
+    private final Worker[] mWorkers;
+    private volatile boolean mShutdown = false;
+
+    /* Pending read or write operation. */
+    private static final class Operation {
+        final long handle;
+        final ByteBuffer buffer;
+        final boolean isRead;
+        final boolean drain;
+        final long deadline;
+        final SerialComIOFuture future = new SerialComIOFuture();
+        int transferred = 0;
+        long nextDrainCheck = 0;
+        long drainCheckInterval = IDLE_PARK_NANOS;
+        Operation(long handle, ByteBuffer buffer, boolean isRead, boolean drain, long deadline) {
+            this.handle = handle;
+            this.buffer = buffer;
+            this.isRead = isRead;
+            this.drain = drain;
+            this.deadline = deadline;
+        }
+    }
+
+    /* Pending operations of one handle. */
+    private static final class HandleOperations {
+        final ArrayDeque<Operation> reads = new ArrayDeque<Operation>();
+        final ArrayDeque<Operation> writes = new ArrayDeque<Operation>();
+    }
+
+    /* One reactor thread and the handles it serves. */
+    private final class Worker implements Runnable {
+
+        private final ConcurrentLinkedQueue<Operation> mSubmitted = new ConcurrentLinkedQueue<Operation>();
+        private final LinkedHashMap<Long, HandleOperations> mPending = new LinkedHashMap<Long, HandleOperations>();
+        private final Thread mThread;
+        private volatile boolean mParked = false;
+
+        Worker(String name) {
+            mThread = new Thread(this, name);
+            mThread.setDaemon(true);
+        }
+
+        void submit(Operation operation) {
+            mSubmitted.offer(operation);
+            if(mShutdown == true) {
+                // worker may have already failed pending operations and exited, if operation is still 
+                // queued nobody else will complete it. If it is not, worker has taken and failed it.
+                if(mSubmitted.remove(operation)) {
+                    operation.future.fail(new SerialComException("I/O reactor has been shut down !"));
+                }
+                return;
+            }
+            if(mParked) {
+                LockSupport.unpark(mThread);
+            }
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            boolean progress = false;
+
+            while(mShutdown == false) {
+                drainSubmitted();
+                progress = false;
+
+                Iterator<HandleOperations> it = mPending.values().iterator();
+                while(it.hasNext()) {
+                    HandleOperations ops = it.next();
+                    if(serviceReads(ops.reads)) {
+                        progress = true;
+                    }
+                    if(serviceWrites(ops.writes)) {
+                        progress = true;
+                    }
+                    if(ops.reads.isEmpty() && ops.writes.isEmpty()) {
+                        it.remove();
+                    }
+                }
+
+                if(progress) {
+                    idle = 0;
+                    continue;
+                }
+                if(mPending.isEmpty()) {
+                    // nothing to poll, sleep until an operation is submitted
+                    mParked = true;
+                    if(mSubmitted.isEmpty() && (mShutdown == false)) {
+                        LockSupport.park(this);
+                    }
+                    mParked = false;
+                }else if(idle < IDLE_SPINS) {
+                    idle++;
+                    Thread.yield();
+                }else {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+
+            failAll();
+        }
+
+        private void drainSubmitted() {
+            Operation operation = null;
+            HandleOperations ops = null;
+            while((operation = mSubmitted.poll()) != null) {
+                ops = mPending.get(operation.handle);
+                if(ops == null) {
+                    ops = new HandleOperations();
+                    mPending.put(operation.handle, ops);
+                }
+                if(operation.isRead) {
+                    ops.reads.offer(operation);
+                }else {
+                    ops.writes.offer(operation);
+                }
+            }
+        }
+
+        private void failAll() {
+            drainSubmitted();
+            SerialComException e = new SerialComException("I/O reactor has been shut down !");
+            for(HandleOperations ops : mPending.values()) {
+                for(Operation operation : ops.reads) {
+                    operation.future.fail(e);
+                }
+                for(Operation operation : ops.writes) {
+                    operation.future.fail(e);
+                }
+            }
+            mPending.clear();
+        }
+    }
+
+    /**
+     * <p>Allocates a new SerialComIOReactor object and starts its reactor threads.</p>
+     *
+     * @param scm instance of SerialComManager through which serial ports will be accessed.
+     * @param numOfThreads number of reactor threads.
+     * @param name prefix for names of reactor threads.
+     */
+    public SerialComIOReactor(SerialComManager scm, int numOfThreads, String name) {
+        mSerialComManager = scm;
+        mWorkers = new Worker[numOfThreads];
+        for(int x=0; x < numOfThreads; x++) {
+            mWorkers[x] = new Worker(name + " " + (x + 1));
+        }
+        for(int x=0; x < numOfThreads; x++) {
+            mWorkers[x].mThread.start();
+        }
+    }
+
+    /**
+     * <p>Queues a read operation which completes as soon as at least one byte has been read into
+     * given buffer starting at its position, or with result 0 when timeout elapses. Position of
+     * buffer is advanced by number of bytes read.</p>
+     *
+     * @param handle handle of the opened port from which to read.
+     * @param buffer buffer in which data will be placed.
+     * @param timeout time in milliseconds after which operation completes with 0 bytes, or negative
+     *         to wait indefinitely.
+     * @return future which completes when operation is done.
+     */
+    public SerialComIOFuture submitRead(long handle, ByteBuffer buffer, long timeout) {
+        long deadline = (timeout >= 0) ? (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout)) : 0;
+        return submit(new Operation(handle, buffer, true, false, deadline));
+    }
+
+    /**
+     * <p>Queues a write operation which completes when all bytes between position and limit of
+     * given buffer have been written. Position of buffer is advanced by number of bytes written.</p>
+     *
+     * @param handle handle of the opened port on which to write.
+     * @param buffer buffer containing data to be written.
+     * @return future which completes when operation is done.
+     */
+    public SerialComIOFuture submitWrite(long handle, ByteBuffer buffer) {
+        return submit(new Operation(handle, buffer, false, false, 0));
+    }
+
+    /**
+     * <p>Queues a write operation which completes when all bytes between position and limit of
+     * given buffer have been written and output buffer of port has then become empty. Empty buffer
+     * can be given to just wait for writes queued earlier on this handle to be transmitted.</p>
+     *
+     * @param handle handle of the opened port on which to write.
+     * @param buffer buffer containing data to be written.
+     * @return future which completes when operation is done.
+     */
+    public SerialComIOFuture submitWriteAndDrain(long handle, ByteBuffer buffer) {
+        return submit(new Operation(handle, buffer, false, true, 0));
+    }
+
+    private SerialComIOFuture submit(Operation operation) {
+        if(mShutdown == true) {
+            operation.future.fail(new SerialComException("I/O reactor has been shut down !"));
+            return operation.future;
+        }
+        mWorkers[(int) ((operation.handle & 0x7FFFFFFFFFFFFFFFL) % mWorkers.length)].submit(operation);
+        return operation.future;
+    }
+
+    /**
+     * <p>Stops all reactor threads. Pending operations fail with SerialComException.</p>
+     */
+    public void shutdown() {
+        mShutdown = true;
+        for(int x=0; x < mWorkers.length; x++) {
+            LockSupport.unpark(mWorkers[x].mThread);
+        }
+    }
+
+    /* Tries head read operation of a handle, returns true if it completed. */
+    private boolean serviceReads(ArrayDeque<Operation> reads) {
+        Operation operation = reads.peek();
+        if(operation == null) {
+            return false;
+        }
+        if(operation.future.isDone()) {
+            // cancelled by application
+            reads.poll();
+            return true;
+        }
+
+        int ret = 0;
+        try {
+            ret = read(operation.handle, operation.buffer);
+        } catch (SerialComException e) {
+            reads.poll();
+            operation.future.fail(e);
+            return true;
+        } catch (RuntimeException e) {
+            // for example buffer changed by application while operation is pending
+            reads.poll();
+            operation.future.fail(failure(e));
+            return true;
+        }
+
+        if(ret > 0) {
+            reads.poll();
+            operation.future.complete(ret);
+            return true;
+        }
+        if((operation.deadline != 0) && ((operation.deadline - System.nanoTime()) <= 0)) {
+            reads.poll();
+            operation.future.complete(0);
+            return true;
+        }
+        return false;
+    }
+
+    /* Writes as much of head write operation of a handle as possible, returns true if it progressed. */
+    private boolean serviceWrites(ArrayDeque<Operation> writes) {
+        Operation operation = writes.peek();
+        if(operation == null) {
+            return false;
+        }
+        if(operation.future.isDone()) {
+            writes.poll();
+            return true;
+        }
+
+        int ret = 0;
+        try {
+            ret = write(operation.handle, operation.buffer);
+            operation.transferred = operation.transferred + ret;
+            if(operation.buffer.hasRemaining() && (ret == 0)) {
+                // flow control has stopped transmission, retry in next round
+                return false;
+            }
+            if(operation.buffer.hasRemaining() || (operation.drain && (isDrained(operation) == false))) {
+                return ret > 0;
+            }
+        } catch (SerialComException e) {
+            writes.poll();
+            operation.future.fail(e);
+            return true;
+        } catch (RuntimeException e) {
+            // for example buffer changed by application while operation is pending
+            writes.poll();
+            operation.future.fail(failure(e));
+            return true;
+        }
+
+        writes.poll();
+        operation.future.complete(operation.transferred);
+        return true;
+    }
+
+    /* True if operating system output buffer of given handle is empty, data buffered by write coalescing is sent first. 
+     * Querying byte count allocates an array in native layer, so while output buffer is not empty it is checked again 
+     * after 1, 2, 4 ... up to 8 milliseconds rather than in every round. */
+    private boolean isDrained(Operation operation) throws SerialComException {
+        long now = System.nanoTime();
+        if((operation.nextDrainCheck != 0) && ((operation.nextDrainCheck - now) > 0)) {
+            return false;
+        }
+        mSerialComManager.flush(operation.handle);
+        if(mSerialComManager.getByteCountInPortIOBuffer(operation.handle)[1] == 0) {
+            return true;
+        }
+        operation.nextDrainCheck = now + operation.drainCheckInterval;
+        operation.drainCheckInterval = Math.min(operation.drainCheckInterval * 2, MAX_DRAIN_CHECK_NANOS);
+        return false;
+    }
+
+    /* Wraps unexpected exception thrown while carrying out an operation so that it can fail its future. */
+    private static SerialComException failure(RuntimeException e) {
+        return (SerialComException) new SerialComException("I/O operation failed : " + e).initCause(e);
+    }
+
+    private int read(long handle, ByteBuffer buffer) throws SerialComException {
+        int ret = 0;
+        int length = buffer.remaining();
+        if(length == 0) {
+            return 0;
+        }
+        if(buffer.isDirect()) {
+            ret = mSerialComManager.readBytesDirect(handle, buffer, buffer.position(), length);
+        }else {
+            ret = mSerialComManager.readBytes(handle, buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    length, -1, null);
+        }
+        if(ret > 0) {
+            buffer.position(buffer.position() + ret);
+        }
+        return ret;
+    }
+
+    private int write(long handle, ByteBuffer buffer) throws SerialComException {
+        int ret = 0;
+        int length = buffer.remaining();
+        if(length == 0) {
+            return 0;
+        }
+        if(buffer.isDirect()) {
+            ret = mSerialComManager.writeBytesDirect(handle, buffer, buffer.position(), length);
+        }else if(buffer.hasArray()) {
+            ret = mSerialComManager.writeBytes(handle, buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        }else {
+            // read only heap buffer, copied into per thread scratch buffer and position advanced by callee
+            return mSerialComManager.writeBytes(handle, new ByteBuffer[] { buffer });
+        }
+        if(ret > 0) {
+            buffer.position(buffer.position() + ret);
+        }
+        return ret;
+    }
+}
@@ -13,12 +13,16 @@
 
 package com.serialpundit.serial.internal;
 
+import java.util.ArrayList;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.ISerialComBatchDataListener;
 import com.serialpundit.serial.ISerialComDataListener;
+import com.serialpundit.serial.SerialComBatchPolicy;
 import com.serialpundit.serial.ISerialComEventListener;
 import com.serialpundit.serial.SerialComLineEvent;
 import com.serialpundit.serial.SerialComManager;
@@ -31,20 +35,40 @@ import com.serialpundit.serial.SerialComManager;
  * <p>The rate of delivery of data/events are directly proportional to how fast listener finishes
  * his job and let us return.</p>
  * 
+ * <p>If a looper pool is given, no thread is created for this looper. Instead whenever new data/event 
+ * is queued a delivery task is submitted to the shared pool. At most one delivery task of each kind 
+ * exist at any instant of time for a looper, so data/events are still delivered in order.</p>
+ * 
  * @author Rishi Gupta
  */
 public final class SerialComLooper {
 
+    /** <p>Number of data chunks queued for a data listener if application does not specify it. </p>*/
+    public static final int DEFAULT_DATA_QUEUE_CAPACITY = 5000;
+
+    /** <p>Size in bytes of off-heap buffer used when data queue overflows with spill policy. </p>*/
+    public static final int MAX_SPILL_BYTES = 8 * 1024 * 1024;
+
     private final int MAX_NUM_EVENTS = 5000;
+    private final int MAX_SHARED_BURST = 64;
     private SerialComPortJNIBridge mComPortJNIBridge;
+    private final SerialComLooperPool mLooperPool;
+    private volatile SharedDelivery mSharedDataDelivery = null;
+    private volatile SharedDelivery mSharedDataErrorDelivery = null;
+    private volatile SharedDelivery mSharedEventDelivery = null;
 
-    private BlockingQueue<byte[]> mDataQueue = null;
+    private final int mWaitStrategy;
+    private volatile SerialComDataRing mDataRing = null;
     private ISerialComDataListener mDataListener = null;
     private Object mDataLock = new Object();
     private Thread mDataLooperThread = null;
     private AtomicBoolean deliverDataEvent = new AtomicBoolean(true);
     private AtomicBoolean exitDataThread = new AtomicBoolean(false);
 
+    private SerialComBatchPolicy mBatchPolicy = null;
+    private final ArrayList<byte[]> mBatch = new ArrayList<byte[]>();
+    private int mBatchBytes = 0;
+
     private BlockingQueue<Integer> mDataErrorQueue = null;
     private Object mDataErrorLock = new Object();
     private Thread mDataErrorLooperThread = null;
@@ -67,26 +91,67 @@ public final class SerialComLooper {
     class DataLooper implements Runnable {
         @Override
         public void run() {
-            /* take() method blocks if there is no event to deliver. So we don't keep wasting 
-             * CPU cycle in case queue is empty. */
+            /* take() method waits as per wait strategy if there is no data to deliver. With park 
+             * strategy we don't keep wasting CPU cycle in case ring is empty. */
+            final SerialComDataRing dataRing = mDataRing;
             while(true) {
-                synchronized(mDataLock) {
-                    try {
-                        mDataListener.onNewSerialDataAvailable(mDataQueue.take());
-                        if(deliverDataEvent.get() == false) {
-                            /* Causes the current thread to wait until another thread
-                             * invokes the notify method. */
-                            mDataLock.wait();
-                        }
-                    } catch (InterruptedException e) {
-                        if(exitDataThread.get() == true) {
-                            break;
+                try {
+                    mDataListener.onNewSerialDataAvailable(dataRing.take());
+                    waitWhilePaused(mDataLock);
+                } catch (InterruptedException e) {
+                    if(exitDataThread.get() == true) {
+                        break;
+                    }
+                }
+            }
+            exitDataThread.set(false); // Reset exit flag
+        }
+    }
+
+    /**
+     * <p>Same as DataLooper but accumulates data chunks and hands them over to batch data listener 
+     * as per the batch policy in one call.</p>
+     */
+    class BatchDataLooper implements Runnable {
+        @Override
+        public void run() {
+            final long maxLatency = TimeUnit.MILLISECONDS.toNanos(mBatchPolicy.getMaxLatency());
+            final int maxBytes = mBatchPolicy.getMaxBytes();
+            byte[] data = null;
+            long deadline = 0;
+            long remaining = 0;
+            final SerialComDataRing dataRing = mDataRing;
+
+            while(true) {
+                try {
+                    data = dataRing.take();
+                    deadline = System.nanoTime() + maxLatency;
+                    addToBatch(data);
+                    while(mBatchBytes < maxBytes) {
+                        data = dataRing.poll();
+                        if(data == null) {
+                            remaining = deadline - System.nanoTime();
+                            if(remaining <= 0) {
+                                break;
+                            }
+                            data = dataRing.poll(remaining, TimeUnit.NANOSECONDS);
+                            if(data == null) {
+                                break;
+                            }
                         }
+                        addToBatch(data);
+                    }
+                    flushBatch();
+                    waitWhilePaused(mDataLock);
+                } catch (InterruptedException e) {
+                    if(exitDataThread.get() == true) {
+                        break;
                     }
                 }
             }
+            mBatch.clear();
+            mBatchBytes = 0;
             exitDataThread.set(false); // Reset exit flag
-            mDataQueue = null;
         }
     }
 
@@ -99,16 +164,12 @@ public final class SerialComLooper {
         @Override
         public void run() {
             while(true) {
-                synchronized(mDataErrorLock) {
-                    try {
-                        mDataListener.onDataListenerError(mDataErrorQueue.take());
-                        if(deliverDataEvent.get() == false) {
-                            mDataErrorLock.wait();
-                        }
-                    } catch (InterruptedException e) {
-                        if(exitDataErrorThread.get() == true) {
-                            break;
-                        }
+                try {
+                    mDataListener.onDataListenerError(mDataErrorQueue.take());
+                    waitWhilePaused(mDataErrorLock);
+                } catch (InterruptedException e) {
+                    if(exitDataErrorThread.get() == true) {
+                        break;
                     }
                 }
             }
@@ -140,12 +201,250 @@ public final class SerialComLooper {
     }
 
     /**
-     * <p>Allocates a new SerialComLooper object.</p>
+     * <p>Delivery task executed by the shared looper pool. It delivers at most MAX_SHARED_BURST 
+     * items and then gives other loopers a chance, re-submitting itself if more items are pending. 
+     * The scheduled flag guarantees that only one instance of this task is running or queued in 
+     * the pool, which preserves order of delivery for this handle.</p>
+     */
+    abstract class SharedDelivery implements Runnable {
+
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        volatile boolean active = true;
+
+        /* Delivers queued items, returns after at most MAX_SHARED_BURST items. */
+        abstract void deliver();
+
+        /* Returns true if there are items that can be delivered right now. */
+        abstract boolean hasPending();
+
+        void schedule() {
+            if(active && scheduled.compareAndSet(false, true)) {
+                mLooperPool.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if(active) {
+                    deliver();
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // producer might have queued an item after we stopped polling but before flag was 
+            // cleared, its schedule() attempt failed so re-check here.
+            if(active && hasPending()) {
+                schedule();
+            }
+        }
+    }
+
+    class SharedDataDelivery extends SharedDelivery {
+        @Override
+        void deliver() {
+            byte[] data = null;
+            for(int x=0; x < MAX_SHARED_BURST; x++) {
+                if(deliverDataEvent.get() == false) {
+                    return;
+                }
+                data = mDataRing.poll();
+                if(data == null) {
+                    return;
+                }
+                mDataListener.onNewSerialDataAvailable(data);
+            }
+        }
+        @Override
+        boolean hasPending() {
+            return deliverDataEvent.get() && !mDataRing.isEmpty();
+        }
+    }
+
+    /**
+     * <p>Batching variant of SharedDataDelivery. If latency deadline of a partially filled batch 
+     * has not passed yet, a timer is armed in pool which re-schedules this delivery when the 
+     * deadline expires. The batch itself is touched only from within deliver().</p>
+     */
+    class SharedBatchDataDelivery extends SharedDelivery {
+
+        private final AtomicBoolean timerArmed = new AtomicBoolean(false);
+        private volatile long deadline = 0;
+        private final long maxLatency = TimeUnit.MILLISECONDS.toNanos(mBatchPolicy.getMaxLatency());
+        private final int maxBytes = mBatchPolicy.getMaxBytes();
+
+        private final Runnable timer = new Runnable() {
+            @Override
+            public void run() {
+                timerArmed.set(false);
+                schedule();
+            }
+        };
+
+        @Override
+        void deliver() {
+            byte[] data = null;
+            for(int x=0; x < MAX_SHARED_BURST; x++) {
+                if(deliverDataEvent.get() == false) {
+                    return;
+                }
+                while(mBatchBytes < maxBytes) {
+                    data = mDataRing.poll();
+                    if(data == null) {
+                        break;
+                    }
+                    if(mBatch.isEmpty()) {
+                        deadline = System.nanoTime() + maxLatency;
+                    }
+                    addToBatch(data);
+                }
+                if(mBatch.isEmpty()) {
+                    return;
+                }
+                if((mBatchBytes < maxBytes) && ((deadline - System.nanoTime()) > 0)) {
+                    if(timerArmed.compareAndSet(false, true)) {
+                        mLooperPool.schedule(timer, deadline - System.nanoTime());
+                    }
+                    return;
+                }
+                deadline = 0;
+                flushBatch();
+            }
+        }
+
+        @Override
+        boolean hasPending() {
+            if(deliverDataEvent.get() == false) {
+                return false;
+            }
+            if(!mDataRing.isEmpty()) {
+                return true;
+            }
+            long due = deadline;
+            return (due != 0) && ((due - System.nanoTime()) <= 0);
+        }
+    }
+
+    class SharedDataErrorDelivery extends SharedDelivery {
+        @Override
+        void deliver() {
+            Integer errorNum = null;
+            for(int x=0; x < MAX_SHARED_BURST; x++) {
+                if(deliverDataEvent.get() == false) {
+                    return;
+                }
+                errorNum = mDataErrorQueue.poll();
+                if(errorNum == null) {
+                    return;
+                }
+                mDataListener.onDataListenerError(errorNum);
+            }
+        }
+        @Override
+        boolean hasPending() {
+            return deliverDataEvent.get() && !mDataErrorQueue.isEmpty();
+        }
+    }
+
+    class SharedEventDelivery extends SharedDelivery {
+        @Override
+        void deliver() {
+            SerialComLineEvent lineEvent = null;
+            for(int x=0; x < MAX_SHARED_BURST; x++) {
+                lineEvent = mEventQueue.poll();
+                if(lineEvent == null) {
+                    return;
+                }
+                mEventListener.onNewSerialEvent(lineEvent);
+            }
+        }
+        @Override
+        boolean hasPending() {
+            return !mEventQueue.isEmpty();
+        }
+    }
+
+    /**
+     * <p>Allocates a new SerialComLooper object which uses dedicated threads for delivering data 
+     * and events.</p>
      * 
      * @param mComPortJNIBridge interface used to invoke appropriate native function.
      */
     public SerialComLooper(SerialComPortJNIBridge mComPortJNIBridge) { 
+        this(mComPortJNIBridge, null);
+    }
+
+    /**
+     * <p>Allocates a new SerialComLooper object.</p>
+     * 
+     * @param mComPortJNIBridge interface used to invoke appropriate native function.
+     * @param looperPool shared pool which will deliver data and events or null if dedicated 
+     *         threads should be created for this looper.
+     */
+    public SerialComLooper(SerialComPortJNIBridge mComPortJNIBridge, SerialComLooperPool looperPool) { 
+        this(mComPortJNIBridge, looperPool, SerialComDataRing.WAIT_PARK);
+    }
+
+    /**
+     * <p>Allocates a new SerialComLooper object.</p>
+     * 
+     * @param mComPortJNIBridge interface used to invoke appropriate native function.
+     * @param looperPool shared pool which will deliver data and events or null if dedicated 
+     *         threads should be created for this looper.
+     * @param waitStrategy how dedicated data looper thread waits for new data; one of the 
+     *         SerialComDataRing.WAIT_XXX constants.
+     */
+    public SerialComLooper(SerialComPortJNIBridge mComPortJNIBridge, SerialComLooperPool looperPool, int waitStrategy) { 
         this.mComPortJNIBridge = mComPortJNIBridge;
+        this.mLooperPool = looperPool;
+        this.mWaitStrategy = waitStrategy;
+    }
+
+    /* Blocks the calling looper thread as long as delivery is paused by application. The lock is 
+     * held only while waiting, never while waiting for new data to arrive. */
+    private void waitWhilePaused(Object lock) throws InterruptedException {
+        if(deliverDataEvent.get() == false) {
+            synchronized(lock) {
+                while(deliverDataEvent.get() == false) {
+                    lock.wait();
+                }
+            }
+        }
+    }
+
+    /* Appends given chunk to the batch being accumulated. */
+    private void addToBatch(byte[] data) {
+        mBatch.add(data);
+        mBatchBytes += data.length;
+    }
+
+    /* Delivers accumulated batch to listener as per policy and prepares for next batch. */
+    private void flushBatch() {
+        if(mBatchPolicy.isCoalesce()) {
+            byte[] coalesced = null;
+            if(mBatch.size() == 1) {
+                coalesced = mBatch.get(0);
+            }else {
+                int index = 0;
+                coalesced = new byte[mBatchBytes];
+                for(int x=0; x < mBatch.size(); x++) {
+                    byte[] chunk = mBatch.get(x);
+                    System.arraycopy(chunk, 0, coalesced, index, chunk.length);
+                    index = index + chunk.length;
+                }
+            }
+            mBatch.clear();
+            mBatchBytes = 0;
+            mDataListener.onNewSerialDataAvailable(coalesced);
+        }else {
+            int numOfBytes = mBatchBytes;
+            try {
+                ((ISerialComBatchDataListener) mDataListener).onNewSerialDataBatchAvailable(mBatch, numOfBytes);
+            } finally {
+                mBatch.clear();
+                mBatchBytes = 0;
+            }
+        }
     }
 
     /**
@@ -153,12 +452,15 @@ public final class SerialComLooper {
      * @param newData byte array containing data read from serial port
      */
     public void insertInDataQueue(byte[] newData) {
-        try {
-            if(mDataQueue.remainingCapacity() == 0) {
-                mDataQueue.poll();
-            }
-            mDataQueue.offer(newData);
-        } catch (Exception e) {
+        SerialComDataRing dataRing = mDataRing;
+        if(dataRing == null) {
+            return;
+        }
+        // if ring is full, oldest chunk is dropped atomically and accounted for in ring itself.
+        dataRing.offer(newData);
+        SharedDelivery delivery = mSharedDataDelivery;
+        if(delivery != null) {
+            delivery.schedule();
         }
     }
 
@@ -173,6 +475,10 @@ public final class SerialComLooper {
         }
         try {
             mDataErrorQueue.offer(errorNum);
+            SharedDelivery delivery = mSharedDataErrorDelivery;
+            if(delivery != null) {
+                delivery.schedule();
+            }
         } catch (Exception e) {
         }
     }
@@ -190,6 +496,10 @@ public final class SerialComLooper {
         }
         try {
             mEventQueue.offer(new SerialComLineEvent(oldLineState, newLineState));
+            SharedDelivery delivery = mSharedEventDelivery;
+            if(delivery != null) {
+                delivery.schedule();
+            }
         } catch (Exception e) {
         }
         oldLineState = newLineState;
@@ -203,20 +513,89 @@ public final class SerialComLooper {
      * @param portName name of port represented by this handle.
      */
     public void startDataLooper(long handle, ISerialComDataListener dataListener, String portName) {
+        startDataLooper(handle, dataListener, portName, null);
+    }
+
+    /**
+     * <p>Start the thread to loop over data queue. If batchPolicy is not null, data chunks are 
+     * delivered in batches to the given batch data listener as per given policy.</p>
+     * 
+     * @param handle handle of the opened port for which data looper need to be started.
+     * @param dataListener listener to which data will be delivered.
+     * @param portName name of port represented by this handle.
+     * @param batchPolicy policy for flushing batches or null if every chunk should be delivered 
+     *         individually.
+     */
+    public void startDataLooper(long handle, ISerialComDataListener dataListener, String portName, 
+            SerialComBatchPolicy batchPolicy) {
+        startDataLooper(handle, dataListener, portName, batchPolicy, DEFAULT_DATA_QUEUE_CAPACITY, 
+                SerialComDataRing.OVERFLOW_DROP_OLDEST);
+    }
+
+    /**
+     * <p>Start the thread to loop over data queue which holds at most queueCapacity chunks. What 
+     * happens when application does not consume data fast enough and queue fills up is defined 
+     * by overflowPolicy.</p>
+     * 
+     * @param handle handle of the opened port for which data looper need to be started.
+     * @param dataListener listener to which data will be delivered.
+     * @param portName name of port represented by this handle.
+     * @param batchPolicy policy for flushing batches or null if every chunk should be delivered 
+     *         individually.
+     * @param queueCapacity maximum number of data chunks that can be queued for this listener.
+     * @param overflowPolicy one of the SerialComDataRing.OVERFLOW_XXX constants.
+     */
+    public void startDataLooper(long handle, ISerialComDataListener dataListener, String portName, 
+            SerialComBatchPolicy batchPolicy, int queueCapacity, int overflowPolicy) {
+        mDataRing = new SerialComDataRing(queueCapacity, mWaitStrategy, overflowPolicy, MAX_SPILL_BYTES);
         mDataListener = dataListener;
-        mDataQueue = new ArrayBlockingQueue<byte[]>(MAX_NUM_EVENTS);
+        mBatchPolicy = batchPolicy;
+        mBatch.clear();
+        mBatchBytes = 0;
         mDataErrorQueue = new ArrayBlockingQueue<Integer>(MAX_NUM_EVENTS);
-        mDataLooperThread = new Thread(new DataLooper(), "SerialPundit DataLooper for handle " + handle + " and port " + portName);
+        if(mLooperPool != null) {
+            if(mBatchPolicy != null) {
+                mSharedDataDelivery = new SharedBatchDataDelivery();
+            }else {
+                mSharedDataDelivery = new SharedDataDelivery();
+            }
+            mSharedDataErrorDelivery = new SharedDataErrorDelivery();
+            return;
+        }
+        if(mBatchPolicy != null) {
+            mDataLooperThread = new Thread(new BatchDataLooper(), "SerialPundit BatchDataLooper for handle " + handle + " and port " + portName);
+        }else {
+            mDataLooperThread = new Thread(new DataLooper(), "SerialPundit DataLooper for handle " + handle + " and port " + portName);
+        }
         mDataErrorLooperThread = new Thread(new DataErrorLooper(), "SerialPundit DataErrorLooper for handle " + handle + " and port " + portName);
         mDataLooperThread.start();
         mDataErrorLooperThread.start();
     }
 
+    /**
+     * <p>Releases native thread if it is blocked waiting for room in data queue (block overflow 
+     * policy), so that it can be terminated. Data that does not fit in queue afterwards is dropped.</p>
+     */
+    public void closeDataQueue() {
+        SerialComDataRing dataRing = mDataRing;
+        if(dataRing != null) {
+            dataRing.close();
+        }
+    }
+
     /**
      * <p>Set the flag to indicate that the thread is supposed to run to completion and exit.
      * Interrupt the thread so that take() method can come out of blocked sleep state.</p>
      */
     public void stopDataLooper() {
+        mDataRing.close();
+        if(mLooperPool != null) {
+            mSharedDataDelivery.active = false;
+            mSharedDataErrorDelivery.active = false;
+            mSharedDataDelivery = null;
+            mSharedDataErrorDelivery = null;
+            return;
+        }
         exitDataThread.set(true);
         exitDataErrorThread.set(true);
         mDataLooperThread.interrupt();
@@ -250,6 +629,11 @@ public final class SerialComLooper {
         exitEventThread = new AtomicBoolean(false);
         mEventListener = eventListener;
 
+        if(mLooperPool != null) {
+            mSharedEventDelivery = new SharedEventDelivery();
+            return;
+        }
+
         mEventLooperThread = new Thread(new EventLooper(), "SerialPundit EventLooper for handle " + handle + " and port " + portName);
         mEventLooperThread.start();
     }
@@ -261,6 +645,11 @@ public final class SerialComLooper {
      * @throws SerialComException if an error occurs.
      */
     public void stopEventLooper() throws SerialComException {
+        if(mLooperPool != null) {
+            mSharedEventDelivery.active = false;
+            mSharedEventDelivery = null;
+            return;
+        }
         exitEventThread.set(true);
         mEventLooperThread.interrupt();
     }
@@ -277,8 +666,45 @@ public final class SerialComLooper {
      */
     public void resume() {
         deliverDataEvent.set(true);
-        mDataLock.notify();
-        mDataErrorLock.notify();
+        if(mLooperPool != null) {
+            SharedDelivery delivery = mSharedDataDelivery;
+            if(delivery != null) {
+                delivery.schedule();
+            }
+            delivery = mSharedDataErrorDelivery;
+            if(delivery != null) {
+                delivery.schedule();
+            }
+            return;
+        }
+        synchronized(mDataLock) {
+            mDataLock.notifyAll();
+        }
+        synchronized(mDataErrorLock) {
+            mDataErrorLock.notifyAll();
+        }
+    }
+
+    /**
+     * <p>Gives number of data chunks dropped so far because application was not consuming data 
+     * as fast as it was arriving from serial port.</p>
+     * 
+     * @return number of dropped chunks or 0 if data looper is not running.
+     */
+    public long getDroppedChunks() {
+        SerialComDataRing dataRing = mDataRing;
+        return (dataRing != null) ? dataRing.getDroppedChunks() : 0;
+    }
+
+    /**
+     * <p>Gives number of data bytes dropped so far because application was not consuming data 
+     * as fast as it was arriving from serial port.</p>
+     * 
+     * @return number of dropped bytes or 0 if data looper is not running.
+     */
+    public long getDroppedBytes() {
+        SerialComDataRing dataRing = mDataRing;
+        return (dataRing != null) ? dataRing.getDroppedBytes() : 0;
     }
 
     /**
@@ -0,0 +1,97 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Small fixed pool of Java worker threads shared by all the loopers of a SerialComManager
+ * instance when it has been created in shared dispatch mode.</p>
+ *
+ * <p>Instead of dedicating data, data error and event looper threads to every handle, loopers
+ * submit a delivery task to this pool whenever new data/event is queued for them. A looper never
+ * has more than one delivery task of a given kind in the pool at any instant of time, which keeps
+ * delivery to a listener strictly ordered.</p>
+ *
+ * <p>Worker threads are daemon threads so that they do not prevent JVM from exiting.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComLooperPool {
+
+    private final ScheduledThreadPoolExecutor mExecutor;
+    private final int mNumOfThreads;
+
+    /**
+     * <p>Allocates a new SerialComLooperPool object with one worker thread per available
+     * processor core.</p>
+     */
+    public SerialComLooperPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * <p>Allocates a new SerialComLooperPool object with given number of worker threads.</p>
+     *
+     * @param numOfThreads number of worker threads in this pool.
+     * @throws IllegalArgumentException if numOfThreads is zero or negative.
+     */
+    public SerialComLooperPool(int numOfThreads) {
+        if(numOfThreads <= 0) {
+            throw new IllegalArgumentException("Argument numOfThreads can not be negative or zero !");
+        }
+        mNumOfThreads = numOfThreads;
+        mExecutor = new ScheduledThreadPoolExecutor(numOfThreads, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(0);
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread worker = new Thread(task, "SerialPundit SharedLooper " + threadNumber.incrementAndGet());
+                worker.setDaemon(true);
+                return worker;
+            }
+        });
+    }
+
+    /**
+     * <p>Queue given delivery task for execution by one of the worker threads.</p>
+     *
+     * @param task delivery task of a looper.
+     */
+    public void execute(Runnable task) {
+        mExecutor.execute(task);
+    }
+
+    /**
+     * <p>Queue given task for execution by one of the worker threads after given delay. Used by 
+     * loopers to flush a batch whose latency deadline is pending.</p>
+     *
+     * @param task delivery task of a looper.
+     * @param delay time in nanoseconds after which task should be executed.
+     */
+    public void schedule(Runnable task, long delay) {
+        mExecutor.schedule(task, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * <p>Gives number of worker threads serving all the loopers.</p>
+     *
+     * @return number of worker threads in this pool.
+     */
+    public int getNumOfThreads() {
+        return mNumOfThreads;
+    }
+}
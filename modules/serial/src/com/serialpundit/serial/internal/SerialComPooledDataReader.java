@@ -0,0 +1,157 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.ISerialComPooledDataListener;
+import com.serialpundit.serial.SerialComBufferPool;
+import com.serialpundit.serial.SerialComPooledBuffer;
+
+/**
+ * <p>Reads data from serial port directly into buffers borrowed from SerialComBufferPool and hands
+ * them over to ISerialComPooledDataListener. Unlike native data looper, which creates a new Java
+ * byte array for every read, this reader blocks in readBytesP using a blocking I/O context and the
+ * native layer copies data into the pooled array, so no allocation happens on receive path.</p>
+ *
+ * <p>Listener is invoked from the reader thread itself. While listener is busy data accumulates in
+ * operating system buffer, so flow control (if enabled) throttles the sender.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComPooledDataReader implements Runnable {
+
+    private final SerialComPortJNIBridge mComPortJNIBridge;
+    private final SerialComBulkReader mBulkReader;
+    private final SerialComBufferPool mBufferPool;
+    private final ISerialComPooledDataListener mDataListener;
+    private final long mHandle;
+    private final int mReadSize;
+    private static final int MAX_BACKOFF_MILLIS = 1000;
+    private long mContext = -1;
+    private Thread mReaderThread = null;
+    private volatile boolean mExit = false;
+
+    /**
+     * <p>Allocates a new SerialComPooledDataReader object.</p>
+     *
+     * @param mComPortJNIBridge interface used to invoke appropriate native function.
+     * @param bulkReader reader used to read more than one native chunk in one go.
+     * @param bufferPool pool from which receive buffers will be borrowed.
+     * @param dataListener listener to which data will be delivered.
+     * @param handle handle of the opened port from which data will be read.
+     * @param readSize maximum number of bytes to read in one go.
+     */
+    public SerialComPooledDataReader(SerialComPortJNIBridge mComPortJNIBridge, SerialComBulkReader bulkReader,
+            SerialComBufferPool bufferPool, ISerialComPooledDataListener dataListener, long handle, int readSize) {
+        this.mComPortJNIBridge = mComPortJNIBridge;
+        this.mBulkReader = bulkReader;
+        this.mBufferPool = bufferPool;
+        this.mDataListener = dataListener;
+        this.mHandle = handle;
+        this.mReadSize = readSize;
+    }
+
+    @Override
+    public void run() {
+        SerialComPooledBuffer buffer = null;
+        int ret = 0;
+        int errors = 0;
+
+        while(mExit == false) {
+            buffer = mBufferPool.acquire(mReadSize);
+            try {
+                ret = mBulkReader.read(mHandle, buffer.array(), 0, mReadSize, mContext, null);
+            } catch (Exception e) {
+                // native layer throws when blocked read is unblocked explicitly or fails
+                ret = -1;
+            }
+
+            if(ret > 0) {
+                errors = 0;
+                buffer.setLength(ret);
+                mDataListener.onNewSerialDataAvailable(buffer);
+            }else if(ret < 0) {
+                buffer.release();
+                if(mExit == true) {
+                    break;
+                }
+                // a persistent failure (for example USB-UART removed) must not turn into a busy loop
+                // flooding listener, so wait longer after every consecutive error.
+                mDataListener.onDataListenerError(ret);
+                errors++;
+                backOff(errors);
+            }else {
+                buffer.release();
+            }
+        }
+    }
+
+    /* Sleeps 1, 2, 4 ... milliseconds up to MAX_BACKOFF_MILLIS, returns early if reader is stopped. */
+    private void backOff(int errors) {
+        long delay = (errors > 10) ? MAX_BACKOFF_MILLIS : Math.min(MAX_BACKOFF_MILLIS, 1L << (errors - 1));
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            // stop() interrupts sleep, exit flag is checked by caller
+        }
+    }
+
+    /**
+     * <p>Creates blocking context and starts reader thread.</p>
+     *
+     * @param portName name of port represented by handle.
+     * @throws SerialComException if blocking context can not be created.
+     */
+    public void start(String portName) throws SerialComException {
+        long context = mComPortJNIBridge.createBlockingIOContext();
+        if(context < 0) {
+            throw new SerialComException("Could not create blocking I/O context. Please retry !");
+        }
+        mContext = context;
+        mReaderThread = new Thread(this, "SerialPundit PooledDataReader for handle " + mHandle + " and port " + portName);
+        mReaderThread.start();
+    }
+
+    /**
+     * <p>Unblocks reader thread, waits for it to exit and destroys blocking context.</p>
+     *
+     * @throws SerialComException if blocked read can not be unblocked or context can not be destroyed.
+     */
+    public void stop() throws SerialComException {
+        mExit = true;
+        int ret = mComPortJNIBridge.unblockBlockingIOOperation(mContext);
+        if(ret < 0) {
+            throw new SerialComException("Could not unblock the blocked I/O operation. Please retry !");
+        }
+        mReaderThread.interrupt();
+        try {
+            mReaderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ret = mComPortJNIBridge.destroyBlockingIOContext(mContext);
+        if(ret < 0) {
+            throw new SerialComException("Could not destroy blocking I/O context. Please retry !");
+        }
+    }
+
+    /**
+     * <p>Gives listener to which this reader delivers data.</p>
+     *
+     * @return pooled data listener.
+     */
+    public ISerialComPooledDataListener getDataListener() {
+        return mDataListener;
+    }
+}
@@ -22,17 +22,26 @@ import com.serialpundit.serial.SerialComOutByteStream;
  * <p>Encapsulates the information like port handle, looper object, event listener, 
  * data listener, port name etc associated with a particular port.</p>
  * 
+ * <p>Object of this class also acts as lock for the handle it represents. Threads registering 
+ * or unregistering listeners, creating streams or closing the port synchronize on it, so 
+ * operations on different handles proceed in parallel.</p>
+ * 
  * @author Rishi Gupta
  */
 public final class SerialComPortHandleInfo {
 
     private long mPortHandle = -1;
     private String mOpenedPortName = null;
-    private SerialComLooper mLooper = null;
-    private ISerialComEventListener mEventListener = null;
-    private ISerialComDataListener mDataListener = null;
+    // read without holding lock on this object while searching handle for a listener.
+    private volatile SerialComLooper mLooper = null;
+    private volatile ISerialComEventListener mEventListener = null;
+    private volatile ISerialComDataListener mDataListener = null;
     private SerialComInByteStream mSerialComInByteStream = null;
     private SerialComOutByteStream mSerialComOutByteStream = null;
+    private SerialComPooledDataReader mPooledDataReader = null;
+    private SerialComDirectDataReader mDirectDataReader = null;
+    private volatile SerialComWriteCoalescer mWriteCoalescer = null;
+    private volatile boolean mClosed = false;
 
     /**
      * <p>Allocates a new SerialComPortHandleInfo object.</p>
@@ -219,4 +228,60 @@ public final class SerialComPortHandleInfo {
     public void setSerialComOutByteStream(SerialComOutByteStream serialComOutByteStream) {
         this.mSerialComOutByteStream  = serialComOutByteStream;
     }
+
+    /** <p> Get the pooled data reader associated with this handle. </p>
+     * @return pooled data reader for this port/handle or null if pooled data listener is not registered
+     */
+    public SerialComPooledDataReader getPooledDataReader() {
+        return mPooledDataReader;
+    }
+
+    /** <p> Set the pooled data reader associated with this handle. </p>
+     * @param pooledDataReader pooled data reader for this port/handle
+     */
+    public void setPooledDataReader(SerialComPooledDataReader pooledDataReader) {
+        this.mPooledDataReader = pooledDataReader;
+    }
+
+    /** <p> Get the direct data reader associated with this handle. </p>
+     * @return direct data reader for this port/handle or null if direct data listener is not registered
+     */
+    public SerialComDirectDataReader getDirectDataReader() {
+        return mDirectDataReader;
+    }
+
+    /** <p> Set the direct data reader associated with this handle. </p>
+     * @param directDataReader direct data reader for this port/handle
+     */
+    public void setDirectDataReader(SerialComDirectDataReader directDataReader) {
+        this.mDirectDataReader = directDataReader;
+    }
+
+    /** <p> Get the write coalescer associated with this handle. </p>
+     * @return write coalescer for this port/handle or null if write coalescing is not enabled
+     */
+    public SerialComWriteCoalescer getWriteCoalescer() {
+        return mWriteCoalescer;
+    }
+
+    /** <p> Set the write coalescer associated with this handle. </p>
+     * @param writeCoalescer write coalescer for this port/handle
+     */
+    public void setWriteCoalescer(SerialComWriteCoalescer writeCoalescer) {
+        this.mWriteCoalescer = writeCoalescer;
+    }
+
+    /** <p> Tell whether the port represented by this handle has been closed. </p>
+     * @return true if port has been closed
+     */
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    /** <p> Mark that the port represented by this handle has been closed. Must be called while 
+     * holding lock on this object. </p>
+     */
+    public void setClosed() {
+        mClosed = true;
+    }
 }
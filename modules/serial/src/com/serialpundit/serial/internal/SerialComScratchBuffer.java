@@ -0,0 +1,70 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>Gives every calling thread its own direct byte buffer which is reused across calls, so that data
+ * can be staged for native direct read/write functions without allocating on every call.</p>
+ *
+ * <p>Buffer grows on demand up to a maximum size. Requests larger than maximum get a new buffer which
+ * is not kept. A thread must not use the buffer returned by one call after making next call.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComScratchBuffer {
+
+    private final int mMaxSize;
+    private final ThreadLocal<ByteBuffer[]> mBuffer;
+
+    /**
+     * <p>Allocates a new SerialComScratchBuffer object.</p>
+     *
+     * @param initialSize initial capacity of buffer of every thread.
+     * @param maxSize largest capacity a buffer is allowed to grow to and kept.
+     */
+    public SerialComScratchBuffer(final int initialSize, int maxSize) {
+        mMaxSize = maxSize;
+        mBuffer = new ThreadLocal<ByteBuffer[]>() {
+            @Override
+            protected ByteBuffer[] initialValue() {
+                return new ByteBuffer[] { ByteBuffer.allocateDirect(initialSize) };
+            }
+        };
+    }
+
+    /**
+     * <p>Gives direct buffer of calling thread having capacity of at least size bytes, with position 0,
+     * limit equal to its capacity and big endian byte order.</p>
+     *
+     * @param size minimum capacity required.
+     * @return cleared direct byte buffer.
+     */
+    public ByteBuffer get(int size) {
+        ByteBuffer[] holder = mBuffer.get();
+        ByteBuffer buffer = holder[0];
+        if(buffer.capacity() < size) {
+            if(size > mMaxSize) {
+                return ByteBuffer.allocateDirect(size);
+            }
+            buffer = ByteBuffer.allocateDirect(Math.min(mMaxSize, Math.max(size, 2 * buffer.capacity())));
+            holder[0] = buffer;
+        }
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Bounded off-heap overflow area for data chunks which could not be accommodated in the data
+ * ring. Chunks are stored back to back as a 4 byte length followed by data bytes in a direct
+ * byte buffer, so spilled data does not put pressure on Java heap.</p>
+ *
+ * <p>This is used only when the ring is full, which is a slow path, so a simple monitor guards
+ * both producer and consumer.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComSpillBuffer {
+
+    private final ByteBuffer mBuffer;
+    private int mReadPosition = 0;
+    private int mWritePosition = 0;
+    private int mNumOfChunks = 0;
+
+    /**
+     * <p>Allocates a new SerialComSpillBuffer object.</p>
+     *
+     * @param capacity size in bytes of off-heap memory to be used for spilling.
+     * @throws IllegalArgumentException if capacity is too small.
+     */
+    public SerialComSpillBuffer(int capacity) {
+        if(capacity <= 4) {
+            throw new IllegalArgumentException("Argument capacity must be greater than 4 !");
+        }
+        mBuffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * <p>Appends given chunk to this buffer.</p>
+     *
+     * @param data chunk to be spilled.
+     * @return true if chunk was stored, false if there is not enough free space.
+     */
+    public synchronized boolean offer(byte[] data) {
+        int required = 4 + data.length;
+        if((mBuffer.capacity() - mWritePosition) < required) {
+            if((mBuffer.capacity() - (mWritePosition - mReadPosition)) < required) {
+                return false;
+            }
+            // move unread chunks to start of buffer to make contiguous free space at end
+            mBuffer.limit(mWritePosition);
+            mBuffer.position(mReadPosition);
+            mBuffer.compact();
+            mWritePosition = mWritePosition - mReadPosition;
+            mReadPosition = 0;
+        }
+        mBuffer.clear();
+        mBuffer.position(mWritePosition);
+        mBuffer.putInt(data.length);
+        mBuffer.put(data);
+        mWritePosition = mBuffer.position();
+        mNumOfChunks++;
+        return true;
+    }
+
+    /**
+     * <p>Removes the oldest spilled chunk and gives it back as byte array.</p>
+     *
+     * @return oldest chunk or null if nothing is spilled.
+     */
+    public synchronized byte[] poll() {
+        if(mNumOfChunks == 0) {
+            return null;
+        }
+        mBuffer.clear();
+        mBuffer.position(mReadPosition);
+        byte[] data = new byte[mBuffer.getInt()];
+        mBuffer.get(data);
+        mNumOfChunks--;
+        if(mNumOfChunks == 0) {
+            mReadPosition = 0;
+            mWritePosition = 0;
+        }else {
+            mReadPosition = mBuffer.position();
+        }
+        return data;
+    }
+
+    /**
+     * <p>Tells whether any chunk is spilled in this buffer.</p>
+     *
+     * @return true if nothing is spilled.
+     */
+    public synchronized boolean isEmpty() {
+        return mNumOfChunks == 0;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.IdentityHashMap;
+
+/**
+ * <p>Encodes character sequences into direct buffer of calling thread without creating a byte array
+ * for every string.</p>
+ *
+ * <p>Strings made only of characters which the charset maps one to one on a single byte (ASCII for
+ * US-ASCII and UTF-8, Latin-1 for ISO-8859-1) are copied byte by byte. Other strings are encoded using
+ * a CharsetEncoder which is created once per thread and charset and reused. Like String.getBytes,
+ * malformed input and unmappable characters are replaced by replacement bytes of the charset.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComStringEncoder {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final SerialComScratchBuffer mScratchBuffer;
+
+    private final ThreadLocal<IdentityHashMap<Charset, CharsetEncoder>> mEncoders =
+            new ThreadLocal<IdentityHashMap<Charset, CharsetEncoder>>() {
+        @Override
+        protected IdentityHashMap<Charset, CharsetEncoder> initialValue() {
+            return new IdentityHashMap<Charset, CharsetEncoder>(4);
+        }
+    };
+
+    /**
+     * <p>Allocates a new SerialComStringEncoder object.</p>
+     *
+     * @param scratchBuffer per thread direct buffers into which strings will be encoded.
+     */
+    public SerialComStringEncoder(SerialComScratchBuffer scratchBuffer) {
+        mScratchBuffer = scratchBuffer;
+    }
+
+    /**
+     * <p>Encodes given characters. Encoded bytes are placed from index 0 till position of returned buffer.
+     * Returned buffer belongs to calling thread and is valid till its next call.</p>
+     *
+     * @param data characters to encode.
+     * @param charset charset to use.
+     * @return direct buffer containing encoded bytes.
+     */
+    public ByteBuffer encode(CharSequence data, Charset charset) {
+        int length = data.length();
+        int maxSingleByteChar = singleByteLimit(charset);
+        ByteBuffer encoded = null;
+
+        if(maxSingleByteChar > 0) {
+            encoded = mScratchBuffer.get(length);
+            int x = 0;
+            char c = 0;
+            for(x=0; x < length; x++) {
+                c = data.charAt(x);
+                if(c > maxSingleByteChar) {
+                    break;
+                }
+                encoded.put((byte) c);
+            }
+            if(x == length) {
+                return encoded;
+            }
+        }
+
+        CharsetEncoder encoder = getEncoder(charset);
+        encoded = mScratchBuffer.get((int) Math.ceil(length * (double) encoder.maxBytesPerChar()));
+        CharBuffer in = CharBuffer.wrap(data);
+        CoderResult result = encoder.encode(in, encoded, true);
+        if(result.isUnderflow()) {
+            encoder.flush(encoded);
+        }
+        encoder.reset();
+        return encoded;
+    }
+
+    private CharsetEncoder getEncoder(Charset charset) {
+        IdentityHashMap<Charset, CharsetEncoder> encoders = mEncoders.get();
+        CharsetEncoder encoder = encoders.get(charset);
+        if(encoder == null) {
+            encoder = charset.newEncoder();
+            encoder.onMalformedInput(CodingErrorAction.REPLACE);
+            encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+            encoders.put(charset, encoder);
+        }
+        return encoder;
+    }
+
+    /* Largest character value which given charset encodes as the same single byte, 0 if not known. */
+    private static int singleByteLimit(Charset charset) {
+        if(charset.equals(US_ASCII) || charset.equals(UTF_8)) {
+            return 0x7F;
+        }
+        if(charset.equals(ISO_8859_1)) {
+            return 0xFF;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.SerialComWriteCoalescingStats;
+
+/**
+ * <p>Aggregates small writes to a handle in a direct buffer and sends them out in one native write.
+ * Buffer is flushed when it becomes full, when flush delay elapses after first byte was buffered or
+ * when flush is called explicitly.</p>
+ *
+ * <p>Timed flushes are carried out by a shared scheduler thread. An error occurring during timed flush
+ * is reported by the next write or flush call. If flow control holds the line, timed flush keeps unsent 
+ * bytes and is scheduled again shortly instead of waiting, so other ports are still flushed in time. 
+ * A write or flush waiting for the line fails if no byte could be sent for a long time.</p>
+ *
+ * <p>Once closed, coalescer does not touch the handle any more, as handle may be reused by operating 
+ * system for another port after it has been closed.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComWriteCoalescer implements Runnable {
+
+    private static final long FLOW_CONTROL_RETRY_NANOS = 1000000;
+    private static final long FLOW_CONTROL_TIMEOUT_MILLIS = 60000;
+
+    private final SerialComPortJNIBridge mComPortJNIBridge;
+    private final ScheduledExecutorService mScheduler;
+    private final long mHandle;
+    private final long mFlushDelayNanos;
+    private final ByteBuffer mBuffer;
+
+    private boolean mFlushScheduled = false;
+    private boolean mClosed = false;
+    private long mStallDeadline = 0;
+    private SerialComException mPendingError = null;
+    private long mNumOfWrites = 0;
+    private long mNumOfBytes = 0;
+    private long mNumOfNativeWrites = 0;
+
+    /**
+     * <p>Allocates a new SerialComWriteCoalescer object.</p>
+     *
+     * @param mComPortJNIBridge interface used to invoke appropriate native function.
+     * @param scheduler executor which runs timed flushes.
+     * @param handle handle of the opened port on which data is written.
+     * @param bufferSize number of bytes after which buffer is flushed.
+     * @param flushDelayNanos time in nanoseconds after which buffered data is flushed.
+     */
+    public SerialComWriteCoalescer(SerialComPortJNIBridge mComPortJNIBridge, ScheduledExecutorService scheduler,
+            long handle, int bufferSize, long flushDelayNanos) {
+        this.mComPortJNIBridge = mComPortJNIBridge;
+        this.mScheduler = scheduler;
+        this.mHandle = handle;
+        this.mFlushDelayNanos = flushDelayNanos;
+        this.mBuffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * <p>Buffers given bytes.</p>
+     *
+     * @param data array containing bytes.
+     * @param offset index of first byte.
+     * @param length number of bytes.
+     * @return length.
+     * @throws SerialComException if coalescer is closed, or if an earlier timed flush or a flush triggered now fails.
+     */
+    public synchronized int write(byte[] data, int offset, int length) throws SerialComException {
+        checkClosed();
+        reportPendingError();
+        int done = 0;
+        int num = 0;
+        while(done < length) {
+            num = Math.min(length - done, mBuffer.remaining());
+            mBuffer.put(data, offset + done, num);
+            done = done + num;
+            if(mBuffer.hasRemaining() == false) {
+                flushBuffer(false);
+            }
+        }
+        written(length);
+        return length;
+    }
+
+    /**
+     * <p>Buffers given byte.</p>
+     *
+     * @param data byte to be written.
+     * @return 1.
+     * @throws SerialComException if coalescer is closed, or if an earlier timed flush or a flush triggered now fails.
+     */
+    public synchronized int write(byte data) throws SerialComException {
+        checkClosed();
+        reportPendingError();
+        mBuffer.put(data);
+        if(mBuffer.hasRemaining() == false) {
+            flushBuffer(false);
+        }
+        written(1);
+        return 1;
+    }
+
+    /**
+     * <p>Buffers bytes between position and limit of given buffer, position of which is not changed.</p>
+     *
+     * @param data buffer containing bytes.
+     * @return number of bytes buffered.
+     * @throws SerialComException if coalescer is closed, or if an earlier timed flush or a flush triggered now fails.
+     */
+    public synchronized int write(ByteBuffer data) throws SerialComException {
+        checkClosed();
+        reportPendingError();
+        ByteBuffer src = data.duplicate();
+        int length = src.remaining();
+        int limit = src.limit();
+        while(src.hasRemaining()) {
+            src.limit(src.position() + Math.min(src.remaining(), mBuffer.remaining()));
+            mBuffer.put(src);
+            src.limit(limit);
+            if(mBuffer.hasRemaining() == false) {
+                flushBuffer(false);
+            }
+        }
+        written(length);
+        return length;
+    }
+
+    /**
+     * <p>Sends out all buffered bytes. Does nothing if coalescer is closed.</p>
+     *
+     * @throws SerialComException if data can not be written or an earlier timed flush has failed.
+     */
+    public synchronized void flush() throws SerialComException {
+        if(mClosed == true) {
+            return;
+        }
+        reportPendingError();
+        flushBuffer(false);
+    }
+
+    /**
+     * <p>Sends out all buffered bytes and closes this coalescer. Coalescer is closed and buffered 
+     * bytes are discarded even if they can not be written.</p>
+     *
+     * @throws SerialComException if data can not be written or an earlier timed flush has failed.
+     */
+    public synchronized void close() throws SerialComException {
+        if(mClosed == true) {
+            return;
+        }
+        mClosed = true;
+        try {
+            reportPendingError();
+            flushBuffer(false);
+        } finally {
+            mBuffer.clear();
+        }
+    }
+
+    /**
+     * <p>Timed flush.</p>
+     */
+    @Override
+    public synchronized void run() {
+        mFlushScheduled = false;
+        if(mClosed == true) {
+            return;
+        }
+        try {
+            flushBuffer(true);
+        } catch (SerialComException e) {
+            mPendingError = e;
+        }
+    }
+
+    /**
+     * <p>Gives statistics of this coalescer.</p>
+     *
+     * @return snapshot of counters.
+     */
+    public synchronized SerialComWriteCoalescingStats getStats() {
+        return new SerialComWriteCoalescingStats(mNumOfWrites, mNumOfBytes, mNumOfNativeWrites);
+    }
+
+    private void written(int length) {
+        mNumOfWrites++;
+        mNumOfBytes = mNumOfBytes + length;
+        if((mBuffer.position() > 0) && (mFlushScheduled == false)) {
+            mFlushScheduled = true;
+            mScheduler.schedule(this, mFlushDelayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void checkClosed() throws SerialComException {
+        if(mClosed == true) {
+            throw new SerialComException("Write coalescing has been disabled or port has been closed. Please retry !");
+        }
+    }
+
+    private void reportPendingError() throws SerialComException {
+        if(mPendingError != null) {
+            SerialComException e = mPendingError;
+            mPendingError = null;
+            mBuffer.clear();
+            throw e;
+        }
+    }
+
+    /* Writes out buffered bytes. If timed is true and flow control holds the line, unsent bytes are 
+     * kept and timed flush is scheduled again, otherwise calling thread waits for the line. */
+    private void flushBuffer(boolean timed) throws SerialComException {
+        int total = mBuffer.position();
+        int offset = 0;
+        int ret = 0;
+        long now = 0;
+
+        while(offset < total) {
+            ret = mComPortJNIBridge.writeBytesDirect(mHandle, mBuffer, offset, total - offset);
+            if(ret < 0) {
+                mBuffer.clear();
+                mStallDeadline = 0;
+                throw new SerialComException("Could not write data to serial port. Please retry !");
+            }
+            if(ret == 0) {
+                // transmission stopped by flow control, give up if it stays stopped for long
+                now = System.currentTimeMillis();
+                if(mStallDeadline == 0) {
+                    mStallDeadline = now + FLOW_CONTROL_TIMEOUT_MILLIS;
+                }else if(now >= mStallDeadline) {
+                    mBuffer.clear();
+                    mStallDeadline = 0;
+                    throw new SerialComException("Could not write data to serial port. Please retry !");
+                }
+                if(timed == true) {
+                    // move unsent bytes to start of buffer and try again shortly
+                    mBuffer.limit(total);
+                    mBuffer.position(offset);
+                    mBuffer.compact();
+                    if(mFlushScheduled == false) {
+                        mFlushScheduled = true;
+                        mScheduler.schedule(this, FLOW_CONTROL_RETRY_NANOS, TimeUnit.NANOSECONDS);
+                    }
+                    return;
+                }
+                LockSupport.parkNanos(FLOW_CONTROL_RETRY_NANOS);
+                continue;
+            }
+            mStallDeadline = 0;
+            mNumOfNativeWrites++;
+            offset = offset + ret;
+        }
+        mBuffer.clear();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package p3.handlecontention;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.serialpundit.serial.SerialComManager;
+
+// Every thread works on its own handle/port, so ideally throughput should scale with number of threads.
+// When serialized is true every operation is additionally done holding one global lock. This emulates
+// the earlier registry where all handles were kept in a TreeMap guarded by a single lock and gives the
+// baseline to compare against in the same run.
+abstract class Worker implements Runnable {
+
+	static final Object GLOBAL_LOCK = new Object();
+
+	protected final SerialComManager scm;
+	private final boolean serialized;
+	private final CountDownLatch start;
+	private final AtomicLong totalOps;
+	private volatile boolean exit = false;
+
+	public Worker(SerialComManager scm, boolean serialized, CountDownLatch start, AtomicLong totalOps) {
+		this.scm = scm;
+		this.serialized = serialized;
+		this.start = start;
+		this.totalOps = totalOps;
+	}
+
+	public void stop() {
+		exit = true;
+	}
+
+	abstract void operate() throws Exception;
+
+	@Override
+	public void run() {
+		long ops = 0;
+		try {
+			start.await();
+			while(exit == false) {
+				if(serialized == true) {
+					synchronized(GLOBAL_LOCK) {
+						operate();
+					}
+				}else {
+					operate();
+				}
+				ops++;
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		totalOps.addAndGet(ops);
+	}
+}
+
+// Each operation looks up handle in registry and takes the lock of that handle.
+final class LookupWorker extends Worker {
+
+	private final long handle;
+
+	public LookupWorker(SerialComManager scm, long handle, boolean serialized, CountDownLatch start, AtomicLong totalOps) {
+		super(scm, serialized, start, totalOps);
+		this.handle = handle;
+	}
+
+	@Override
+	void operate() throws Exception {
+		scm.getDroppedDataBytes(handle);
+		scm.getPortName(handle);
+	}
+}
+
+// Each operation opens a port, looks it up and closes it again, like ports coming and going under hotplug churn.
+final class ChurnWorker extends Worker {
+
+	private final String port;
+
+	public ChurnWorker(SerialComManager scm, String port, boolean serialized, CountDownLatch start, AtomicLong totalOps) {
+		super(scm, serialized, start, totalOps);
+		this.port = port;
+	}
+
+	@Override
+	void operate() throws Exception {
+		long handle = scm.openComPort(port, true, true, false);
+		scm.getPortName(handle);
+		scm.closeComPort(handle);
+	}
+}
+
+// Usage: HandleContention [port1 port2 ...], churn threads use given ports round robin.
+public final class HandleContention {
+
+	static long runTime = 3000;
+
+	static long measure(SerialComManager scm, boolean churn, boolean serialized, int numThreads, long[] handles, String[] ports) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicLong totalOps = new AtomicLong(0);
+		Worker[] workers = new Worker[numThreads];
+		Thread[] threads = new Thread[numThreads];
+		for(int x=0; x<numThreads; x++) {
+			if(churn == true) {
+				workers[x] = new ChurnWorker(scm, ports[x % ports.length], serialized, start, totalOps);
+			}else {
+				workers[x] = new LookupWorker(scm, handles[x], serialized, start, totalOps);
+			}
+			threads[x] = new Thread(workers[x]);
+			threads[x].start();
+		}
+
+		start.countDown();
+		Thread.sleep(runTime);
+		for(int x=0; x<numThreads; x++) {
+			workers[x].stop();
+		}
+		for(int x=0; x<numThreads; x++) {
+			threads[x].join();
+		}
+		return (totalOps.get() * 1000) / runTime;
+	}
+
+	static void report(SerialComManager scm, String name, boolean churn, int maxThreads, long[] handles, String[] ports) throws Exception {
+		System.out.println(name + " :");
+		for(int numThreads=1; numThreads<=maxThreads; numThreads = numThreads * 2) {
+			long before = measure(scm, churn, true, numThreads, handles, ports);
+			long after = measure(scm, churn, false, numThreads, handles, ports);
+			System.out.println("threads : " + numThreads + " , global lock ops/sec : " + before + " , concurrent registry ops/sec : " + after);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		SerialComManager scm = new SerialComManager();
+
+		String[] ports = args;
+		if(ports.length == 0) {
+			ports = new String[] { "/dev/ttyUSB0" };
+		}
+		int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+
+		long[] handles = new long[maxThreads];
+		for(int x=0; x<maxThreads; x++) {
+			handles[x] = scm.openComPort(ports[x % ports.length], true, true, false);
+		}
+
+		report(scm, "lookup on open handles", false, maxThreads, handles, ports);
+
+		for(int x=0; x<maxThreads; x++) {
+			scm.closeComPort(handles[x]);
+		}
+
+		report(scm, "open/close churn", true, maxThreads, handles, ports);
+
+		System.out.println("done");
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of SerialPundit.
+ *
+ * Copyright (C) 2014-2021, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial
+ * license for commercial use of this software.
+ *
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package p4.bulkread;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+
+import com.serialpundit.serial.SerialComManager;
+import com.serialpundit.serial.SerialComManager.BAUDRATE;
+import com.serialpundit.serial.SerialComManager.DATABITS;
+import com.serialpundit.serial.SerialComManager.FLOWCONTROL;
+import com.serialpundit.serial.SerialComManager.PARITY;
+import com.serialpundit.serial.SerialComManager.STOPBITS;
+
+// Keeps PORT1 transmitting at full speed and measures how fast PORT can be drained using old maximum
+// read size (2048 bytes) and using large reads. Connect both ports using null modem cable. Calls per MB
+// counts readBytes calls made by application, a large read makes more than one native call (first chunk
+// and then drain until operating system buffer is empty). So on Linux read system calls made by whole
+// process (syscr in /proc/self/io) are also counted and reported per MB, which is what read size actually
+// changes. Sender thread only writes, so its system calls do not show up in this figure.
+final class Sender implements Runnable {
+
+	private final SerialComManager scm;
+	private final long handle;
+	private volatile boolean exit = false;
+
+	public Sender(SerialComManager scm, long handle) {
+		this.scm = scm;
+		this.handle = handle;
+	}
+
+	public void stop() {
+		exit = true;
+	}
+
+	@Override
+	public void run() {
+		byte[] data = new byte[4096];
+		for(int x=0; x<data.length; x++) {
+			data[x] = (byte) x;
+		}
+		try {
+			while(exit == false) {
+				scm.writeBytes(handle, data, 0);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+}
+
+public final class BulkRead {
+
+	// Number of read system calls made by this process so far or -1 if not known on this platform.
+	private static long readSyscalls() {
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader("/proc/self/io"));
+			String line = null;
+			while((line = reader.readLine()) != null) {
+				if(line.startsWith("syscr:")) {
+					return Long.parseLong(line.substring(6).trim());
+				}
+			}
+		} catch (Exception e) {
+		} finally {
+			if(reader != null) {
+				try {
+					reader.close();
+				} catch (Exception e) {
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static void run(SerialComManager scm, long handle, int readSize, long runTime) throws Exception {
+		long bytes = 0;
+		long calls = 0;
+		byte[] data = null;
+
+		long syscallsStart = readSyscalls();
+		long end = System.currentTimeMillis() + runTime;
+		while(System.currentTimeMillis() < end) {
+			data = scm.readBytes(handle, readSize);
+			calls++;
+			if(data != null) {
+				bytes = bytes + data.length;
+			}else {
+				Thread.sleep(1);
+			}
+		}
+		long syscallsEnd = readSyscalls();
+
+		// -1 if system calls could not be counted
+		long syscalls = -1;
+		if((syscallsStart >= 0) && (syscallsEnd >= 0)) {
+			syscalls = (bytes == 0) ? 0 : (((syscallsEnd - syscallsStart) * 1024 * 1024) / bytes);
+		}
+
+		System.out.println("read size : " + readSize + " , bytes/sec : " + ((bytes * 1000) / runTime)
+				+ " , calls/MB : " + ((bytes == 0) ? 0 : ((calls * 1024 * 1024) / bytes))
+				+ " , read syscalls/MB : " + syscalls);
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		SerialComManager scm = new SerialComManager();
+
+		String PORT = "/dev/ttyUSB0";
+		String PORT1 = "/dev/ttyUSB1";
+		long runTime = 10000;
+
+		long handle = scm.openComPort(PORT, true, true, true);
+		scm.configureComPortData(handle, DATABITS.DB_8, STOPBITS.SB_1, PARITY.P_NONE, BAUDRATE.B3000000, 0);
+		scm.configureComPortControl(handle, FLOWCONTROL.NONE, 'x', 'x', false, false);
+
+		long handle1 = scm.openComPort(PORT1, true, true, true);
+		scm.configureComPortData(handle1, DATABITS.DB_8, STOPBITS.SB_1, PARITY.P_NONE, BAUDRATE.B3000000, 0);
+		scm.configureComPortControl(handle1, FLOWCONTROL.NONE, 'x', 'x', false, false);
+
+		Sender sender = new Sender(scm, handle1);
+		Thread senderThread = new Thread(sender);
+		senderThread.start();
+
+		run(scm, handle, 2048, runTime);
+		run(scm, handle, 64 * 1024, runTime);
+		run(scm, handle, 1024 * 1024, runTime);
+
+		sender.stop();
+		senderThread.join();
+		scm.closeComPort(handle);
+		scm.closeComPort(handle1);
+		System.out.println("done");
+	}
+}